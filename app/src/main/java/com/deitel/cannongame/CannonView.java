@@ -14,81 +14,137 @@ import android.util.Log;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Point;
-import android.media.AudioManager;
-import android.media.SoundPool;
-import android.util.SparseIntArray;
+import android.graphics.Rect;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormatSymbols;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 public class CannonView extends SurfaceView
-        implements SurfaceHolder.Callback
+        implements SurfaceHolder.Callback, GameSimulation.Listener
 {
     private static final String TAG = "CannonView";     // para registrar erros
 
-    private CannonThread cannonThread;      // controla o loop do jogo
+    // a simulação e o desenho rodam em threads separadas: um desenho lento
+    // nunca atrasa a física; as threads duram o tempo de vida do componente
+    // e ficam pausadas enquanto não há superfície
+    private final GameLoopExecutor simulationLoop =
+            new GameLoopExecutor("SimulationThread", new SimulationLoop()); // passos fixos
+    private final GameLoopExecutor renderLoop =
+            new GameLoopExecutor("RenderThread", new RenderLoop()); // desenha o estado publicado
     private Activity activity;      // para exibir a caixa de diálogo Game Over na thread da interface gráfica do usuário
-    private boolean dialogIsDisplayed = false;
-
-    // constantes para interação do jogo
-    public static final int TARGET_PIECES = 7;    // seções no alvo
-    public static final int MISS_PENALTY = 2;    // segundos subtraídos em caso de erro
-    public static final int HIT_REWARD = 3;    // segundos adicionados em caso de acerto
-
-    // variáveis para o loop do jogo e controle de estatísticas
-    private boolean gameOver;           // o jogo terminou?
-    private double timeLeft;            // tempo restante em segundos
-    private int shotsFired;             // tiros disparados pelo usuário
-    private double totalElapsedTime;    // segundos decorridos
-
-    // variáveis para a barreira e para o alvo
-    private Line blocker;               // pontos inicial e final da barreira
-    private int blockerDistance;        // distância da barreira a partir da esquerda
-    private int blockerBeginning;       // distância do topo da barreira até a parte superior
-    private int blockerEnd;             // distância da parte inferior da barreira até o topo
-    private int initialBlockerVelocity; // multiplicador de velocidade inicial da barreira
-    private float blockerVelocity;      // multiplicador de velocidade da barreira durante o jogo
-
-    private Line target;                // pontos inicial e final do alvo
-    private int targetDistance;         // distância do alvo a partir da esquerda
-    private int targetBeginning;        // distância do alvo a partir do topo
-    private double pieceLength;         // comprimento de uma parte do alvo
-    private int targetEnd;              // distância da parte inferior do alvo a partir do topo
-    private int initialTargetVelocity;  // multiplicador de velocidade inicial do alvo
-    private float targetVelocity;       // multiplicador de velocidade do alvo
-
-    private int lineWidth;              // largura do alvo e da barreira
-    private boolean[] hitStates;        // cada parte do alvo foi atingida?
-    private int targetPiecesHit;        // número de partes do alvo atingidas (até 7)
-
-    // variáveis para o canhão e para a bala
-    private Point cannonball;           // canto superior esquerdo da imagem da bala
-    private int cannonballVelocityX;    // velocidade x da bala
-    private int cannonballVelocityY;    // velocidade y da bala
-    private boolean cannonballOnScreen; // se a bala está na tela ou não
-    private int cannonballRadius;       // raio da bala
-    private int cannonballSpeed;        // velocidade da bala
-    private int cannonBaseRadius;       // raio da base do canhão
-    private int cannonLength;   // comprimento do cano do canhão
-    private Point barrelEnd;    // o ponto extremo do cano do canhão
+
+    // estado e regras do jogo, independentes do Android; só a thread da
+    // simulação lê ou altera esse objeto enquanto ela está executando
+    private final GameSimulation simulation = new GameSimulation();
+    private final ParticleSystem particles = new ParticleSystem(); // fagulhas e destroços
+    private final FixedStepClock simulationClock = new FixedStepClock(
+            FixedStepClock.DEFAULT_TICKS_PER_SECOND, FixedStepClock.DEFAULT_TICKS_PER_SECOND,
+            FixedStepClock.DEFAULT_MAX_STEPS_PER_FRAME); // um passo por volta do loop
+    private final FixedStepClock frameClock = new FixedStepClock(); // ritmo dos quadros
+
+    // estado publicado pela simulação para a thread de desenho
+    private final TripleBuffer<GameSnapshot> snapshots = new TripleBuffer<>(
+            new GameSnapshot(), new GameSnapshot(), new GameSnapshot());
+
+    // pedidos da thread da interface, aplicados pela simulação no próximo passo
+    private static final long NO_SCREEN_SIZE = -1L;
+    private final TouchQueue touches = new TouchQueue();
+    private final AtomicLong pendingScreenSize = new AtomicLong(NO_SCREEN_SIZE);
+    private final AtomicBoolean newGameRequested = new AtomicBoolean();
+    private volatile boolean rapidFire;
+
+    // entradas do jogo atual, salvas em replayFile quando o jogo termina ou a
+    // superfície é destruída; usado só pela thread da simulação
+    private static final String REPLAY_FILE_NAME = "last_game.cnrp";
+    private final InputRecorder inputRecorder = new InputRecorder();
+    private final File replayFile;
+
+    // jogo interrompido: gravado em stateFile quando a atividade é pausada e
+    // retomado no lugar de um novo jogo quando a tela é recriada ou muda de
+    // tamanho; o buffer só é usado com a simulação pausada ou pela sua thread
+    private static final String STATE_FILE_NAME = "paused_game.cngs";
+    private final GameStateCodec pausedState = new GameStateCodec();
+    private final File stateFile;
+    private volatile boolean pausedStateAvailable;
+
+    // fase instalada em levelFile (gerada pelo módulo levelcompiler); sem
+    // ela, vale a fase padrão com uma barreira e um alvo
+    private static final String LEVEL_FILE_NAME = "level.cnlv";
+
+    // histórico dos resultados; a simulação só coloca o resultado na fila e
+    // a thread do log devolve a classificação do jogo
+    private static final String SCORE_LOG_FILE_NAME = "scores.cnsl";
+    private final ScoreLog scoreLog;
+
+    // a caixa de diálogo Game Over junta partes preparadas em threads
+    // diferentes: a classificação, pela thread do log, e o resumo do desenho
+    // (quadros, governador e camadas), pela thread de desenho, a única que
+    // altera esses objetos; a última parte pronta abre a caixa de diálogo
+    private static final int GAME_OVER_PARTS = 2;
+    private final AtomicInteger gameOverPartsPending = new AtomicInteger();
+    private final AtomicBoolean renderSummaryRequested = new AtomicBoolean();
+    private volatile boolean gameOverWon;
+    private volatile int gameOverShots;
+    private volatile double gameOverTime;
+    private volatile String gameOverSummary = "";  // simulação, toques e logs
+    private volatile String gameOverRanking = "";
+    private volatile String renderSummary = "";
+
+    // telemetria da sessão: disparos, acertos, batidas e travadas de quadro
+    // vão para arquivos comprimidos em files/telemetry, sem bloquear o jogo
+    private static final String TELEMETRY_DIRECTORY_NAME = "telemetry";
+    private final TelemetryLog telemetry;
+
     private int screenWidth;
     private int screenHeight;
 
-    // constantes e variáveis para gerenciar sons
+    // constantes e variáveis para gerenciar sons; a simulação só coloca os
+    // eventos na fila de áudio, que toca os sons na sua própria thread
     private static final int TARGET_SOUND_ID = 0;
     private static final int CANNON_SOUND_ID = 1;
     private static final int BLOCKER_SOUND_ID = 2;
-    private SoundPool soundPool; // reproduz os efeitos sonoros
-    private SparseIntArray soundMap; // mapeia identificadores em SoundPool
-
-    // variáveis Paint utilizadas ao desenhar cada item na tela
-    private Paint textPaint;          // objeto Paint usado para desenhar texto
-    private Paint cannonballPaint;    // objeto Paint usado para desenhar a bala de canhão
-    private Paint cannonPaint;        // objeto Paint usado para desenhar o canhão
-    private Paint blockerPaint;       // objeto Paint usado para desenhar a barreira
-    private Paint targetPaint;        // objeto Paint usado para desenhar o alvo
-    private Paint backgroundPaint;    // objeto Paint usado para limpar a área de desenho
+    private static final int AUDIO_VOICES = 4; // sons simultâneos
+    private final SoundPoolSink soundSink = new SoundPoolSink(AUDIO_VOICES);
+    private final AudioDispatcher audio = new AudioDispatcher(soundSink,
+            AudioDispatcher.DEFAULT_QUEUE_CAPACITY, AUDIO_VOICES,
+            AudioDispatcher.DEFAULT_REPEAT_WINDOW_NANOS);
+
+    // desenha o jogo sem alocar objetos; os objetos Paint de cada item
+    // ficam em canvasTarget; usados só pela thread de desenho
+    private final GameRenderer renderer = new GameRenderer();
+    private final CanvasRenderTarget canvasTarget = new CanvasRenderTarget();
+    private int paintWidth;             // largura da tela usada para configurar os objetos Paint
+    private int paintHeight;
+    private int drawnGame;              // jogo desenhado no último quadro
+    private int drawnStage;             // etapa da fase desenhada no último quadro
+
+    // fundo, base do canhão e faixas dos alvos pré-desenhados em imagens
+    private final LayerCache layerCache = new LayerCache();
+
+    // parte da tela que muda a cada quadro; só ela é bloqueada e redesenhada
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+
+    // tempos de cada fase do loop e painel de desempenho (alternado com um
+    // toque de dois dedos)
+    private final FrameStats frameStats = new FrameStats();
+    private volatile boolean overlayVisible;
+
+    // escolhe a taxa de quadros e a qualidade pelo tempo de trabalho dos
+    // quadros; usado só pela thread de desenho enquanto adaptiveQuality for true
+    private final FrameGovernor governor = new FrameGovernor();
+    private volatile boolean adaptiveQuality = true;
 
     // construtor public
     public CannonView(Context context, AttributeSet attrs)
@@ -99,34 +155,33 @@ public class CannonView extends SurfaceView
         // registra o receptor SurfaceHolder.Callback
         getHolder().addCallback(this);
 
-        // inicializa Lines e Point representando itens do jogo
-        blocker = new Line();        // cria a barreira como um objeto Line
-        target = new Line();        // cria o alvo como um objeto Line
-        cannonball = new Point();   // cria a bala de canhão como um objeto Point
-
-        // inicializa hitStates como um array booleano
-        hitStates = new boolean[TARGET_PIECES];
-
-        // inicializa SoundPool para reproduzir os três efeitos sonoros do aplicativo
-        soundPool = new SoundPool(1, AudioManager.STREAM_MUSIC, 0);
-
-        // cria objeto Map de sons e carrega os sons previamente
-        soundMap = new SparseIntArray(3);       // cria novo objeto SparseIntArray
-        soundMap.put(TARGET_SOUND_ID,
-                soundPool.load(context, R.raw.target_hit,1));
-        soundMap.put(CANNON_SOUND_ID,
-                soundPool.load(context, R.raw.cannon_fire,1));
-        soundMap.put(BLOCKER_SOUND_ID,
-                soundPool.load(context, R.raw.blocker_hit,1));
-
-        // constrói objetos Paint para desenhar o texto, a bala, o canhão,
-        // a barreira e o alvo; eles são configurados no método onSizeChanged
-        textPaint = new Paint();
-        cannonPaint = new Paint();
-        cannonballPaint = new Paint();
-        blockerPaint = new Paint();
-        targetPaint = new Paint();
-        backgroundPaint = new Paint();
+        // recebe os eventos da simulação para tocar sons e terminar o jogo
+        simulation.setListener(this);
+        simulation.setParticles(particles);
+        replayFile = new File(context.getCacheDir(), REPLAY_FILE_NAME);
+        stateFile = new File(context.getCacheDir(), STATE_FILE_NAME);
+        loadLevel(new File(context.getFilesDir(), LEVEL_FILE_NAME));
+        scoreLog = new ScoreLog(new File(context.getFilesDir(), SCORE_LOG_FILE_NAME));
+        scoreLog.setListener(new ScoreListener());
+        scoreLog.start(); // lê o histórico na thread do log
+        telemetry = new TelemetryLog(new File(context.getFilesDir(), TELEMETRY_DIRECTORY_NAME));
+        telemetry.start();
+        loadPausedState(); // a atividade pode ter sido recriada com um jogo em andamento
+
+        // carrega previamente os três efeitos sonoros do aplicativo; o acerto
+        // no alvo tem a maior prioridade e o disparo a menor (durações em ns)
+        soundSink.load(context, TARGET_SOUND_ID, R.raw.target_hit);
+        soundSink.load(context, CANNON_SOUND_ID, R.raw.cannon_fire);
+        soundSink.load(context, BLOCKER_SOUND_ID, R.raw.blocker_hit);
+        audio.defineSound(TARGET_SOUND_ID, 3, 600000000L);
+        audio.defineSound(BLOCKER_SOUND_ID, 2, 400000000L);
+        audio.defineSound(CANNON_SOUND_ID, 1, 400000000L);
+
+        // o texto do tempo restante é montado a partir do formato do recurso,
+        // sem chamar String.format a cada quadro
+        renderer.setTimerFormat(getResources().getString(R.string.time_remaining_format),
+                DecimalFormatSymbols.getInstance().getDecimalSeparator());
+        renderer.setLayerCache(layerCache); // partes estáticas vêm de imagens prontas
     }   // fim do construtor de CannonView
 
     // chamado por surfaceChanged quando o tamanho do componente SurfaceView
@@ -136,453 +191,778 @@ public class CannonView extends SurfaceView
     {
         super.onSizeChanged(w, h, oldw, oldh);
 
-    screenWidth = w;    // armazena a largura de CannonView
-    screenHeight = h;    // armazena a altura de CannonView
-    cannonBaseRadius = h / 18;    // o raio da base do canhão tem 1/18 da altura da tela
-    cannonLength = w / 8;    // o comprimento do canhão tem 1/8 da largura da tela
-
-    cannonballRadius = w / 36;    // o raio da bala tem 1/36 da largura da tela
-    cannonballSpeed = w * 3 / 2;    // multiplicador de velocidade da bala
-
-    lineWidth = w / 24;    // o alvo e a barreira têm 1/24 da largura da tela
-
-    // configura variáveis de instância relacionadas à barreira
-    blockerDistance = w * 5 / 8;    // a barreira tem 5/8 da largura da tela a partir da esquerda
-    blockerBeginning = h / 8;    // a distância a partir do topo é de 1/8 da altura da tela
-    blockerEnd = h * 3 / 8;    // a distância a partir do topo é de 3/8 da altura da tela
-    initialBlockerVelocity = h / 2;    // multiplicador de velocidade inicial da barreira
-    blocker.start = new Point(blockerDistance, blockerBeginning);
-    blocker.end = new Point(blockerDistance, blockerEnd);
-
-    // configura variáveis de instância relacionadas ao alvo
-    targetDistance = w * 7 / 8;    // o alvo tem 7/8 da largura da tela a partir da esquerda
-    targetBeginning = h / 8;    // a distância a partir do topo é de 1/8 da altura da tela
-    targetEnd = h * 7 / 8;    // a distância a partir do topo é de 7/8 da altura da tela
-    pieceLength = (targetEnd - targetBeginning) / TARGET_PIECES;
-    initialTargetVelocity = -h / 4;    // multiplicador de velocidade inicial do alvo
-    target.start = new Point(targetDistance, targetBeginning);
-    target.end = new Point(targetDistance, targetEnd);
-
-    // o ponto extremo do cano do canhão aponta horizontalmente no início
-    barrelEnd = new Point(cannonLength, h / 2);
-
-    // configura objetos Paint para desenhar os elementos do jogo
-    textPaint.setTextSize(w / 20);  // o tamanho do texto tem 1/20 da largura da tela
-    textPaint.setAntiAlias(true);   // suaviza o texto
-    cannonPaint.setStrokeWidth(lineWidth * 1.5f); // configura a espessura da linha
-    blockerPaint.setStrokeWidth(lineWidth); // configura a espessura da linha
-    targetPaint.setStrokeWidth(lineWidth); // configura a espessura da linha
-    backgroundPaint.setColor(Color.WHITE); // configura a cor de fundo
-
-    newGame();    // prepara e inicia um novo jogo
-    }// fim do método onSizeChanged
-
-    // reinicia todos os elementos de tela e inicia um novo jogo
+        screenWidth = w;    // armazena a largura de CannonView
+        screenHeight = h;    // armazena a altura de CannonView
+
+        // a simulação calcula as dimensões dos elementos do jogo no próximo passo
+        pendingScreenSize.set(((long) w << 32) | (h & 0xFFFFFFFFL));
+
+        // retoma o jogo interrompido, se houver, ou inicia um novo
+        layerCache.invalidate(); // as camadas têm o tamanho antigo
+        newGameRequested.set(true);
+    } // fim do método onSizeChanged
+
+    // reinicia todos os elementos de tela e inicia um novo jogo; a simulação
+    // restaura o alvo, a barreira e o cronômetro no próximo passo
     public void newGame()
     {
-        // configura cada elemento de hitStates como false -- restaura partes do alvo
-        for (int i = 0; i < TARGET_PIECES; i++)
-            hitStates[i] = false;
-
-        targetPiecesHit = 0;        // nenhuma parte do alvo foi atingida
-        blockerVelocity = initialBlockerVelocity;        // configura a velocidade inicial
-        targetVelocity = initialTargetVelocity;        // configura a velocidade inicial
-        timeLeft = 10; // inicia a contagem regressiva em 10 segundos
-        cannonballOnScreen = false; // a bala de canhão não está na tela
-        shotsFired = 0; // configura o número inicial de tiros disparados
-        totalElapsedTime = 0.0; // configura o tempo decorrido como zero
-
-        // configura os objetos Point inicial e final da barreira e do alvo
-        blocker.start.set(blockerDistance, blockerBeginning);
-        blocker.end.set(blockerDistance, blockerEnd);
-        target.start.set(targetDistance, targetBeginning);
-        target.end.set(targetDistance, targetEnd);
-
-        if (gameOver) // iniciando um novo jogo depois que o último terminou
+        pausedStateAvailable = false; // o jogo interrompido é descartado
+        layerCache.invalidate(); // os alvos voltam a ter todas as seções
+        newGameRequested.set(true);
+    } // fim do método newGame
+
+    // fixa a taxa de quadros desejada e desliga o governador; 0 desenha o
+    // mais rápido possível
+    public void setFrameRate(int frameRate)
+    {
+        adaptiveQuality = false;
+        synchronized (frameClock)
+        {
+            frameClock.setFrameRate(frameRate);
+        }
+    }
+
+    // mostra ou oculta o painel de desempenho
+    public void setPerformanceOverlayVisible(boolean visible)
+    {
+        overlayVisible = visible;
+    }
+
+    // liga ou desliga o disparo rápido, com várias balas na tela ao mesmo tempo
+    public void setRapidFire(boolean rapidFire)
+    {
+        this.rapidFire = rapidFire;
+    }
+
+    // dispara uma bala de canhão na direção do toque; o toque entra na fila
+    // da thread da simulação, que alinha o canhão e dispara no próximo passo
+    public void fireCannonball(MotionEvent event)
+    {
+        touches.post(event.getX(), event.getY(), true);
+    } // fim do método fireCannonball
+
+    // aplica os pedidos da thread da interface; chamado pela thread da
+    // simulação antes de cada passo; retorna true se algo mudou
+    private boolean applyRequests()
+    {
+        boolean startGame = newGameRequested.getAndSet(false);
+
+        long size = pendingScreenSize.getAndSet(NO_SCREEN_SIZE);
+        if (size != NO_SCREEN_SIZE)
+        {
+            // o jogo em andamento continua, proporcional, na nova tela; sem
+            // jogo ainda, vale o jogo lido de stateFile
+            if (simulation.getGamesStarted() > 0)
             {
-                gameOver = false; // o jogo não terminou
-                cannonThread = new CannonThread(getHolder()); // cria thread
-                cannonThread.start(); // inicia a thread do loop do jogo
-                } // fim do if
-        } // fim do método newGame
-
-        // chamado repetidamente por CannonThread para atualizar os elementos do jogo
-        private void updatePositions(double elapsedTimeMS)
+                boolean running = !simulation.isGameOver();
+                if (running)
+                    pausedState.write(simulation);
+                pausedStateAvailable = running;
+            }
+
+            simulation.setScreenSize((int) (size >>> 32), (int) size);
+            startGame = true; // a fase foi refeita para o novo tamanho
+        }
+
+        if (startGame && !resumePausedState())
         {
-            double interval = elapsedTimeMS / 1000.0; // converte em segundos
+            simulation.newGame(); // restaura o alvo, a barreira e o cronômetro
 
-                if (cannonballOnScreen) // se um tiro foi disparado no momento
-                    {
-                        // atualiza a posição da bala de canhão
-                        cannonball.x += interval * cannonballVelocityX;
-                        cannonball.y += interval * cannonballVelocityY;
-
-                        // verifica se houve colisão com a barreira
-                        if (cannonball.x + cannonballRadius > blockerDistance &&
-                                cannonball.x - cannonballRadius < blockerDistance &&
-                                cannonball.y + cannonballRadius > blocker.start.y &&
-                                cannonball.y - cannonballRadius < blocker.end.y)
-                        {
-                            cannonballVelocityX *= -1; // direção inversa da bala de canhão
-                            timeLeft -= MISS_PENALTY; // penaliza o usuário
-
-                            // reproduz o som da barreira
-                            soundPool.play(soundMap.get(BLOCKER_SOUND_ID), 1, 1, 1, 0, 1f);
-                            }
-                            // verifica se houve colisões com as paredes esquerda e direita
-                        else if (cannonball.x + cannonballRadius > screenWidth ||
-                                cannonball.x - cannonballRadius < 0)
-                        { soundPool.play(soundMap.get(BLOCKER_SOUND_ID), 1, 1, 1, 0, 1f);
-                        cannonballOnScreen = false; // remove a bala de canhão da tela
-                         }
-                         // verifica se houve colisões com as paredes superior e inferior
-                        else if (cannonball.y + cannonballRadius > screenHeight ||
-                                cannonball.y - cannonballRadius < 0)
-                        {
-                            cannonballOnScreen = false; // remove a bala de canhão da tela
-                            }
-                            // verifica se houve colisão da bala com o alvo
-                        else if (cannonball.x + cannonballRadius > targetDistance &&
-                                cannonball.x - cannonballRadius < targetDistance &&
-                                cannonball.y + cannonballRadius > target.start.y &&
-                                cannonball.y - cannonballRadius < target.end.y)
-                        {
-                            // determina o número da seção do alvo (0 é a parte superior)
-                            int section =
-                                    (int) ((cannonball.y - target.start.y) / pieceLength);
-
-                            // verifica se a parte ainda não foi atingida
-                            if ((section >= 0 && section < TARGET_PIECES) &&
-                                !hitStates[section])
-                            {
-                                hitStates[section] = true;  // a seção foi atingida
-                                cannonballOnScreen = false; // remove a bala de canhão
-                                timeLeft += HIT_REWARD; // acrescenta recompensa ao tempo restante
-
-                                // reproduz o som de alvo atingido
-                                soundPool.play(soundMap.get(TARGET_SOUND_ID), 1,
-                                        1, 1, 0, 1f);
-
-                                // se todas as partes foram atingidas
-                                if (++targetPiecesHit == TARGET_PIECES)
-                                {
-                                    cannonThread.setRunning(false);     // termina a thread
-                                    showGameOverDialog(R.string.win);   // mostra caixa de diálogo de vitória
-                                    gameOver = true;
-                                }
-                            }
-                        }
-                    }
+            // a simulação não sorteia nada; a semente fica registrada para
+            // fases aleatórias
+            inputRecorder.begin(simulation, simulationClock.getStepNanos(), 0L);
+        }
 
-            // atualiza a posição da barreira
-            double blockerUpdate = interval * blockerVelocity;
-                blocker.start.y += blockerUpdate;
-                blocker.end.y += blockerUpdate;
+        boolean changed = startGame;
 
-            // atualiza a posição do alvo
-            double targetUpdate = interval * targetVelocity;
-            target.start.y += targetUpdate;
-            target.end.y += targetUpdate;
+        simulation.setRapidFire(rapidFire);
+        inputRecorder.recordRapidFire(rapidFire);
+
+        // os toques desde o último passo viram um só: vale a última posição
+        // e qualquer pedido de disparo; se uma bala já está na tela (ou não há
+        // mais balas livres), os toques são ignorados
+        if (touches.drain() && touches.isFireRequested() && simulation.canFire())
+        {
+            // alinha o canhão e dispara na direção do último toque
+            float x = touches.getAimX();
+            float y = touches.getAimY();
+            double angle = simulation.aim(x, y);
+            inputRecorder.recordAim(x, y);
+            if (simulation.fire(angle))
+            {
+                inputRecorder.recordFire();
+                telemetry.record(TelemetryLog.SHOT, (int) (angle * 1000000));
+            }
+            touches.markApplied();
+            changed = true;
+        }
 
-            // se a barreira atingiu a parte superior ou inferior, inverte a direção
-            if (blocker.start.y < 0 || blocker.end.y > screenHeight)
-                blockerVelocity *= -1;
+        return changed;
+    } // fim do método applyRequests
 
-            // se o alvo atingiu a parte superior ou inferior, inverte a direção
-            if (target.start.y < 0 || target.end.y > screenHeight)
-                targetVelocity *= -1;
+    // restaura o jogo interrompido, se houver; chamado pela thread da
+    // simulação com a fase já montada; retorna false se um novo jogo é necessário
+    private boolean resumePausedState()
+    {
+        if (!pausedStateAvailable)
+            return false;
 
-            timeLeft -= interval; // subtrai do tempo restante
+        pausedStateAvailable = false;
+        stateFile.delete(); // o jogo só é retomado uma vez
 
-            // se o cronômetro foi zerado
-            if (timeLeft <= 0.0)
+        try
+        {
+            pausedState.restore(simulation);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not resume paused game", e);
+            return false;
+        }
+
+        // a gravação das entradas não cobre o estado restaurado: ela termina aqui
+        if (inputRecorder.isRecording())
+        {
+            inputRecorder.finish();
+            saveRecording();
+        }
+
+        return true;
+    } // fim do método resumePausedState
+
+    // grava o jogo em andamento para retomá-lo depois; chamado pela thread
+    // da interface com a simulação pausada
+    private void savePausedState()
+    {
+        if (simulation.getGamesStarted() == 0 || simulation.isGameOver())
+        {
+            pausedStateAvailable = false; // nada a retomar
+            stateFile.delete();
+            return;
+        }
+
+        pausedState.write(simulation); // sem alocação
+        pausedStateAvailable = true;
+
+        try
+        {
+            OutputStream out = new FileOutputStream(stateFile);
+            try
             {
-                timeLeft = 0.0;
-                gameOver = true; // o jogo terminou
-                cannonThread.setRunning(false); // termina a thread
-                showGameOverDialog(R.string.lose); // mostra caixa de diálogo de derrota
-                }
-        } // fim do método updatePositions
-
-        // dispara uma bala de canhão
-        public void fireCannonball(MotionEvent event)
+                pausedState.writeTo(out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
         {
-            if (cannonballOnScreen)     // se uma bala já está na tela
-                return; // nada faz
+            Log.e(TAG, "Could not save paused game", e);
+        }
+    } // fim do método savePausedState
 
-            double angle = alignCannon(event);  // obtém o ângulo do cano do canhão
+    // abre a fase gravada em file, se houver; o arquivo é mapeado na memória
+    // e as etapas são lidas pela simulação à medida que o jogo avança
+    private void loadLevel(File file)
+    {
+        if (!file.exists())
+            return;
 
-            // move a bala para dentro do canhão
-            cannonball.x = cannonballRadius;    // alinha a coordenada x com o canhão
-            cannonball.y = screenHeight / 2;    // centraliza a bala verticalmente
+        try
+        {
+            simulation.setLevel(LevelFile.open(file));
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not open level " + file + ", using the default level", e);
+        }
+    } // fim do método loadLevel
 
-            // obtém o componente x da velocidade total
-                cannonballVelocityX = (int) (cannonballSpeed * Math.sin(angle));
+    // lê o jogo gravado por savePausedState numa instância anterior da view
+    private void loadPausedState()
+    {
+        if (!stateFile.exists())
+            return;
 
-            // obtém o componente y da velocidade total
-            cannonballVelocityY = (int) (-cannonballSpeed * Math.cos(angle));
-            cannonballOnScreen = true;  // a bala de canhão está na tela
-            ++shotsFired; // incrementa shotsFired
+        try
+        {
+            InputStream in = new FileInputStream(stateFile);
+            try
+            {
+                pausedStateAvailable = pausedState.readFrom(in) > 0;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Could not read paused game", e);
+        }
+    } // fim do método loadPausedState
 
-            // reproduz o som de canhão disparado
-            soundPool.play(soundMap.get(CANNON_SOUND_ID), 1, 1, 1, 0, 1f);
-            } // fim do método fireCannonball
+    // chamado repetidamente pela thread da simulação para avançar um passo fixo
+    private void updatePositions(long stepNanos)
+    {
+        simulation.step(stepNanos);
+        inputRecorder.step();
+    } // fim do método updatePositions
 
-        // alinha o canhão em resposta a um toque do usuário
-            public double alignCannon(MotionEvent event)
+    // salva a gravação das entradas do jogo atual; chamado pela thread da
+    // simulação ou depois que ela terminou
+    private void saveRecording()
+    {
+        try
+        {
+            OutputStream out = new FileOutputStream(replayFile);
+            try
             {
-                // obtém o local do toque nessa view de exibição
-                Point touchPoint = new Point((int) event.getX(), (int) event.getY());
+                inputRecorder.writeTo(out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Could not save input recording", e);
+        }
+    } // fim do método saveRecording
 
-                // calcula a distância do toque a partir do centro da tela
-                // no eixo y
-                double centerMinusY = (screenHeight / 2 - touchPoint.y);
+    // copia o estado da simulação para a thread de desenho
+    private void publishSnapshot()
+    {
+        snapshots.getWriteBuffer().copyFrom(simulation, simulationClock.getStepNanos(),
+                System.nanoTime());
+        snapshots.publish();
+    } // fim do método publishSnapshot
 
-                double angle = 0; // inicializa o ângulo com 0
+    // chamado pela simulação quando uma bala é disparada
+    @Override
+    public void onCannonFired()
+    {
+        // reproduz o som de canhão disparado
+        audio.post(CANNON_SOUND_ID);
+    }
 
-                // calcula o ângulo do cano em relação à horizontal
-                if (centerMinusY != 0)  // evita divisão por 0
-                    angle = Math.atan((double) touchPoint.x / centerMinusY);
+    // chamado pela simulação quando a bala atinge a barreira
+    @Override
+    public void onBlockerHit()
+    {
+        // reproduz o som da barreira
+        audio.post(BLOCKER_SOUND_ID);
+        telemetry.record(TelemetryLog.BLOCKER_HIT, 0);
+    }
 
-                // se o toque foi dado na metade inferior da tela
-                if (touchPoint.y > screenHeight / 2)
-                    angle += Math.PI; // ajusta o ângulo
+    // chamado pela simulação quando a bala sai pelas paredes esquerda ou direita
+    @Override
+    public void onWallHit()
+    {
+        audio.post(BLOCKER_SOUND_ID);
+        telemetry.record(TelemetryLog.WALL_HIT, 0);
+    }
 
-                // calcula o ponto extremo do cano do canhão
-                barrelEnd.x = (int) (cannonLength * Math.sin(angle));
-                barrelEnd.y =
-                        (int) (-cannonLength * Math.cos(angle) + screenHeight / 2);
+    // chamado pela simulação quando uma parte do alvo é atingida
+    @Override
+    public void onTargetHit(int section)
+    {
+        // reproduz o som de alvo atingido
+        audio.post(TARGET_SOUND_ID);
+        telemetry.record(TelemetryLog.TARGET_HIT, section);
+    }
 
-                return angle; // retorna o ângulo calculado
-                } // fim do método alignCannon
+    // chamado pela simulação quando o jogo termina; a simulação fica parada
+    // até que um novo jogo seja pedido
+    @Override
+    public void onGameOver(boolean won)
+    {
+        telemetry.record(TelemetryLog.GAME_OVER, won ? 1 : 0);
+
+        // só os resumos dos objetos que esta thread altera ou que são
+        // seguros entre threads são lidos aqui, na thread da simulação
+        StringBuilder performance = new StringBuilder();
+        touches.appendSummary(performance); // toques recebidos e aplicados
+        performance.append('\n');
+        renderLoop.appendSummary(performance); // da retomada ao primeiro quadro
+        performance.append('\n');
+        particles.appendSummary(performance); // partículas vivas e descartadas
+        performance.append('\n');
+        scoreLog.appendSummary(performance); // leitura e gravações do histórico
+        performance.append('\n');
+        telemetry.appendSummary(performance); // eventos gravados e descartados
+
+        gameOverSummary = performance.toString();
+        gameOverWon = won;
+        gameOverShots = simulation.getShotsFired();
+        gameOverTime = simulation.getTotalElapsedTime();
+        gameOverRanking = "";
+        gameOverPartsPending.set(GAME_OVER_PARTS);
+        renderSummaryRequested.set(true); // a thread de desenho completa o resumo
+
+        // a classificação chega por ScoreListener; com a fila do log cheia,
+        // a caixa de diálogo é aberta sem ela
+        if (!scoreLog.post(System.currentTimeMillis(), won, simulation.getStage(),
+                gameOverShots, gameOverTime))
+            gameOverPartReady();
+    }
 
-            // desenha o jogo no objeto Canvas dado
-                public void drawGameElements(Canvas canvas)
-                {
-                    // limpa o plano de fundo
-                    canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(),
-                        backgroundPaint);
+    // uma parte da caixa de diálogo Game Over ficou pronta; a última a abre
+    private void gameOverPartReady()
+    {
+        if (gameOverPartsPending.decrementAndGet() == 0)
+            showGameOverDialog(gameOverWon ? R.string.win : R.string.lose, gameOverShots,
+                    gameOverTime, gameOverRanking, renderSummary + '\n' + gameOverSummary);
+    }
 
-                    // exibe o tempo restante
-                    canvas.drawText(getResources().getString(
-                                R.string.time_remaining_format, timeLeft), 30, 50, textPaint);
+    // recebe os resultados classificados na thread do log; a classificação é
+    // uma das partes da caixa de diálogo Game Over
+    private class ScoreListener implements ScoreLog.Listener
+    {
+        @Override
+        public void onScoreRecorded(ScoreRecord record, int rank, ScoreIndex index)
+        {
+            String ranking = rank > 0 ?
+                    getResources().getString(R.string.rank_format, rank, index.capacity(),
+                            index.getGames()) :
+                    getResources().getString(R.string.unranked_format, index.capacity(),
+                            index.getGames());
+
+            ScoreRecord best = index.getBest();
+            ranking += "\n" + getResources().getString(R.string.best_format,
+                    best.getShotsFired(), best.getElapsedSeconds());
+
+            gameOverRanking = ranking;
+            gameOverPartReady();
+        }
 
-                    // se uma bala de canhão está na tela, a desenha
-                    if (cannonballOnScreen)
-                    canvas.drawCircle(cannonball.x, cannonball.y, cannonballRadius,
-                            cannonballPaint);
+        @Override
+        public void onScoreLogError(IOException e)
+        {
+            Log.e(TAG, "Score history unavailable", e);
+        }
+    } // fim da classe ScoreListener
+
+    // configura objetos Paint para desenhar os elementos do jogo; chamado pela
+    // thread de desenho quando o tamanho da tela muda
+    private void configurePaints(GameSnapshot snapshot)
+    {
+        int w = snapshot.getScreenWidth();
+        int lineWidth = snapshot.getLineWidth();
+        Paint textPaint = canvasTarget.getPaint(RenderTarget.PAINT_TEXT);
+        textPaint.setTextSize(w / 20);  // o tamanho do texto tem 1/20 da largura da tela
+        textPaint.setAntiAlias(governor.isAntiAlias()); // suaviza o texto na qualidade alta
+        Paint.FontMetrics textMetrics = textPaint.getFontMetrics();
+        renderer.setTextMetrics(textMetrics.top, textMetrics.bottom);
+        Paint overlayPaint = canvasTarget.getPaint(RenderTarget.PAINT_OVERLAY);
+        overlayPaint.setTextSize(w / 40); // o painel usa metade do tamanho do texto
+        overlayPaint.setAntiAlias(governor.isAntiAlias());
+        overlayPaint.setColor(Color.DKGRAY);
+        Paint.FontMetrics overlayMetrics = overlayPaint.getFontMetrics();
+        renderer.setOverlayMetrics(overlayMetrics.top, overlayMetrics.bottom);
+        canvasTarget.getPaint(RenderTarget.PAINT_CANNON)
+                .setStrokeWidth(lineWidth * 1.5f); // configura a espessura da linha
+        canvasTarget.getPaint(RenderTarget.PAINT_BLOCKER)
+                .setStrokeWidth(lineWidth); // configura a espessura da linha
+        canvasTarget.getPaint(RenderTarget.PAINT_BACKGROUND)
+                .setColor(Color.WHITE); // configura a cor de fundo
+
+        // as seções do alvo alternam de cor; cada cor tem seu próprio Paint
+        Paint evenPiecePaint = canvasTarget.getPaint(RenderTarget.PAINT_TARGET_EVEN);
+        evenPiecePaint.setStrokeWidth(lineWidth);
+        evenPiecePaint.setColor(Color.YELLOW);
+        Paint oddPiecePaint = canvasTarget.getPaint(RenderTarget.PAINT_TARGET_ODD);
+        oddPiecePaint.setStrokeWidth(lineWidth);
+        oddPiecePaint.setColor(Color.BLUE);
+
+        // fagulhas pequenas e redondas; destroços maiores, na cor do alvo
+        Paint sparkPaint = canvasTarget.getPaint(RenderTarget.PAINT_SPARK);
+        sparkPaint.setStrokeWidth(lineWidth / 4f);
+        sparkPaint.setStrokeCap(Paint.Cap.ROUND);
+        sparkPaint.setColor(Color.rgb(255, 140, 0));
+        Paint debrisPaint = canvasTarget.getPaint(RenderTarget.PAINT_DEBRIS);
+        debrisPaint.setStrokeWidth(lineWidth / 3f);
+        debrisPaint.setColor(Color.BLUE);
+
+        paintWidth = w;
+        paintHeight = snapshot.getScreenHeight();
+        dirtyRegion.setScreenSize(paintWidth, paintHeight); // redesenha a tela inteira
+        layerCache.invalidate(); // as camadas usam os objetos Paint antigos
+    } // fim do método configurePaints
+
+    // calcula a parte da tela a redesenhar no próximo quadro; retorna false
+    // se nada mudou
+    private boolean prepareDirtyRegion(GameSnapshot snapshot, double alpha)
+    {
+        if (snapshot.getScreenWidth() != paintWidth ||
+                snapshot.getScreenHeight() != paintHeight)
+            configurePaints(snapshot);
+
+        if (snapshot.getGamesStarted() != drawnGame) // novo jogo: redesenha tudo
+        {
+            drawnGame = snapshot.getGamesStarted();
+            dirtyRegion.invalidateAll();
+        }
 
-                    // desenha o cano do canhão
-                    canvas.drawLine(0, screenHeight / 2, barrelEnd.x, barrelEnd.y,
-                            cannonPaint);
+        if (snapshot.getStage() != drawnStage) // outros obstáculos: novas camadas
+        {
+            drawnStage = snapshot.getStage();
+            layerCache.invalidate();
+            dirtyRegion.invalidateAll();
+        }
 
-                    // desenha a base do canhão
-                    canvas.drawCircle(0, (int) screenHeight / 2,
-                            (int) cannonBaseRadius, cannonPaint);
+        renderer.setOverlay(overlayVisible ? frameStats : null);
+        dirtyRegion.beginFrame();
+        renderer.markDirty(snapshot, alpha, dirtyRegion);
 
-                    // desenha a barreira
-                    canvas.drawLine(blocker.start.x, blocker.start.y, blocker.end.x,
-                            blocker.end.y, blockerPaint);
+        if (dirtyRegion.isEmpty())
+        {
+            dirtyRegion.skipFrame();
+            return false;
+        }
 
-                    Point currentPoint = new Point(); // início da seção do alvo atual
+        return true;
+    } // fim do método prepareDirtyRegion
 
-                    // inicializa currentPoint com o ponto inicial do alvo
-                    currentPoint.x = target.start.x;
-                    currentPoint.y = target.start.y;
+    // estatísticas de pixels redesenhados por quadro
+    public DirtyRegion getDirtyRegion()
+    {
+        return dirtyRegion;
+    }
 
-                    // desenha o alvo
-                    for (int i = 0; i < TARGET_PIECES; i++)
+    // desenha o jogo no objeto Canvas dado; alpha interpola entre os dois últimos passos
+    public void drawGameElements(Canvas canvas, GameSnapshot snapshot, double alpha)
+    {
+        canvasTarget.setCanvas(canvas);
+        renderer.render(snapshot, alpha, canvasTarget, canvas.getWidth(),
+                canvas.getHeight());
+    } // fim do método drawGameElements
+
+    // exibe um componente AlertDialog quando o jogo termina
+    private void showGameOverDialog(final int messageId, final int shotsFired,
+                                    final double totalElapsedTime,
+                                    final String ranking, final String performance)
+    {
+        // DialogFragment para exibir estatísticas do jogo e começar um novo teste
+        final DialogFragment gameResult =
+                new DialogFragment()
+                {
+                    // cria um componente AlertDialog e o retorna
+                    @Override
+                    public Dialog onCreateDialog(Bundle bundle)
                     {
-                        // se essa parte do alvo não foi atingida, a desenha
-                        if (!hitStates[i])
-                        {
-                            // alterna o colorido das partes
-                            if (i % 2 != 0)
-                                targetPaint.setColor(Color.BLUE);
-                            else
-                            targetPaint.setColor(Color.YELLOW);
-
-                           canvas.drawLine(currentPoint.x, currentPoint.y, target.end.x,
-                            (int)   (currentPoint.y + pieceLength), targetPaint);
-                        }
-
-                        // move currentPoint para o início da próxima parte
-                        currentPoint.y += pieceLength;
-                }
-            } // fim do método drawGameElements
-
-            // exibe um componente AlertDialog quando o jogo termina
-            private void showGameOverDialog(final int messageId)
-            {
-                // DialogFragment para exibir estatísticas do jogo e começar um novo teste
-                final DialogFragment gameResult =
-                        new DialogFragment()
-                        {
-                                // cria um componente AlertDialog e o retorna
-                                @Override
-                public Dialog onCreateDialog(Bundle bundle)
+                        // cria caixa de diálogo exibindo recurso String pelo messageId
+                        AlertDialog.Builder builder =
+                                new AlertDialog.Builder(getActivity());
+                        builder.setTitle(getResources().getString(messageId));
+
+                        // exibe o número de tiros disparados, o tempo total decorrido,
+                        // a classificação e os tempos de cada fase do loop
+                        builder.setMessage(getResources().getString(
+                                R.string.results_format, shotsFired, totalElapsedTime) +
+                                "\n" + ranking + "\n\n" + performance);
+                        builder.setPositiveButton(R.string.reset_game,
+                                new DialogInterface.OnClickListener()
                                 {
-                                    // cria caixa de diálogo exibindo recurso String pelo messageId
-                                    AlertDialog.Builder builder =
-                                            new AlertDialog.Builder(getActivity());
-                                    builder.setTitle(getResources().getString(messageId));
-
-                                    // exibe o número de tiros disparados e o tempo total decorrido
-                                    builder.setMessage(getResources().getString(
-                                            R.string.results_format, shotsFired, totalElapsedTime));
-                                    builder.setPositiveButton(R.string.reset_game,
-                                            new DialogInterface.OnClickListener()
-                                            {
-                                                // chamado quando o componente Button “Reset Game” é pressionado
-                                                @Override
-                                                public void onClick(DialogInterface dialog, int which)
-                                                {
-                                                    dialogIsDisplayed = false;
-                                                    newGame(); // prepara e inicia um novo jogo
-                                                    }
-                                            }   // fim da classe interna anônima
-                                            ); // fim da chamada a setPositiveButton
-
-                                    return builder.create(); // retorna o componente AlertDialog
-                                    } // fim do método onCreateDialog
-                            }; // fim da classe interna anônima DialogFragment
-
-                // em uma thread de interface gráfica do usuário, usa FragmentManager para exibir o componente DialogFragment
-                activity.runOnUiThread (
-                        new Runnable() {
-                            public void run()
-                            {
-                                dialogIsDisplayed = true;
-                                gameResult.setCancelable(false); // caixa de diálogo modal
-                                gameResult.show(activity.getFragmentManager(), "results" );
-                            }
-                        }   // fim de Runnable
-                );  // fim da chamada a runOnUiThread
-                } // fim do método showGameOverDialog
-
-        // interrompe o jogo; chamado pelo método onPause de CannonGameFragment
-            public void stopGame()
-            {
-                if (cannonThread != null)
-                    cannonThread.setRunning(false); // diz à thread para terminar
-                }
+                                    // chamado quando o componente Button “Reset Game” é pressionado
+                                    @Override
+                                    public void onClick(DialogInterface dialog, int which)
+                                    {
+                                        newGame(); // prepara e inicia um novo jogo
+                                    }
+                                }   // fim da classe interna anônima
+                        ); // fim da chamada a setPositiveButton
+
+                        return builder.create(); // retorna o componente AlertDialog
+                    } // fim do método onCreateDialog
+                }; // fim da classe interna anônima DialogFragment
+
+        // em uma thread de interface gráfica do usuário, usa FragmentManager para exibir o componente DialogFragment
+        activity.runOnUiThread(
+                new Runnable() {
+                    public void run()
+                    {
+                        gameResult.setCancelable(false); // caixa de diálogo modal
+                        gameResult.show(activity.getFragmentManager(), "results");
+                    }
+                }   // fim de Runnable
+        );  // fim da chamada a runOnUiThread
+    } // fim do método showGameOverDialog
 
-                // libera recursos; chamado pelo método onDestroy de CannonGame
-                public void releaseResources()
-                {
-                    soundPool.release(); // libera todos os recursos usados por SoundPool
-                    soundPool = null;
-                }
-
-        // chamado quando o tamanho da superfície muda
-            @Override
-                public void (SurfaceHolder holder, int format,
-                             int width, int height)
-            {
-            }
+    // interrompe o jogo; chamado pelo método onPause de CannonGameFragment
+    public void stopGame()
+    {
+        // pausa as threads; cada uma termina a volta em andamento e estaciona
+        renderLoop.pause();
+        simulationLoop.pause();
+        savePausedState(); // um jogo em andamento é retomado na próxima vez
+    }
 
-            // chamado quando a superfície é criada
-            @Override
-            public void (SurfaceHolder holder)
-            {
-                if (!dialogIsDisplayed)
-                {
-                    surfaceChanged surfaceCreated cannonThread = new CannonThread(holder); // cria a thread
-                    cannonThread.setRunning(true); // começa a executar o jogo
-                    cannonThread.start(); // inicia a thread do loop do jogo
-                }
-            }
+    // libera recursos; chamado pelo método onDestroy de CannonGame
+    public void releaseResources()
+    {
+        renderLoop.shutdown(); // encerra as threads dos loops
+        simulationLoop.shutdown();
+        canvasTarget.releaseLayers(); // libera as imagens das camadas
+        audio.stop(); // depois disso nenhum som é tocado
+        scoreLog.stop(); // grava e sincroniza os resultados ainda na fila
+        telemetry.stop(); // grava o último lote
+        soundSink.release(); // libera todos os recursos usados por SoundPool
+    }
+
+    // chamado quando o tamanho da superfície muda
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format,
+                               int width, int height)
+    {
+    }
+
+    // chamado quando a superfície é criada
+    @Override
+    public void surfaceCreated(SurfaceHolder holder)
+    {
+        dirtyRegion.invalidateAll(); // a nova superfície começa vazia
+
+        // com a caixa de diálogo na tela a simulação fica parada, mas o jogo
+        // continua sendo desenhado atrás dela
+        audio.start(); // inicia a thread de áudio
+        simulationLoop.resume(); // inicia ou retoma o loop da simulação
+        renderLoop.resume(); // inicia ou retoma o loop de desenho
+    }
 
     // chamado quando a superfície é destruída
     @Override
-    public void surfaceDestroyed (SurfaceHolder holder)
+    public void surfaceDestroyed(SurfaceHolder holder)
     {
-        // garante que essa thread termine corretamente
-        boolean retry = true;
-        cannonThread.setRunning(false); // termina cannonThread
+        // depois da pausa a superfície não é mais usada
+        stopGame();
+        audio.stop(); // a simulação não coloca mais sons na fila
+        telemetry.flush(); // o processo pode ser encerrado no fundo
+
+        // um jogo interrompido também pode ser reproduzido até aqui
+        if (inputRecorder.isRecording())
+            saveRecording();
+    } // fim do método surfaceDestroyed
 
-        while (retry)
+    // chamado quando o usuário toca na tela nessa atividade
+    @Override
+    public boolean onTouchEvent(MotionEvent e)
+    {
+        // obtém valor int representando o tipo de ação que causou esse evento
+        int action = e.getAction();
+
+        // um segundo dedo na tela mostra ou oculta o painel de desempenho
+        if (e.getActionMasked() == MotionEvent.ACTION_POINTER_DOWN)
         {
-            try
-            {
-                cannonThread.join(); // espera cannonThread terminar
-                retry = false;
-            }
-            catch (InterruptedException e)
-            {
-                Log.e(TAG, "Thread interrupted", e);
-            }
+            overlayVisible = !overlayVisible;
+            return true;
         }
-    } // fim do método surfaceDestroyed
-            }
-// chamado quando o usuário toca na tela nessa atividade
-@Override
-public boolean onTouchEvent(MotionEvent e)
-{
-    // obtém valor int representando o tipo de ação que causou esse evento
-        int action = e.getAction();
 
         // o usuário tocou na tela ou arrastou o dedo pela tela
-        if (action == motionEvent.ACTION_DOWN ||
-        action == motionEvent.ACTION_MOVE)
+        if (action == MotionEvent.ACTION_DOWN ||
+                action == MotionEvent.ACTION_MOVE)
         {
             fireCannonball(e);    // dispara a bala de canhão na direção do ponto do toque
         }
 
         return true;
-} // fim do método onTouchEvent
-
-// subclasse de Thread para controlar o loop do jogo
-private class CannonThread extends Thread
-{
-    private SurfaceHolder surfaceHolder; // para manipular a tela de desenho
-    private boolean threadIsRunning = true; // executando por padrão
+    } // fim do método onTouchEvent
 
-    // inicializa holder de superfície
-    public  CannonThread(SurfaceHolder holder)
+    // loop que avança a simulação em passos fixos e publica o estado para a
+    // thread de desenho
+    private class SimulationLoop implements GameLoopExecutor.Loop
     {
-                surfaceHolder = holder;
-                setName("CannonThread");
+        // o tempo em que a thread ficou pausada não é simulado
+        @Override
+        public void onResume()
+        {
+            simulationClock.reset(System.nanoTime());
+        }
+
+        // uma volta do loop da simulação: um passo fixo, no ritmo dos passos
+        @Override
+        public void runOnce()
+        {
+            boolean changed = applyRequests();
+            boolean wasOver = simulation.isGameOver();
+            int steps = simulationClock.advance(System.nanoTime());
+            if (simulation.getGamesStarted() == 0) // o tamanho da tela ainda não chegou
+                steps = 0;
+
+            // atualiza o estado do jogo em passos de duração constante
+            for (int i = 0; i < steps; i++)
+            {
+                long updateStart = System.nanoTime();
+                updatePositions(simulationClock.getStepNanos());
+                frameStats.record(FrameStats.UPDATE, System.nanoTime() - updateStart);
             }
 
-    // altera o estado de execução
-    public void setRunning(boolean running)
-    {
-        threadIsRunning = running;
-    }
+            // com o jogo terminado o estado não muda mais
+            if (changed || (steps > 0 && !wasOver))
+                publishSnapshot();
 
-    // controla o loop do jogo
-    @Override
-    public void run()
+            // o jogo terminou neste passo: a gravação está completa
+            if (!wasOver && simulation.isGameOver() && inputRecorder.isRecording())
+            {
+                inputRecorder.finish();
+                saveRecording();
+            }
+
+            // espera o próximo passo sem ocupar o processador
+            long wait = simulationClock.frameWait(System.nanoTime());
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+        } // fim do método runOnce
+    } // fim da classe aninhada SimulationLoop
+
+    // loop que desenha o último estado publicado pela simulação
+    private class RenderLoop implements GameLoopExecutor.Loop
     {
-        Canvas canvas = null; // usado para desenhar
-        long previousFrameTime = System.currentTimeMillis();
+        private final SurfaceHolder surfaceHolder = getHolder(); // para manipular a tela de desenho
+        private final Rect dirtyRect = new Rect(); // região bloqueada a cada quadro
+        private double drawnAlpha = -1;     // interpolação do último quadro desenhado
+        private boolean overlayShown;       // o painel foi desenhado no último quadro
+        private long previousFrameStart;    // início da volta anterior do loop
+
+        // a superfície pode ter sido recriada: o primeiro quadro é sempre desenhado
+        @Override
+        public void onResume()
+        {
+            synchronized (frameClock)
+            {
+                frameClock.reset(System.nanoTime());
+            }
 
-        while (threadIsRunning)
+            drawnAlpha = -1;
+            previousFrameStart = 0; // a pausa não conta como quadros perdidos
+        }
+
+        // uma volta do loop de desenho: interpola o último estado publicado
+        @Override
+        public void runOnce()
         {
-            try
+            long frameStart = System.nanoTime();
+            boolean published = snapshots.update();
+            GameSnapshot snapshot = snapshots.getReadBuffer();
+
+            if (snapshot.getSequence() > 0) // a simulação já publicou algum estado
             {
-                // obtém objeto Canvas para desenho exclusivo a partir dessa thread
-                canvas = surfaceHolder.lockCanvas(null);
+                double alpha = snapshot.getAlpha(frameStart);
+                boolean overlay = overlayVisible;
 
-                // bloqueia surfaceHolder para desenhar
-                synchronized(surfaceHolder)
-                {
-                    long currentTime = System.currentTimeMillis();
-                    double elapsedTimeMS = currentTime - previousFrameTime;
-                    totalElapsedTime += elapsedTimeMS / 1000.0;
-                    updatePositions(elapsedTimeMS); // atualiza o estado do jogo drawGameElements(canvas);
-                    drawGameElements(canvas);// desenha usando a tela de desenho
-                    previousFrameTime = currentTime; // atualiza o tempo anterior
-                    }
+                // sem estado novo e já desenhado no fim do passo: nada mudou,
+                // a não ser o painel de desempenho
+                if (published || alpha != drawnAlpha || overlay || overlayShown)
+                    drawFrame(snapshot, alpha);
+
+                overlayShown = overlay;
+
+                // o jogo terminou: os resumos do desenho são lidos nesta thread
+                if (snapshot.isGameOver() && renderSummaryRequested.compareAndSet(true, false))
+                    publishRenderSummary();
             }
-            finally {
-// exibe o conteúdo da tela de desenho no componente CannonView
-// e permite que outras threads utilizem o objeto Canvas
-                if (canvas != null)
-                    surfaceHolder.unlockCanvasAndPost(canvas);
+
+            // se o quadro ficou pronto antes do prazo, espera sem ocupar o processador
+            long frameWait;
+            long framePeriod;
+            synchronized (frameClock)
+            {
+                frameWait = frameClock.frameWait(System.nanoTime());
+                framePeriod = frameClock.getFramePeriodNanos();
+            }
+
+            if (previousFrameStart != 0)
+            {
+                long interval = frameStart - previousFrameStart;
+                frameStats.recordFrameInterval(interval, framePeriod);
+
+                // o mesmo critério de FrameStats para um quadro perdido
+                if (framePeriod > 0 && 2 * interval > 3 * framePeriod)
+                    telemetry.record(TelemetryLog.FRAME_STALL,
+                            (int) Math.min(interval / 1000, Integer.MAX_VALUE));
+            }
+            previousFrameStart = frameStart;
+
+            // o governador vê só o trabalho do quadro, sem a espera
+            if (adaptiveQuality && governor.recordFrame(System.nanoTime() - frameStart))
+            {
+                applyQuality();
+                frameWait = 0; // o novo ritmo começa já no próximo quadro
+            }
+
+            if (frameWait > 0)
+                LockSupport.parkNanos(frameWait);
+        } // fim do método runOnce
+
+        // entrega à caixa de diálogo Game Over os resumos dos objetos que só
+        // esta thread altera
+        private void publishRenderSummary()
+        {
+            StringBuilder summary = new StringBuilder();
+            frameStats.appendSummary(summary);
+            summary.append('\n');
+            governor.appendSummary(summary); // taxa de quadros e qualidade finais
+            summary.append('\n');
+            layerCache.appendSummary(summary); // memória e acertos das camadas
+            renderSummary = summary.toString();
+            gameOverPartReady();
+        } // fim do método publishRenderSummary
+
+        // aplica a taxa de quadros e a qualidade escolhidas pelo governador
+        private void applyQuality()
+        {
+            synchronized (frameClock)
+            {
+                frameClock.setFrameRate(governor.getFrameRate());
+                frameClock.reset(System.nanoTime());
+            }
+
+            canvasTarget.getPaint(RenderTarget.PAINT_TEXT).setAntiAlias(governor.isAntiAlias());
+            canvasTarget.getPaint(RenderTarget.PAINT_OVERLAY).setAntiAlias(governor.isAntiAlias());
+            renderer.setOverlayCompact(governor.isOverlayCompact());
+            particles.setScale(governor.getParticleScale()); // explosões menores na qualidade baixa
+            dirtyRegion.invalidateAll(); // o texto muda de aparência na tela inteira
+        } // fim do método applyQuality
+
+        // desenha só a região que mudou desde o último quadro
+        private void drawFrame(GameSnapshot snapshot, double alpha)
+        {
+            drawnAlpha = alpha;
+
+            if (!prepareDirtyRegion(snapshot, alpha))
+                return;
+
+            // obtém objeto Canvas só para a região que mudou; a superfície pode
+            // ampliar dirtyRect, e o resto da tela mantém o conteúdo do quadro anterior
+            dirtyRect.set(dirtyRegion.getLeft(), dirtyRegion.getTop(),
+                    dirtyRegion.getRight(), dirtyRegion.getBottom());
+            long lockStart = System.nanoTime();
+            Canvas canvas = surfaceHolder.lockCanvas(dirtyRect);
+            long drawStart = System.nanoTime();
+            frameStats.record(FrameStats.LOCK_CANVAS, drawStart - lockStart);
+
+            if (canvas == null)
+                return;
+
+            long postStart = drawStart;
+            try
+            {
+                // desenha a cena inteira; o Canvas recorta o desenho em dirtyRect
+                drawGameElements(canvas, snapshot, alpha);
+                dirtyRegion.endFrame(dirtyRect.left, dirtyRect.top,
+                        dirtyRect.right, dirtyRect.bottom);
+                postStart = System.nanoTime();
+                frameStats.record(FrameStats.DRAW, postStart - drawStart);
+            }
+            finally
+            {
+                // exibe o conteúdo da tela de desenho no componente CannonView
+                // e permite que outras threads utilizem o objeto Canvas
+                surfaceHolder.unlockCanvasAndPost(canvas);
+                frameStats.record(FrameStats.UNLOCK_AND_POST, System.nanoTime() - postStart);
             }
-        } // fim de while
-        } // fim do método run
-        } // fim da classe aninhada CannonThread
-} // fim da classe CannonView
\ No newline at end of file
+        } // fim do método drawFrame
+    } // fim da classe aninhada RenderLoop
+} // fim da classe CannonView
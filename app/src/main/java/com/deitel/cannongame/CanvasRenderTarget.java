@@ -0,0 +1,119 @@
+// CanvasRenderTarget.java
+// Repassa os desenhos de GameRenderer para um Canvas, com um objeto Paint
+// pré-configurado para cada estilo de desenho e uma imagem fora da tela para
+// cada camada de LayerCache
+package com.deitel.cannongame;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+public class CanvasRenderTarget implements RenderTarget
+{
+    private final Paint[] paints = new Paint[PAINT_COUNT]; // um Paint por estilo
+    private Canvas canvas; // tela de desenho do quadro atual
+    private Canvas screenCanvas; // tela guardada enquanto uma camada é desenhada
+
+    // imagens das camadas e o Canvas que desenha nelas
+    private final Bitmap[] layers = new Bitmap[LayerCache.LAYER_COUNT];
+    private final Canvas layerCanvas = new Canvas();
+
+    public CanvasRenderTarget()
+    {
+        for (int i = 0; i < PAINT_COUNT; i++)
+            paints[i] = new Paint();
+    }
+
+    // objeto Paint usado para o estilo dado; configurado por CannonView.onSizeChanged
+    public Paint getPaint(int paint)
+    {
+        return paints[paint];
+    }
+
+    // define a tela de desenho usada no próximo quadro
+    public void setCanvas(Canvas canvas)
+    {
+        this.canvas = canvas;
+    }
+
+    // libera as imagens das camadas; chamado quando a thread de desenho já terminou
+    public void releaseLayers()
+    {
+        for (int i = 0; i < layers.length; i++)
+        {
+            if (layers[i] != null)
+                layers[i].recycle();
+            layers[i] = null;
+        }
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, int paint)
+    {
+        canvas.drawRect(left, top, right, bottom, paints[paint]);
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, int paint)
+    {
+        canvas.drawLine(startX, startY, stopX, stopY, paints[paint]);
+    }
+
+    @Override
+    public void drawLines(float[] points, int offset, int count, int paint)
+    {
+        canvas.drawLines(points, offset, count, paints[paint]);
+    }
+
+    @Override
+    public void drawPoints(float[] points, int offset, int count, int paint)
+    {
+        canvas.drawPoints(points, offset, count, paints[paint]);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, int paint)
+    {
+        canvas.drawCircle(centerX, centerY, radius, paints[paint]);
+    }
+
+    @Override
+    public void drawText(char[] text, int index, int count, float x, float y, int paint)
+    {
+        canvas.drawText(text, index, count, x, y, paints[paint]);
+    }
+
+    @Override
+    public boolean beginLayer(int layer, int width, int height)
+    {
+        // a imagem só é recriada quando o tamanho da camada muda
+        Bitmap bitmap = layers[layer];
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height)
+        {
+            if (bitmap != null)
+                bitmap.recycle();
+            bitmap = layers[layer] = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        bitmap.eraseColor(Color.TRANSPARENT);
+        layerCanvas.setBitmap(bitmap);
+        screenCanvas = canvas;
+        canvas = layerCanvas;
+        return true;
+    }
+
+    @Override
+    public void endLayer()
+    {
+        layerCanvas.setBitmap(null);
+        canvas = screenCanvas;
+        screenCanvas = null;
+    }
+
+    @Override
+    public void drawLayer(int layer, float left, float top)
+    {
+        canvas.drawBitmap(layers[layer], left, top, null);
+    }
+} // fim da classe CanvasRenderTarget
@@ -1,10 +0,0 @@
-// Line.java
-// A classe Line representa uma linha com dois pontos extremos.
-package com.deitel.cannongame;
-
-import android.graphics.Point;
-
-public class Line {
-    public Point start = new Point(); // objeto Point inicial -- (0,0) por padrão
-    public Point end = new Point(); // objeto Point final -- (0,0) por padrão
-} // fim da classe Line
\ No newline at end of file
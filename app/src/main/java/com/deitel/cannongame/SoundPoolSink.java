@@ -0,0 +1,44 @@
+// SoundPoolSink.java
+// Toca os sons escolhidos por AudioDispatcher num SoundPool com uma
+// reprodução simultânea por voz do despachante
+package com.deitel.cannongame;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.util.SparseIntArray;
+
+public class SoundPoolSink implements AudioSink
+{
+    private final SoundPool soundPool; // reproduz os efeitos sonoros
+    private final SparseIntArray soundMap = new SparseIntArray(); // mapeia sons em SoundPool
+
+    public SoundPoolSink(int voices)
+    {
+        soundPool = new SoundPool(voices, AudioManager.STREAM_MUSIC, 0);
+    }
+
+    // carrega previamente o recurso resourceId como o som sound
+    public void load(Context context, int sound, int resourceId)
+    {
+        soundMap.put(sound, soundPool.load(context, resourceId, 1));
+    }
+
+    @Override
+    public int play(int sound, int priority)
+    {
+        return soundPool.play(soundMap.get(sound), 1, 1, priority, 0, 1f);
+    }
+
+    @Override
+    public void stop(int streamId)
+    {
+        soundPool.stop(streamId);
+    }
+
+    // libera todos os recursos usados por SoundPool
+    public void release()
+    {
+        soundPool.release();
+    }
+} // fim da classe SoundPoolSink
@@ -0,0 +1,57 @@
+// AimBenchmark.java
+// Custo de alinhar o canhão a um toque (atan, sin e cos de GameSimulation.aim,
+// chamada por alignCannon)
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.GameSimulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AimBenchmark
+{
+    private static final int TOUCHES = 1024;   // potência de 2 para o índice circular
+
+    private final float[] touchX = new float[TOUCHES];
+    private final float[] touchY = new float[TOUCHES];
+    private GameSimulation simulation;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        simulation = BenchmarkLevels.newSimulation(2, 1);
+
+        // toques espalhados pela tela inteira, inclusive na metade inferior
+        Random random = new Random(11);
+        for (int i = 0; i < TOUCHES; i++)
+        {
+            touchX[i] = random.nextFloat() * BenchmarkLevels.SCREEN_WIDTH;
+            touchY[i] = random.nextFloat() * BenchmarkLevels.SCREEN_HEIGHT;
+        }
+    }
+
+    @Benchmark
+    public double aim()
+    {
+        int i = next++ & (TOUCHES - 1);
+        return simulation.aim(touchX[i], touchY[i]);
+    }
+} // fim da classe AimBenchmark
@@ -0,0 +1,44 @@
+// BenchmarkLevels.java
+// Fases usadas pelos benchmarks: a fase padrão ou muitas barreiras
+// espalhadas, sempre com a mesma semente para que as medidas sejam comparáveis
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.GameSimulation;
+import com.deitel.cannongame.ObstacleField;
+
+import java.util.Random;
+
+final class BenchmarkLevels
+{
+    static final int SCREEN_WIDTH = 800;
+    static final int SCREEN_HEIGHT = 480;
+    static final long STEP_NANOS = 1000000000L / 120; // um passo de física
+
+    private BenchmarkLevels()
+    {
+    }
+
+    // cria uma simulação com obstacles obstáculos; com 2, usa a fase padrão
+    // (uma barreira e um alvo)
+    static GameSimulation newSimulation(int obstacles, int maxProjectiles)
+    {
+        GameSimulation simulation = new GameSimulation(maxProjectiles);
+        simulation.setScreenSize(SCREEN_WIDTH, SCREEN_HEIGHT);
+        simulation.setRapidFire(true);
+
+        if (obstacles != 2)
+        {
+            ObstacleField field = simulation.getObstacles();
+            field.clear();
+
+            Random random = new Random(7);
+            for (int i = 0; i < obstacles - 1; i++)
+                field.addBlocker(100 + random.nextDouble() * 600, random.nextDouble() * 460,
+                        20, random.nextDouble() * 200 - 100);
+            field.addTarget(780, 100, 280, 0, GameSimulation.TARGET_PIECES);
+        }
+
+        simulation.newGame();
+        return simulation;
+    } // fim do método newSimulation
+} // fim da classe BenchmarkLevels
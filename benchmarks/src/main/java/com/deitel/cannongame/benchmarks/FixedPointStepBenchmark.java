@@ -0,0 +1,61 @@
+// FixedPointStepBenchmark.java
+// Custo de um passo da física em ponto fixo na fase padrão, para comparar
+// com SimulationStepBenchmark (obstacles = 2) com o mesmo número de balas
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.FixedMath;
+import com.deitel.cannongame.FixedPointSimulation;
+import com.deitel.cannongame.GameConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedPointStepBenchmark
+{
+    @Param({ "1", "64", "512" })
+    public int projectiles;
+
+    private FixedPointSimulation simulation;
+    private int shot;                   // varia o ângulo dos disparos
+
+    @Setup
+    public void setUp()
+    {
+        simulation = new FixedPointSimulation(new GameConfig(),
+                (int) (1000000000L / BenchmarkLevels.STEP_NANOS), projectiles);
+        simulation.setScreenSize(BenchmarkLevels.SCREEN_WIDTH, BenchmarkLevels.SCREEN_HEIGHT);
+        simulation.setRapidFire(true);
+        simulation.newGame();
+    }
+
+    // mesmos ângulos de SimulationStepBenchmark (0,3 a 2,75 radianos)
+    @Benchmark
+    public FixedPointSimulation step()
+    {
+        if (simulation.isGameOver())
+            simulation.newGame();
+
+        while (simulation.getBallCount() < projectiles && simulation.canFire())
+            simulation.fire(FixedMath.FULL_TURN * (6 + shot++ % 50) / 126);
+
+        simulation.step();
+        return simulation;
+    }
+} // fim da classe FixedPointStepBenchmark
@@ -0,0 +1,96 @@
+// ObstacleGridQueryBenchmark.java
+// Custo da fase ampla: uma consulta do ObstacleGrid contra o teste de todos
+// os obstáculos, com densidade constante (a área cresce com o número de
+// obstáculos), para 10, 1.000 e 10.000 obstáculos
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.ObstacleGrid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObstacleGridQueryBenchmark
+{
+    private static final int QUERIES = 1024;   // potência de 2 para o índice circular
+    private static final double CELL_SIZE = 200;
+    private static final double QUERY_SIZE = 40;
+    private static final double OBSTACLE_LENGTH = 60;
+
+    @Param({ "10", "1000", "10000" })
+    public int obstacles;
+
+    private double[] x;
+    private double[] y;
+    private final double[] queryX = new double[QUERIES];
+    private final double[] queryY = new double[QUERIES];
+    private int[] out;
+    private ObstacleGrid grid;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        double side = Math.sqrt(obstacles) * CELL_SIZE;
+        x = new double[obstacles];
+        y = new double[obstacles];
+        Random random = new Random(42);
+        for (int i = 0; i < obstacles; i++)
+        {
+            x[i] = random.nextDouble() * side;
+            y[i] = random.nextDouble() * side;
+        }
+
+        grid = new ObstacleGrid();
+        grid.configure(side, side, CELL_SIZE, obstacles);
+        for (int i = 0; i < obstacles; i++)
+            grid.update(i, x[i], y[i], x[i], y[i] + OBSTACLE_LENGTH);
+
+        for (int q = 0; q < QUERIES; q++)
+        {
+            queryX[q] = random.nextDouble() * side;
+            queryY[q] = random.nextDouble() * side;
+        }
+        out = new int[obstacles];
+    }
+
+    @Benchmark
+    public int gridQuery()
+    {
+        int q = next++ & (QUERIES - 1);
+        return grid.query(queryX[q], queryY[q], queryX[q] + QUERY_SIZE,
+                queryY[q] + QUERY_SIZE, out);
+    }
+
+    // a alternativa sem a grade: cada consulta testa todos os obstáculos
+    @Benchmark
+    public int bruteForce()
+    {
+        int q = next++ & (QUERIES - 1);
+        double minX = queryX[q];
+        double minY = queryY[q];
+        int hits = 0;
+        for (int i = 0; i < obstacles; i++)
+            if (x[i] >= minX && x[i] <= minX + QUERY_SIZE && y[i] <= minY + QUERY_SIZE &&
+                    y[i] + OBSTACLE_LENGTH >= minY)
+                hits++;
+        return hits;
+    }
+} // fim da classe ObstacleGridQueryBenchmark
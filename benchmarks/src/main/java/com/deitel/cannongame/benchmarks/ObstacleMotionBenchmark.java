@@ -0,0 +1,48 @@
+// ObstacleMotionBenchmark.java
+// Custo de mover as barreiras e os alvos um passo ao longo de seus ciclos
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.ObstacleField;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObstacleMotionBenchmark
+{
+    @Param({ "2", "100", "1000", "10000" })
+    public int obstacles;
+
+    private ObstacleField field;
+
+    @Setup
+    public void setUp()
+    {
+        field = BenchmarkLevels.newSimulation(obstacles, 1).getObstacles();
+    }
+
+    // guarda as posições para interpolar e avança um passo, como GameSimulation.step
+    @Benchmark
+    public ObstacleField advance()
+    {
+        field.savePreviousPositions();
+        field.advance(BenchmarkLevels.STEP_NANOS / 1e9);
+        return field;
+    }
+} // fim da classe ObstacleMotionBenchmark
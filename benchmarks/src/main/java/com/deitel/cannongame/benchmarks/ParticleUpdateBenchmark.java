@@ -0,0 +1,80 @@
+// ParticleUpdateBenchmark.java
+// Custo de um passo de ParticleSystem.update para várias quantidades de
+// partículas, numa thread só e dividido entre os núcleos; divida o tempo
+// por particles / 10000 para o custo a cada 10 mil partículas
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.ParticleSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleUpdateBenchmark
+{
+    private static final int BURST = 64;
+
+    @Param({ "10000", "40000", "160000" })
+    public int particles;
+
+    // 1 atualiza na thread do benchmark; mais que isso divide entre núcleos
+    @Param({ "1", "4" })
+    public int parts;
+
+    private ParticleSystem system;
+    private ExecutorService workers;
+
+    @Setup
+    public void setUp()
+    {
+        // com o dobro da capacidade, o conjunto fica só meio cheio e as
+        // explosões não são reduzidas pelo limite
+        system = new ParticleSystem(2 * particles);
+        system.configure(BenchmarkLevels.SCREEN_WIDTH, BenchmarkLevels.SCREEN_HEIGHT);
+        for (int emitted = 0; emitted < particles; emitted += BURST)
+            system.emit(emitted % (2 * BURST) == 0 ? ParticleSystem.SPARK : ParticleSystem.DEBRIS,
+                    BenchmarkLevels.SCREEN_WIDTH / 2, BenchmarkLevels.SCREEN_HEIGHT / 2,
+                    300, -100, Math.min(BURST, particles - emitted));
+
+        if (parts > 1)
+        {
+            workers = Executors.newFixedThreadPool(parts - 1);
+            system.setExecutor(workers, parts);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        if (workers != null)
+            workers.shutdown();
+    }
+
+    // passo de duração zero: nenhuma partícula expira, então toda chamada
+    // percorre o conjunto inteiro com a mesma aritmética de um passo real
+    @Benchmark
+    public int update()
+    {
+        system.update(0.0);
+        return system.size();
+    }
+} // fim da classe ParticleUpdateBenchmark
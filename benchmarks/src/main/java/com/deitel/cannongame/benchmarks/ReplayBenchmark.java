@@ -0,0 +1,94 @@
+// ReplayBenchmark.java
+// Reprodução sem interface de uma gravação de entradas: uma gravação gerada
+// aqui ou, com -p file=..., uma gravação salva pelo aplicativo
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.GameSimulation;
+import com.deitel.cannongame.InputRecorder;
+import com.deitel.cannongame.InputReplay;
+import com.deitel.cannongame.ProjectilePool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark
+{
+    private static final int RECORDED_STEPS = 120 * 30; // 30 segundos de jogo
+
+    // gravação a reproduzir; vazio usa a gravação gerada em setUp
+    @Param({""})
+    public String file;
+
+    private InputReplay replay;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        if (!file.isEmpty())
+        {
+            InputStream in = new FileInputStream(file);
+            try
+            {
+                replay = InputReplay.read(in);
+            }
+            finally
+            {
+                in.close();
+            }
+            return;
+        }
+
+        // disparo rápido com toques aleatórios a cada 50 ms
+        GameSimulation simulation = BenchmarkLevels.newSimulation(2, ProjectilePool.DEFAULT_CAPACITY);
+        InputRecorder recorder = new InputRecorder();
+        recorder.begin(simulation, BenchmarkLevels.STEP_NANOS, 0L);
+        Random random = new Random(5);
+
+        for (int tick = 0; tick < RECORDED_STEPS && !simulation.isGameOver(); tick++)
+        {
+            if (tick % 6 == 0 && simulation.canFire())
+            {
+                float x = BenchmarkLevels.SCREEN_WIDTH / 2 +
+                        random.nextFloat() * BenchmarkLevels.SCREEN_WIDTH / 2;
+                float y = random.nextFloat() * BenchmarkLevels.SCREEN_HEIGHT;
+                double angle = simulation.aim(x, y);
+                recorder.recordAim(x, y);
+                if (simulation.fire(angle))
+                    recorder.recordFire();
+            }
+
+            simulation.step(BenchmarkLevels.STEP_NANOS);
+            recorder.step();
+        }
+
+        recorder.finish();
+        replay = InputReplay.read(recorder.toByteArray());
+    } // fim do método setUp
+
+    @Benchmark
+    public GameSimulation replay()
+    {
+        return replay.play();
+    }
+} // fim da classe ReplayBenchmark
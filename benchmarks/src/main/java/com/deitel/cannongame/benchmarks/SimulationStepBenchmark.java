@@ -0,0 +1,60 @@
+// SimulationStepBenchmark.java
+// Custo de um passo de física completo (colisões varridas das balas,
+// movimento das barreiras e dos alvos) para vários números de obstáculos e balas
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.GameSimulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationStepBenchmark
+{
+    @Param({ "2", "100", "1000", "10000" })
+    public int obstacles;
+
+    @Param({ "1", "64", "512" })
+    public int projectiles;
+
+    private GameSimulation simulation;
+    private int shot;                   // varia o ângulo dos disparos
+
+    @Setup
+    public void setUp()
+    {
+        simulation = BenchmarkLevels.newSimulation(obstacles, projectiles);
+    }
+
+    // um passo com o número de balas mantido em projectiles; inclui os
+    // disparos que repõem as balas que saíram da tela e, a cada fim de jogo
+    // (cerca de 1200 passos), o custo de newGame
+    @Benchmark
+    public GameSimulation step()
+    {
+        if (simulation.isGameOver())
+            simulation.newGame();
+
+        while (simulation.getProjectiles().size() < projectiles && simulation.canFire())
+            simulation.fire(0.3 + (shot++ % 50) * 0.05);
+
+        simulation.step(BenchmarkLevels.STEP_NANOS);
+        return simulation;
+    }
+} // fim da classe SimulationStepBenchmark
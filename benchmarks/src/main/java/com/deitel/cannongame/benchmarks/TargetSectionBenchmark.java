@@ -0,0 +1,60 @@
+// TargetSectionBenchmark.java
+// Custo de encontrar a seção do alvo atingida no ponto de impacto, para
+// alvos com várias quantidades de seções
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.ObstacleField;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetSectionBenchmark
+{
+    private static final int IMPACTS = 1024;   // potência de 2 para o índice circular
+    private static final double TOP = 60;
+    private static final double LENGTH = 360;
+
+    @Param({ "7", "64", "1024" })
+    public int pieces;
+
+    private final double[] impactY = new double[IMPACTS];
+    private ObstacleField field;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        field = new ObstacleField();
+        field.setScreenHeight(BenchmarkLevels.SCREEN_HEIGHT);
+        field.addTarget(700, TOP, LENGTH, 0, pieces);
+
+        // impactos ao longo do alvo e um pouco fora dele
+        Random random = new Random(13);
+        for (int i = 0; i < IMPACTS; i++)
+            impactY[i] = TOP - 10 + random.nextDouble() * (LENGTH + 20);
+    }
+
+    @Benchmark
+    public int sectionAt()
+    {
+        return field.sectionAt(0, impactY[next++ & (IMPACTS - 1)], TOP);
+    }
+} // fim da classe TargetSectionBenchmark
@@ -0,0 +1,65 @@
+// TelemetryRecordBenchmark.java
+// Custo de TelemetryLog.record na thread que grava o evento, com a thread
+// da telemetria comprimindo e gravando os lotes ao mesmo tempo; rode com
+// -t 2 para medir a disputa entre a simulação e a thread de desenho
+package com.deitel.cannongame.benchmarks;
+
+import com.deitel.cannongame.TelemetryLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelemetryRecordBenchmark
+{
+    private File directory;
+    private TelemetryLog log;
+    private int value;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        directory = File.createTempFile("telemetry", "");
+        directory.delete(); // o log cria o diretório
+
+        // poucos arquivos pequenos: o benchmark grava sem parar
+        log = new TelemetryLog(directory, 1 << 16, TelemetryLog.DEFAULT_BATCH_EVENTS,
+                TelemetryLog.DEFAULT_FLUSH_INTERVAL_NANOS, 1 << 20, 2);
+        log.start();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        log.stop();
+        for (File file : TelemetryLog.listFiles(directory))
+            file.delete();
+        directory.delete();
+    }
+
+    // eventos descartados com a fila cheia também contam: é o custo que a
+    // thread do jogo paga em qualquer caso
+    @Benchmark
+    public boolean record()
+    {
+        return log.record(TelemetryLog.TARGET_HIT, value++ & 7);
+    }
+} // fim da classe TelemetryRecordBenchmark
@@ -0,0 +1,255 @@
+// AudioDispatcher.java
+// Toca os sons do jogo numa thread própria: a simulação só coloca o evento
+// numa fila circular limitada, sem bloquear nem alocar. O despachante
+// ignora repetições do mesmo som dentro de uma janela e distribui os sons
+// entre um número fixo de vozes, interrompendo a voz de menor prioridade
+// quando todas estão ocupadas
+package com.deitel.cannongame;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class AudioDispatcher implements Runnable
+{
+    public static final int MAX_SOUNDS = 16;            // sons de 0 a MAX_SOUNDS - 1
+    public static final int DEFAULT_QUEUE_CAPACITY = 64; // potência de 2
+    public static final int DEFAULT_VOICES = 4;
+    public static final long DEFAULT_REPEAT_WINDOW_NANOS = 50000000L; // 50 ms
+
+    // espera máxima da thread quando a fila está vazia
+    private static final long IDLE_PARK_NANOS = 10000000L;
+
+    private final AudioSink sink;
+    private final long repeatWindowNanos;
+
+    // fila: um produtor (a thread da simulação) e um consumidor (o despachante)
+    private final int[] queuedSounds;
+    private final long[] queuedTimes;   // instante em que o evento foi colocado na fila
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // descrição de cada som
+    private final int[] priorities = new int[MAX_SOUNDS];
+    private final long[] durations = new long[MAX_SOUNDS];
+    private final long[] lastPlayed = new long[MAX_SOUNDS];
+    private final boolean[] everPlayed = new boolean[MAX_SOUNDS];
+
+    // vozes; uma voz está ocupada até voiceEnd
+    private final int[] voiceStream;
+    private final int[] voicePriority;
+    private final long[] voiceStart;
+    private final long[] voiceEnd;
+
+    // contadores
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong queueDrops = new AtomicLong();     // fila cheia
+    private final AtomicLong rateLimited = new AtomicLong();    // repetição dentro da janela
+    private final AtomicLong voiceDrops = new AtomicLong();     // nenhuma voz disponível
+    private final AtomicLong stolen = new AtomicLong();         // voz interrompida por outro som
+    private final AtomicLong played = new AtomicLong();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    public AudioDispatcher(AudioSink sink)
+    {
+        this(sink, DEFAULT_QUEUE_CAPACITY, DEFAULT_VOICES, DEFAULT_REPEAT_WINDOW_NANOS);
+    }
+
+    public AudioDispatcher(AudioSink sink, int queueCapacity, int voices, long repeatWindowNanos)
+    {
+        if (queueCapacity <= 0 || (queueCapacity & (queueCapacity - 1)) != 0)
+            throw new IllegalArgumentException("queueCapacity must be a power of 2");
+        if (voices <= 0)
+            throw new IllegalArgumentException("voices must be positive");
+
+        this.sink = sink;
+        this.repeatWindowNanos = repeatWindowNanos;
+        queuedSounds = new int[queueCapacity];
+        queuedTimes = new long[queueCapacity];
+        mask = queueCapacity - 1;
+        voiceStream = new int[voices];
+        voicePriority = new int[voices];
+        voiceStart = new long[voices];
+        voiceEnd = new long[voices];
+    }
+
+    // define a prioridade (maior vence) e a duração de um som; chame antes de start
+    public void defineSound(int sound, int priority, long durationNanos)
+    {
+        priorities[sound] = priority;
+        durations[sound] = durationNanos;
+    }
+
+    // coloca um som na fila; chamado só pela thread produtora. Retorna false
+    // se a fila está cheia e o som foi descartado
+    public boolean post(int sound)
+    {
+        return post(sound, System.nanoTime());
+    }
+
+    public boolean post(int sound, long now)
+    {
+        posted.lazySet(posted.get() + 1);
+        long t = tail.get();
+
+        if (t - head.get() > mask)
+        {
+            queueDrops.lazySet(queueDrops.get() + 1);
+            return false;
+        }
+
+        int slot = (int) t & mask;
+        queuedSounds[slot] = sound;
+        queuedTimes[slot] = now;
+        tail.lazySet(t + 1);
+
+        Thread consumer = thread;
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+
+        return true;
+    } // fim do método post
+
+    // toca os sons na fila; chamado só pela thread do despachante (ou pelos
+    // testes, sem thread). Retorna o número de eventos retirados
+    public int drain(long now)
+    {
+        long h = head.get();
+        long t = tail.get();
+
+        for (long i = h; i < t; i++)
+        {
+            int slot = (int) i & mask;
+            queueLatency.record(now - queuedTimes[slot]);
+            dispatch(queuedSounds[slot], now);
+        }
+
+        head.lazySet(t);
+        return (int) (t - h);
+    } // fim do método drain
+
+    private void dispatch(int sound, long now)
+    {
+        // o mesmo som repetido dentro da janela soaria como um só
+        if (everPlayed[sound] && now - lastPlayed[sound] < repeatWindowNanos)
+        {
+            rateLimited.lazySet(rateLimited.get() + 1);
+            return;
+        }
+
+        int priority = priorities[sound];
+        int voice = chooseVoice(priority, now);
+
+        if (voice < 0)
+        {
+            voiceDrops.lazySet(voiceDrops.get() + 1);
+            return;
+        }
+
+        if (voiceEnd[voice] > now) // a voz ainda está tocando: interrompe
+        {
+            sink.stop(voiceStream[voice]);
+            stolen.lazySet(stolen.get() + 1);
+        }
+
+        int stream = sink.play(sound, priority);
+        voiceStream[voice] = stream;
+        voicePriority[voice] = priority;
+        voiceStart[voice] = now;
+        voiceEnd[voice] = stream == 0 ? now : now + durations[sound];
+        lastPlayed[sound] = now;
+        everPlayed[sound] = true;
+
+        if (stream != 0)
+            played.lazySet(played.get() + 1);
+    } // fim do método dispatch
+
+    // uma voz livre ou, se todas estão ocupadas, a de menor prioridade (a mais
+    // antiga entre as de mesma prioridade) desde que não seja mais importante
+    // que o novo som; -1 se nenhuma voz pode ser usada
+    private int chooseVoice(int priority, long now)
+    {
+        int victim = -1;
+
+        for (int voice = 0; voice < voiceEnd.length; voice++)
+        {
+            if (voiceEnd[voice] <= now)
+                return voice;
+
+            if (voicePriority[voice] <= priority && (victim < 0 ||
+                    voicePriority[voice] < voicePriority[victim] ||
+                    (voicePriority[voice] == voicePriority[victim] &&
+                            voiceStart[voice] < voiceStart[victim])))
+                victim = voice;
+        }
+
+        return victim;
+    } // fim do método chooseVoice
+
+    // inicia a thread do despachante
+    public synchronized void start()
+    {
+        if (thread != null)
+            return;
+
+        running = true;
+        Thread dispatcher = new Thread(this, "AudioDispatcher");
+        dispatcher.setDaemon(true);
+        thread = dispatcher;
+        dispatcher.start();
+    }
+
+    // termina a thread do despachante e espera por ela; os sons ainda na
+    // fila são descartados
+    public synchronized void stop()
+    {
+        Thread dispatcher = thread;
+        if (dispatcher == null)
+            return;
+
+        running = false;
+        LockSupport.unpark(dispatcher);
+        boolean interrupted = false;
+
+        while (dispatcher.isAlive())
+        {
+            try
+            {
+                dispatcher.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        thread = null;
+        head.lazySet(tail.get());
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    } // fim do método stop
+
+    // loop da thread do despachante
+    @Override
+    public void run()
+    {
+        while (running)
+        {
+            if (drain(System.nanoTime()) == 0)
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    public long getPosted() { return posted.get(); }
+    public long getQueueDrops() { return queueDrops.get(); }
+    public long getRateLimited() { return rateLimited.get(); }
+    public long getVoiceDrops() { return voiceDrops.get(); }
+    public long getStolen() { return stolen.get(); }
+    public long getPlayed() { return played.get(); }
+    public LatencyHistogram getQueueLatency() { return queueLatency; }
+    public int getVoices() { return voiceEnd.length; }
+} // fim da classe AudioDispatcher
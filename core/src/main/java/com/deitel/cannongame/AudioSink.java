@@ -0,0 +1,14 @@
+// AudioSink.java
+// Destino dos sons tocados por AudioDispatcher; no aplicativo é um SoundPool,
+// nos testes na JVM um objeto que só registra as chamadas
+package com.deitel.cannongame;
+
+public interface AudioSink
+{
+    // começa a tocar o som e retorna o identificador da reprodução, ou 0 se
+    // o som não pôde ser tocado
+    int play(int sound, int priority);
+
+    // interrompe uma reprodução iniciada por play
+    void stop(int streamId);
+} // fim da interface AudioSink
@@ -0,0 +1,123 @@
+// DirtyRegion.java
+// Retângulo da tela que precisa ser redesenhado no próximo quadro, com a
+// contagem de pixels efetivamente redesenhados em cada quadro
+package com.deitel.cannongame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DirtyRegion
+{
+    private int screenWidth;
+    private int screenHeight;
+
+    // retângulo acumulado no quadro atual; vazio quando right <= left
+    private int left;
+    private int top;
+    private int right;
+    private int bottom;
+
+    // pedidos de redesenho completo (redimensionamento, novo jogo); podem vir
+    // de outra thread, então cada quadro compara o contador com o último visto
+    private final AtomicInteger invalidations = new AtomicInteger(1);
+    private int seenInvalidations;
+    private int frameInvalidations;     // contador lido no início do quadro
+
+    // estatísticas dos quadros desenhados
+    private long lastPixels;            // pixels redesenhados no último quadro
+    private long totalPixels;
+    private long frames;
+    private long fullRedraws;
+
+    // define o tamanho da tela e pede um redesenho completo
+    public void setScreenSize(int width, int height)
+    {
+        screenWidth = width;
+        screenHeight = height;
+        invalidateAll();
+    }
+
+    // o próximo quadro redesenha a tela inteira
+    public void invalidateAll()
+    {
+        invalidations.incrementAndGet();
+    }
+
+    // começa um novo quadro com a região vazia (ou a tela inteira, se um
+    // redesenho completo foi pedido)
+    public void beginFrame()
+    {
+        left = top = right = bottom = 0;
+        frameInvalidations = invalidations.get();
+
+        if (frameInvalidations != seenInvalidations)
+            union(0, 0, screenWidth, screenHeight);
+    }
+
+    // acrescenta um retângulo à região, arredondando para fora e limitando à tela
+    public void union(double rectLeft, double rectTop, double rectRight, double rectBottom)
+    {
+        int l = Math.max(0, (int) Math.floor(rectLeft));
+        int t = Math.max(0, (int) Math.floor(rectTop));
+        int r = Math.min(screenWidth, (int) Math.ceil(rectRight));
+        int b = Math.min(screenHeight, (int) Math.ceil(rectBottom));
+
+        if (r <= l || b <= t)
+            return;
+
+        if (isEmpty())
+        {
+            left = l;
+            top = t;
+            right = r;
+            bottom = b;
+        }
+        else
+        {
+            left = Math.min(left, l);
+            top = Math.min(top, t);
+            right = Math.max(right, r);
+            bottom = Math.max(bottom, b);
+        }
+    } // fim do método union
+
+    // registra o retângulo realmente redesenhado, que pode ser maior que o
+    // pedido (a superfície pode ampliar a região ao fornecer a tela de desenho)
+    public void endFrame(int drawnLeft, int drawnTop, int drawnRight, int drawnBottom)
+    {
+        long width = Math.max(0, drawnRight - drawnLeft);
+        long height = Math.max(0, drawnBottom - drawnTop);
+
+        lastPixels = width * height;
+        totalPixels += lastPixels;
+        ++frames;
+
+        if (lastPixels >= (long) screenWidth * screenHeight)
+            ++fullRedraws;
+
+        seenInvalidations = frameInvalidations;
+    } // fim do método endFrame
+
+    // termina um quadro em que nada precisou ser redesenhado
+    public void skipFrame()
+    {
+        endFrame(0, 0, 0, 0);
+    }
+
+    public boolean isEmpty() { return right <= left || bottom <= top; }
+
+    // o quadro atual redesenha a tela inteira?
+    public boolean isFullRedraw()
+    {
+        return left == 0 && top == 0 && right == screenWidth && bottom == screenHeight;
+    }
+
+    public int getLeft() { return left; }
+    public int getTop() { return top; }
+    public int getRight() { return right; }
+    public int getBottom() { return bottom; }
+    public long getLastPixels() { return lastPixels; }
+    public long getTotalPixels() { return totalPixels; }
+    public long getFrames() { return frames; }
+    public long getFullRedraws() { return fullRedraws; }
+    public long getScreenPixels() { return (long) screenWidth * screenHeight; }
+} // fim da classe DirtyRegion
@@ -0,0 +1,133 @@
+// FixedMath.java
+// Aritmética de ponto fixo 16.16 em int e trigonometria por tabela com
+// ângulos binários (uma volta = FULL_TURN unidades); as tabelas são
+// calculadas com StrictMath, então os resultados são idênticos bit a bit em
+// qualquer dispositivo
+package com.deitel.cannongame;
+
+public final class FixedMath
+{
+    public static final int FRACTION_BITS = 16;
+    public static final int ONE = 1 << FRACTION_BITS;
+
+    // ângulos binários: FULL_TURN unidades por volta, potência de 2
+    public static final int ANGLE_BITS = 12;
+    public static final int FULL_TURN = 1 << ANGLE_BITS;
+    public static final int QUARTER_TURN = FULL_TURN / 4;
+    public static final int HALF_TURN = FULL_TURN / 2;
+
+    // seno de 0 a um quarto de volta, inclusive
+    private static final int[] SINE = new int[QUARTER_TURN + 1];
+
+    // arco tangente de i / ATAN_STEPS, de 0 a 1, em unidades de ângulo 16.16
+    private static final int ATAN_STEPS = 1024;
+    private static final int[] ATAN = new int[ATAN_STEPS + 1];
+
+    static
+    {
+        for (int i = 0; i <= QUARTER_TURN; i++)
+            SINE[i] = (int) StrictMath.round(
+                    StrictMath.sin(i * StrictMath.PI / HALF_TURN) * ONE);
+
+        for (int i = 0; i <= ATAN_STEPS; i++)
+            ATAN[i] = (int) StrictMath.round(
+                    StrictMath.atan((double) i / ATAN_STEPS) * HALF_TURN / StrictMath.PI * ONE);
+    }
+
+    private FixedMath()
+    {
+    }
+
+    public static int fromInt(int value)
+    {
+        return value << FRACTION_BITS;
+    }
+
+    // converte com arredondamento; use fora do passo da simulação
+    public static int fromDouble(double value)
+    {
+        return (int) StrictMath.round(value * ONE);
+    }
+
+    public static double toDouble(int value)
+    {
+        return value / (double) ONE;
+    }
+
+    // parte inteira, arredondada para baixo
+    public static int floor(int value)
+    {
+        return value >> FRACTION_BITS;
+    }
+
+    public static int multiply(int a, int b)
+    {
+        return (int) (((long) a * b) >> FRACTION_BITS);
+    }
+
+    // a / b, arredondado em direção a zero; b não pode ser 0
+    public static int divide(int a, int b)
+    {
+        return (int) (((long) a << FRACTION_BITS) / b);
+    }
+
+    // seno de um ângulo binário, em 16.16
+    public static int sin(int angle)
+    {
+        angle &= FULL_TURN - 1;
+
+        if (angle < QUARTER_TURN)
+            return SINE[angle];
+        if (angle < HALF_TURN)
+            return SINE[HALF_TURN - angle];
+        if (angle < HALF_TURN + QUARTER_TURN)
+            return -SINE[angle - HALF_TURN];
+        return -SINE[FULL_TURN - angle];
+    }
+
+    public static int cos(int angle)
+    {
+        return sin(angle + QUARTER_TURN);
+    }
+
+    // ângulo binário do vetor (x, y) medido a partir do eixo y positivo em
+    // direção ao eixo x positivo (a convenção do cano do canhão: 0 aponta
+    // para cima e um quarto de volta aponta para a direita); x e y podem
+    // estar em qualquer escala, desde que a mesma
+    public static int angleOf(int x, int y)
+    {
+        if (x == 0 && y == 0)
+            return 0;
+
+        long ax = Math.abs((long) x);
+        long ay = Math.abs((long) y);
+
+        // ângulo no primeiro octante, pela tabela com interpolação linear
+        long small = Math.min(ax, ay);
+        long large = Math.max(ax, ay);
+        long ratio = (small * ATAN_STEPS << FRACTION_BITS) / large; // 16.16 em passos da tabela
+        int index = (int) (ratio >> FRACTION_BITS);
+        int fraction = (int) (ratio & (ONE - 1));
+        int octant = ATAN[index];
+        if (index < ATAN_STEPS)
+            octant += multiply(ATAN[index + 1] - ATAN[index], fraction);
+
+        // arredonda para o ângulo binário mais próximo
+        int angle = (octant + ONE / 2) >> FRACTION_BITS;
+
+        // a partir do eixo y: perto do eixo y o ângulo é o do octante
+        if (ax > ay)
+            angle = QUARTER_TURN - angle;
+        if (y < 0)
+            angle = HALF_TURN - angle;
+        if (x < 0)
+            angle = FULL_TURN - angle;
+
+        return angle & (FULL_TURN - 1);
+    } // fim do método angleOf
+
+    public static double toRadians(int angle)
+    {
+        return angle * StrictMath.PI / HALF_TURN;
+    }
+} // fim da classe FixedMath
@@ -0,0 +1,582 @@
+// FixedPointSimulation.java
+// Modo alternativo da física do Cannon Game em ponto fixo 16.16: posições,
+// velocidades e fases são int, o tempo é contado em passos e a mira usa
+// trigonometria por tabela. Nenhuma conta de ponto flutuante é feita no
+// passo, e o resultado é idêntico bit a bit em qualquer dispositivo
+package com.deitel.cannongame;
+
+public class FixedPointSimulation
+{
+    // limite de colisões resolvidas por bala em um único passo
+    private static final int MAX_EVENTS_PER_STEP = 4;
+
+    // tipos de colisão encontrados pela varredura da bala
+    private static final int NO_EVENT = 0;
+    private static final int BLOCKER_EVENT = 1;
+    private static final int SIDE_WALL_EVENT = 2;
+    private static final int FLOOR_CEILING_EVENT = 3;
+    private static final int TARGET_EVENT = 4;
+
+    // obstáculos da fase padrão
+    private static final int BLOCKER = 0;
+    private static final int TARGET = 1;
+    private static final int OBSTACLES = 2;
+
+    // instante "nunca" de uma varredura, maior que qualquer fração de passo
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    private final GameConfig config;
+    private final int ticksPerSecond;
+    private GameSimulation.Listener listener;
+
+    // jogo e tempo, contado em passos
+    private boolean gameOver;
+    private int ticksLeft;
+    private int elapsedTicks;
+    private int shotsFired;
+    private int gamesStarted;
+    private int initialTicks;
+    private int penaltyTicks;
+    private int rewardTicks;
+
+    // dimensões em pixels inteiros
+    private int screenWidth;
+    private int screenHeight;
+    private int lineWidth;
+    private int cannonBaseRadius;
+    private int cannonLength;
+    private int cannonballRadius;
+    private int barrelEndX;
+    private int barrelEndY;
+
+    // balas em 16.16; velocidades em pixels por passo, compactadas no início
+    private final int[] ballX;
+    private final int[] ballY;
+    private final int[] ballVelocityX;
+    private final int[] ballVelocityY;
+    private int ballCount;
+    private boolean rapidFire;
+    private int ballSpeed;              // pixels por passo, 16.16
+
+    // próxima colisão de cada bala no passo atual; a posição da bala vale
+    // no instante sweepStart, e as balas só são movidas ao serem varridas
+    // de novo ou no fim do passo
+    private final int[] nextEvent;
+    private final int[] nextEventTime;  // fração do passo, 16.16
+    private final int[] nextEventPiece;
+    private final int[] eventCounts;    // colisões da bala neste passo
+    private final int[] sweepStart;     // fração do passo, 16.16
+
+    // obstáculos em 16.16; o topo vai e volta entre 0 e span, descrito por
+    // uma fase em [0, 2 * span), como em ObstacleField
+    private final int[] lineX = new int[OBSTACLES];
+    private final int[] length = new int[OBSTACLES];
+    private final int[] span = new int[OBSTACLES];
+    private final int[] initialPhase = new int[OBSTACLES];
+    private final int[] phase = new int[OBSTACLES];
+    private final int[] speed = new int[OBSTACLES];     // pixels por passo
+
+    // seções do alvo
+    private int pieceLength;            // 16.16
+    private boolean[] pieceHit = new boolean[0];
+    private int piecesHit;
+
+    // resultado da última varredura de uma bala
+    private int eventTime;              // fração do passo, 16.16
+    private int eventPiece;
+
+    public FixedPointSimulation()
+    {
+        this(new GameConfig(), FixedStepClock.DEFAULT_TICKS_PER_SECOND,
+                ProjectilePool.DEFAULT_CAPACITY);
+    }
+
+    public FixedPointSimulation(GameConfig config, int ticksPerSecond, int maxProjectiles)
+    {
+        if (ticksPerSecond <= 0 || maxProjectiles <= 0)
+            throw new IllegalArgumentException("ticksPerSecond and maxProjectiles must be positive");
+
+        this.config = config;
+        this.ticksPerSecond = ticksPerSecond;
+        ballX = new int[maxProjectiles];
+        ballY = new int[maxProjectiles];
+        ballVelocityX = new int[maxProjectiles];
+        ballVelocityY = new int[maxProjectiles];
+        nextEvent = new int[maxProjectiles];
+        nextEventTime = new int[maxProjectiles];
+        nextEventPiece = new int[maxProjectiles];
+        eventCounts = new int[maxProjectiles];
+        sweepStart = new int[maxProjectiles];
+    }
+
+    public void setListener(GameSimulation.Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    // calcula as dimensões a partir do tamanho da tela e monta a fase padrão,
+    // com as mesmas proporções de GameSimulation; as conversões das regras
+    // para passos e 16.16 são feitas aqui, fora do passo
+    public void setScreenSize(int w, int h)
+    {
+        screenWidth = w;
+        screenHeight = h;
+        cannonBaseRadius = h / 18;
+        cannonLength = w / 8;
+        cannonballRadius = w / 36;
+        lineWidth = w / 24;
+        ballSpeed = FixedMath.fromDouble(w * config.getCannonballSpeedRatio() / ticksPerSecond);
+
+        // a barreira tem 5/8 da largura da tela e começa descendo; o alvo tem
+        // 7/8 da largura da tela e começa subindo
+        setObstacle(BLOCKER, w * 5 / 8, h / 8, h * 3 / 8 - h / 8,
+                h * config.getBlockerSpeedRatio());
+        setObstacle(TARGET, w * 7 / 8, h / 8, h * 7 / 8 - h / 8,
+                -h * config.getTargetSpeedRatio());
+
+        int pieces = config.getTargetPieces();
+        pieceLength = length[TARGET] / pieces;
+        pieceHit = new boolean[pieces];
+
+        initialTicks = toTicks(config.getInitialTime());
+        penaltyTicks = toTicks(config.getMissPenalty());
+        rewardTicks = toTicks(config.getHitReward());
+
+        barrelEndX = cannonLength;
+        barrelEndY = h / 2;
+    } // fim do método setScreenSize
+
+    private void setObstacle(int i, int x, int top, int lineLength, double velocity)
+    {
+        lineX[i] = FixedMath.fromInt(x);
+        length[i] = FixedMath.fromInt(lineLength);
+        span[i] = Math.max(0, FixedMath.fromInt(screenHeight - lineLength));
+        speed[i] = FixedMath.fromDouble(Math.abs(velocity) / ticksPerSecond);
+
+        // subindo, a linha começa na segunda metade do ciclo
+        int start = FixedMath.fromInt(top);
+        initialPhase[i] = wrapPhase(velocity >= 0 ? start : 2 * span[i] - start, span[i]);
+    }
+
+    private int toTicks(double seconds)
+    {
+        return (int) StrictMath.round(seconds * ticksPerSecond);
+    }
+
+    // reinicia todos os elementos do jogo
+    public void newGame()
+    {
+        System.arraycopy(initialPhase, 0, phase, 0, OBSTACLES);
+
+        for (int i = 0; i < pieceHit.length; i++)
+            pieceHit[i] = false;
+
+        piecesHit = 0;
+        ballCount = 0;
+        ticksLeft = initialTicks;
+        elapsedTicks = 0;
+        shotsFired = 0;
+        gameOver = false;
+        ++gamesStarted;
+    }
+
+    // avança a simulação um passo
+    public void step()
+    {
+        if (gameOver)
+            return;
+
+        if (ballCount > 0)
+            updateBalls();
+
+        for (int i = 0; i < OBSTACLES; i++)
+            phase[i] = wrapPhase(phase[i] + speed[i], span[i]);
+
+        ++elapsedTicks;
+        --ticksLeft;
+
+        if (!gameOver && ticksLeft <= 0)
+        {
+            ticksLeft = 0;
+            endGame(false); // derrota
+        }
+    } // fim do método step
+
+    // move todas as balas juntas de colisão em colisão até o fim do passo,
+    // resolvendo sempre a colisão mais cedo entre todas elas, como em
+    // GameSimulation: duas balas que chegam à mesma seção no mesmo passo dão
+    // o acerto à primeira, e uma penalidade anterior à vitória é aplicada
+    private void updateBalls()
+    {
+        for (int i = 0; i < ballCount; i++)
+        {
+            eventCounts[i] = 0;
+            sweepStart[i] = 0;
+            sweepAhead(i, 0);
+        }
+
+        while (!gameOver && ballCount > 0)
+        {
+            // a colisão mais cedo; no empate vence a bala do fim da lista
+            int first = -1;
+            int time = NEVER;
+            for (int i = ballCount - 1; i >= 0; i--)
+            {
+                if (nextEventTime[i] < time)
+                {
+                    first = i;
+                    time = nextEventTime[i];
+                }
+            }
+
+            if (first < 0)
+                break;
+
+            int event = nextEvent[first];
+            int piece = nextEventPiece[first];
+            ++eventCounts[first];
+            moveBall(first, time);
+
+            // a bala que colidiu muda de direção ou sai do jogo; uma seção
+            // atingida deixa passar as balas que iam acertá-la
+            if (resolveEvent(first, event, piece))
+                sweepAhead(first, time);
+            if (event == TARGET_EVENT)
+            {
+                for (int i = 0; i < ballCount; i++)
+                    if (nextEvent[i] == TARGET_EVENT && nextEventPiece[i] == piece)
+                        sweepAhead(i, time);
+            }
+        } // fim do while
+
+        for (int i = 0; i < ballCount; i++)
+            moveBall(i, FixedMath.ONE);
+    } // fim do método updateBalls
+
+    // guarda a próxima colisão da bala entre time e o fim do passo
+    private void sweepAhead(int i, int time)
+    {
+        moveBall(i, time);
+
+        int event = NO_EVENT;
+        if (eventCounts[i] < MAX_EVENTS_PER_STEP)
+            event = sweepBall(i, time, FixedMath.ONE - time);
+
+        nextEvent[i] = event;
+        nextEventTime[i] = event == NO_EVENT ? NEVER : time + eventTime;
+        nextEventPiece[i] = eventPiece;
+    } // fim do método sweepAhead
+
+    // leva a bala de sweepStart até time, num único trecho reto
+    private void moveBall(int i, int time)
+    {
+        int interval = time - sweepStart[i];
+        ballX[i] += FixedMath.multiply(ballVelocityX[i], interval);
+        ballY[i] += FixedMath.multiply(ballVelocityY[i], interval);
+        sweepStart[i] = time;
+    }
+
+    // procura a primeira colisão da bala entre start e start + horizon
+    // (frações do passo); o instante, relativo a start, fica em eventTime
+    private int sweepBall(int i, int start, int horizon)
+    {
+        int x = ballX[i];
+        int y = ballY[i];
+        int vx = ballVelocityX[i];
+        int vy = ballVelocityY[i];
+        int radius = FixedMath.fromInt(cannonballRadius);
+        int event = NO_EVENT;
+        eventTime = horizon;
+
+        int t = wallTime(x, vx, FixedMath.fromInt(screenWidth), radius);
+        if (t < eventTime)
+        {
+            eventTime = t;
+            event = SIDE_WALL_EVENT;
+        }
+
+        t = wallTime(y, vy, FixedMath.fromInt(screenHeight), radius);
+        if (t < eventTime)
+        {
+            eventTime = t;
+            event = FLOOR_CEILING_EVENT;
+        }
+
+        for (int k = 0; k < OBSTACLES; k++)
+        {
+            t = lineEntryTime(x, vx, lineX[k], radius);
+
+            // uma barreira vence um empate com as paredes
+            if (k == BLOCKER ? t > eventTime : t >= eventTime)
+                continue;
+
+            int top = foldPhase(phase[k] + FixedMath.multiply(speed[k], start + t), span[k]);
+            int impactY = y + FixedMath.multiply(vy, t);
+
+            if (impactY + radius <= top || impactY - radius >= top + length[k])
+                continue;
+
+            if (k == BLOCKER)
+            {
+                eventTime = t;
+                event = BLOCKER_EVENT;
+                continue;
+            }
+
+            // uma seção já atingida deixa a bala passar
+            int section = (impactY - top) / pieceLength;
+            if (impactY >= top && section < pieceHit.length && !pieceHit[section])
+            {
+                eventTime = t;
+                eventPiece = section;
+                event = TARGET_EVENT;
+            }
+        } // fim do for
+
+        return event;
+    } // fim do método sweepBall
+
+    // aplica a colisão; retorna false se a bala saiu da tela
+    private boolean resolveEvent(int i, int event, int piece)
+    {
+        switch (event)
+        {
+            case BLOCKER_EVENT:
+                ballVelocityX[i] = -ballVelocityX[i];
+                ticksLeft -= penaltyTicks;
+
+                if (listener != null)
+                    listener.onBlockerHit();
+                return true;
+
+            case SIDE_WALL_EVENT:
+                removeBall(i);
+
+                if (listener != null)
+                    listener.onWallHit();
+                return false;
+
+            case FLOOR_CEILING_EVENT:
+                removeBall(i);
+                return false;
+
+            default: // TARGET_EVENT
+                pieceHit[piece] = true;
+                ++piecesHit;
+                removeBall(i);
+                ticksLeft += rewardTicks;
+
+                if (listener != null)
+                    listener.onTargetHit(piece);
+
+                if (piecesHit == pieceHit.length)
+                    endGame(true); // vitória
+                return false;
+        }
+    } // fim do método resolveEvent
+
+    private void removeBall(int i)
+    {
+        int last = --ballCount;
+        ballX[i] = ballX[last];
+        ballY[i] = ballY[last];
+        ballVelocityX[i] = ballVelocityX[last];
+        ballVelocityY[i] = ballVelocityY[last];
+        nextEvent[i] = nextEvent[last];
+        nextEventTime[i] = nextEventTime[last];
+        nextEventPiece[i] = nextEventPiece[last];
+        eventCounts[i] = eventCounts[last];
+        sweepStart[i] = sweepStart[last];
+    }
+
+    // fração do passo em que a borda da bala alcança a linha em x, ou NEVER
+    private static int lineEntryTime(int position, int velocity, int x, int radius)
+    {
+        if (velocity > 0 && position < x - radius)
+            return time(x - radius - position, velocity);
+
+        if (velocity < 0 && position > x + radius)
+            return time(x + radius - position, velocity);
+
+        return NEVER;
+    }
+
+    // fração do passo em que a borda da bala sai do intervalo [0, limit]
+    private static int wallTime(int position, int velocity, int limit, int radius)
+    {
+        if (velocity > 0)
+            return time(limit - radius - position, velocity);
+
+        if (velocity < 0)
+            return time(radius - position, velocity);
+
+        return NEVER;
+    }
+
+    // distance / velocity em frações do passo, limitado a [0, NEVER]
+    private static int time(int distance, int velocity)
+    {
+        long t = ((long) distance << FixedMath.FRACTION_BITS) / velocity;
+        return (int) Math.max(0, Math.min(NEVER, t));
+    }
+
+    private static int wrapPhase(int value, int span)
+    {
+        if (span <= 0)
+            return 0;
+
+        int period = 2 * span;
+        int wrapped = value % period;
+        return wrapped < 0 ? wrapped + period : wrapped;
+    }
+
+    private static int foldPhase(int value, int span)
+    {
+        int wrapped = wrapPhase(value, span);
+        return wrapped <= span ? wrapped : 2 * span - wrapped;
+    }
+
+    private void endGame(boolean won)
+    {
+        gameOver = true;
+
+        if (listener != null)
+            listener.onGameOver(won);
+    }
+
+    // ângulo binário do cano para um toque em (x, y); alinha o canhão
+    public int aim(float x, float y)
+    {
+        int angle = FixedMath.angleOf((int) x, screenHeight / 2 - (int) y);
+        barrelEndX = (cannonLength * FixedMath.sin(angle)) >> FixedMath.FRACTION_BITS;
+        barrelEndY = screenHeight / 2 -
+                ((cannonLength * FixedMath.cos(angle)) >> FixedMath.FRACTION_BITS);
+        return angle;
+    }
+
+    public void setRapidFire(boolean rapidFire)
+    {
+        this.rapidFire = rapidFire;
+    }
+
+    public boolean canFire()
+    {
+        if (gameOver)
+            return false;
+
+        return rapidFire ? ballCount < ballX.length : ballCount == 0;
+    }
+
+    // dispara uma bala no ângulo binário dado; retorna false se o disparo não é aceito
+    public boolean fire(int angle)
+    {
+        if (!canFire())
+            return false;
+
+        int i = ballCount++;
+        ballX[i] = FixedMath.fromInt(cannonballRadius);
+        ballY[i] = FixedMath.fromInt(screenHeight / 2);
+        ballVelocityX[i] = FixedMath.multiply(ballSpeed, FixedMath.sin(angle));
+        ballVelocityY[i] = -FixedMath.multiply(ballSpeed, FixedMath.cos(angle));
+        ++shotsFired;
+
+        if (listener != null)
+            listener.onCannonFired();
+
+        return true;
+    } // fim do método fire
+
+    // copia o estado do jogo de source, que deve ter as mesmas regras, o
+    // mesmo tamanho de tela e o mesmo conjunto de balas; usado para voltar a
+    // um estado confirmado sem alocar (LockstepSession)
+    public void copyFrom(FixedPointSimulation source)
+    {
+        if (source.ballX.length != ballX.length || source.pieceHit.length != pieceHit.length ||
+                source.ticksPerSecond != ticksPerSecond || source.screenWidth != screenWidth ||
+                source.screenHeight != screenHeight)
+            throw new IllegalArgumentException("simulations have different layouts");
+
+        gameOver = source.gameOver;
+        ticksLeft = source.ticksLeft;
+        elapsedTicks = source.elapsedTicks;
+        shotsFired = source.shotsFired;
+        gamesStarted = source.gamesStarted;
+        barrelEndX = source.barrelEndX;
+        barrelEndY = source.barrelEndY;
+        rapidFire = source.rapidFire;
+
+        ballCount = source.ballCount;
+        System.arraycopy(source.ballX, 0, ballX, 0, ballCount);
+        System.arraycopy(source.ballY, 0, ballY, 0, ballCount);
+        System.arraycopy(source.ballVelocityX, 0, ballVelocityX, 0, ballCount);
+        System.arraycopy(source.ballVelocityY, 0, ballVelocityY, 0, ballCount);
+
+        System.arraycopy(source.phase, 0, phase, 0, OBSTACLES);
+        System.arraycopy(source.pieceHit, 0, pieceHit, 0, pieceHit.length);
+        piecesHit = source.piecesHit;
+    } // fim do método copyFrom
+
+    // resumo de todo o estado do jogo; duas simulações com as mesmas
+    // entradas têm o mesmo valor em qualquer dispositivo
+    public long checksum()
+    {
+        long hash = 0xCBF29CE484222325L;
+        hash = mix(hash, elapsedTicks);
+        hash = mix(hash, ticksLeft);
+        hash = mix(hash, shotsFired);
+        hash = mix(hash, gameOver ? 1 : 0);
+
+        for (int i = 0; i < ballCount; i++)
+        {
+            hash = mix(hash, ballX[i]);
+            hash = mix(hash, ballY[i]);
+            hash = mix(hash, ballVelocityX[i]);
+            hash = mix(hash, ballVelocityY[i]);
+        }
+
+        for (int i = 0; i < OBSTACLES; i++)
+            hash = mix(hash, phase[i]);
+
+        for (boolean hit : pieceHit)
+            hash = mix(hash, hit ? 1 : 0);
+
+        return hash;
+    } // fim do método checksum
+
+    // FNV-1a, uma palavra de 32 bits por vez
+    private static long mix(long hash, int value)
+    {
+        return (hash ^ (value & 0xFFFFFFFFL)) * 0x100000001B3L;
+    }
+
+    // métodos de acesso; posições em 16.16, tempos em passos
+    public boolean isGameOver() { return gameOver; }
+    public int getTicksLeft() { return ticksLeft; }
+    public int getElapsedTicks() { return elapsedTicks; }
+    public int getTicksPerSecond() { return ticksPerSecond; }
+    public double getTimeLeft() { return (double) ticksLeft / ticksPerSecond; }
+    public int getShotsFired() { return shotsFired; }
+    public int getGamesStarted() { return gamesStarted; }
+    public int getScreenWidth() { return screenWidth; }
+    public int getScreenHeight() { return screenHeight; }
+    public int getLineWidth() { return lineWidth; }
+    public int getCannonBaseRadius() { return cannonBaseRadius; }
+    public int getCannonballRadius() { return cannonballRadius; }
+    public int getBarrelEndX() { return barrelEndX; }
+    public int getBarrelEndY() { return barrelEndY; }
+    public GameConfig getConfig() { return config; }
+
+    public int getBallCount() { return ballCount; }
+    public int getBallX(int i) { return ballX[i]; }
+    public int getBallY(int i) { return ballY[i]; }
+    public int getBallVelocityX(int i) { return ballVelocityX[i]; }
+    public int getBallVelocityY(int i) { return ballVelocityY[i]; }
+
+    public int getBlockerTop() { return foldPhase(phase[BLOCKER], span[BLOCKER]); }
+    public int getTargetTop() { return foldPhase(phase[TARGET], span[TARGET]); }
+    public int getBlockerSpeed() { return speed[BLOCKER]; }
+    public int getTargetSpeed() { return speed[TARGET]; }
+    public int getTargetPieces() { return pieceHit.length; }
+    public boolean isPieceHit(int piece) { return pieceHit[piece]; }
+    public int getTargetPiecesHit() { return piecesHit; }
+} // fim da classe FixedPointSimulation
@@ -0,0 +1,108 @@
+// FixedStepClock.java
+// Relógio de passo fixo: converte o tempo real em passos de simulação de
+// duração constante e marca o ritmo dos quadros desenhados
+package com.deitel.cannongame;
+
+public class FixedStepClock
+{
+    public static final int DEFAULT_TICKS_PER_SECOND = 120; // passos de física por segundo
+    public static final int DEFAULT_FRAME_RATE = 60;         // quadros desenhados por segundo
+    public static final int DEFAULT_MAX_STEPS_PER_FRAME = 5; // limite de passos para alcançar o tempo real
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final long stepNanos;       // duração de um passo de simulação
+    private final int maxStepsPerFrame; // passos máximos executados num quadro
+    private long framePeriodNanos;      // intervalo desejado entre quadros
+
+    private long previousTime;          // instante da última chamada a advance
+    private long accumulator;           // tempo real ainda não simulado
+    private long nextFrameTime;         // prazo do próximo quadro
+    private long droppedNanos;          // tempo descartado por causa do limite de passos
+
+    // cria um relógio com as taxas padrão
+    public FixedStepClock()
+    {
+        this(DEFAULT_TICKS_PER_SECOND, DEFAULT_FRAME_RATE, DEFAULT_MAX_STEPS_PER_FRAME);
+    }
+
+    public FixedStepClock(int ticksPerSecond, int frameRate, int maxStepsPerFrame)
+    {
+        if (ticksPerSecond <= 0 || maxStepsPerFrame <= 0)
+            throw new IllegalArgumentException("ticksPerSecond and maxStepsPerFrame must be positive");
+
+        stepNanos = NANOS_PER_SECOND / ticksPerSecond;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+        setFrameRate(frameRate);
+    }
+
+    // altera a taxa de quadros desejada; 0 desenha o mais rápido possível
+    public void setFrameRate(int frameRate)
+    {
+        if (frameRate < 0)
+            throw new IllegalArgumentException("frameRate must not be negative");
+
+        framePeriodNanos = frameRate == 0 ? 0 : NANOS_PER_SECOND / frameRate;
+    }
+
+    // reinicia o relógio no instante now (em nanossegundos de System.nanoTime)
+    public void reset(long now)
+    {
+        previousTime = now;
+        nextFrameTime = now;
+        accumulator = 0;
+        droppedNanos = 0;
+    }
+
+    // acumula o tempo desde a última chamada e retorna quantos passos simular
+    public int advance(long now)
+    {
+        long elapsed = now - previousTime;
+        previousTime = now;
+
+        if (elapsed > 0)
+            accumulator += elapsed;
+
+        int steps = (int) Math.min(accumulator / stepNanos, maxStepsPerFrame);
+        accumulator -= steps * stepNanos;
+
+        // depois de uma pausa longa, descarta o atraso em vez de acelerar o jogo
+        if (accumulator >= stepNanos)
+        {
+            long excess = accumulator - accumulator % stepNanos;
+            droppedNanos += excess;
+            accumulator -= excess;
+        }
+
+        return steps;
+    } // fim do método advance
+
+    // fração do próximo passo já decorrida, usada para interpolar o desenho
+    public double getAlpha()
+    {
+        return (double) accumulator / stepNanos;
+    }
+
+    // nanossegundos a esperar antes de começar o próximo quadro
+    public long frameWait(long now)
+    {
+        if (framePeriodNanos == 0)
+            return 0;
+
+        nextFrameTime += framePeriodNanos;
+        long wait = nextFrameTime - now;
+
+        // se o quadro atrasou mais de um período, recomeça a contagem a partir de agora
+        if (wait < -framePeriodNanos)
+        {
+            nextFrameTime = now;
+            return 0;
+        }
+
+        return Math.max(wait, 0);
+    } // fim do método frameWait
+
+    public long getStepNanos() { return stepNanos; }
+    public long getFramePeriodNanos() { return framePeriodNanos; }
+    public long getDroppedNanos() { return droppedNanos; }
+} // fim da classe FixedStepClock
@@ -0,0 +1,141 @@
+// FrameGovernor.java
+// Escolhe a taxa de quadros (60 ou 30 por segundo) e o nível de qualidade do
+// desenho a partir do tempo de trabalho dos quadros recentes; só rebaixa
+// depois de uma janela inteira sobrecarregada e só promove depois de várias
+// janelas folgadas, para não oscilar entre dois níveis
+package com.deitel.cannongame;
+
+public class FrameGovernor
+{
+    // níveis de qualidade
+    public static final int QUALITY_HIGH = 0;   // texto suavizado, painel completo, todas as partículas
+    public static final int QUALITY_MEDIUM = 1; // sem suavização, metade das partículas
+    public static final int QUALITY_LOW = 2;    // painel resumido, um quarto das partículas
+
+    public static final int HIGH_FRAME_RATE = 60;
+    public static final int LOW_FRAME_RATE = 30;
+
+    // combinações em ordem decrescente de custo; o governador anda um nível por vez
+    private static final int[] LEVEL_FRAME_RATE =
+            { HIGH_FRAME_RATE, HIGH_FRAME_RATE, LOW_FRAME_RATE, LOW_FRAME_RATE };
+    private static final int[] LEVEL_QUALITY =
+            { QUALITY_HIGH, QUALITY_MEDIUM, QUALITY_MEDIUM, QUALITY_LOW };
+    public static final int LEVEL_COUNT = 4;
+
+    public static final int DEFAULT_WINDOW_FRAMES = 60;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final double OVERLOAD = 0.85;    // fração do período que conta como quadro lento
+    private static final double RELAXED = 0.5;      // fração do período do nível acima que é folgada
+    private static final int SLOW_PERCENT = 10;     // quadros lentos na janela que rebaixam o nível
+    private static final int CALM_WINDOWS = 3;      // janelas folgadas seguidas que promovem o nível
+
+    private final int windowFrames;     // quadros em cada janela de decisão
+    private int level;                  // combinação atual de taxa e qualidade
+
+    // contagem da janela atual
+    private int frames;
+    private int slowFrames;             // acima de OVERLOAD do período atual
+    private int tightFrames;            // acima de RELAXED do período do nível acima
+    private int calmWindows;            // janelas folgadas seguidas
+
+    private long downgrades;
+    private long upgrades;
+
+    // cria um governador com janelas de DEFAULT_WINDOW_FRAMES quadros (um segundo a 60 fps)
+    public FrameGovernor()
+    {
+        this(DEFAULT_WINDOW_FRAMES);
+    }
+
+    public FrameGovernor(int windowFrames)
+    {
+        if (windowFrames <= 0)
+            throw new IllegalArgumentException("windowFrames must be positive");
+
+        this.windowFrames = windowFrames;
+    }
+
+    // registra o tempo de trabalho de um quadro (sem a espera até o próximo);
+    // retorna true se a taxa ou a qualidade mudou
+    public boolean recordFrame(long workNanos)
+    {
+        if (workNanos > OVERLOAD * periodOf(level))
+            ++slowFrames;
+        if (level > 0 && workNanos > RELAXED * periodOf(level - 1))
+            ++tightFrames;
+
+        if (++frames < windowFrames)
+            return false;
+
+        // fim da janela: decide e começa a próxima
+        boolean overloaded = slowFrames * 100 >= windowFrames * SLOW_PERCENT;
+        boolean calm = level > 0 && tightFrames == 0;
+        frames = slowFrames = tightFrames = 0;
+
+        if (overloaded && level < LEVEL_COUNT - 1)
+        {
+            setLevel(level + 1);
+            ++downgrades;
+            return true;
+        }
+
+        calmWindows = calm ? calmWindows + 1 : 0;
+        if (calmWindows >= CALM_WINDOWS)
+        {
+            setLevel(level - 1);
+            ++upgrades;
+            return true;
+        }
+
+        return false;
+    } // fim do método recordFrame
+
+    // muda para o nível dado e recomeça a observação
+    public void setLevel(int level)
+    {
+        if (level < 0 || level >= LEVEL_COUNT)
+            throw new IllegalArgumentException("level out of range: " + level);
+
+        this.level = level;
+        frames = slowFrames = tightFrames = calmWindows = 0;
+    }
+
+    private static long periodOf(int level)
+    {
+        return NANOS_PER_SECOND / LEVEL_FRAME_RATE[level];
+    }
+
+    public int getLevel() { return level; }
+    public int getFrameRate() { return LEVEL_FRAME_RATE[level]; }
+    public int getQuality() { return LEVEL_QUALITY[level]; }
+    public long getDowngrades() { return downgrades; }
+    public long getUpgrades() { return upgrades; }
+
+    // só o nível mais alto suaviza o texto
+    public boolean isAntiAlias()
+    {
+        return getQuality() == QUALITY_HIGH;
+    }
+
+    // o nível mais baixo mostra só o intervalo entre quadros no painel
+    public boolean isOverlayCompact()
+    {
+        return getQuality() == QUALITY_LOW;
+    }
+
+    // fração do orçamento de partículas usada no nível atual
+    public float getParticleScale()
+    {
+        return getQuality() == QUALITY_HIGH ? 1.0f
+                : getQuality() == QUALITY_MEDIUM ? 0.5f : 0.25f;
+    }
+
+    // acrescenta a builder o nível atual e quantas vezes ele mudou
+    public void appendSummary(StringBuilder builder)
+    {
+        builder.append("governor ").append(getFrameRate()).append(" fps quality ")
+                .append(getQuality()).append(" down ").append(downgrades)
+                .append(" up ").append(upgrades);
+    }
+} // fim da classe FrameGovernor
@@ -0,0 +1,121 @@
+// FrameStats.java
+// Tempos de cada fase do loop do jogo em histogramas de faixas fixas, com a
+// contagem de quadros perdidos e o texto do painel de desempenho
+package com.deitel.cannongame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FrameStats
+{
+    // fases medidas
+    public static final int LOCK_CANVAS = 0;     // surfaceHolder.lockCanvas
+    public static final int UPDATE = 1;          // updatePositions (um passo de simulação)
+    public static final int DRAW = 2;            // drawGameElements
+    public static final int UNLOCK_AND_POST = 3; // surfaceHolder.unlockCanvasAndPost
+    public static final int FRAME = 4;           // intervalo entre o início de dois quadros
+    public static final int PHASE_COUNT = 5;
+
+    // maior linha produzida por formatLine
+    public static final int MAX_LINE_LENGTH = 64;
+
+    private static final char[][] PHASE_NAMES = {
+            "lock".toCharArray(), "update".toCharArray(), "draw".toCharArray(),
+            "post".toCharArray(), "frame".toCharArray() };
+    private static final char[] DROPPED = "dropped frames ".toCharArray();
+    private static final char[] UNIT = " ms".toCharArray();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASE_COUNT];
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    public FrameStats()
+    {
+        for (int phase = 0; phase < PHASE_COUNT; phase++)
+            histograms[phase] = new LatencyHistogram();
+    }
+
+    // registra a duração de uma fase
+    public void record(int phase, long nanos)
+    {
+        histograms[phase].record(nanos);
+    }
+
+    // registra o intervalo entre dois quadros; um intervalo de mais de um
+    // período e meio conta os quadros que deixaram de ser desenhados
+    public void recordFrameInterval(long intervalNanos, long framePeriodNanos)
+    {
+        histograms[FRAME].record(intervalNanos);
+
+        if (framePeriodNanos > 0 && 2 * intervalNanos > 3 * framePeriodNanos)
+            droppedFrames.addAndGet((intervalNanos + framePeriodNanos / 2) / framePeriodNanos - 1);
+    }
+
+    public LatencyHistogram getHistogram(int phase) { return histograms[phase]; }
+    public long getDroppedFrames() { return droppedFrames.get(); }
+
+    // escreve em out uma linha como "draw p50 0.40 p95 1.25 p99 2.10 max 4.85 ms"
+    // e retorna o número de caracteres; não aloca objetos
+    public int formatLine(int phase, char[] out)
+    {
+        LatencyHistogram histogram = histograms[phase];
+        int position = append(PHASE_NAMES[phase], out, 0);
+        position = appendValue(" p50 ", histogram.getPercentile(50), out, position);
+        position = appendValue(" p95 ", histogram.getPercentile(95), out, position);
+        position = appendValue(" p99 ", histogram.getPercentile(99), out, position);
+        position = appendValue(" max ", histogram.getMax(), out, position);
+        return append(UNIT, out, position);
+    } // fim do método formatLine
+
+    // escreve em out a linha de quadros perdidos e retorna o número de caracteres
+    public int formatDroppedLine(char[] out)
+    {
+        int position = append(DROPPED, out, 0);
+        return appendLong(droppedFrames.get(), out, position);
+    }
+
+    // acrescenta um resumo de todas as fases, uma por linha (para a caixa de diálogo)
+    public void appendSummary(StringBuilder builder)
+    {
+        char[] line = new char[MAX_LINE_LENGTH];
+
+        for (int phase = 0; phase < PHASE_COUNT; phase++)
+            builder.append(line, 0, formatLine(phase, line)).append('\n');
+
+        builder.append(line, 0, formatDroppedLine(line));
+    }
+
+    private static int appendValue(String label, long nanos, char[] out, int position)
+    {
+        for (int i = 0; i < label.length(); i++)
+            out[position++] = label.charAt(i);
+
+        // milissegundos com duas casas decimais
+        long hundredths = Math.min((nanos + 5000) / 10000, 9999999L);
+        position = appendLong(hundredths / 100, out, position);
+        out[position++] = '.';
+        out[position++] = (char) ('0' + hundredths / 10 % 10);
+        out[position++] = (char) ('0' + hundredths % 10);
+        return position;
+    }
+
+    private static int append(char[] text, char[] out, int position)
+    {
+        System.arraycopy(text, 0, out, position, text.length);
+        return position + text.length;
+    }
+
+    // escreve os dígitos de um valor não negativo
+    private static int appendLong(long value, char[] out, int position)
+    {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+            digits++;
+
+        for (int i = position + digits - 1; i >= position; i--)
+        {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return position + digits;
+    }
+} // fim da classe FrameStats
@@ -0,0 +1,86 @@
+// GameConfig.java
+// Regras ajustáveis do jogo: tempo, penalidade, recompensa, seções do alvo e
+// velocidades proporcionais ao tamanho da tela; os valores padrão são os do
+// jogo original. Não altere uma configuração já usada por uma simulação
+package com.deitel.cannongame;
+
+public class GameConfig
+{
+    private int targetPieces = GameSimulation.TARGET_PIECES;
+    private double missPenalty = GameSimulation.MISS_PENALTY;
+    private double hitReward = GameSimulation.HIT_REWARD;
+    private double initialTime = GameSimulation.INITIAL_TIME;
+
+    // velocidades em frações do tamanho da tela por segundo
+    private double blockerSpeedRatio = 0.5;     // barreira: metade da altura, começa descendo
+    private double targetSpeedRatio = 0.25;     // alvo: um quarto da altura, começa subindo
+    private double cannonballSpeedRatio = 1.5;  // bala: uma largura e meia
+
+    public int getTargetPieces() { return targetPieces; }
+    public double getMissPenalty() { return missPenalty; }
+    public double getHitReward() { return hitReward; }
+    public double getInitialTime() { return initialTime; }
+    public double getBlockerSpeedRatio() { return blockerSpeedRatio; }
+    public double getTargetSpeedRatio() { return targetSpeedRatio; }
+    public double getCannonballSpeedRatio() { return cannonballSpeedRatio; }
+
+    public GameConfig setTargetPieces(int targetPieces)
+    {
+        if (targetPieces <= 0)
+            throw new IllegalArgumentException("targetPieces must be positive");
+
+        this.targetPieces = targetPieces;
+        return this;
+    }
+
+    public GameConfig setMissPenalty(double missPenalty)
+    {
+        this.missPenalty = missPenalty;
+        return this;
+    }
+
+    public GameConfig setHitReward(double hitReward)
+    {
+        this.hitReward = hitReward;
+        return this;
+    }
+
+    public GameConfig setInitialTime(double initialTime)
+    {
+        if (initialTime <= 0)
+            throw new IllegalArgumentException("initialTime must be positive");
+
+        this.initialTime = initialTime;
+        return this;
+    }
+
+    public GameConfig setBlockerSpeedRatio(double blockerSpeedRatio)
+    {
+        this.blockerSpeedRatio = blockerSpeedRatio;
+        return this;
+    }
+
+    public GameConfig setTargetSpeedRatio(double targetSpeedRatio)
+    {
+        this.targetSpeedRatio = targetSpeedRatio;
+        return this;
+    }
+
+    public GameConfig setCannonballSpeedRatio(double cannonballSpeedRatio)
+    {
+        if (cannonballSpeedRatio <= 0)
+            throw new IllegalArgumentException("cannonballSpeedRatio must be positive");
+
+        this.cannonballSpeedRatio = cannonballSpeedRatio;
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "pieces=" + targetPieces + " missPenalty=" + missPenalty +
+                " hitReward=" + hitReward + " initialTime=" + initialTime +
+                " blockerSpeed=" + blockerSpeedRatio + " targetSpeed=" + targetSpeedRatio +
+                " cannonballSpeed=" + cannonballSpeedRatio;
+    }
+} // fim da classe GameConfig
@@ -0,0 +1,218 @@
+// GameLoopExecutor.java
+// Uma thread de longa duração que repete um loop do jogo, com estados
+// explícitos: executando, pausada e encerrada. Pausada, a thread fica
+// estacionada (LockSupport.park) em vez de girar, e retomar o loop não cria
+// uma nova thread; o tempo entre resume e o fim da primeira volta é medido
+package com.deitel.cannongame;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class GameLoopExecutor
+{
+    // estados
+    public static final int NEW = 0;
+    public static final int RUNNING = 1;
+    public static final int PAUSED = 2;
+    public static final int SHUT_DOWN = 3;
+
+    // o loop executado pela thread
+    public interface Loop
+    {
+        void onResume();    // chamado na thread do loop antes da primeira volta após resume
+        void runOnce();     // uma volta do loop; pode estacionar a thread até a próxima
+    }
+
+    private final Loop loop;
+    private final Thread thread;
+    private final AtomicInteger state = new AtomicInteger(NEW);
+
+    // a thread confirma a pausa aqui, para que pause possa esperar a volta
+    // em andamento terminar
+    private final Object pauseLock = new Object();
+    private boolean pauseAcknowledged = true;   // protegido por pauseLock
+
+    // tempo de retomada: de resume até o fim da primeira volta
+    private volatile long resumeRequested;
+    private volatile long lastResumeLatency;
+    private final LatencyHistogram resumeLatency = new LatencyHistogram();
+
+    public GameLoopExecutor(String name, Loop loop)
+    {
+        this.loop = loop;
+        thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runLoop();
+            }
+        }, name);
+    }
+
+    // inicia o loop na primeira chamada e o retoma depois de pause; não faz
+    // nada se o executor foi encerrado
+    public void resume()
+    {
+        synchronized (pauseLock)
+        {
+            int current = state.get();
+            if (current == SHUT_DOWN || current == RUNNING)
+                return;
+
+            resumeRequested = System.nanoTime();
+            pauseAcknowledged = false;
+            state.set(RUNNING);
+            pauseLock.notifyAll(); // uma pausa concorrente deixa de esperar
+
+            if (current == NEW)
+                thread.start();
+        }
+
+        LockSupport.unpark(thread);
+    } // fim do método resume
+
+    // pausa o loop e espera a volta em andamento terminar; depois disso o
+    // loop não executa mais até resume. Chamado da própria thread do loop,
+    // não espera
+    public void pause()
+    {
+        if (!state.compareAndSet(RUNNING, PAUSED))
+            return;
+
+        LockSupport.unpark(thread); // acorda o loop se ele está esperando o próximo quadro
+        awaitAcknowledgement();
+    }
+
+    // encerra o loop e espera a thread terminar; o executor não pode ser retomado
+    public void shutdown()
+    {
+        int previous;
+        synchronized (pauseLock)
+        {
+            previous = state.getAndSet(SHUT_DOWN);
+            if (previous == NEW)
+                pauseAcknowledged = true; // a thread nunca foi iniciada
+        }
+
+        if (previous == NEW || previous == SHUT_DOWN)
+            return;
+
+        LockSupport.unpark(thread);
+        awaitAcknowledgement();
+
+        if (Thread.currentThread() == thread)
+            return;
+
+        boolean interrupted = false;
+        while (thread.isAlive())
+        {
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    } // fim do método shutdown
+
+    // espera a thread do loop confirmar que parou de executar voltas
+    private void awaitAcknowledgement()
+    {
+        if (Thread.currentThread() == thread)
+            return;
+
+        boolean interrupted = false;
+        synchronized (pauseLock)
+        {
+            while (!pauseAcknowledged && state.get() != RUNNING)
+            {
+                try
+                {
+                    pauseLock.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    } // fim do método awaitAcknowledgement
+
+    // confirma a pausa pedida, se ainda não foi confirmada
+    private void acknowledgePause()
+    {
+        synchronized (pauseLock)
+        {
+            if (!pauseAcknowledged)
+            {
+                pauseAcknowledged = true;
+                pauseLock.notifyAll();
+            }
+        }
+    }
+
+    // corpo da thread
+    private void runLoop()
+    {
+        boolean resumed = true;     // a primeira volta vem de resume
+
+        try
+        {
+            while (true)
+            {
+                int current = state.get();
+
+                if (current == SHUT_DOWN)
+                    break;
+
+                if (current == PAUSED)
+                {
+                    acknowledgePause();
+                    resumed = true;
+                    LockSupport.park(this); // acordada por resume ou shutdown
+                    continue;
+                }
+
+                if (resumed)
+                    loop.onResume();
+
+                loop.runOnce();
+
+                if (resumed)
+                {
+                    lastResumeLatency = System.nanoTime() - resumeRequested;
+                    resumeLatency.record(lastResumeLatency);
+                    resumed = false;
+                }
+            } // fim do while
+        }
+        finally
+        {
+            acknowledgePause(); // ninguém fica esperando uma thread que terminou
+        }
+    } // fim do método runLoop
+
+    public int getState() { return state.get(); }
+    public boolean isPaused() { return state.get() == PAUSED; }
+    public Thread getThread() { return thread; }
+    public long getLastResumeLatency() { return lastResumeLatency; }
+    public LatencyHistogram getResumeLatency() { return resumeLatency; }
+
+    // acrescenta uma linha como "render resume p50 1.20 max 3.45 ms"
+    public void appendSummary(StringBuilder builder)
+    {
+        builder.append(thread.getName()).append(String.format(Locale.US,
+                " resume p50 %.2f max %.2f ms", resumeLatency.getPercentile(50) / 1e6,
+                resumeLatency.getMax() / 1e6));
+    }
+} // fim da classe GameLoopExecutor
@@ -0,0 +1,427 @@
+// GameRenderer.java
+// Desenha um GameSnapshot num RenderTarget sem alocar objetos durante o quadro
+package com.deitel.cannongame;
+
+public class GameRenderer
+{
+    private static final float TEXT_X = 30;    // posição do tempo restante
+    private static final float TEXT_Y = 50;
+    private static final int OVERLAY_LINES = FrameStats.PHASE_COUNT + 1; // fases e quadros perdidos
+    private static final int OVERLAY_REFRESH_FRAMES = 30; // o painel muda duas vezes por segundo
+
+    // seções mais curtas que isso (em pixels) não mostram as cores
+    // alternadas: cada sequência de seções intactas vira uma só linha
+    private static final double MIN_STRIPE_LENGTH = 2.0;
+
+    private final TimerText timerText = new TimerText();
+
+    // faixa vertical ocupada pelo texto, relativa à linha de base
+    private float textAscent = -TEXT_Y;
+    private float textDescent = TEXT_Y / 2;
+
+    // caixa das balas e dos obstáculos desenhados no quadro anterior
+    private double drawnLeft;
+    private double drawnTop;
+    private double drawnRight = -1;     // caixa vazia
+    private double drawnBottom = -1;
+
+    // caixa acumulada do quadro atual
+    private double boxLeft;
+    private double boxTop;
+    private double boxRight;
+    private double boxBottom;
+
+    // extremidade do cano desenhada no quadro anterior
+    private int drawnBarrelEndX = Integer.MIN_VALUE;
+    private int drawnBarrelEndY = Integer.MIN_VALUE;
+
+    // painel de desempenho, abaixo do tempo restante; oculto se overlayStats é null
+    private FrameStats overlayStats;
+    private final char[][] overlayLines = new char[OVERLAY_LINES][FrameStats.MAX_LINE_LENGTH];
+    private final int[] overlayLengths = new int[OVERLAY_LINES];
+    private float overlayAscent = -12;
+    private float overlayDescent = 4;
+    private int framesUntilOverlayRefresh;
+    private boolean overlayDrawn;       // o painel estava na tela no último quadro
+    private boolean overlayCompact;     // só o intervalo entre quadros e os quadros perdidos
+    private int overlayLineCount;       // linhas preenchidas em overlayLines
+
+    // camadas pré-desenhadas; sem cache, tudo é desenhado a cada quadro
+    private LayerCache layerCache;
+
+    // segmentos das seções intactas de um alvo (x0, y0, x1, y1 por segmento),
+    // passados de uma vez a drawLines; crescem só quando aparece um alvo maior
+    private float[] evenLines = new float[4 * 4];
+    private float[] oddLines = new float[4 * 4];
+
+    // configura o texto do tempo restante (recurso time_remaining_format)
+    public void setTimerFormat(String format, char decimalSeparator)
+    {
+        timerText.setFormat(format, decimalSeparator);
+    }
+
+    // define a faixa vertical do texto em torno da linha de base (ascent é
+    // negativo, como em Paint.FontMetrics.top)
+    public void setTextMetrics(float ascent, float descent)
+    {
+        textAscent = ascent;
+        textDescent = descent;
+    }
+
+    // mostra o painel com as estatísticas dadas; null oculta o painel
+    public void setOverlay(FrameStats stats)
+    {
+        overlayStats = stats;
+    }
+
+    // guarda o fundo, a base do canhão e as faixas dos alvos em camadas
+    // reaproveitadas entre quadros; null desenha tudo a cada quadro
+    public void setLayerCache(LayerCache layerCache)
+    {
+        this.layerCache = layerCache;
+    }
+
+    // resume o painel ao intervalo entre quadros e aos quadros perdidos
+    public void setOverlayCompact(boolean compact)
+    {
+        if (compact != overlayCompact)
+            framesUntilOverlayRefresh = 0; // refaz o painel no próximo quadro
+
+        overlayCompact = compact;
+    }
+
+    // define a faixa vertical de uma linha do painel em torno da linha de base
+    public void setOverlayMetrics(float ascent, float descent)
+    {
+        overlayAscent = ascent;
+        overlayDescent = descent;
+    }
+
+    // acrescenta a region tudo o que muda entre o quadro anterior e o que será
+    // desenhado com alpha; chame antes de render, uma vez por quadro
+    public void markDirty(GameSnapshot snapshot, double alpha, DirtyRegion region)
+    {
+        // uma linha de espessura lineWidth passa meia espessura para cada lado;
+        // um pixel a mais cobre o arredondamento e a suavização
+        double pad = snapshot.getLineWidth() / 2.0 + 1;
+
+        // balas e obstáculos se movem a cada passo: a região de cada um é a
+        // união da caixa anterior com a atual, e a união dessas regiões é a
+        // união da caixa de todos no quadro anterior com a de todos no atual
+        boxLeft = boxTop = Double.MAX_VALUE;
+        boxRight = boxBottom = -Double.MAX_VALUE;
+
+        double radius = snapshot.getCannonballRadius() + 1;
+        for (int i = 0; i < snapshot.getProjectileCount(); i++)
+        {
+            double x = (int) snapshot.getProjectileX(i, alpha);
+            double y = (int) snapshot.getProjectileY(i, alpha);
+            include(x - radius, y - radius, x + radius, y + radius);
+        }
+
+        for (int i = 0; i < snapshot.getObstacleCount(); i++)
+        {
+            double lineX = (int) snapshot.getX(i);
+            double top = snapshot.getTop(i, alpha);
+            include(lineX - pad, top - 1, lineX + pad, top + snapshot.getLength(i) + 1);
+        }
+
+        // as partículas são pontos com no máximo a espessura de uma linha
+        for (int particleKind = 0; particleKind < ParticleSystem.KIND_COUNT; particleKind++)
+        {
+            float[] points = snapshot.getParticlePoints(particleKind);
+            for (int value = 0; value < snapshot.getParticleValues(particleKind); value += 2)
+                include(points[value] - pad, points[value + 1] - pad,
+                        points[value] + pad, points[value + 1] + pad);
+        }
+
+        if (drawnRight >= drawnLeft)
+            region.union(drawnLeft, drawnTop, drawnRight, drawnBottom);
+        if (boxRight >= boxLeft)
+            region.union(boxLeft, boxTop, boxRight, boxBottom);
+
+        drawnLeft = boxLeft;
+        drawnTop = boxTop;
+        drawnRight = boxRight;
+        drawnBottom = boxBottom;
+
+        // o cano só muda quando o jogador mira
+        int barrelEndX = snapshot.getBarrelEndX();
+        int barrelEndY = snapshot.getBarrelEndY();
+        if (barrelEndX != drawnBarrelEndX || barrelEndY != drawnBarrelEndY)
+        {
+            double barrelPad = snapshot.getLineWidth() * 0.75 + 1; // traço de 1,5 lineWidth
+            int baseY = snapshot.getScreenHeight() / 2;
+
+            if (drawnBarrelEndX != Integer.MIN_VALUE)
+                unionLine(region, 0, baseY, drawnBarrelEndX, drawnBarrelEndY, barrelPad);
+            unionLine(region, 0, baseY, barrelEndX, barrelEndY, barrelPad);
+
+            drawnBarrelEndX = barrelEndX;
+            drawnBarrelEndY = barrelEndY;
+        }
+
+        // o texto só muda quando o valor exibido muda; como a largura do texto
+        // depende da fonte, a faixa inteira é redesenhada
+        if (timerText.update(snapshot.getTimeLeft()))
+            region.union(0, TEXT_Y + textAscent - 1, snapshot.getScreenWidth(),
+                    TEXT_Y + textDescent + 1);
+
+        // o texto do painel é refeito a cada OVERLAY_REFRESH_FRAMES quadros; ao
+        // ocultar o painel, sua área é redesenhada uma última vez
+        boolean overlayVisible = overlayStats != null;
+        if (overlayVisible && --framesUntilOverlayRefresh <= 0)
+        {
+            overlayLineCount = 0;
+            for (int phase = 0; phase < FrameStats.PHASE_COUNT; phase++)
+            {
+                if (!overlayCompact || phase == FrameStats.FRAME)
+                    overlayLengths[overlayLineCount] =
+                            overlayStats.formatLine(phase, overlayLines[overlayLineCount++]);
+            }
+            overlayLengths[overlayLineCount] =
+                    overlayStats.formatDroppedLine(overlayLines[overlayLineCount++]);
+
+            framesUntilOverlayRefresh = OVERLAY_REFRESH_FRAMES;
+            unionOverlay(region, snapshot.getScreenWidth());
+        }
+        else if (!overlayVisible && overlayDrawn)
+        {
+            framesUntilOverlayRefresh = 0; // ao reaparecer, o painel é refeito
+            unionOverlay(region, snapshot.getScreenWidth());
+        }
+
+        overlayDrawn = overlayVisible;
+    } // fim do método markDirty
+
+    private void unionOverlay(DirtyRegion region, int width)
+    {
+        float overlayTop = TEXT_Y + textDescent;
+        region.union(0, overlayTop - 1, width,
+                overlayTop + OVERLAY_LINES * (overlayDescent - overlayAscent) + 1);
+    }
+
+    private void include(double left, double top, double right, double bottom)
+    {
+        boxLeft = Math.min(boxLeft, left);
+        boxTop = Math.min(boxTop, top);
+        boxRight = Math.max(boxRight, right);
+        boxBottom = Math.max(boxBottom, bottom);
+    }
+
+    private static void unionLine(DirtyRegion region, double x0, double y0,
+                                  double x1, double y1, double pad)
+    {
+        region.union(Math.min(x0, x1) - pad, Math.min(y0, y1) - pad,
+                Math.max(x0, x1) + pad, Math.max(y0, y1) + pad);
+    }
+
+    // desenha o jogo; alpha interpola entre os dois últimos passos
+    public void render(GameSnapshot snapshot, double alpha, RenderTarget target,
+                       int width, int height)
+    {
+        int screenHeight = snapshot.getScreenHeight();
+
+        // limpa o plano de fundo; a camada em cache já traz a base do canhão
+        boolean cachedBackground = drawCachedBackground(snapshot, target, width, height);
+        if (!cachedBackground)
+            target.drawRect(0, 0, width, height, RenderTarget.PAINT_BACKGROUND);
+
+        // exibe o tempo restante; o texto só é refeito quando o valor exibido muda
+        timerText.update(snapshot.getTimeLeft());
+        target.drawText(timerText.getChars(), 0, timerText.length(), TEXT_X, TEXT_Y,
+                RenderTarget.PAINT_TEXT);
+
+        // exibe o painel de desempenho, se visível
+        if (overlayStats != null)
+        {
+            float lineHeight = overlayDescent - overlayAscent;
+            float baseline = TEXT_Y + textDescent - overlayAscent;
+
+            for (int line = 0; line < overlayLineCount; line++)
+                target.drawText(overlayLines[line], 0, overlayLengths[line], TEXT_X,
+                        baseline + line * lineHeight, RenderTarget.PAINT_OVERLAY);
+        }
+
+        // desenha as balas de canhão que estão na tela
+        for (int i = 0; i < snapshot.getProjectileCount(); i++)
+        {
+            target.drawCircle((int) snapshot.getProjectileX(i, alpha),
+                    (int) snapshot.getProjectileY(i, alpha),
+                    snapshot.getCannonballRadius(), RenderTarget.PAINT_CANNONBALL);
+        }
+
+        // desenha o cano do canhão
+        target.drawLine(0, screenHeight / 2, snapshot.getBarrelEndX(),
+                snapshot.getBarrelEndY(), RenderTarget.PAINT_CANNON);
+
+        // desenha a base do canhão
+        if (!cachedBackground)
+            drawCannonBase(snapshot, target);
+
+        // desenha as barreiras e os alvos da fase
+        int targetLayer = LayerCache.FIRST_TARGET_LAYER;
+        for (int i = 0; i < snapshot.getObstacleCount(); i++)
+        {
+            int lineX = (int) snapshot.getX(i);
+            double top = snapshot.getTop(i, alpha);
+
+            // desenha a barreira
+            if (snapshot.getKind(i) == ObstacleField.BLOCKER)
+            {
+                target.drawLine(lineX, (int) top, lineX,
+                        (int) (top + snapshot.getLength(i)), RenderTarget.PAINT_BLOCKER);
+                continue;
+            }
+
+            // cada alvo ocupa uma camada enquanto houver camadas livres
+            if (targetLayer < LayerCache.LAYER_COUNT &&
+                    drawCachedTarget(snapshot, i, targetLayer++, lineX, (int) top, target))
+                continue;
+
+            drawTarget(snapshot, i, lineX, (int) top, target);
+        }
+
+        // desenha as fagulhas e os destroços por cima, uma chamada por tipo
+        if (snapshot.getParticleValues(ParticleSystem.SPARK) > 0)
+            target.drawPoints(snapshot.getParticlePoints(ParticleSystem.SPARK), 0,
+                    snapshot.getParticleValues(ParticleSystem.SPARK), RenderTarget.PAINT_SPARK);
+        if (snapshot.getParticleValues(ParticleSystem.DEBRIS) > 0)
+            target.drawPoints(snapshot.getParticlePoints(ParticleSystem.DEBRIS), 0,
+                    snapshot.getParticleValues(ParticleSystem.DEBRIS), RenderTarget.PAINT_DEBRIS);
+    } // fim do método render
+
+    private static void drawCannonBase(GameSnapshot snapshot, RenderTarget target)
+    {
+        target.drawCircle(0, snapshot.getScreenHeight() / 2, snapshot.getCannonBaseRadius(),
+                RenderTarget.PAINT_CANNON);
+    }
+
+    // copia para a tela a camada do fundo com a base do canhão, redesenhando-a
+    // se o tamanho mudou; retorna false se não há cache de camadas
+    private boolean drawCachedBackground(GameSnapshot snapshot, RenderTarget target,
+                                         int width, int height)
+    {
+        if (layerCache == null)
+            return false;
+
+        int layer = LayerCache.BACKGROUND_LAYER;
+        long key = ((long) snapshot.getScreenHeight() << 32) | snapshot.getCannonBaseRadius();
+
+        if (!layerCache.isCurrent(layer, width, height, key))
+        {
+            if (!target.beginLayer(layer, width, height))
+                return false;
+
+            target.drawRect(0, 0, width, height, RenderTarget.PAINT_BACKGROUND);
+            drawCannonBase(snapshot, target);
+            target.endLayer();
+            layerCache.built(layer, width, height, key);
+        }
+
+        target.drawLayer(layer, 0, 0);
+        return true;
+    } // fim do método drawCachedBackground
+
+    // copia para a tela a camada com a faixa do alvo i, redesenhando-a só
+    // quando uma seção é atingida; retorna false se não há cache de camadas
+    private boolean drawCachedTarget(GameSnapshot snapshot, int i, int layer, int lineX,
+                                     int top, RenderTarget target)
+    {
+        if (layerCache == null)
+            return false;
+
+        // a linha tem espessura lineWidth em torno de x; a imagem tem uma
+        // margem para que a cópia caia em coordenadas inteiras
+        int halfWidth = snapshot.getLineWidth() / 2 + 1;
+        int layerWidth = 2 * halfWidth;
+        int layerHeight = (int) Math.ceil(snapshot.getLength(i)) + 1;
+
+        // dentro de um jogo as seções só passam de intactas a atingidas, então
+        // o número de seções atingidas identifica o desenho do alvo
+        int pieces = snapshot.getPieceCount(i);
+        int piecesHit = snapshot.getPiecesHit(i);
+
+        long key = ((long) snapshot.getGamesStarted() << 40) | ((long) pieces << 20) | piecesHit;
+
+        if (!layerCache.isCurrent(layer, layerWidth, layerHeight, key))
+        {
+            if (!target.beginLayer(layer, layerWidth, layerHeight))
+                return false;
+
+            drawTarget(snapshot, i, halfWidth, 0, target);
+            target.endLayer();
+            layerCache.built(layer, layerWidth, layerHeight, key);
+        }
+
+        target.drawLayer(layer, lineX - halfWidth, top);
+        return true;
+    } // fim do método drawCachedTarget
+
+    // desenha as seções ainda não atingidas do alvo i com no máximo duas
+    // chamadas de desenho, uma para cada cor alternada, qualquer que seja o
+    // número de seções
+    private void drawTarget(GameSnapshot snapshot, int i, int lineX, double top,
+                            RenderTarget target)
+    {
+        int firstPiece = snapshot.getFirstPiece(i);
+        int end = firstPiece + snapshot.getPieceCount(i);
+        double pieceLength = snapshot.getPieceLength(i);
+        boolean merge = pieceLength < MIN_STRIPE_LENGTH;
+
+        // no pior caso, metade das seções de cada cor
+        int capacity = 4 * ((snapshot.getPieceCount(i) + 1) / 2);
+        if (evenLines.length < capacity)
+        {
+            evenLines = new float[capacity];
+            oddLines = new float[capacity];
+        }
+
+        int even = 0;
+        int odd = 0;
+
+        // percorre as sequências de seções intactas pelo conjunto de bits
+        int piece = snapshot.nextIntactPiece(firstPiece, end);
+        while (piece < end)
+        {
+            int runEnd = snapshot.nextHitPiece(piece, end);
+
+            if (merge) // a sequência inteira numa linha só
+                even = addLine(evenLines, even, lineX, top + (piece - firstPiece) * pieceLength,
+                        top + (runEnd - firstPiece) * pieceLength);
+            else
+            {
+                // cada seção com a cor alternada configurada no objeto Paint
+                for (; piece < runEnd; piece++)
+                {
+                    int section = piece - firstPiece; // 0 é a parte superior
+                    double y = top + section * pieceLength;
+                    if (section % 2 != 0)
+                        odd = addLine(oddLines, odd, lineX, y, y + pieceLength);
+                    else
+                        even = addLine(evenLines, even, lineX, y, y + pieceLength);
+                }
+            }
+
+            piece = snapshot.nextIntactPiece(runEnd, end);
+        }
+
+        if (even > 0)
+            target.drawLines(evenLines, 0, even, RenderTarget.PAINT_TARGET_EVEN);
+        if (odd > 0)
+            target.drawLines(oddLines, 0, odd, RenderTarget.PAINT_TARGET_ODD);
+    } // fim do método drawTarget
+
+    // acrescenta a linha vertical de y0 a y1 em lineX a lines a partir de
+    // count; retorna o novo número de valores
+    private static int addLine(float[] lines, int count, int lineX, double y0, double y1)
+    {
+        lines[count] = lineX;
+        lines[count + 1] = (int) y0;
+        lines[count + 2] = lineX;
+        lines[count + 3] = (int) y1;
+        return count + 4;
+    }
+
+    public TimerText getTimerText() { return timerText; }
+} // fim da classe GameRenderer
@@ -0,0 +1,711 @@
+// GameSimulation.java
+// Motor de simulação do Cannon Game, independente do Android
+package com.deitel.cannongame;
+
+import java.io.IOException;
+
+public class GameSimulation
+{
+    // constantes para interação do jogo (valores padrão de GameConfig)
+    public static final int TARGET_PIECES = 7;    // seções no alvo
+    public static final int MISS_PENALTY = 2;    // segundos subtraídos em caso de erro
+    public static final int HIT_REWARD = 3;    // segundos adicionados em caso de acerto
+    public static final double INITIAL_TIME = 10.0; // segundos no início de cada jogo
+
+    // limite de colisões de uma bala resolvidas dentro de um único passo
+    private static final int MAX_EVENTS_PER_STEP = 16;
+
+    // tipos de colisão encontrados pela varredura da bala
+    private static final int NO_EVENT = 0;
+    private static final int BLOCKER_EVENT = 1;
+    private static final int SIDE_WALL_EVENT = 2;
+    private static final int FLOOR_CEILING_EVENT = 3;
+    private static final int TARGET_EVENT = 4;
+
+    // recebe os eventos do jogo (sons, caixa de diálogo Game Over etc.)
+    public interface Listener
+    {
+        void onCannonFired();               // uma bala foi disparada
+        void onBlockerHit();                // a bala atingiu uma barreira
+        void onWallHit();                   // a bala saiu pelas paredes esquerda ou direita
+        void onTargetHit(int section);      // a bala atingiu uma seção de um alvo
+        void onGameOver(boolean won);       // o jogo terminou
+    }
+
+    private Listener listener;          // receptor dos eventos do jogo
+    private final GameConfig config;    // regras ajustáveis do jogo
+
+    // variáveis para o loop do jogo e controle de estatísticas
+    private boolean gameOver;           // o jogo terminou?
+    private double timeLeft;            // tempo restante em segundos
+    private int shotsFired;             // tiros disparados pelo usuário
+    private double totalElapsedTime;    // segundos decorridos
+    private int gamesStarted;           // jogos iniciados desde a criação
+
+    // barreiras e alvos da fase e a grade usada para encontrá-los rapidamente
+    private final ObstacleField obstacles = new ObstacleField();
+    private final ObstacleGrid grid = new ObstacleGrid();
+    private int[] candidates = new int[0]; // obstáculos devolvidos pela grade
+
+    private int lineWidth;              // largura dos alvos e das barreiras
+
+    // fase lida de um arquivo, se houver: cada seção do arquivo é uma etapa,
+    // e acertar todos os alvos de uma etapa passa para a seguinte
+    private LevelFile level;
+    private int stage;                  // etapa em jogo
+    private int lastStage;              // última etapa que pode ser carregada
+    private boolean stageCleared;       // a etapa terminou durante o passo
+
+    // variáveis para o canhão e para as balas
+    private final ProjectilePool projectiles; // balas na tela
+    private boolean rapidFire;          // permite várias balas na tela ao mesmo tempo?
+    private int cannonballRadius;       // raio da bala
+    private int cannonballSpeed;        // velocidade da bala
+    private int cannonBaseRadius;       // raio da base do canhão
+    private int cannonLength;           // comprimento do cano do canhão
+    private int barrelEndX;             // o ponto extremo do cano do canhão
+    private int barrelEndY;
+    private int screenWidth;
+    private int screenHeight;
+
+    // efeitos visuais das colisões, se houver; partículas lançadas por colisão
+    private ParticleSystem particles;
+    private static final int BLOCKER_SPARKS = 12;
+    private static final int WALL_SPARKS = 8;
+    private static final int TARGET_DEBRIS = 24;
+
+    // resultado da última varredura de uma bala
+    private double eventTime;           // instante da colisão, relativo ao início da varredura
+    private int eventSection;           // seção do alvo atingida
+    private double gameOverTime;        // instante do acerto final dentro do passo
+
+    // próxima colisão de cada bala (por posição no conjunto) dentro do passo;
+    // só é recalculada para as balas que uma colisão resolvida pode afetar
+    private final int[] nextEvent;
+    private final double[] nextEventTime;  // segundos desde o início do passo
+    private final int[] nextEventSection;
+    private final int[] eventCounts;       // colisões da bala neste passo
+    private double sweptEnd;               // fim do trecho varrido pelas balas
+
+    // cria uma simulação com as regras padrão e o tamanho padrão do conjunto de balas
+    public GameSimulation()
+    {
+        this(ProjectilePool.DEFAULT_CAPACITY);
+    }
+
+    // cria uma simulação com até maxProjectiles balas simultâneas no disparo rápido
+    public GameSimulation(int maxProjectiles)
+    {
+        this(new GameConfig(), maxProjectiles);
+    }
+
+    // cria uma simulação com as regras dadas
+    public GameSimulation(GameConfig config, int maxProjectiles)
+    {
+        this.config = config;
+        projectiles = new ProjectilePool(maxProjectiles);
+        nextEvent = new int[maxProjectiles];
+        nextEventTime = new double[maxProjectiles];
+        nextEventSection = new int[maxProjectiles];
+        eventCounts = new int[maxProjectiles];
+    }
+
+    // configura o receptor de eventos
+    public void setListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    // lança fagulhas e destroços em particles nas colisões (null desliga os efeitos)
+    public void setParticles(ParticleSystem particles)
+    {
+        this.particles = particles;
+        if (particles != null && screenWidth > 0)
+            particles.configure(screenWidth, screenHeight);
+    }
+
+    // joga a fase level em vez da fase padrão (null volta à fase padrão);
+    // a primeira etapa é lida agora, então um arquivo inválido é recusado
+    // aqui. Chame newGame depois
+    public void setLevel(LevelFile level) throws IOException
+    {
+        if (level != null)
+        {
+            level.section(0);
+            level.retain(0, 1);
+        }
+
+        this.level = level;
+        stage = 0;
+        lastStage = level == null ? 0 : level.getSectionCount() - 1;
+        prefetchNextStage();
+
+        if (screenWidth > 0)
+            buildStage();
+    } // fim do método setLevel
+
+    // calcula as dimensões dos elementos do jogo a partir do tamanho da tela
+    // e monta a fase: a padrão, com uma barreira e um alvo, ou a etapa
+    // atual da fase lida de um arquivo
+    public void setScreenSize(int w, int h)
+    {
+        screenWidth = w;    // armazena a largura da tela
+        screenHeight = h;    // armazena a altura da tela
+        cannonBaseRadius = h / 18;    // o raio da base do canhão tem 1/18 da altura da tela
+        cannonLength = w / 8;    // o comprimento do canhão tem 1/8 da largura da tela
+
+        cannonballRadius = w / 36;    // o raio da bala tem 1/36 da largura da tela
+        cannonballSpeed = (int) (w * config.getCannonballSpeedRatio()); // velocidade da bala
+
+        lineWidth = w / 24;    // o alvo e a barreira têm 1/24 da largura da tela
+
+        buildStage();
+
+        if (particles != null)
+            particles.configure(w, h);
+
+        // o ponto extremo do cano do canhão aponta horizontalmente no início
+        barrelEndX = cannonLength;
+        barrelEndY = h / 2;
+    } // fim do método setScreenSize
+
+    // monta os obstáculos da etapa atual para o tamanho de tela atual
+    private void buildStage()
+    {
+        int w = screenWidth;
+        int h = screenHeight;
+        obstacles.setScreenHeight(h);
+        obstacles.clear();
+
+        if (level != null)
+        {
+            try
+            {
+                level.section(stage).addTo(obstacles, w, h);
+            }
+            catch (IOException e)
+            {
+                // a etapa já foi lida sem erros antes de entrar em jogo
+                throw new IllegalStateException("level stage " + stage + " became unreadable", e);
+            }
+            return;
+        }
+
+        // a barreira tem 5/8 da largura da tela a partir da esquerda, vai de 1/8
+        // a 3/8 da altura da tela e começa descendo
+        obstacles.addBlocker(w * 5 / 8, h / 8, h * 3 / 8 - h / 8,
+                (int) (h * config.getBlockerSpeedRatio()));
+
+        // o alvo tem 7/8 da largura da tela a partir da esquerda, vai de 1/8
+        // a 7/8 da altura da tela e começa subindo
+        obstacles.addTarget(w * 7 / 8, h / 8, h * 7 / 8 - h / 8,
+                -(int) (h * config.getTargetSpeedRatio()), config.getTargetPieces());
+    } // fim do método buildStage
+
+    // passa para a etapa newStage da fase, com os obstáculos na posição
+    // inicial e sem balas na tela; o placar e o cronômetro continuam
+    public void setStage(int newStage) throws IOException
+    {
+        if (level == null ? newStage != 0 : newStage < 0 || newStage > lastStage)
+            throw new IllegalArgumentException("stage " + newStage + " is not in the level");
+
+        if (level != null)
+        {
+            level.section(newStage); // lida antes de mudar qualquer coisa
+            level.retain(newStage, newStage + 1);
+        }
+
+        stage = newStage;
+        buildStage();
+        obstacles.reset();
+        projectiles.clear();
+        configureGrid();
+        prefetchNextStage();
+    } // fim do método setStage
+
+    // decodifica a próxima etapa enquanto a atual está em jogo, para que a
+    // troca não leia o arquivo; se ela não puder ser lida, a fase termina na atual
+    private void prefetchNextStage()
+    {
+        if (level == null || stage >= lastStage)
+            return;
+
+        try
+        {
+            level.section(stage + 1);
+        }
+        catch (IOException e)
+        {
+            lastStage = stage;
+        }
+    } // fim do método prefetchNextStage
+
+    // reinicia todos os elementos do jogo; chame depois de alterar os obstáculos
+    public void newGame()
+    {
+        if (stage != 0)
+        {
+            stage = 0; // a fase recomeça da primeira etapa
+            level.retain(0, 1);
+            buildStage();
+            prefetchNextStage();
+        }
+
+        obstacles.reset(); // restaura as posições e as partes dos alvos
+        projectiles.clear(); // nenhuma bala de canhão na tela
+        if (particles != null)
+            particles.clear();
+        timeLeft = config.getInitialTime(); // inicia a contagem regressiva (10 segundos por padrão)
+        shotsFired = 0; // configura o número inicial de tiros disparados
+        totalElapsedTime = 0.0; // configura o tempo decorrido como zero
+        gameOver = false;
+        stageCleared = false;
+        ++gamesStarted;
+        configureGrid();
+    } // fim do método newGame
+
+    // dimensiona a grade e o array de candidatos para os obstáculos atuais
+    private void configureGrid()
+    {
+        // células do tamanho aproximado da área média por obstáculo, mas
+        // nunca menores que a bala
+        int count = obstacles.size();
+        double cellSize = Math.max(2.0 * cannonballRadius,
+                Math.sqrt((double) screenWidth * screenHeight / Math.max(1, count)));
+        grid.configure(screenWidth, screenHeight, cellSize, count);
+
+        if (candidates.length < count)
+            candidates = new int[count];
+    } // fim do método configureGrid
+
+    // restaura o placar e o canhão salvos por GameStateCodec; chamado depois
+    // de newGame e de recolocar os obstáculos e as balas, sem avisar o receptor
+    public void restoreState(boolean gameOver, double timeLeft, int shotsFired,
+                             double totalElapsedTime, int barrelEndX, int barrelEndY)
+    {
+        this.gameOver = gameOver;
+        this.timeLeft = timeLeft;
+        this.shotsFired = shotsFired;
+        this.totalElapsedTime = totalElapsedTime;
+        this.barrelEndX = barrelEndX;
+        this.barrelEndY = barrelEndY;
+    } // fim do método restoreState
+
+    // avança a simulação em dtNanos nanossegundos; as colisões de todas as
+    // balas são resolvidas em ordem de tempo, no instante exato em que
+    // acontecem dentro do passo, então o resultado não depende de como o
+    // tempo é fatiado
+    public void step(long dtNanos)
+    {
+        double interval = dtNanos / 1e9; // converte em segundos
+
+        // as partículas continuam caindo mesmo com o jogo terminado
+        if (particles != null)
+            particles.update(interval);
+
+        if (gameOver)
+            return;
+
+        obstacles.savePreviousPositions();
+        projectiles.savePreviousPositions();
+
+        if (projectiles.size() > 0)
+        {
+            updateGrid(interval);
+            updateProjectiles(interval);
+        }
+
+        // o passo termina antes se o jogo foi vencido, se a etapa terminou ou
+        // se o cronômetro zerou
+        double elapsed;
+        if (gameOver || stageCleared)
+            elapsed = gameOverTime;
+        else
+            elapsed = Math.max(0.0, Math.min(interval, timeLeft));
+
+        timeLeft -= elapsed; // subtrai do tempo restante
+        totalElapsedTime += elapsed;
+        obstacles.advance(elapsed); // move as barreiras e os alvos até o fim do trecho simulado
+
+        // se o cronômetro foi zerado
+        if (!gameOver && timeLeft <= 0.0)
+        {
+            timeLeft = 0.0;
+            endGame(false); // derrota
+        }
+
+        if (stageCleared)
+        {
+            stageCleared = false;
+            try
+            {
+                setStage(stage + 1);
+            }
+            catch (IOException e)
+            {
+                // prefetchNextStage já leu a etapa; só falha se o arquivo mudou
+                throw new IllegalStateException("level stage " + (stage + 1) +
+                        " became unreadable", e);
+            }
+        }
+    } // fim do método step
+
+    // registra na grade a faixa vertical que cada obstáculo pode ocupar
+    // durante o passo; só os obstáculos que mudam de célula são religados
+    private void updateGrid(double interval)
+    {
+        for (int i = 0; i < obstacles.size(); i++)
+        {
+            double reach = obstacles.getSpeed(i) * interval;
+            double top = obstacles.getTop(i);
+            double lineX = obstacles.getX(i);
+            grid.update(i, lineX, top - reach, lineX,
+                    top + obstacles.getLength(i) + reach);
+        }
+    }
+
+    // move todas as balas juntas de colisão em colisão até o fim do passo,
+    // resolvendo sempre a colisão mais cedo entre todas elas: duas balas
+    // que chegam à mesma seção no mesmo passo dão o acerto à primeira, e
+    // uma penalidade anterior à vitória é aplicada antes dela
+    private void updateProjectiles(double interval)
+    {
+        double time = 0.0; // tempo já simulado no passo
+        sweptEnd = Math.min(interval, timeLeft);
+        for (int i = 0; i < projectiles.size(); i++)
+        {
+            int slot = projectiles.liveSlot(i);
+            eventCounts[slot] = 0;
+            sweepAhead(slot, time);
+        }
+
+        while (!gameOver && !stageCleared && projectiles.size() > 0)
+        {
+            // as balas param no fim do passo ou quando o cronômetro zera
+            double end = Math.min(interval, timeLeft);
+            if (end <= time)
+                break;
+
+            // uma recompensa adiou o fim: as balas são varridas até o novo fim
+            if (end > sweptEnd)
+            {
+                sweptEnd = end;
+                for (int i = 0; i < projectiles.size(); i++)
+                    sweepAhead(projectiles.liveSlot(i), time);
+            }
+
+            // a colisão mais cedo; no empate vence a primeira encontrada, do fim
+            // da lista de balas vivas para o começo, como antes
+            int first = -1;
+            double firstTime = Double.POSITIVE_INFINITY;
+            for (int i = projectiles.size() - 1; i >= 0; i--)
+            {
+                int slot = projectiles.liveSlot(i);
+                if (nextEventTime[slot] <= end && nextEventTime[slot] < firstTime)
+                {
+                    first = slot;
+                    firstTime = nextEventTime[slot];
+                }
+            }
+
+            double until = first < 0 ? end : firstTime;
+            for (int i = 0; i < projectiles.size(); i++)
+                projectiles.move(projectiles.liveSlot(i), until - time); // atualiza as posições
+            time = until;
+
+            if (first < 0)
+                break;
+
+            int event = nextEvent[first];
+            eventSection = nextEventSection[first];
+            ++eventCounts[first];
+            resolveProjectileEvent(first, event, time);
+
+            // a bala que colidiu muda de direção ou sai do jogo; uma seção
+            // atingida deixa passar as balas que iam acertá-la
+            if (projectiles.isAlive(first))
+                sweepAhead(first, time);
+            if (event == TARGET_EVENT)
+            {
+                for (int i = 0; i < projectiles.size(); i++)
+                {
+                    int slot = projectiles.liveSlot(i);
+                    if (nextEvent[slot] == TARGET_EVENT && nextEventSection[slot] == eventSection)
+                        sweepAhead(slot, time);
+                }
+            }
+        } // fim do while
+    } // fim do método updateProjectiles
+
+    // guarda a próxima colisão da bala entre time e sweptEnd
+    private void sweepAhead(int slot, double time)
+    {
+        int event = NO_EVENT;
+        if (eventCounts[slot] < MAX_EVENTS_PER_STEP)
+            event = sweepProjectile(slot, time, sweptEnd - time);
+
+        nextEvent[slot] = event;
+        nextEventTime[slot] = event == NO_EVENT ? Double.POSITIVE_INFINITY : time + eventTime;
+        nextEventSection[slot] = eventSection;
+    } // fim do método sweepAhead
+
+    // procura a primeira colisão da bala entre start e start + horizon
+    // (segundos desde o início do passo); o instante fica em eventTime
+    private int sweepProjectile(int slot, double start, double horizon)
+    {
+        double x = projectiles.getX(slot);
+        double y = projectiles.getY(slot);
+        double vx = projectiles.getVelocityX(slot);
+        double vy = projectiles.getVelocityY(slot);
+        int event = NO_EVENT;
+        eventTime = horizon;
+
+        // verifica se houve colisões com as paredes esquerda e direita
+        double t = wallTime(x, vx, screenWidth);
+        if (t < eventTime)
+        {
+            eventTime = t;
+            event = SIDE_WALL_EVENT;
+        }
+
+        // verifica se houve colisões com as paredes superior e inferior
+        t = wallTime(y, vy, screenHeight);
+        if (t < eventTime)
+        {
+            eventTime = t;
+            event = FLOOR_CEILING_EVENT;
+        }
+
+        // só os obstáculos nas células que a bala atravessa são testados
+        double endX = x + vx * eventTime;
+        double endY = y + vy * eventTime;
+        int found = grid.query(Math.min(x, endX) - cannonballRadius,
+                Math.min(y, endY) - cannonballRadius,
+                Math.max(x, endX) + cannonballRadius,
+                Math.max(y, endY) + cannonballRadius, candidates);
+
+        for (int k = 0; k < found; k++)
+        {
+            int i = candidates[k];
+            t = lineEntryTime(x, vx, obstacles.getX(i));
+
+            // uma barreira vence um empate com as paredes, como antes
+            boolean blocker = obstacles.getKind(i) == ObstacleField.BLOCKER;
+            if (blocker ? t > eventTime : t >= eventTime)
+                continue;
+
+            double top = obstacles.topAt(i, start + t);
+            double impactY = y + t * vy;
+
+            if (!overlapsLine(impactY, top, obstacles.getLength(i)))
+                continue;
+
+            if (blocker) // verifica se houve colisão com a barreira
+            {
+                eventTime = t;
+                event = BLOCKER_EVENT;
+                continue;
+            }
+
+            // determina a seção do alvo no ponto de impacto (0 é a parte superior)
+            int section = obstacles.sectionAt(i, impactY, top);
+
+            // uma seção já atingida deixa a bala passar
+            if (section >= 0)
+            {
+                int piece = obstacles.getFirstPiece(i) + section;
+
+                if (!obstacles.isPieceHit(piece))
+                {
+                    eventTime = t;
+                    eventSection = piece;
+                    event = TARGET_EVENT;
+                }
+            }
+        } // fim do for
+
+        return event;
+    } // fim do método sweepProjectile
+
+    // aplica a colisão encontrada por sweepProjectile no instante time do passo
+    private void resolveProjectileEvent(int slot, int event, double time)
+    {
+        switch (event)
+        {
+            case BLOCKER_EVENT:
+                projectiles.reverseX(slot); // direção inversa da bala de canhão
+                emitParticles(ParticleSystem.SPARK, slot, BLOCKER_SPARKS);
+                timeLeft -= config.getMissPenalty(); // penaliza o usuário
+
+                if (listener != null)
+                    listener.onBlockerHit();
+                break;
+
+            case SIDE_WALL_EVENT:
+                emitParticles(ParticleSystem.SPARK, slot, WALL_SPARKS);
+                projectiles.release(slot); // remove a bala de canhão da tela
+
+                if (listener != null)
+                    listener.onWallHit();
+                break;
+
+            case FLOOR_CEILING_EVENT:
+                projectiles.release(slot); // remove a bala de canhão da tela
+                break;
+
+            case TARGET_EVENT:
+                obstacles.hitPiece(eventSection);  // a seção foi atingida
+                emitParticles(ParticleSystem.DEBRIS, slot, TARGET_DEBRIS);
+                projectiles.release(slot); // remove a bala de canhão
+                timeLeft += config.getHitReward(); // acrescenta recompensa ao tempo restante
+
+                if (listener != null)
+                    listener.onTargetHit(eventSection);
+
+                // se todas as partes foram atingidas; numa fase com várias
+                // etapas, só a última termina o jogo
+                if (obstacles.allPiecesHit())
+                {
+                    gameOverTime = time;
+                    if (stage < lastStage)
+                        stageCleared = true; // a próxima etapa começa no fim do passo
+                    else
+                        endGame(true); // vitória
+                }
+                break;
+        }
+    } // fim do método resolveProjectileEvent
+
+    // lança partículas na posição da bala no instante da colisão
+    private void emitParticles(int kind, int slot, int count)
+    {
+        if (particles != null)
+            particles.emit(kind, projectiles.getX(slot), projectiles.getY(slot),
+                    projectiles.getVelocityX(slot), projectiles.getVelocityY(slot), count);
+    }
+
+    // instante em que a borda de uma bala em x, com velocidade vx, alcança a
+    // linha vertical em lineX, ou infinito se a bala não se aproxima dela
+    private double lineEntryTime(double x, double vx, double lineX)
+    {
+        if (vx > 0 && x < lineX - cannonballRadius)
+            return (lineX - cannonballRadius - x) / vx;
+
+        if (vx < 0 && x > lineX + cannonballRadius)
+            return (lineX + cannonballRadius - x) / vx;
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // uma bala com centro em y cobre verticalmente a linha [top, top + length]?
+    private boolean overlapsLine(double y, double top, double length)
+    {
+        return y + cannonballRadius > top && y - cannonballRadius < top + length;
+    }
+
+    // instante em que a borda da bala sai do intervalo [0, limit] num eixo
+    private double wallTime(double position, double velocity, int limit)
+    {
+        if (velocity > 0)
+            return Math.max(0.0, (limit - cannonballRadius - position) / velocity);
+
+        if (velocity < 0)
+            return Math.max(0.0, (cannonballRadius - position) / velocity);
+
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // encerra o jogo e avisa o receptor
+    private void endGame(boolean won)
+    {
+        gameOver = true;
+
+        if (listener != null)
+            listener.onGameOver(won);
+    }
+
+    // calcula o ângulo do cano para um toque em (x, y) e alinha o canhão
+    public double aim(float x, float y)
+    {
+        // calcula a distância do toque a partir do centro da tela
+        // no eixo y
+        double centerMinusY = (screenHeight / 2 - (int) y);
+
+        double angle = 0; // inicializa o ângulo com 0
+
+        // calcula o ângulo do cano em relação à horizontal
+        if (centerMinusY != 0)  // evita divisão por 0
+            angle = Math.atan((int) x / centerMinusY);
+
+        // se o toque foi dado na metade inferior da tela
+        if ((int) y > screenHeight / 2)
+            angle += Math.PI; // ajusta o ângulo
+
+        // calcula o ponto extremo do cano do canhão
+        barrelEndX = (int) (cannonLength * Math.sin(angle));
+        barrelEndY = (int) (-cannonLength * Math.cos(angle) + screenHeight / 2);
+
+        return angle; // retorna o ângulo calculado
+    } // fim do método aim
+
+    // liga ou desliga o disparo rápido, com várias balas na tela ao mesmo tempo
+    public void setRapidFire(boolean rapidFire)
+    {
+        this.rapidFire = rapidFire;
+    }
+
+    // um novo disparo seria aceito agora?
+    public boolean canFire()
+    {
+        if (gameOver)
+            return false;
+
+        // no modo normal só uma bala pode estar na tela
+        return rapidFire ? !projectiles.isFull() : projectiles.size() == 0;
+    }
+
+    // dispara uma bala de canhão no ângulo dado; retorna false se o disparo não é aceito
+    public boolean fire(double angle)
+    {
+        if (!canFire())
+            return false; // nada faz
+
+        // coloca a bala dentro do canhão, centralizada verticalmente, com os
+        // componentes x e y da velocidade total
+        projectiles.spawn(cannonballRadius, screenHeight / 2,
+                cannonballSpeed * Math.sin(angle), -cannonballSpeed * Math.cos(angle));
+        ++shotsFired; // incrementa shotsFired
+
+        if (listener != null)
+            listener.onCannonFired();
+
+        return true;
+    } // fim do método fire
+
+    // métodos de acesso usados para desenhar e para os testes
+    public boolean isGameOver() { return gameOver; }
+    public double getTimeLeft() { return timeLeft; }
+    public int getShotsFired() { return shotsFired; }
+    public double getTotalElapsedTime() { return totalElapsedTime; }
+    public int getGamesStarted() { return gamesStarted; }
+    public int getScreenWidth() { return screenWidth; }
+    public int getScreenHeight() { return screenHeight; }
+    public int getLineWidth() { return lineWidth; }
+    public GameConfig getConfig() { return config; }
+    public LevelFile getLevel() { return level; }
+    public int getStage() { return stage; }
+
+    public ObstacleField getObstacles() { return obstacles; }
+    public ObstacleGrid getGrid() { return grid; }
+    public int getTargetPiecesHit() { return obstacles.getPiecesHit(); }
+
+    public boolean isRapidFire() { return rapidFire; }
+    public boolean isCannonballOnScreen() { return projectiles.size() > 0; }
+    public ProjectilePool getProjectiles() { return projectiles; }
+    public ParticleSystem getParticles() { return particles; }
+    public int getCannonballRadius() { return cannonballRadius; }
+    public int getCannonballSpeed() { return cannonballSpeed; }
+    public int getCannonBaseRadius() { return cannonBaseRadius; }
+    public int getBarrelEndX() { return barrelEndX; }
+    public int getBarrelEndY() { return barrelEndY; }
+} // fim da classe GameSimulation
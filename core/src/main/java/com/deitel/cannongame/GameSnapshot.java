@@ -0,0 +1,210 @@
+// GameSnapshot.java
+// Cópia do estado do jogo necessária para desenhar um quadro; a thread da
+// simulação preenche uma cópia e a publica para a thread de desenho, que
+// nunca lê o GameSimulation diretamente
+package com.deitel.cannongame;
+
+import java.util.Arrays;
+
+public class GameSnapshot
+{
+    private long publishTime;           // instante da publicação (System.nanoTime)
+    private long stepNanos;             // duração do último passo de simulação
+    private long sequence;              // número de ordem da publicação
+
+    private int gamesStarted;           // muda a cada novo jogo
+    private int stage;                  // etapa da fase; muda quando os obstáculos são trocados
+    private boolean gameOver;
+    private double timeLeft;
+
+    // geometria da tela e do canhão
+    private int screenWidth;
+    private int screenHeight;
+    private int lineWidth;
+    private int cannonballRadius;
+    private int cannonBaseRadius;
+    private int barrelEndX;
+    private int barrelEndY;
+
+    // balas na tela: posição no passo anterior e no atual
+    private int projectileCount;
+    private double[] projectileX = new double[0];
+    private double[] projectileY = new double[0];
+    private double[] previousX = new double[0];
+    private double[] previousY = new double[0];
+
+    // barreiras e alvos
+    private int obstacleCount;
+    private int[] kind = new int[0];
+    private double[] x = new double[0];
+    private double[] length = new double[0];
+    private double[] top = new double[0];
+    private double[] previousTop = new double[0];
+    private int[] firstPiece = new int[0];
+    private int[] pieceCount = new int[0];
+    private double[] pieceLength = new double[0];
+    private long[] hitBits = new long[0]; // seções atingidas, como em ObstacleField
+
+    // posições das partículas de cada tipo, pares (x, y) prontos para drawPoints
+    private final float[][] particlePoints = new float[ParticleSystem.KIND_COUNT][0];
+    private final int[] particleValues = new int[ParticleSystem.KIND_COUNT];
+
+    // copia o estado atual de simulation; os arrays só são realocados quando
+    // a fase ou o conjunto de balas cresce
+    public void copyFrom(GameSimulation simulation, long stepNanos, long publishTime)
+    {
+        this.publishTime = publishTime;
+        this.stepNanos = stepNanos;
+        ++sequence;
+
+        gamesStarted = simulation.getGamesStarted();
+        stage = simulation.getStage();
+        gameOver = simulation.isGameOver();
+        timeLeft = simulation.getTimeLeft();
+        screenWidth = simulation.getScreenWidth();
+        screenHeight = simulation.getScreenHeight();
+        lineWidth = simulation.getLineWidth();
+        cannonballRadius = simulation.getCannonballRadius();
+        cannonBaseRadius = simulation.getCannonBaseRadius();
+        barrelEndX = simulation.getBarrelEndX();
+        barrelEndY = simulation.getBarrelEndY();
+
+        ProjectilePool projectiles = simulation.getProjectiles();
+        projectileCount = projectiles.size();
+        if (projectileX.length < projectiles.capacity())
+        {
+            projectileX = new double[projectiles.capacity()];
+            projectileY = new double[projectiles.capacity()];
+            previousX = new double[projectiles.capacity()];
+            previousY = new double[projectiles.capacity()];
+        }
+
+        for (int i = 0; i < projectileCount; i++)
+        {
+            int slot = projectiles.liveSlot(i);
+            projectileX[i] = projectiles.getX(slot);
+            projectileY[i] = projectiles.getY(slot);
+            previousX[i] = projectiles.getX(slot, 0.0);
+            previousY[i] = projectiles.getY(slot, 0.0);
+        }
+
+        ObstacleField obstacles = simulation.getObstacles();
+        obstacleCount = obstacles.size();
+        ensureObstacleCapacity(obstacleCount, obstacles.getTotalPieces());
+
+        for (int i = 0; i < obstacleCount; i++)
+        {
+            kind[i] = obstacles.getKind(i);
+            x[i] = obstacles.getX(i);
+            length[i] = obstacles.getLength(i);
+            top[i] = obstacles.getTop(i);
+            previousTop[i] = obstacles.getTop(i, 0.0);
+            firstPiece[i] = obstacles.getFirstPiece(i);
+            pieceCount[i] = obstacles.getPieceCount(i);
+            pieceLength[i] = obstacles.getPieceLength(i);
+        }
+
+        // 64 seções por palavra
+        for (int word = 0; word < ObstacleField.wordCount(obstacles.getTotalPieces()); word++)
+            hitBits[word] = obstacles.getHitWord(word);
+
+        ParticleSystem particles = simulation.getParticles();
+        for (int particleKind = 0; particleKind < ParticleSystem.KIND_COUNT; particleKind++)
+        {
+            particleValues[particleKind] = 0;
+            if (particles == null)
+                continue;
+
+            if (particlePoints[particleKind].length < 2 * particles.capacity())
+                particlePoints[particleKind] = new float[2 * particles.capacity()];
+            particleValues[particleKind] = particles.copyPoints(particleKind, particlePoints[particleKind]);
+        }
+    } // fim do método copyFrom
+
+    private void ensureObstacleCapacity(int obstacles, int pieces)
+    {
+        if (kind.length < obstacles)
+        {
+            kind = Arrays.copyOf(kind, obstacles);
+            x = Arrays.copyOf(x, obstacles);
+            length = Arrays.copyOf(length, obstacles);
+            top = Arrays.copyOf(top, obstacles);
+            previousTop = Arrays.copyOf(previousTop, obstacles);
+            firstPiece = Arrays.copyOf(firstPiece, obstacles);
+            pieceCount = Arrays.copyOf(pieceCount, obstacles);
+            pieceLength = Arrays.copyOf(pieceLength, obstacles);
+        }
+
+        if (hitBits.length < ObstacleField.wordCount(pieces))
+            hitBits = new long[ObstacleField.wordCount(pieces)];
+    }
+
+    // fração do passo decorrida desde a publicação, de 0 a 1; desenhar com
+    // esse alpha mostra o jogo com um passo de atraso, sem extrapolar
+    public double getAlpha(long now)
+    {
+        if (stepNanos <= 0)
+            return 1.0;
+
+        double alpha = (double) (now - publishTime) / stepNanos;
+        return alpha < 0.0 ? 0.0 : (alpha > 1.0 ? 1.0 : alpha);
+    }
+
+    public long getPublishTime() { return publishTime; }
+    public long getSequence() { return sequence; }
+    public int getGamesStarted() { return gamesStarted; }
+    public int getStage() { return stage; }
+    public boolean isGameOver() { return gameOver; }
+    public double getTimeLeft() { return timeLeft; }
+    public int getScreenWidth() { return screenWidth; }
+    public int getScreenHeight() { return screenHeight; }
+    public int getLineWidth() { return lineWidth; }
+    public int getCannonballRadius() { return cannonballRadius; }
+    public int getCannonBaseRadius() { return cannonBaseRadius; }
+    public int getBarrelEndX() { return barrelEndX; }
+    public int getBarrelEndY() { return barrelEndY; }
+
+    public int getProjectileCount() { return projectileCount; }
+
+    // posição interpolada da i-ésima bala; alpha vai de 0 a 1
+    public double getProjectileX(int i, double alpha)
+    {
+        return previousX[i] + (projectileX[i] - previousX[i]) * alpha;
+    }
+
+    public double getProjectileY(int i, double alpha)
+    {
+        return previousY[i] + (projectileY[i] - previousY[i]) * alpha;
+    }
+
+    public int getObstacleCount() { return obstacleCount; }
+    public int getKind(int i) { return kind[i]; }
+    public double getX(int i) { return x[i]; }
+    public double getLength(int i) { return length[i]; }
+
+    // topo interpolado do obstáculo i; alpha vai de 0 a 1
+    public double getTop(int i, double alpha)
+    {
+        return previousTop[i] + (top[i] - previousTop[i]) * alpha;
+    }
+
+    public int getFirstPiece(int i) { return firstPiece[i]; }
+    public int getPieceCount(int i) { return pieceCount[i]; }
+    public double getPieceLength(int i) { return pieceLength[i]; }
+    public boolean isPieceHit(int piece) { return (hitBits[piece >>> 6] & (1L << piece)) != 0; }
+
+    // seções atingidas do alvo i
+    public int getPiecesHit(int i)
+    {
+        return ObstacleField.countHits(hitBits, firstPiece[i], firstPiece[i] + pieceCount[i]);
+    }
+
+    // primeira seção intacta (ou atingida) em [piece, end), ou end se não há
+    public int nextIntactPiece(int piece, int end) { return ObstacleField.nextClear(hitBits, piece, end); }
+    public int nextHitPiece(int piece, int end) { return ObstacleField.nextSet(hitBits, piece, end); }
+
+    // posições das partículas do tipo dado (ParticleSystem.SPARK ou DEBRIS):
+    // getParticleValues(kind) valores, dois por partícula
+    public float[] getParticlePoints(int particleKind) { return particlePoints[particleKind]; }
+    public int getParticleValues(int particleKind) { return particleValues[particleKind]; }
+} // fim da classe GameSnapshot
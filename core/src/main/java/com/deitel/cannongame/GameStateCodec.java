@@ -0,0 +1,337 @@
+// GameStateCodec.java
+// Grava e restaura o estado completo de um jogo em andamento (placar,
+// cronômetro, canhão, etapa da fase, fases dos obstáculos, seções atingidas
+// em bits e balas com posição e velocidade) num formato binário compacto e versionado;
+// escrever e restaurar não alocam objetos depois que o buffer tem o tamanho da fase
+package com.deitel.cannongame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class GameStateCodec
+{
+    // cabeçalho do formato
+    public static final int MAGIC = 0x434E4753;     // "CNGS"
+    public static final int VERSION = 2;
+
+    // depois do cabeçalho vêm três seções, nesta ordem, cada uma precedida do
+    // seu tamanho em bytes; versões futuras só acrescentam campos no fim de
+    // uma seção, e o leitor pula os bytes que não conhece
+    //
+    // jogo:        int largura, int altura, byte flags (bit 0: fim de jogo),
+    //              double tempo restante, int tiros, double tempo decorrido,
+    //              int x e int y do fim do cano; desde a versão 2, int etapa
+    // obstáculos:  int n, n x (double fase, double percurso), int seções,
+    //              seções atingidas em bits (o bit 0 do primeiro byte é a seção 0)
+    // balas:       int n, n x (double x, double y, double vx, double vy)
+    private static final int HEADER_SIZE = 6;
+    private static final int GAME_SIZE = 4 + 4 + 1 + 8 + 4 + 8 + 4 + 4;
+    private static final int STAGE_SIZE = 4;           // versão 2
+    private static final int FLAG_GAME_OVER = 1;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;                 // bytes válidos em buffer
+    private int position;               // posição de leitura
+
+    // grava o estado de simulation no buffer, substituindo o anterior;
+    // retorna o tamanho da gravação
+    public int write(GameSimulation simulation)
+    {
+        ObstacleField obstacles = simulation.getObstacles();
+        ProjectilePool projectiles = simulation.getProjectiles();
+        int pieces = obstacles.getTotalPieces();
+        ensureCapacity(HEADER_SIZE + 12 + GAME_SIZE + STAGE_SIZE + 8 + 16 * obstacles.size() +
+                (pieces + 7) / 8 + 4 + 32 * projectiles.size());
+
+        length = 0;
+        writeInt(MAGIC);
+        writeShort(VERSION);
+
+        int section = beginSection();
+        writeInt(simulation.getScreenWidth());
+        writeInt(simulation.getScreenHeight());
+        writeByte(simulation.isGameOver() ? FLAG_GAME_OVER : 0);
+        writeDouble(simulation.getTimeLeft());
+        writeInt(simulation.getShotsFired());
+        writeDouble(simulation.getTotalElapsedTime());
+        writeInt(simulation.getBarrelEndX());
+        writeInt(simulation.getBarrelEndY());
+        writeInt(simulation.getStage());
+        endSection(section);
+
+        section = beginSection();
+        writeInt(obstacles.size());
+        for (int i = 0; i < obstacles.size(); i++)
+        {
+            writeDouble(obstacles.getPhase(i));
+            writeDouble(obstacles.getSpan(i));
+        }
+
+        writeInt(pieces);
+        for (int b = 0; b < (pieces + 7) / 8; b++) // 8 bytes por palavra, o menos significativo primeiro
+            writeByte((int) (obstacles.getHitWord(b >>> 3) >>> ((b & 7) << 3)));
+        endSection(section);
+
+        section = beginSection();
+        writeInt(projectiles.size());
+        for (int i = 0; i < projectiles.size(); i++)
+        {
+            int slot = projectiles.liveSlot(i);
+            writeDouble(projectiles.getX(slot));
+            writeDouble(projectiles.getY(slot));
+            writeDouble(projectiles.getVelocityX(slot));
+            writeDouble(projectiles.getVelocityY(slot));
+        }
+        endSection(section);
+
+        return length;
+    } // fim do método write
+
+    // restaura em simulation o estado guardado no buffer
+    public void restore(GameSimulation simulation) throws IOException
+    {
+        restore(buffer, length, simulation);
+    }
+
+    // restaura em simulation o estado gravado nos primeiros length bytes de
+    // data; simulation já deve ter a fase montada (setScreenSize) e pode ter
+    // outro tamanho de tela, caso em que posições e velocidades são
+    // proporcionais. A etapa gravada é carregada da fase da simulação. Nada é
+    // alterado se a gravação é inválida ou não corresponde à fase
+    public void restore(byte[] data, int length, GameSimulation simulation) throws IOException
+    {
+        ObstacleField obstacles = simulation.getObstacles();
+        ProjectilePool projectiles = simulation.getProjectiles();
+
+        // primeira passagem: confere o cabeçalho e o tamanho das seções
+        if (length < HEADER_SIZE || readInt(data, 0) != MAGIC)
+            throw new IOException("not a game state snapshot");
+
+        int version = readShort(data, 4);
+        if (version < 1 || version > VERSION)
+            throw new IOException("unsupported game state version " + version);
+
+        int game = HEADER_SIZE;
+        int obstacleSection = checkSection(data, length, game, GAME_SIZE);
+
+        // gravações da versão 1 são sempre da primeira etapa
+        int stage = 0;
+        if (obstacleSection - game - 4 >= GAME_SIZE + STAGE_SIZE)
+            stage = readInt(data, game + 4 + GAME_SIZE);
+
+        // os totais da etapa gravada vêm do índice da fase, sem carregá-la
+        LevelFile level = simulation.getLevel();
+        int levelObstacles = obstacles.size();
+        int levelPieces = obstacles.getTotalPieces();
+        if (stage != simulation.getStage())
+        {
+            if (level == null || stage < 0 || stage >= level.getSectionCount())
+                throw new IOException("snapshot stage " + stage + " is not in the level");
+
+            level.section(stage); // uma etapa ilegível recusa a gravação aqui
+            levelObstacles = level.getObstacleCount(stage);
+            levelPieces = level.getPieceCount(stage);
+        }
+
+        int count = readSectionInt(data, length, obstacleSection + 4);
+        if (count != levelObstacles)
+            throw new IOException("snapshot has " + count + " obstacles, level has " +
+                    levelObstacles);
+
+        int piecesAt = obstacleSection + 8 + 16 * count;
+        int pieces = readSectionInt(data, length, piecesAt);
+        if (pieces != levelPieces)
+            throw new IOException("snapshot has " + pieces + " target pieces, level has " +
+                    levelPieces);
+
+        int projectileSection = checkSection(data, length, obstacleSection,
+                8 + 16 * count + (pieces + 7) / 8);
+
+        int balls = readSectionInt(data, length, projectileSection + 4);
+        if (balls < 0 || balls > projectiles.capacity())
+            throw new IOException("snapshot has " + balls + " projectiles, pool holds " +
+                    projectiles.capacity());
+        checkSection(data, length, projectileSection, 4 + 32 * balls);
+
+        // segunda passagem: aplica o estado; as medidas gravadas são
+        // convertidas para a tela atual
+        position = game + 4;
+        int savedWidth = readInt(data);
+        int savedHeight = readInt(data);
+        if (savedWidth <= 0 || savedHeight <= 0)
+            throw new IOException("corrupt game state screen size");
+
+        double scaleX = (double) simulation.getScreenWidth() / savedWidth;
+        double scaleY = (double) simulation.getScreenHeight() / savedHeight;
+        boolean gameOver = (data[position++] & FLAG_GAME_OVER) != 0;
+        double timeLeft = readDouble(data);
+        int shotsFired = readInt(data);
+        double totalElapsedTime = readDouble(data);
+        int barrelEndX = (int) (readInt(data) * scaleX);
+        int barrelEndY = (int) ((readInt(data) - savedHeight / 2) * scaleX) +
+                simulation.getScreenHeight() / 2; // o cano é proporcional à largura
+
+        simulation.newGame();
+        if (stage != 0)
+            simulation.setStage(stage);
+
+        position = obstacleSection + 8;
+        for (int i = 0; i < count; i++)
+        {
+            double phase = readDouble(data);
+            double span = readDouble(data);
+            double newSpan = obstacles.getSpan(i);
+            if (span != newSpan) // outra tela: a mesma fração do ciclo
+                phase = span > 0 ? phase * newSpan / span : 0.0;
+            obstacles.setPhase(i, phase);
+        }
+
+        position = piecesAt + 4;
+        for (int piece = 0; piece < pieces; piece++)
+            if ((data[position + piece / 8] & (1 << (piece % 8))) != 0)
+                obstacles.hitPiece(piece);
+
+        // a bala tem a velocidade proporcional à largura da tela
+        position = projectileSection + 8;
+        for (int i = 0; i < balls; i++)
+        {
+            double x = readDouble(data) * scaleX;
+            double y = readDouble(data) * scaleY;
+            double vx = readDouble(data) * scaleX;
+            double vy = readDouble(data) * scaleX;
+            projectiles.spawn(x, y, vx, vy);
+        }
+
+        simulation.restoreState(gameOver, timeLeft, shotsFired, totalElapsedTime,
+                barrelEndX, barrelEndY);
+    } // fim do método restore
+
+    // descarta a gravação do buffer
+    public void clear()
+    {
+        length = 0;
+    }
+
+    public int size() { return length; }
+    public byte[] getBuffer() { return buffer; }
+
+    // escreve a gravação em out
+    public void writeTo(OutputStream out) throws IOException
+    {
+        out.write(buffer, 0, length);
+    }
+
+    // substitui a gravação pelo conteúdo de in; retorna o tamanho lido
+    public int readFrom(InputStream in) throws IOException
+    {
+        length = 0;
+        int read;
+        do
+        {
+            ensureCapacity(length + INITIAL_CAPACITY);
+            read = in.read(buffer, length, buffer.length - length);
+            if (read > 0)
+                length += read;
+        } while (read >= 0);
+
+        return length;
+    } // fim do método readFrom
+
+    // confere que a seção que começa em start (no campo de tamanho) tem
+    // pelo menos minimum bytes e cabe na gravação; retorna o início da seção seguinte
+    private static int checkSection(byte[] data, int length, int start, int minimum)
+            throws IOException
+    {
+        int size = readSectionInt(data, length, start);
+        if (size < minimum || size > length - start - 4)
+            throw new IOException("truncated game state section at byte " + start);
+
+        return start + 4 + size;
+    }
+
+    // inteiro em offset, conferindo que ele está dentro da gravação
+    private static int readSectionInt(byte[] data, int length, int offset) throws IOException
+    {
+        if (offset < 0 || offset + 4 > length)
+            throw new IOException("truncated game state at byte " + offset);
+
+        return readInt(data, offset);
+    }
+
+    // reserva o tamanho da seção; retorna a posição reservada
+    private int beginSection()
+    {
+        writeInt(0);
+        return length - 4;
+    }
+
+    private void endSection(int section)
+    {
+        int size = length - section - 4;
+        buffer[section] = (byte) (size >>> 24);
+        buffer[section + 1] = (byte) (size >>> 16);
+        buffer[section + 2] = (byte) (size >>> 8);
+        buffer[section + 3] = (byte) size;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (buffer.length >= capacity)
+            return;
+
+        byte[] larger = new byte[Math.max(capacity, buffer.length * 2)];
+        System.arraycopy(buffer, 0, larger, 0, length);
+        buffer = larger;
+    }
+
+    private void writeByte(int value)
+    {
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeShort(int value)
+    {
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    private void writeInt(int value)
+    {
+        writeShort(value >>> 16);
+        writeShort(value);
+    }
+
+    private void writeDouble(double value)
+    {
+        long bits = Double.doubleToRawLongBits(value);
+        writeInt((int) (bits >>> 32));
+        writeInt((int) bits);
+    }
+
+    private static int readShort(byte[] data, int offset)
+    {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] data, int offset)
+    {
+        return readShort(data, offset) << 16 | readShort(data, offset + 2);
+    }
+
+    private int readInt(byte[] data)
+    {
+        int value = readInt(data, position);
+        position += 4;
+        return value;
+    }
+
+    private double readDouble(byte[] data)
+    {
+        long high = readInt(data) & 0xFFFFFFFFL;
+        long low = readInt(data) & 0xFFFFFFFFL;
+        return Double.longBitsToDouble(high << 32 | low);
+    }
+} // fim da classe GameStateCodec
@@ -0,0 +1,187 @@
+// InputRecorder.java
+// Grava em formato binário compacto as entradas de um jogo (mira, disparo,
+// disparo rápido) com o passo da simulação em que foram aplicadas, além do
+// tamanho da tela, da semente, das regras e da fase jogada; InputReplay
+// reproduz a gravação
+package com.deitel.cannongame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class InputRecorder
+{
+    // cabeçalho do formato
+    public static final int MAGIC = 0x434E5250;     // "CNRP"
+    public static final int VERSION = 2;    // a versão 1 não registrava a fase
+
+    // identificador gravado no lugar do CRC32 do arquivo de fase quando o
+    // jogo usa a fase padrão
+    public static final long NO_LEVEL = -1;
+
+    // tipos de evento; cada evento começa com a distância em passos até o
+    // evento anterior (inteiro de tamanho variável) seguida do tipo
+    static final int EVENT_AIM = 1;         // float x, float y
+    static final int EVENT_FIRE = 2;        // dispara no ângulo da última mira
+    static final int EVENT_RAPID_FIRE = 3;  // byte 0 ou 1
+    static final int EVENT_END = 4;         // último passo da gravação
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private long tick;                  // passos simulados desde o início da gravação
+    private long lastEventTick;
+    private boolean rapidFire;
+    private boolean recording;
+    private boolean finished;
+
+    // começa uma nova gravação com o estado atual da simulação, incluindo a
+    // fase carregada por setLevel; chame logo depois de newGame, antes do
+    // primeiro passo
+    public void begin(GameSimulation simulation, long stepNanos, long seed)
+    {
+        GameConfig config = simulation.getConfig();
+        LevelFile level = simulation.getLevel();
+        length = 0;
+        tick = 0;
+        lastEventTick = 0;
+        rapidFire = simulation.isRapidFire();
+        recording = true;
+        finished = false;
+
+        writeInt(MAGIC);
+        writeShort(VERSION);
+        writeInt(simulation.getScreenWidth());
+        writeInt(simulation.getScreenHeight());
+        writeLong(stepNanos);
+        writeLong(seed);
+        writeInt(config.getTargetPieces());
+        writeDouble(config.getMissPenalty());
+        writeDouble(config.getHitReward());
+        writeDouble(config.getInitialTime());
+        writeDouble(config.getBlockerSpeedRatio());
+        writeDouble(config.getTargetSpeedRatio());
+        writeDouble(config.getCannonballSpeedRatio());
+        writeByte(rapidFire ? 1 : 0);
+        writeLong(level == null ? NO_LEVEL : level.getChecksum());
+    } // fim do método begin
+
+    // registra a mira aplicada por GameSimulation.aim no passo atual
+    public void recordAim(float x, float y)
+    {
+        if (!beginEvent(EVENT_AIM))
+            return;
+
+        writeInt(Float.floatToRawIntBits(x));
+        writeInt(Float.floatToRawIntBits(y));
+    }
+
+    // registra um disparo aceito por GameSimulation.fire no passo atual
+    public void recordFire()
+    {
+        beginEvent(EVENT_FIRE);
+    }
+
+    // registra o estado do disparo rápido; só as mudanças são gravadas
+    public void recordRapidFire(boolean enabled)
+    {
+        if (enabled == rapidFire || !beginEvent(EVENT_RAPID_FIRE))
+            return;
+
+        rapidFire = enabled;
+        writeByte(enabled ? 1 : 0);
+    }
+
+    // conta um passo da simulação
+    public void step()
+    {
+        if (recording)
+            ++tick;
+    }
+
+    // encerra a gravação no passo atual; depois disso nada mais é gravado
+    public void finish()
+    {
+        if (beginEvent(EVENT_END))
+        {
+            recording = false;
+            finished = true;
+        }
+    }
+
+    public boolean isRecording() { return recording; }
+    public boolean isFinished() { return finished; }
+    public long getTick() { return tick; }
+    public int size() { return length; }
+
+    // escreve a gravação, terminada ou não, em out
+    public void writeTo(OutputStream out) throws IOException
+    {
+        out.write(buffer, 0, length);
+    }
+
+    // cópia da gravação
+    public byte[] toByteArray()
+    {
+        byte[] copy = new byte[length];
+        System.arraycopy(buffer, 0, copy, 0, length);
+        return copy;
+    }
+
+    // escreve a distância desde o evento anterior e o tipo; retorna false
+    // se não há gravação em andamento
+    private boolean beginEvent(int type)
+    {
+        if (!recording)
+            return false;
+
+        long delta = tick - lastEventTick;
+        lastEventTick = tick;
+
+        // 7 bits por byte; o bit mais alto indica que há mais bytes
+        while (delta >= 0x80)
+        {
+            writeByte((int) (delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+
+        writeByte((int) delta);
+        writeByte(type);
+        return true;
+    } // fim do método beginEvent
+
+    private void writeByte(int value)
+    {
+        if (length == buffer.length)
+        {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, length);
+            buffer = larger;
+        }
+
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeShort(int value)
+    {
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    private void writeInt(int value)
+    {
+        writeShort(value >>> 16);
+        writeShort(value);
+    }
+
+    private void writeLong(long value)
+    {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeDouble(double value)
+    {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+} // fim da classe InputRecorder
@@ -0,0 +1,263 @@
+// InputReplay.java
+// Lê uma gravação de InputRecorder e a reproduz sem interface, tão rápido
+// quanto o processador permite; com passos fixos a simulação é
+// determinística, então a reprodução chega ao mesmo estado do jogo gravado
+package com.deitel.cannongame;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class InputReplay
+{
+    private int screenWidth;
+    private int screenHeight;
+    private long stepNanos;
+    private long seed;
+    private boolean rapidFire;          // disparo rápido no início da gravação
+    private long levelChecksum;         // CRC32 da fase ou InputRecorder.NO_LEVEL
+    private final GameConfig config = new GameConfig();
+
+    // eventos em ordem de passo
+    private int eventCount;
+    private long[] ticks = new long[16];
+    private byte[] types = new byte[16];
+    private float[] xs = new float[16];
+    private float[] ys = new float[16];
+    private long endTick;               // último passo gravado
+    private boolean complete;           // a gravação foi encerrada com finish?
+
+    private InputReplay()
+    {
+    }
+
+    // lê uma gravação; uma gravação interrompida entre dois eventos (por
+    // exemplo, salva no meio do jogo) termina no último evento lido
+    public static InputReplay read(InputStream stream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(stream);
+        InputReplay replay = new InputReplay();
+
+        if (in.readInt() != InputRecorder.MAGIC)
+            throw new IOException("not an input recording");
+
+        int version = in.readUnsignedShort();
+        if (version < 1 || version > InputRecorder.VERSION)
+            throw new IOException("unsupported input recording version " + version);
+
+        replay.screenWidth = in.readInt();
+        replay.screenHeight = in.readInt();
+        replay.stepNanos = in.readLong();
+        replay.seed = in.readLong();
+        replay.config.setTargetPieces(in.readInt())
+                .setMissPenalty(in.readDouble())
+                .setHitReward(in.readDouble())
+                .setInitialTime(in.readDouble())
+                .setBlockerSpeedRatio(in.readDouble())
+                .setTargetSpeedRatio(in.readDouble())
+                .setCannonballSpeedRatio(in.readDouble());
+        replay.rapidFire = in.readByte() != 0;
+
+        // a versão 1 só gravava jogos na fase padrão
+        replay.levelChecksum = version >= 2 ? in.readLong() : InputRecorder.NO_LEVEL;
+
+        if (replay.screenWidth <= 0 || replay.screenHeight <= 0 || replay.stepNanos <= 0)
+            throw new IOException("corrupt input recording header");
+
+        replay.readEvents(in);
+        return replay;
+    } // fim do método read
+
+    public static InputReplay read(byte[] data) throws IOException
+    {
+        return read(new ByteArrayInputStream(data));
+    }
+
+    private void readEvents(DataInputStream in) throws IOException
+    {
+        long tick = 0;
+
+        while (true)
+        {
+            int first = in.read();
+            if (first < 0)
+                break; // gravação interrompida
+
+            tick += readDelta(in, first);
+            int type = in.readUnsignedByte();
+
+            if (type == InputRecorder.EVENT_END)
+            {
+                complete = true;
+                break;
+            }
+
+            float x = 0;
+            float y = 0;
+
+            switch (type)
+            {
+                case InputRecorder.EVENT_AIM:
+                    x = Float.intBitsToFloat(in.readInt());
+                    y = Float.intBitsToFloat(in.readInt());
+                    break;
+                case InputRecorder.EVENT_FIRE:
+                    break;
+                case InputRecorder.EVENT_RAPID_FIRE:
+                    x = in.readUnsignedByte();
+                    break;
+                default:
+                    throw new IOException("unknown event type " + type + " at tick " + tick);
+            }
+
+            addEvent(tick, type, x, y);
+        } // fim do while
+
+        endTick = tick;
+    } // fim do método readEvents
+
+    // inteiro de tamanho variável, 7 bits por byte, começando por first
+    private static long readDelta(DataInputStream in, int first) throws IOException
+    {
+        long value = first & 0x7F;
+        int shift = 7;
+
+        for (int b = first; (b & 0x80) != 0; shift += 7)
+        {
+            if (shift > 56)
+                throw new IOException("corrupt tick delta");
+
+            b = in.read();
+            if (b < 0)
+                throw new EOFException();
+
+            value |= (long) (b & 0x7F) << shift;
+        }
+
+        return value;
+    }
+
+    private void addEvent(long tick, int type, float x, float y)
+    {
+        if (eventCount == ticks.length)
+        {
+            int capacity = eventCount * 2;
+            ticks = Arrays.copyOf(ticks, capacity);
+            types = Arrays.copyOf(types, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+
+        ticks[eventCount] = tick;
+        types[eventCount] = (byte) type;
+        xs[eventCount] = x;
+        ys[eventCount] = y;
+        ++eventCount;
+    }
+
+    // cria uma simulação na fase padrão com as regras e a tela da gravação,
+    // pronta para play; lança IllegalArgumentException se a gravação foi
+    // feita num arquivo de fase
+    public GameSimulation createSimulation()
+    {
+        checkLevel(null);
+        GameSimulation simulation = new GameSimulation(config, ProjectilePool.DEFAULT_CAPACITY);
+        start(simulation);
+        return simulation;
+    }
+
+    // cria uma simulação na fase level (null é a fase padrão); lança
+    // IllegalArgumentException se não é a fase em que a gravação foi feita,
+    // pois outros obstáculos fariam a reprodução divergir
+    public GameSimulation createSimulation(LevelFile level) throws IOException
+    {
+        checkLevel(level);
+        GameSimulation simulation = new GameSimulation(config, ProjectilePool.DEFAULT_CAPACITY);
+        simulation.setLevel(level);
+        start(simulation);
+        return simulation;
+    }
+
+    private void checkLevel(LevelFile level)
+    {
+        long checksum = level == null ? InputRecorder.NO_LEVEL : level.getChecksum();
+        if (checksum == levelChecksum)
+            return;
+
+        if (levelChecksum == InputRecorder.NO_LEVEL)
+            throw new IllegalArgumentException("the recording was made on the default level");
+        throw new IllegalArgumentException("the recording was made on the level with checksum "
+                + Long.toHexString(levelChecksum));
+    } // fim do método checkLevel
+
+    private void start(GameSimulation simulation)
+    {
+        simulation.setScreenSize(screenWidth, screenHeight);
+        simulation.setRapidFire(rapidFire);
+        simulation.newGame();
+    }
+
+    // reproduz a gravação inteira numa simulação criada por createSimulation()
+    public GameSimulation play()
+    {
+        GameSimulation simulation = createSimulation();
+        play(simulation);
+        return simulation;
+    }
+
+    // reproduz a gravação inteira na fase level
+    public GameSimulation play(LevelFile level) throws IOException
+    {
+        GameSimulation simulation = createSimulation(level);
+        play(simulation);
+        return simulation;
+    }
+
+    // aplica os eventos de cada passo e avança a simulação até o último passo
+    // gravado; lança IllegalStateException se um disparo gravado não é aceito,
+    // o que indica que a simulação mudou desde a gravação
+    public void play(GameSimulation simulation)
+    {
+        double angle = Math.PI / 2; // o canhão começa na horizontal
+        int next = 0;
+
+        for (long tick = 0; ; tick++)
+        {
+            for (; next < eventCount && ticks[next] == tick; next++)
+            {
+                switch (types[next])
+                {
+                    case InputRecorder.EVENT_AIM:
+                        angle = simulation.aim(xs[next], ys[next]);
+                        break;
+                    case InputRecorder.EVENT_FIRE:
+                        if (!simulation.fire(angle))
+                            throw new IllegalStateException("replay diverged at tick " + tick);
+                        break;
+                    case InputRecorder.EVENT_RAPID_FIRE:
+                        simulation.setRapidFire(xs[next] != 0);
+                        break;
+                }
+            }
+
+            if (tick >= endTick)
+                break;
+
+            simulation.step(stepNanos);
+        } // fim do for
+    } // fim do método play
+
+    public int getScreenWidth() { return screenWidth; }
+    public int getScreenHeight() { return screenHeight; }
+    public long getStepNanos() { return stepNanos; }
+    public long getSeed() { return seed; }
+    public GameConfig getConfig() { return config; }
+    public long getLevelChecksum() { return levelChecksum; }
+    public boolean hasLevel() { return levelChecksum != InputRecorder.NO_LEVEL; }
+    public int getEventCount() { return eventCount; }
+    public long getEndTick() { return endTick; }
+    public boolean isComplete() { return complete; }
+} // fim da classe InputReplay
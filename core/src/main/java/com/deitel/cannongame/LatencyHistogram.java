@@ -0,0 +1,67 @@
+// LatencyHistogram.java
+// Histograma de durações com faixas fixas de 50 microssegundos até 100
+// milissegundos; registrar uma duração não aloca objetos. Uma única thread
+// registra, e qualquer thread pode ler os percentis
+package com.deitel.cannongame;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LatencyHistogram
+{
+    public static final long BUCKET_NANOS = 50000L;   // largura de cada faixa
+    public static final int BUCKETS = 2000;           // faixas até 100 ms
+
+    // a última posição conta as durações acima da última faixa
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    // registra uma duração em nanossegundos
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+
+        int bucket = (int) Math.min(nanos / BUCKET_NANOS, BUCKETS);
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+
+        if (nanos > max.get())
+            max.set(nanos); // só a thread que registra altera o máximo
+    }
+
+    // duração abaixo da qual está a fração percentile (0 a 100) das medidas,
+    // arredondada para o limite superior da faixa; 0 se nada foi registrado
+    public long getPercentile(double percentile)
+    {
+        long total = count.get();
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            seen += counts.get(bucket);
+            if (seen >= rank)
+                return Math.min((bucket + 1) * BUCKET_NANOS, max.get());
+        }
+
+        return max.get(); // a medida está na faixa acima de 100 ms
+    } // fim do método getPercentile
+
+    // esvazia o histograma; chame só da thread que registra
+    public void reset()
+    {
+        for (int bucket = 0; bucket <= BUCKETS; bucket++)
+            counts.set(bucket, 0);
+
+        count.set(0);
+        max.set(0);
+    }
+
+    public long getCount() { return count.get(); }
+    public long getMax() { return max.get(); }
+} // fim da classe LatencyHistogram
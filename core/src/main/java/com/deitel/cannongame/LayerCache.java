@@ -0,0 +1,87 @@
+// LayerCache.java
+// Controle das camadas pré-desenhadas em imagens fora da tela: o fundo com a
+// base do canhão e a faixa de cada alvo; uma camada só é redesenhada quando
+// seu tamanho ou sua chave (seções atingidas) muda ou quando o cache é invalidado
+package com.deitel.cannongame;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LayerCache
+{
+    // números das camadas passados a RenderTarget
+    public static final int BACKGROUND_LAYER = 0;   // fundo e base do canhão
+    public static final int FIRST_TARGET_LAYER = 1; // um alvo por camada
+    public static final int MAX_TARGET_LAYERS = 8;  // os demais alvos são desenhados diretamente
+    public static final int LAYER_COUNT = FIRST_TARGET_LAYER + MAX_TARGET_LAYERS;
+
+    private static final int BYTES_PER_PIXEL = 4;   // imagens ARGB_8888
+
+    // estado de cada camada desenhada; largura 0 indica camada vazia
+    private final int[] width = new int[LAYER_COUNT];
+    private final int[] height = new int[LAYER_COUNT];
+    private final long[] key = new long[LAYER_COUNT];
+
+    // pedidos de invalidação (redimensionamento, novo jogo); podem vir de
+    // outra thread, então cada consulta compara o contador com o último visto
+    private final AtomicInteger invalidations = new AtomicInteger();
+    private int seenInvalidations;
+
+    // estatísticas
+    private long hits;                  // camadas reaproveitadas
+    private long rebuilds;              // camadas redesenhadas
+
+    // descarta todas as camadas; o próximo quadro as redesenha
+    public void invalidate()
+    {
+        invalidations.incrementAndGet();
+    }
+
+    // a camada layer, desenhada com o tamanho e a chave dados, pode ser
+    // reaproveitada? conta um acerto se puder
+    public boolean isCurrent(int layer, int layerWidth, int layerHeight, long layerKey)
+    {
+        int requested = invalidations.get();
+        if (requested != seenInvalidations)
+        {
+            seenInvalidations = requested;
+            for (int i = 0; i < LAYER_COUNT; i++)
+                width[i] = height[i] = 0;
+        }
+
+        if (width[layer] == 0 || width[layer] != layerWidth ||
+                height[layer] != layerHeight || key[layer] != layerKey)
+            return false;
+
+        ++hits;
+        return true;
+    } // fim do método isCurrent
+
+    // registra que a camada layer acabou de ser desenhada
+    public void built(int layer, int layerWidth, int layerHeight, long layerKey)
+    {
+        width[layer] = layerWidth;
+        height[layer] = layerHeight;
+        key[layer] = layerKey;
+        ++rebuilds;
+    }
+
+    // memória ocupada pelas imagens das camadas desenhadas, em bytes
+    public long getFootprintBytes()
+    {
+        long bytes = 0;
+        for (int i = 0; i < LAYER_COUNT; i++)
+            bytes += (long) width[i] * height[i] * BYTES_PER_PIXEL;
+        return bytes;
+    }
+
+    public long getHits() { return hits; }
+    public long getRebuilds() { return rebuilds; }
+
+    // acrescenta a builder a memória ocupada e os acertos do cache
+    public void appendSummary(StringBuilder builder)
+    {
+        builder.append(String.format(Locale.US, "layers %.1f KB hits %d rebuilds %d",
+                getFootprintBytes() / 1024.0, hits, rebuilds));
+    }
+} // fim da classe LayerCache
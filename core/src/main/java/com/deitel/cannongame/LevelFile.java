@@ -0,0 +1,253 @@
+// LevelFile.java
+// Leitor do formato binário de fases gravado por LevelWriter. O arquivo é
+// mapeado na memória e só o cabeçalho é lido na abertura; cada seção é
+// decodificada quando é pedida e fica num pequeno conjunto de seções
+// residentes, do qual as menos usadas saem primeiro, então o tempo de
+// abertura e a memória ocupada não crescem com o tamanho da fase
+//
+// formato (big-endian):
+//   cabeçalho:  int MAGIC, short VERSION, short número de seções
+//   índice:     uma entrada por seção: int posição, int tamanho,
+//               short obstáculos, short seções de alvo, short pontos de
+//               caminho, short reservado
+//   seções:     por obstáculo: byte tipo, short seções de alvo (byte na
+//               versão 1), short x, short topo, short comprimento (frações
+//               de FRACTION_UNITS), short velocidade (alturas por segundo x
+//               SPEED_UNITS), byte pontos de caminho, os pontos (short,
+//               frações da altura)
+package com.deitel.cannongame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+public class LevelFile
+{
+    public static final int MAGIC = 0x434E4C56;     // "CNLV"
+    public static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 8;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int OBSTACLE_SIZE = 12;
+    static final int OBSTACLE_SIZE_V1 = 11; // seções de alvo num byte
+
+    // limites impostos pelos campos do formato
+    public static final int MAX_SECTIONS = 0xFFFF;
+    public static final int MAX_OBSTACLES = 0xFFFF;
+    public static final int MAX_PIECES = 0xFFFF;
+    public static final int MAX_PATH_POINTS = 0xFF;
+    public static final int FRACTION_UNITS = 0xFFFF;
+    public static final int SPEED_UNITS = 1024;
+    public static final double MAX_SPEED = (double) Short.MAX_VALUE / SPEED_UNITS;
+
+    public static final int DEFAULT_RESIDENT_SECTIONS = 3;
+
+    private final ByteBuffer data;
+    private final int version;
+    private final int sectionCount;
+
+    // seções residentes; residentSection[slot] é -1 se o espaço está livre
+    private final LevelSection[] resident;
+    private final int[] residentSection;
+    private final long[] lastUse;
+    private long useClock;
+
+    private long checksum = -1;         // CRC32 do arquivo; -1 até ser calculado
+
+    // estatísticas
+    private int decodes;                // seções decodificadas
+    private int evictions;              // seções descartadas para dar lugar a outras
+
+    // abre uma fase gravada em file, mapeando-a na memória
+    public static LevelFile open(File file) throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = input.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("level file too large: " + file);
+
+            // o mapeamento continua válido depois que o arquivo é fechado
+            return new LevelFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                    DEFAULT_RESIDENT_SECTIONS);
+        }
+        finally
+        {
+            input.close();
+        }
+    } // fim do método open
+
+    // lê uma fase já carregada em data, a partir da posição atual
+    public static LevelFile wrap(ByteBuffer data) throws IOException
+    {
+        return new LevelFile(data.slice(), DEFAULT_RESIDENT_SECTIONS);
+    }
+
+    // lê uma fase guardada em data com até residentSections seções decodificadas
+    public LevelFile(ByteBuffer data, int residentSections) throws IOException
+    {
+        if (residentSections < 1)
+            throw new IllegalArgumentException("at least one section must be resident");
+
+        this.data = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (this.data.limit() < HEADER_SIZE || this.data.getInt(0) != MAGIC)
+            throw new IOException("not a level file");
+
+        version = this.data.getShort(4) & 0xFFFF;
+        if (version < 1 || version > VERSION)
+            throw new IOException("unsupported level version " + version);
+
+        sectionCount = this.data.getShort(6) & 0xFFFF;
+        if (sectionCount == 0 || this.data.limit() < HEADER_SIZE + sectionCount * INDEX_ENTRY_SIZE)
+            throw new IOException("truncated level index");
+
+        resident = new LevelSection[residentSections];
+        residentSection = new int[residentSections];
+        lastUse = new long[residentSections];
+        for (int slot = 0; slot < residentSections; slot++)
+            residentSection[slot] = -1;
+    } // fim do construtor de LevelFile
+
+    // a seção dada, decodificada se ainda não está residente; o objeto
+    // devolvido é reaproveitado quando a seção é descartada
+    public LevelSection section(int section) throws IOException
+    {
+        checkSection(section);
+
+        int free = -1;
+        int oldest = 0;
+        for (int slot = 0; slot < resident.length; slot++)
+        {
+            if (residentSection[slot] == section)
+            {
+                lastUse[slot] = ++useClock;
+                return resident[slot];
+            }
+
+            if (residentSection[slot] < 0)
+            {
+                if (free < 0)
+                    free = slot;
+            }
+            else if (lastUse[slot] < lastUse[oldest])
+                oldest = slot;
+        }
+
+        int slot = free >= 0 ? free : oldest;
+        if (free < 0)
+            ++evictions;
+        if (resident[slot] == null)
+            resident[slot] = new LevelSection();
+
+        // o espaço fica livre até a decodificação terminar sem erros
+        residentSection[slot] = -1;
+        int entry = HEADER_SIZE + section * INDEX_ENTRY_SIZE;
+        int offset = data.getInt(entry);
+        int size = data.getInt(entry + 4);
+        if (offset < HEADER_SIZE + sectionCount * INDEX_ENTRY_SIZE || size < 0 ||
+                offset > data.limit() - size)
+            throw new IOException("level section " + section + " is out of the file");
+
+        resident[slot].decode(data, version, offset, size, getObstacleCount(section),
+                getPieceCount(section), data.getShort(entry + 12) & 0xFFFF);
+        residentSection[slot] = section;
+        lastUse[slot] = ++useClock;
+        ++decodes;
+        return resident[slot];
+    } // fim do método section
+
+    // descarta as seções residentes fora de [first, last]
+    public void retain(int first, int last)
+    {
+        for (int slot = 0; slot < resident.length; slot++)
+        {
+            int section = residentSection[slot];
+            if (section >= 0 && (section < first || section > last))
+            {
+                residentSection[slot] = -1;
+                ++evictions;
+            }
+        }
+    }
+
+    // a seção está decodificada?
+    public boolean isResident(int section)
+    {
+        for (int slot = 0; slot < resident.length; slot++)
+            if (residentSection[slot] == section)
+                return true;
+        return false;
+    }
+
+    // totais da seção lidos do índice, sem decodificá-la
+    public int getObstacleCount(int section)
+    {
+        checkSection(section);
+        return data.getShort(HEADER_SIZE + section * INDEX_ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    public int getPieceCount(int section)
+    {
+        checkSection(section);
+        return data.getShort(HEADER_SIZE + section * INDEX_ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    private void checkSection(int section)
+    {
+        if (section < 0 || section >= sectionCount)
+            throw new IllegalArgumentException("section " + section + " is not in the level");
+    }
+
+    // CRC32 do arquivo inteiro, calculado na primeira chamada; identifica a
+    // fase nas gravações de InputRecorder
+    public long getChecksum()
+    {
+        if (checksum < 0)
+        {
+            CRC32 crc = new CRC32();
+            ByteBuffer all = data.duplicate();
+            all.position(0);
+            byte[] chunk = new byte[4096];
+
+            while (all.hasRemaining())
+            {
+                int count = Math.min(chunk.length, all.remaining());
+                all.get(chunk, 0, count);
+                crc.update(chunk, 0, count);
+            }
+
+            checksum = crc.getValue();
+        }
+
+        return checksum;
+    } // fim do método getChecksum
+
+    public int getVersion() { return version; }
+    public int getSectionCount() { return sectionCount; }
+    public int getDecodes() { return decodes; }
+    public int getEvictions() { return evictions; }
+
+    public int getResidentSections()
+    {
+        int sections = 0;
+        for (int slot = 0; slot < resident.length; slot++)
+            if (residentSection[slot] >= 0)
+                ++sections;
+        return sections;
+    }
+
+    // memória ocupada pelas seções decodificadas, em bytes
+    public long getResidentBytes()
+    {
+        long bytes = 0;
+        for (int slot = 0; slot < resident.length; slot++)
+            if (resident[slot] != null)
+                bytes += resident[slot].getFootprintBytes();
+        return bytes;
+    }
+} // fim da classe LevelFile
@@ -0,0 +1,142 @@
+// LevelSection.java
+// Obstáculos de uma seção de LevelFile já decodificados, com as medidas em
+// frações da tela; os arrays são reaproveitados quando a seção é trocada
+package com.deitel.cannongame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class LevelSection
+{
+    private int count;                  // obstáculos na seção
+    private int[] kind = new int[0];    // ObstacleField.BLOCKER ou TARGET
+    private int[] pieces = new int[0];  // seções dos alvos; 0 nas barreiras
+    private float[] x = new float[0];   // fração da largura
+    private float[] top = new float[0]; // frações da altura
+    private float[] length = new float[0];
+    private float[] speed = new float[0]; // alturas por segundo; negativa começa subindo
+    private int[] pathStart = new int[0];
+    private int[] pathCount = new int[0];
+    private float[] waypoints = new float[0];
+    private double[] scratch = new double[0]; // pontos do caminho em pixels
+
+    // lê os obstacles obstáculos gravados em data a partir de offset, sem
+    // passar de offset + size, no formato da versão dada; o índice de
+    // LevelFile informa os totais, que devem conferir com os obstáculos lidos
+    void decode(ByteBuffer data, int version, int offset, int size, int obstacles,
+                int totalPieces, int totalWaypoints) throws IOException
+    {
+        ensureCapacity(obstacles, totalWaypoints);
+
+        // a partir da versão 2 as seções de alvo ocupam dois bytes
+        int wide = version >= 2 ? 1 : 0;
+        int recordSize = LevelFile.OBSTACLE_SIZE_V1 + wide;
+
+        int end = offset + size;
+        int position = offset;
+        int points = 0;
+        int pieceSum = 0;
+        for (int i = 0; i < obstacles; i++)
+        {
+            if (position + recordSize > end)
+                throw new IOException("truncated level section at byte " + position);
+
+            kind[i] = data.get(position) & 0xFF;
+            pieces[i] = wide != 0 ? data.getShort(position + 1) & 0xFFFF :
+                    data.get(position + 1) & 0xFF;
+            int fields = position + 2 + wide; // x, topo, comprimento, velocidade e caminho
+            if (kind[i] == ObstacleField.BLOCKER ? pieces[i] != 0 :
+                    kind[i] != ObstacleField.TARGET || pieces[i] == 0)
+                throw new IOException("corrupt level obstacle at byte " + position);
+
+            pieceSum += pieces[i];
+            x[i] = fraction(data, fields);
+            top[i] = fraction(data, fields + 2);
+            length[i] = fraction(data, fields + 4);
+            speed[i] = data.getShort(fields + 6) / (float) LevelFile.SPEED_UNITS;
+
+            int pathPoints = data.get(fields + 8) & 0xFF;
+            position += recordSize;
+            if (pathPoints == 1 || points + pathPoints > totalWaypoints ||
+                    position + 2 * pathPoints > end)
+                throw new IOException("corrupt level path at byte " + position);
+
+            pathStart[i] = points;
+            pathCount[i] = pathPoints;
+            for (int k = 0; k < pathPoints; k++, position += 2)
+                waypoints[points++] = fraction(data, position);
+        }
+
+        if (position != end)
+            throw new IOException("level section has " + (end - position) + " extra bytes");
+        if (pieceSum != totalPieces || points != totalWaypoints)
+            throw new IOException("level section does not match its index entry");
+
+        count = obstacles;
+    } // fim do método decode
+
+    // acrescenta os obstáculos da seção a field, numa tela de width x height
+    public void addTo(ObstacleField field, int width, int height)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            double lineX = (double) x[i] * width;
+            double lineTop = (double) top[i] * height;
+            double lineLength = Math.max(1.0, (double) length[i] * height);
+            double velocity = (double) speed[i] * height;
+
+            int added = kind[i] == ObstacleField.TARGET ?
+                    field.addTarget(lineX, lineTop, lineLength, velocity, pieces[i]) :
+                    field.addBlocker(lineX, lineTop, lineLength, velocity);
+
+            if (pathCount[i] > 0)
+            {
+                for (int k = 0; k < pathCount[i]; k++)
+                    scratch[k] = (double) waypoints[pathStart[i] + k] * height;
+                field.setPath(added, scratch, 0, pathCount[i]);
+            }
+        }
+    } // fim do método addTo
+
+    private static float fraction(ByteBuffer data, int offset)
+    {
+        return (data.getShort(offset) & 0xFFFF) / (float) LevelFile.FRACTION_UNITS;
+    }
+
+    private void ensureCapacity(int obstacles, int points)
+    {
+        if (kind.length < obstacles)
+        {
+            kind = new int[obstacles];
+            pieces = new int[obstacles];
+            x = new float[obstacles];
+            top = new float[obstacles];
+            length = new float[obstacles];
+            speed = new float[obstacles];
+            pathStart = new int[obstacles];
+            pathCount = new int[obstacles];
+        }
+
+        if (waypoints.length < points)
+            waypoints = new float[points];
+
+        if (scratch.length < LevelFile.MAX_PATH_POINTS)
+            scratch = new double[LevelFile.MAX_PATH_POINTS];
+    } // fim do método ensureCapacity
+
+    // memória ocupada pelos arrays, em bytes
+    long getFootprintBytes()
+    {
+        return 4L * (8 * kind.length + waypoints.length) + 8L * scratch.length;
+    }
+
+    public int size() { return count; }
+    public int getKind(int i) { return kind[i]; }
+    public int getPieces(int i) { return pieces[i]; }
+    public float getX(int i) { return x[i]; }
+    public float getTop(int i) { return top[i]; }
+    public float getLength(int i) { return length[i]; }
+    public float getSpeed(int i) { return speed[i]; }
+    public int getPathCount(int i) { return pathCount[i]; }
+    public float getWaypoint(int i, int k) { return waypoints[pathStart[i] + k]; }
+} // fim da classe LevelSection
@@ -0,0 +1,183 @@
+// LevelWriter.java
+// Monta uma fase no formato binário lido por LevelFile: um cabeçalho, um
+// índice com uma entrada por seção e as seções com os obstáculos; as medidas
+// são frações da tela, para que a fase sirva em qualquer tamanho de tela
+package com.deitel.cannongame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class LevelWriter
+{
+    private final ByteArrayOutputStream sections = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private int sectionCount;
+
+    // seção em montagem
+    private final ByteArrayOutputStream section = new ByteArrayOutputStream();
+    private int obstacles;
+    private int pieces;
+    private int waypoints;
+    private boolean open;
+
+    // começa uma nova seção; os obstáculos seguintes pertencem a ela
+    public LevelWriter beginSection()
+    {
+        endSection();
+
+        if (sectionCount == LevelFile.MAX_SECTIONS)
+            throw new IllegalArgumentException("a level holds at most " +
+                    LevelFile.MAX_SECTIONS + " sections");
+
+        open = true;
+        return this;
+    }
+
+    // acrescenta uma barreira; x é fração da largura, top e length são
+    // frações da altura e speed é em alturas por segundo (negativa começa
+    // subindo); path, se houver, são os topos que a barreira percorre
+    public LevelWriter addBlocker(double x, double top, double length, double speed,
+                                  double... path)
+    {
+        return add(ObstacleField.BLOCKER, x, top, length, speed, 0, path);
+    }
+
+    // acrescenta um alvo com pieces seções, com as mesmas medidas de addBlocker
+    public LevelWriter addTarget(double x, double top, double length, double speed,
+                                 int pieces, double... path)
+    {
+        if (pieces < 1 || pieces > LevelFile.MAX_PIECES)
+            throw new IllegalArgumentException("a target has 1 to " +
+                    LevelFile.MAX_PIECES + " pieces");
+
+        return add(ObstacleField.TARGET, x, top, length, speed, pieces, path);
+    }
+
+    private LevelWriter add(int kind, double x, double top, double length, double speed,
+                            int targetPieces, double[] path)
+    {
+        if (!open)
+            throw new IllegalStateException("call beginSection before adding obstacles");
+        if (obstacles == LevelFile.MAX_OBSTACLES)
+            throw new IllegalArgumentException("a section holds at most " +
+                    LevelFile.MAX_OBSTACLES + " obstacles");
+        if (length <= 0)
+            throw new IllegalArgumentException("length must be positive");
+        if (Math.abs(speed) > LevelFile.MAX_SPEED)
+            throw new IllegalArgumentException("speed must be within " + LevelFile.MAX_SPEED);
+        if (path.length == 1 || path.length > LevelFile.MAX_PATH_POINTS)
+            throw new IllegalArgumentException("a path has 2 to " +
+                    LevelFile.MAX_PATH_POINTS + " points");
+        if (pieces + targetPieces > 0xFFFF || waypoints + path.length > 0xFFFF)
+            throw new IllegalArgumentException("a section holds at most 65535 target " +
+                    "pieces and 65535 path points");
+
+        // tudo é conferido antes de gravar, para não deixar um obstáculo pela metade
+        checkFraction(x);
+        checkFraction(top);
+        checkFraction(length);
+        for (double point : path)
+            checkFraction(point);
+
+        section.write(kind);
+        writeShort(targetPieces);
+        writeFraction(x);
+        writeFraction(top);
+        writeFraction(length);
+        writeShort((int) Math.round(speed * LevelFile.SPEED_UNITS));
+        section.write(path.length);
+        for (double point : path)
+            writeFraction(point);
+
+        ++obstacles;
+        pieces += targetPieces;
+        waypoints += path.length;
+        return this;
+    } // fim do método add
+
+    // fecha a seção em montagem e registra sua entrada no índice
+    private void endSection()
+    {
+        if (!open)
+            return;
+        if (pieces == 0)
+            throw new IllegalStateException("section " + sectionCount + " has no target");
+
+        writeInt(index, sections.size());   // posição relativa ao fim do índice
+        writeInt(index, section.size());
+        writeShort(index, obstacles);
+        writeShort(index, pieces);
+        writeShort(index, waypoints);
+        writeShort(index, 0);                // reservado
+
+        sections.write(section.toByteArray(), 0, section.size());
+        section.reset();
+        obstacles = pieces = waypoints = 0;
+        ++sectionCount;
+        open = false;
+    } // fim do método endSection
+
+    // a fase completa; as posições do índice passam a contar do início
+    public byte[] toByteArray()
+    {
+        endSection();
+        if (sectionCount == 0)
+            throw new IllegalStateException("a level needs at least one section");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                LevelFile.HEADER_SIZE + index.size() + sections.size());
+        writeInt(out, LevelFile.MAGIC);
+        writeShort(out, LevelFile.VERSION);
+        writeShort(out, sectionCount);
+
+        // desloca as posições do índice para depois do cabeçalho e do índice
+        byte[] entries = index.toByteArray();
+        int base = LevelFile.HEADER_SIZE + entries.length;
+        for (int entry = 0; entry < entries.length; entry += LevelFile.INDEX_ENTRY_SIZE)
+        {
+            int offset = (entries[entry] & 0xFF) << 24 | (entries[entry + 1] & 0xFF) << 16 |
+                    (entries[entry + 2] & 0xFF) << 8 | (entries[entry + 3] & 0xFF);
+            writeInt(out, base + offset);
+            out.write(entries, entry + 4, LevelFile.INDEX_ENTRY_SIZE - 4);
+        }
+
+        out.write(sections.toByteArray(), 0, sections.size());
+        return out.toByteArray();
+    } // fim do método toByteArray
+
+    public void writeTo(OutputStream out) throws IOException
+    {
+        out.write(toByteArray());
+    }
+
+    public int getSectionCount() { return sectionCount + (open ? 1 : 0); }
+
+    private static void checkFraction(double fraction)
+    {
+        if (!(fraction >= 0.0 && fraction <= 1.0))
+            throw new IllegalArgumentException("screen fraction out of range: " + fraction);
+    }
+
+    private void writeFraction(double fraction)
+    {
+        writeShort((int) Math.round(fraction * LevelFile.FRACTION_UNITS));
+    }
+
+    private void writeShort(int value)
+    {
+        writeShort(section, value);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value)
+    {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value)
+    {
+        writeShort(out, value >>> 16);
+        writeShort(out, value);
+    }
+} // fim da classe LevelWriter
@@ -0,0 +1,472 @@
+// LockstepSession.java
+// Partida de dois jogadores em passo travado (lockstep): cada aparelho roda as
+// simulações em ponto fixo dos dois jogadores, e só os disparos atravessam a
+// rede, por um DatagramChannel não bloqueante. Um disparo local vale
+// inputDelay passos depois de feito; enquanto o disparo do adversário não
+// chega, o jogo prevê "nenhum disparo" e, se a previsão errar, volta ao último
+// estado confirmado e refaz os passos seguintes. Resumos do estado confirmado
+// são trocados de tempos em tempos para detectar dessincronização
+package com.deitel.cannongame;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Locale;
+
+public class LockstepSession
+{
+    public static final int PLAYERS = 2;
+    public static final int DEFAULT_INPUT_DELAY = 3;    // passos; 25 ms a 120 passos/s
+    public static final int DEFAULT_MAX_ROLLBACK = 8;   // passos previstos além do confirmado
+    public static final int CHECKSUM_INTERVAL = 30;     // passos entre resumos trocados
+
+    // entrada de um jogador num passo: NO_INPUT ou o ângulo binário do disparo + 1
+    static final int NO_INPUT = 0;
+
+    // pacote: byte PACKET_MAGIC, passos recebidos do adversário, primeiro
+    // passo enviado, número de passos, os disparos codificados como
+    // sequências de passos vazios seguidas do disparo e, opcionalmente, o
+    // último resumo (distância até o fim das entradas e int). Os inteiros
+    // usam 7 bits por byte, como em InputRecorder
+    static final int PACKET_MAGIC = 0xC5;
+    static final int MAX_PACKET_SIZE = 1024;
+
+    private static final int HISTORY = 256;     // passos guardados; potência de 2
+    private static final int MASK = HISTORY - 1;
+    private static final int CHECKSUMS = 16;    // resumos guardados; potência de 2
+
+    private final DatagramChannel channel;
+    private final int localPlayer;
+    private final int ticksPerSecond;
+    private final int inputDelay;
+    private final int maxRollback;
+
+    // estado com as entradas dos dois jogadores conhecidas, e o estado previsto
+    // que é mostrado; um tabuleiro por jogador
+    private final FixedPointSimulation[] confirmed = new FixedPointSimulation[PLAYERS];
+    private final FixedPointSimulation[] predicted = new FixedPointSimulation[PLAYERS];
+    private int confirmedTick;          // passos aplicados em confirmed
+    private int currentTick;            // passos aplicados em predicted
+
+    // entradas por passo, em anéis indexados por tick & MASK
+    private final int[] localInputs = new int[HISTORY];
+    private final long[] localInputTimes = new long[HISTORY]; // instante do disparo local
+    private final int[] remoteInputs = new int[HISTORY];
+    private final int[] usedRemote = new int[HISTORY];  // entrada remota usada na previsão
+    private int localScheduled;         // passos com a entrada local decidida
+    private int remoteReceived;         // passos com a entrada remota conhecida
+    private int remoteAcked;            // passos locais que o adversário já recebeu
+    private int pendingInput = NO_INPUT;
+    private long pendingTime;
+
+    // resumos do estado confirmado, locais e recebidos, por passo
+    private final int[] localSumTicks = new int[CHECKSUMS];
+    private final int[] localSums = new int[CHECKSUMS];
+    private final int[] remoteSumTicks = new int[CHECKSUMS];
+    private final int[] remoteSums = new int[CHECKSUMS];
+    private int lastSumTick = -1;
+    private int lastSum;
+    private int comparedTick;           // último passo com resumos comparados
+    private int desyncTick = -1;        // primeiro passo com resumos diferentes
+
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
+
+    // estatísticas
+    private long bytesSent;
+    private long bytesReceived;
+    private long packetsSent;
+    private long packetsReceived;
+    private long badPackets;
+    private long rollbacks;
+    private long resimulatedTicks;
+    private long stalls;                // passos em que a previsão chegou ao limite
+    private long checksumsCompared;
+    private final LatencyHistogram effectLatency = new LatencyHistogram();  // até a tela
+    private final LatencyHistogram confirmLatency = new LatencyHistogram(); // até confirmar
+
+    // partida com as regras e o tamanho de tela padrão
+    public LockstepSession(DatagramChannel channel, int localPlayer, int width, int height)
+            throws IOException
+    {
+        this(channel, localPlayer, new GameConfig(), FixedStepClock.DEFAULT_TICKS_PER_SECOND,
+                width, height, DEFAULT_INPUT_DELAY, DEFAULT_MAX_ROLLBACK);
+    }
+
+    // channel já deve estar conectado ao adversário; localPlayer é 0 num
+    // aparelho e 1 no outro, e as regras, a taxa de passos e o tamanho de tela
+    // devem ser os mesmos nos dois
+    public LockstepSession(DatagramChannel channel, int localPlayer, GameConfig config,
+                           int ticksPerSecond, int width, int height, int inputDelay,
+                           int maxRollback) throws IOException
+    {
+        if (localPlayer < 0 || localPlayer >= PLAYERS)
+            throw new IllegalArgumentException("localPlayer must be 0 or 1");
+        if (inputDelay < 0 || maxRollback < 1 || 3 * inputDelay + 2 * maxRollback >= HISTORY)
+            throw new IllegalArgumentException("inputDelay and maxRollback do not fit the history");
+
+        this.channel = channel;
+        this.localPlayer = localPlayer;
+        this.ticksPerSecond = ticksPerSecond;
+        this.inputDelay = inputDelay;
+        this.maxRollback = maxRollback;
+        channel.configureBlocking(false);
+
+        for (int player = 0; player < PLAYERS; player++)
+        {
+            confirmed[player] = newBoard(config, ticksPerSecond, width, height);
+            predicted[player] = newBoard(config, ticksPerSecond, width, height);
+        }
+
+        for (int i = 0; i < CHECKSUMS; i++)
+            localSumTicks[i] = remoteSumTicks[i] = -1;
+
+        localScheduled = inputDelay; // os primeiros passos não têm disparo local
+    } // fim do construtor LockstepSession
+
+    private static FixedPointSimulation newBoard(GameConfig config, int ticksPerSecond,
+                                                 int width, int height)
+    {
+        FixedPointSimulation board =
+                new FixedPointSimulation(config, ticksPerSecond, ProjectilePool.DEFAULT_CAPACITY);
+        board.setScreenSize(width, height);
+        board.newGame();
+        return board;
+    }
+
+    // dispara no ângulo binário dado (FixedPointSimulation.aim) no próximo passo
+    // local livre; um segundo disparo antes do próximo passo substitui o primeiro
+    public void submitFire(int angle, long now)
+    {
+        pendingInput = (angle & (FixedMath.FULL_TURN - 1)) + 1;
+        pendingTime = now;
+    }
+
+    // um passo da partida: recebe o que chegou, avança o estado previsto se a
+    // previsão não passou do limite, confirma os passos cujas entradas já
+    // chegaram (voltando atrás se a previsão errou) e envia as entradas locais
+    public void advance(long now) throws IOException
+    {
+        receive();
+
+        if (currentTick - confirmedTick < maxRollback && localScheduled - remoteAcked < HISTORY - 1)
+        {
+            int tick = localScheduled++;
+            localInputs[tick & MASK] = pendingInput;
+            localInputTimes[tick & MASK] = pendingTime;
+            pendingInput = NO_INPUT;
+
+            stepPredicted(now);
+        }
+        else
+            ++stalls; // espera o adversário
+
+        confirm(now);
+        send();
+    } // fim do método advance
+
+    // avança o estado previsto um passo, prevendo nenhum disparo do
+    // adversário se a entrada dele ainda não chegou
+    private void stepPredicted(long now)
+    {
+        int slot = currentTick & MASK;
+        int remote = currentTick < remoteReceived ? remoteInputs[slot] : NO_INPUT;
+        usedRemote[slot] = remote;
+
+        if (localInputs[slot] != NO_INPUT)
+            effectLatency.record(now - localInputTimes[slot]);
+
+        applyTick(predicted, localInputs[slot], remote);
+        ++currentTick;
+    }
+
+    // confirma os passos já simulados cujas entradas remotas chegaram; se uma
+    // delas difere da prevista, refaz o estado previsto a partir do confirmado
+    private void confirm(long now)
+    {
+        boolean mispredicted = false;
+
+        while (confirmedTick < currentTick && confirmedTick < remoteReceived)
+        {
+            int slot = confirmedTick & MASK;
+            mispredicted |= remoteInputs[slot] != usedRemote[slot];
+
+            if (localInputs[slot] != NO_INPUT)
+                confirmLatency.record(now - localInputTimes[slot]);
+
+            applyTick(confirmed, localInputs[slot], remoteInputs[slot]);
+            ++confirmedTick;
+
+            if (confirmedTick % CHECKSUM_INTERVAL == 0)
+                recordChecksum(confirmedTick, checksum(confirmed), false);
+        }
+
+        if (!mispredicted)
+            return;
+
+        // volta ao confirmado; os passos restantes ainda não têm entrada remota
+        ++rollbacks;
+        for (int player = 0; player < PLAYERS; player++)
+            predicted[player].copyFrom(confirmed[player]);
+
+        for (int tick = confirmedTick; tick < currentTick; tick++)
+        {
+            usedRemote[tick & MASK] = NO_INPUT;
+            applyTick(predicted, localInputs[tick & MASK], NO_INPUT);
+            ++resimulatedTicks;
+        }
+    } // fim do método confirm
+
+    // aplica as entradas de um passo aos tabuleiros dos dois jogadores
+    private void applyTick(FixedPointSimulation[] boards, int local, int remote)
+    {
+        for (int player = 0; player < PLAYERS; player++)
+        {
+            int input = player == localPlayer ? local : remote;
+            if (input != NO_INPUT)
+                boards[player].fire(input - 1);
+            boards[player].step();
+        }
+    }
+
+    // resumo dos dois tabuleiros, na ordem dos jogadores, dobrado em 32 bits
+    private static int checksum(FixedPointSimulation[] boards)
+    {
+        long hash = boards[0].checksum() * 31 + boards[1].checksum();
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    // guarda um resumo local ou recebido e o compara com o do outro lado, se houver
+    private void recordChecksum(int tick, int sum, boolean remote)
+    {
+        // o mesmo resumo remoto chega em vários pacotes
+        if (remote && tick <= comparedTick)
+            return;
+
+        int slot = (tick / CHECKSUM_INTERVAL) & (CHECKSUMS - 1);
+        if (remote)
+        {
+            remoteSumTicks[slot] = tick;
+            remoteSums[slot] = sum;
+        }
+        else
+        {
+            localSumTicks[slot] = tick;
+            localSums[slot] = sum;
+            lastSumTick = tick;
+            lastSum = sum;
+        }
+
+        if (localSumTicks[slot] == tick && remoteSumTicks[slot] == tick)
+        {
+            ++checksumsCompared;
+            if (localSums[slot] != remoteSums[slot] && desyncTick < 0)
+                desyncTick = tick;
+            comparedTick = Math.max(comparedTick, tick);
+        }
+    } // fim do método recordChecksum
+
+    // lê todos os pacotes que chegaram, sem bloquear
+    private void receive() throws IOException
+    {
+        while (true)
+        {
+            receiveBuffer.clear();
+            int read;
+            try
+            {
+                read = channel.read(receiveBuffer);
+            }
+            catch (PortUnreachableException e)
+            {
+                return; // o adversário ainda não abriu a porta
+            }
+
+            if (read <= 0)
+                return;
+
+            bytesReceived += read;
+            ++packetsReceived;
+            receiveBuffer.flip();
+            if (!decode(receiveBuffer))
+                ++badPackets;
+        }
+    } // fim do método receive
+
+    // aplica um pacote do adversário; retorna false se ele está malformado
+    private boolean decode(ByteBuffer packet)
+    {
+        try
+        {
+            if ((packet.get() & 0xFF) != PACKET_MAGIC)
+                return false;
+
+            int ack = readVarint(packet);
+            int first = readVarint(packet);
+            int count = readVarint(packet);
+            if (count > HISTORY)
+                return false;
+
+            remoteAcked = Math.max(remoteAcked, Math.min(ack, localScheduled));
+
+            int position = 0;
+            while (position < count)
+            {
+                int run = readVarint(packet); // passos sem disparo
+                if (run > count - position)
+                    return false;
+
+                for (int i = 0; i < run; i++)
+                    storeRemote(first + position++, NO_INPUT);
+
+                if (position < count)
+                {
+                    int input = readVarint(packet);
+                    if (input == NO_INPUT || input > FixedMath.FULL_TURN)
+                        return false;
+                    storeRemote(first + position++, input);
+                }
+            }
+
+            if (packet.get() != 0)
+            {
+                int distance = readVarint(packet);
+                int sum = packet.getInt();
+                int tick = first + count - distance;
+                if (tick <= 0 || tick % CHECKSUM_INTERVAL != 0)
+                    return false;
+                recordChecksum(tick, sum, true);
+            }
+
+            return !packet.hasRemaining();
+        }
+        catch (BufferUnderflowException e)
+        {
+            return false;
+        }
+    } // fim do método decode
+
+    // guarda a entrada remota do passo tick se ela é a próxima esperada;
+    // repetições de pacotes anteriores são ignoradas
+    private void storeRemote(int tick, int input)
+    {
+        if (tick != remoteReceived || tick - confirmedTick >= HISTORY)
+            return;
+
+        remoteInputs[tick & MASK] = input;
+        ++remoteReceived;
+    }
+
+    // envia as entradas locais que o adversário ainda não confirmou e o último resumo
+    private void send() throws IOException
+    {
+        int first = remoteAcked;
+        int count = localScheduled - first;
+
+        sendBuffer.clear();
+        sendBuffer.put((byte) PACKET_MAGIC);
+        writeVarint(remoteReceived);
+        writeVarint(first);
+        writeVarint(count);
+
+        int run = 0;
+        for (int tick = first; tick < first + count; tick++)
+        {
+            int input = localInputs[tick & MASK];
+            if (input == NO_INPUT)
+            {
+                ++run;
+                continue;
+            }
+
+            writeVarint(run);
+            writeVarint(input);
+            run = 0;
+        }
+        if (run > 0)
+            writeVarint(run);
+
+        if (lastSumTick > 0)
+        {
+            sendBuffer.put((byte) 1);
+            writeVarint(first + count - lastSumTick);
+            sendBuffer.putInt(lastSum);
+        }
+        else
+            sendBuffer.put((byte) 0);
+
+        sendBuffer.flip();
+        try
+        {
+            bytesSent += channel.write(sendBuffer);
+            ++packetsSent;
+        }
+        catch (PortUnreachableException e)
+        {
+            // o adversário ainda não abriu a porta; as entradas seguem no próximo pacote
+        }
+    } // fim do método send
+
+    // 7 bits por byte; o bit mais alto indica que há mais bytes
+    private void writeVarint(int value)
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            sendBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        sendBuffer.put((byte) value);
+    }
+
+    private static int readVarint(ByteBuffer packet)
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = packet.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new BufferUnderflowException(); // inteiro longo demais
+    }
+
+    // bytes enviados por segundo de jogo
+    public long getBytesPerSecond()
+    {
+        return currentTick == 0 ? 0 : bytesSent * ticksPerSecond / currentTick;
+    }
+
+    // acrescenta "lockstep tick 600 confirmed 598 rollbacks 3 ..." a builder
+    public void appendSummary(StringBuilder builder)
+    {
+        builder.append(String.format(Locale.US,
+                "lockstep tick %d confirmed %d rollbacks %d stalls %d %d B/s effect p95 %.1f ms%s",
+                currentTick, confirmedTick, rollbacks, stalls, getBytesPerSecond(),
+                effectLatency.getPercentile(95) / 1e6, isDesynced() ? " DESYNC" : ""));
+    }
+
+    // tabuleiro previsto do jogador dado, para desenhar
+    public FixedPointSimulation getBoard(int player) { return predicted[player]; }
+    public FixedPointSimulation getConfirmedBoard(int player) { return confirmed[player]; }
+    public int getConfirmedChecksum() { return checksum(confirmed); }
+    public int getLocalPlayer() { return localPlayer; }
+    public int getInputDelay() { return inputDelay; }
+    public int getCurrentTick() { return currentTick; }
+    public int getConfirmedTick() { return confirmedTick; }
+    public boolean isDesynced() { return desyncTick >= 0; }
+    public int getDesyncTick() { return desyncTick; }
+    public long getChecksumsCompared() { return checksumsCompared; }
+    public long getRollbacks() { return rollbacks; }
+    public long getResimulatedTicks() { return resimulatedTicks; }
+    public long getStalls() { return stalls; }
+    public long getBytesSent() { return bytesSent; }
+    public long getBytesReceived() { return bytesReceived; }
+    public long getPacketsSent() { return packetsSent; }
+    public long getPacketsReceived() { return packetsReceived; }
+    public long getBadPackets() { return badPackets; }
+    public LatencyHistogram getEffectLatency() { return effectLatency; }
+    public LatencyHistogram getConfirmLatency() { return confirmLatency; }
+} // fim da classe LockstepSession
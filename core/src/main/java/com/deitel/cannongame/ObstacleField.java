@@ -0,0 +1,398 @@
+// ObstacleField.java
+// Barreiras e alvos de uma fase, guardados em arrays primitivos paralelos;
+// cada obstáculo é uma linha vertical que vai e volta entre o topo e a base da
+// tela ou, se tiver um caminho, entre o primeiro e o último ponto do caminho
+package com.deitel.cannongame;
+
+import java.util.Arrays;
+
+public class ObstacleField
+{
+    // tipos de obstáculo
+    public static final int BLOCKER = 0;    // barreira: rebate a bala e penaliza o jogador
+    public static final int TARGET = 1;     // alvo: dividido em seções que podem ser atingidas
+
+    private int screenHeight;           // limite inferior do movimento
+
+    // estado de cada obstáculo, indexado pelo número do obstáculo
+    private int count;
+    private int[] kind;                 // BLOCKER ou TARGET
+    private double[] x;                 // distância da linha a partir da esquerda
+    private double[] length;            // comprimento da linha
+    private double[] initialTop;        // topo no início do jogo
+    private double[] initialVelocity;   // velocidade no início do jogo (negativa sobe)
+    private double[] phase;             // posição no ciclo de ida e volta
+    private double[] top;               // topo atual
+    private double[] previousTop;       // topo no início do último passo, para interpolar
+
+    // caminhos: o topo percorre os pontos em ordem e volta; os pontos de
+    // todos os obstáculos ficam num único array
+    private int[] pathStart;            // primeiro ponto do caminho
+    private int[] pathCount;            // número de pontos; 0 sem caminho
+    private double[] pathLength;        // distância percorrida do primeiro ao último ponto
+    private double[] waypoints = new double[16];
+    private int waypointCount;
+
+    // seções dos alvos; as seções de todos os alvos ficam num único
+    // conjunto de bits, 64 seções por palavra (o bit 0 da palavra 0 é a seção 0)
+    private int[] firstPiece;           // primeira seção do alvo
+    private int[] pieceCount;           // número de seções do alvo
+    private double[] pieceLength;       // comprimento de uma seção do alvo
+    private long[] hitBits = new long[1]; // seções atingidas
+    private int totalPieces;
+
+    public ObstacleField()
+    {
+        this(4);
+    }
+
+    public ObstacleField(int initialCapacity)
+    {
+        int capacity = Math.max(1, initialCapacity);
+        kind = new int[capacity];
+        x = new double[capacity];
+        length = new double[capacity];
+        initialTop = new double[capacity];
+        initialVelocity = new double[capacity];
+        phase = new double[capacity];
+        top = new double[capacity];
+        previousTop = new double[capacity];
+        pathStart = new int[capacity];
+        pathCount = new int[capacity];
+        pathLength = new double[capacity];
+        firstPiece = new int[capacity];
+        pieceCount = new int[capacity];
+        pieceLength = new double[capacity];
+    }
+
+    // define a altura da área em que os obstáculos se movem
+    public void setScreenHeight(int screenHeight)
+    {
+        this.screenHeight = screenHeight;
+    }
+
+    // remove todos os obstáculos
+    public void clear()
+    {
+        Arrays.fill(hitBits, 0L);
+        count = 0;
+        totalPieces = 0;
+        waypointCount = 0;
+    }
+
+    // acrescenta uma barreira e retorna seu número
+    public int addBlocker(double lineX, double lineTop, double lineLength, double velocity)
+    {
+        return add(BLOCKER, lineX, lineTop, lineLength, velocity, 0);
+    }
+
+    // acrescenta um alvo com pieces seções e retorna seu número
+    public int addTarget(double lineX, double lineTop, double lineLength, double velocity,
+                         int pieces)
+    {
+        if (pieces <= 0)
+            throw new IllegalArgumentException("a target needs at least one piece");
+
+        return add(TARGET, lineX, lineTop, lineLength, velocity, pieces);
+    }
+
+    private int add(int type, double lineX, double lineTop, double lineLength,
+                    double velocity, int pieces)
+    {
+        ensureCapacity(count + 1);
+
+        int i = count++;
+        kind[i] = type;
+        x[i] = lineX;
+        length[i] = lineLength;
+        initialTop[i] = lineTop;
+        initialVelocity[i] = velocity;
+        pathCount[i] = 0;
+        firstPiece[i] = totalPieces;
+        pieceCount[i] = pieces;
+        pieceLength[i] = pieces == 0 ? 0.0 : lineLength / pieces;
+
+        totalPieces += pieces;
+        int words = wordCount(totalPieces);
+        if (hitBits.length < words)
+            hitBits = Arrays.copyOf(hitBits, Math.max(words, hitBits.length * 2));
+
+        resetObstacle(i);
+        return i;
+    } // fim do método add
+
+    // aumenta os arrays quando a fase ganha mais obstáculos
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= kind.length)
+            return;
+
+        int newCapacity = Math.max(capacity, kind.length * 2);
+        kind = Arrays.copyOf(kind, newCapacity);
+        x = Arrays.copyOf(x, newCapacity);
+        length = Arrays.copyOf(length, newCapacity);
+        initialTop = Arrays.copyOf(initialTop, newCapacity);
+        initialVelocity = Arrays.copyOf(initialVelocity, newCapacity);
+        phase = Arrays.copyOf(phase, newCapacity);
+        top = Arrays.copyOf(top, newCapacity);
+        previousTop = Arrays.copyOf(previousTop, newCapacity);
+        pathStart = Arrays.copyOf(pathStart, newCapacity);
+        pathCount = Arrays.copyOf(pathCount, newCapacity);
+        pathLength = Arrays.copyOf(pathLength, newCapacity);
+        firstPiece = Arrays.copyOf(firstPiece, newCapacity);
+        pieceCount = Arrays.copyOf(pieceCount, newCapacity);
+        pieceLength = Arrays.copyOf(pieceLength, newCapacity);
+    }
+
+    // faz o obstáculo i percorrer os topos tops[offset] a tops[offset + count - 1]
+    // e voltar, com a sua velocidade; ele começa no primeiro ponto. Os
+    // pontos são limitados à faixa em que a linha cabe na tela
+    public void setPath(int i, double[] tops, int offset, int count)
+    {
+        if (count < 2)
+            throw new IllegalArgumentException("a path needs at least two points");
+
+        if (waypoints.length < waypointCount + count)
+            waypoints = Arrays.copyOf(waypoints,
+                    Math.max(waypointCount + count, waypoints.length * 2));
+
+        double limit = Math.max(0.0, screenHeight - length[i]);
+        double distance = 0.0;
+        for (int k = 0; k < count; k++)
+        {
+            double top = Math.max(0.0, Math.min(limit, tops[offset + k]));
+            if (k > 0)
+                distance += Math.abs(top - waypoints[waypointCount + k - 1]);
+            waypoints[waypointCount + k] = top;
+        }
+
+        pathStart[i] = waypointCount;
+        pathCount[i] = count;
+        pathLength[i] = distance;
+        waypointCount += count;
+        resetObstacle(i);
+    } // fim do método setPath
+
+    // volta todos os obstáculos à posição inicial e restaura as seções dos alvos
+    public void reset()
+    {
+        for (int i = 0; i < count; i++)
+            resetObstacle(i);
+
+        Arrays.fill(hitBits, 0L);
+    }
+
+    private void resetObstacle(int i)
+    {
+        // subindo, a linha começa na segunda metade do ciclo; com um caminho,
+        // ela começa no primeiro ponto
+        double span = span(i);
+        if (pathCount[i] > 0)
+            phase[i] = 0.0;
+        else
+            phase[i] = initialVelocity[i] >= 0 ? initialTop[i] : 2 * span - initialTop[i];
+        phase[i] = wrapPhase(phase[i], span);
+        top[i] = previousTop[i] = topOf(i, phase[i]);
+    }
+
+    // move todos os obstáculos seconds segundos ao longo de seus ciclos
+    public void advance(double seconds)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            double span = span(i);
+            phase[i] = wrapPhase(phase[i] + Math.abs(initialVelocity[i]) * seconds, span);
+            top[i] = topOf(i, phase[i]);
+        }
+    }
+
+    // guarda os topos atuais como ponto de partida da interpolação
+    public void savePreviousPositions()
+    {
+        System.arraycopy(top, 0, previousTop, 0, count);
+    }
+
+    // topo do obstáculo i daqui a seconds segundos, sem alterar o estado
+    public double topAt(int i, double seconds)
+    {
+        return topOf(i, phase[i] + Math.abs(initialVelocity[i]) * seconds);
+    }
+
+    // fase do obstáculo i: posição no ciclo de ida e volta, em [0, 2 * getSpan(i));
+    // na primeira metade a linha desce, na segunda ela sobe
+    public double getPhase(int i)
+    {
+        return phase[i];
+    }
+
+    // coloca o obstáculo i na fase dada, sem movimento a interpolar
+    public void setPhase(int i, double newPhase)
+    {
+        double span = span(i);
+        phase[i] = wrapPhase(newPhase, span);
+        top[i] = previousTop[i] = topOf(i, phase[i]);
+    }
+
+    public double getSpan(int i) { return span(i); }
+
+    // distância que o topo percorre antes de inverter a direção
+    private double span(int i)
+    {
+        return pathCount[i] > 0 ? pathLength[i] : screenHeight - length[i];
+    }
+
+    // topo do obstáculo i na fase dada
+    private double topOf(int i, double phase)
+    {
+        double distance = foldPhase(phase, span(i));
+        if (pathCount[i] == 0)
+            return distance;
+
+        // percorre os trechos do caminho até a distância dada
+        int point = pathStart[i];
+        int last = point + pathCount[i] - 1;
+        for (; point < last; point++)
+        {
+            double from = waypoints[point];
+            double to = waypoints[point + 1];
+            double segment = Math.abs(to - from);
+            if (distance <= segment)
+                return to >= from ? from + distance : from - distance;
+            distance -= segment;
+        }
+
+        return waypoints[last];
+    } // fim do método topOf
+
+    // uma linha que vai e volta entre 0 e span é descrita por uma fase em
+    // [0, 2 * span): na primeira metade ela desce, na segunda ela sobe
+    private static double wrapPhase(double phase, double span)
+    {
+        if (span <= 0)
+            return 0.0;
+
+        double period = 2 * span;
+        double wrapped = phase % period;
+        return wrapped < 0 ? wrapped + period : wrapped;
+    }
+
+    // converte a fase na coordenada y do topo da linha
+    private static double foldPhase(double phase, double span)
+    {
+        double wrapped = wrapPhase(phase, span);
+        return wrapped <= span ? wrapped : 2 * span - wrapped;
+    }
+
+    // seção do alvo i no ponto y quando o topo do alvo está em top (0 é a
+    // parte superior); -1 se y está fora do alvo
+    public int sectionAt(int i, double y, double top)
+    {
+        int section = (int) Math.floor((y - top) / pieceLength[i]);
+        return section >= 0 && section < pieceCount[i] ? section : -1;
+    }
+
+    // marca a seção piece como atingida; retorna false se ela já tinha sido atingida
+    public boolean hitPiece(int piece)
+    {
+        long bit = 1L << piece; // o deslocamento usa só os 6 bits baixos de piece
+        int word = piece >>> 6;
+        if ((hitBits[word] & bit) != 0)
+            return false;
+
+        hitBits[word] |= bit;
+        return true;
+    }
+
+    // todas as seções de todos os alvos foram atingidas?
+    public boolean allPiecesHit()
+    {
+        return totalPieces > 0 && getPiecesHit() == totalPieces;
+    }
+
+    // seções atingidas entre todas as dos alvos
+    public int getPiecesHit()
+    {
+        return countHits(hitBits, 0, totalPieces);
+    }
+
+    // seções atingidas do alvo i
+    public int getPiecesHit(int i)
+    {
+        return countHits(hitBits, firstPiece[i], firstPiece[i] + pieceCount[i]);
+    }
+
+    // palavras de 64 bits necessárias para pieces seções
+    public static int wordCount(int pieces)
+    {
+        return (pieces + 63) >>> 6;
+    }
+
+    // bits ligados de bits entre as posições from (inclusive) e to (exclusive)
+    public static int countHits(long[] bits, int from, int to)
+    {
+        if (from >= to)
+            return 0;
+
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to; // to múltiplo de 64 mantém a palavra inteira
+
+        if (first == last)
+            return Long.bitCount(bits[first] & firstMask & lastMask);
+
+        int hits = Long.bitCount(bits[first] & firstMask) + Long.bitCount(bits[last] & lastMask);
+        for (int word = first + 1; word < last; word++)
+            hits += Long.bitCount(bits[word]);
+        return hits;
+    } // fim do método countHits
+
+    // primeira posição em [from, to) com o bit desligado em bits, ou to se não há
+    public static int nextClear(long[] bits, int from, int to)
+    {
+        for (int word = from >>> 6; from < to; word++)
+        {
+            long clear = ~bits[word] & (-1L << from);
+            if (clear != 0)
+                return Math.min(to, (word << 6) + Long.numberOfTrailingZeros(clear));
+            from = (word + 1) << 6;
+        }
+        return to;
+    }
+
+    // primeira posição em [from, to) com o bit ligado em bits, ou to se não há
+    public static int nextSet(long[] bits, int from, int to)
+    {
+        for (int word = from >>> 6; from < to; word++)
+        {
+            long set = bits[word] & (-1L << from);
+            if (set != 0)
+                return Math.min(to, (word << 6) + Long.numberOfTrailingZeros(set));
+            from = (word + 1) << 6;
+        }
+        return to;
+    }
+
+    public int size() { return count; }
+    public int getKind(int i) { return kind[i]; }
+    public double getX(int i) { return x[i]; }
+    public double getLength(int i) { return length[i]; }
+    public double getSpeed(int i) { return Math.abs(initialVelocity[i]); }
+    public double getTop(int i) { return top[i]; }
+    public double getBottom(int i) { return top[i] + length[i]; }
+
+    // topo interpolado entre o passo anterior e o atual; alpha vai de 0 a 1
+    public double getTop(int i, double alpha)
+    {
+        return previousTop[i] + (top[i] - previousTop[i]) * alpha;
+    }
+
+    public int getFirstPiece(int i) { return firstPiece[i]; }
+    public int getPieceCount(int i) { return pieceCount[i]; }
+    public double getPieceLength(int i) { return pieceLength[i]; }
+    public boolean isPieceHit(int piece) { return (hitBits[piece >>> 6] & (1L << piece)) != 0; }
+    public int getTotalPieces() { return totalPieces; }
+
+    // palavra word do conjunto de bits das seções atingidas
+    public long getHitWord(int word) { return hitBits[word]; }
+} // fim da classe ObstacleField
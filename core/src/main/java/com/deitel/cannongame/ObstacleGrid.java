@@ -0,0 +1,186 @@
+// ObstacleGrid.java
+// Grade uniforme de fase ampla (broadphase): cada obstáculo é registrado nas
+// células cobertas por sua caixa envolvente, e a bala só é testada contra os
+// obstáculos das células que ela atravessa
+package com.deitel.cannongame;
+
+import java.util.Arrays;
+
+public class ObstacleGrid
+{
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    private int columns;                // número de colunas da grade
+    private int rows;                   // número de linhas da grade
+    private double cellSize;            // lado de uma célula
+
+    // obstáculos registrados em cada célula
+    private int[][] cellItems = new int[0][];
+    private int[] cellCount = new int[0];
+
+    // faixa de células ocupada por cada obstáculo (minColumn == -1: fora da grade)
+    private int[] minColumn = new int[0];
+    private int[] maxColumn = new int[0];
+    private int[] minRow = new int[0];
+    private int[] maxRow = new int[0];
+
+    // marca os obstáculos já devolvidos pela consulta atual
+    private int[] stamp = new int[0];
+    private int queryStamp;
+
+    private long relinks;               // obstáculos que mudaram de células
+
+    // define a área coberta e o tamanho das células e esvazia a grade; os
+    // arrays só são realocados quando a grade ou o número de obstáculos cresce
+    public void configure(double width, double height, double size, int obstacles)
+    {
+        cellSize = Math.max(1.0, size);
+        columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+
+        int cells = columns * rows;
+        if (cellItems.length < cells)
+        {
+            cellItems = new int[cells][];
+            cellCount = new int[cells];
+        }
+
+        for (int i = 0; i < cells; i++)
+        {
+            if (cellItems[i] == null)
+                cellItems[i] = new int[INITIAL_CELL_CAPACITY];
+            cellCount[i] = 0;
+        }
+
+        if (minColumn.length < obstacles)
+        {
+            minColumn = new int[obstacles];
+            maxColumn = new int[obstacles];
+            minRow = new int[obstacles];
+            maxRow = new int[obstacles];
+            stamp = new int[obstacles];
+        }
+
+        Arrays.fill(minColumn, -1);
+        Arrays.fill(stamp, 0);
+        queryStamp = 0;
+        relinks = 0;
+    } // fim do método configure
+
+    // registra o obstáculo id na caixa [minX, maxX] x [minY, maxY]; se a faixa
+    // de células não mudou desde o último passo, nada é feito
+    public void update(int id, double minX, double minY, double maxX, double maxY)
+    {
+        int c0 = column(minX);
+        int c1 = column(maxX);
+        int r0 = row(minY);
+        int r1 = row(maxY);
+
+        if (c0 == minColumn[id] && c1 == maxColumn[id] &&
+                r0 == minRow[id] && r1 == maxRow[id])
+            return;
+
+        if (minColumn[id] >= 0)
+            unlink(id);
+
+        minColumn[id] = c0;
+        maxColumn[id] = c1;
+        minRow[id] = r0;
+        maxRow[id] = r1;
+
+        for (int r = r0; r <= r1; r++)
+            for (int c = c0; c <= c1; c++)
+                addToCell(r * columns + c, id);
+
+        ++relinks;
+    } // fim do método update
+
+    // preenche out com os obstáculos que podem tocar a caixa dada e retorna quantos são
+    public int query(double minX, double minY, double maxX, double maxY, int[] out)
+    {
+        if (++queryStamp == Integer.MAX_VALUE) // recomeça as marcas antes de estourar
+        {
+            Arrays.fill(stamp, 0);
+            queryStamp = 1;
+        }
+
+        int c0 = column(minX);
+        int c1 = column(maxX);
+        int r0 = row(minY);
+        int r1 = row(maxY);
+        int found = 0;
+
+        for (int r = r0; r <= r1; r++)
+        {
+            for (int c = c0; c <= c1; c++)
+            {
+                int cell = r * columns + c;
+                int[] items = cellItems[cell];
+
+                for (int k = cellCount[cell] - 1; k >= 0; k--)
+                {
+                    int id = items[k];
+                    if (stamp[id] != queryStamp)
+                    {
+                        stamp[id] = queryStamp;
+                        out[found++] = id;
+                    }
+                }
+            }
+        }
+
+        return found;
+    } // fim do método query
+
+    // remove o obstáculo de todas as células em que ele está
+    private void unlink(int id)
+    {
+        for (int r = minRow[id]; r <= maxRow[id]; r++)
+        {
+            for (int c = minColumn[id]; c <= maxColumn[id]; c++)
+            {
+                int cell = r * columns + c;
+                int[] items = cellItems[cell];
+                int n = cellCount[cell];
+
+                for (int k = 0; k < n; k++)
+                {
+                    if (items[k] == id)
+                    {
+                        items[k] = items[n - 1]; // o último ocupa o lugar do removido
+                        cellCount[cell] = n - 1;
+                        break;
+                    }
+                }
+            }
+        }
+    } // fim do método unlink
+
+    private void addToCell(int cell, int id)
+    {
+        int n = cellCount[cell];
+        if (n == cellItems[cell].length)
+            cellItems[cell] = Arrays.copyOf(cellItems[cell], n * 2);
+
+        cellItems[cell][n] = id;
+        cellCount[cell] = n + 1;
+    }
+
+    // coordenadas fora da área coberta caem nas células da borda
+    private int column(double value)
+    {
+        int c = (int) (value / cellSize);
+        return c < 0 ? 0 : (c >= columns ? columns - 1 : c);
+    }
+
+    private int row(double value)
+    {
+        int r = (int) (value / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    public int getColumns() { return columns; }
+    public int getRows() { return rows; }
+    public double getCellSize() { return cellSize; }
+    public long getRelinks() { return relinks; }
+} // fim da classe ObstacleGrid
@@ -0,0 +1,319 @@
+// ParticleSystem.java
+// Fagulhas e destroços dos acertos e rebotes, guardados em arrays primitivos
+// paralelos de capacidade fixa; o laço de atualização não tem desvios e
+// pode ser dividido entre vários núcleos nas explosões grandes. Um limite de
+// partículas encolhe as explosões à medida que o conjunto enche, sem nunca
+// passar dele. Só visual: as partículas não afetam o jogo
+package com.deitel.cannongame;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class ParticleSystem
+{
+    // tipos de partícula, cada um desenhado com seu próprio Paint
+    public static final int SPARK = 0;      // fagulha: barreira ou parede
+    public static final int DEBRIS = 1;     // destroço: seção de alvo atingida
+    public static final int KIND_COUNT = 2;
+
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    // abaixo disso, dividir a atualização custa mais do que economiza
+    public static final int MIN_PARALLEL_PARTICLES = 8192;
+
+    // direções dos lançamentos, tiradas de uma tabela para não chamar sin e cos
+    private static final int DIRECTIONS = 64;
+    private static final float[] DIRECTION_X = new float[DIRECTIONS];
+    private static final float[] DIRECTION_Y = new float[DIRECTIONS];
+
+    static
+    {
+        for (int i = 0; i < DIRECTIONS; i++)
+        {
+            DIRECTION_X[i] = (float) Math.cos(2 * Math.PI * i / DIRECTIONS);
+            DIRECTION_Y[i] = (float) Math.sin(2 * Math.PI * i / DIRECTIONS);
+        }
+    }
+
+    // partículas vivas em [0, count)
+    private final int capacity;
+    private int count;
+    private final float[] x;
+    private final float[] y;
+    private final float[] velocityX;
+    private final float[] velocityY;
+    private final float[] gravity;      // aceleração vertical própria de cada tipo
+    private final float[] age;          // segundos desde o lançamento
+    private final float[] life;         // segundos até sumir
+    private final byte[] kind;
+
+    // limite e escala das explosões; a escala vem do governador de quadros,
+    // que roda em outra thread
+    private int budget;
+    private volatile float scale = 1.0f;
+
+    // medidas dos efeitos, proporcionais à tela (configure)
+    private float sparkSpeed = 200;     // pixels por segundo
+    private float debrisSpeed = 120;
+    private float debrisGravity = 900;  // pixels por segundo ao quadrado
+
+    private int seed = 0x2545F491;      // xorshift, só para variar os lançamentos
+
+    // estatísticas
+    private long emitted;
+    private long dropped;               // pedidas além do limite
+
+    // divisão da atualização entre núcleos
+    private Executor executor;
+    private Chunk[] chunks = new Chunk[0];
+    private final AtomicInteger pendingChunks = new AtomicInteger();
+    private volatile Thread waiter;
+    private float chunkSeconds;
+
+    public ParticleSystem()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ParticleSystem(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        this.capacity = capacity;
+        budget = capacity;
+        x = new float[capacity];
+        y = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        gravity = new float[capacity];
+        age = new float[capacity];
+        life = new float[capacity];
+        kind = new byte[capacity];
+    }
+
+    // ajusta velocidades e gravidade ao tamanho da tela
+    public void configure(int width, int height)
+    {
+        sparkSpeed = width / 4f;
+        debrisSpeed = width / 6f;
+        debrisGravity = height * 2f;
+    }
+
+    // limite de partículas vivas, no máximo a capacidade
+    public void setBudget(int budget)
+    {
+        if (budget < 0 || budget > capacity)
+            throw new IllegalArgumentException("budget must be within 0.." + capacity);
+
+        this.budget = budget;
+    }
+
+    // fração das explosões e do limite em uso (FrameGovernor.getParticleScale);
+    // pode ser chamado de qualquer thread
+    public void setScale(float scale)
+    {
+        this.scale = Math.max(0f, Math.min(1f, scale));
+    }
+
+    // divide as atualizações de MIN_PARALLEL_PARTICLES partículas ou mais em
+    // parts partes, uma na thread que chama update e as demais em executor;
+    // null volta a atualizar tudo na thread que chama
+    public void setExecutor(Executor executor, int parts)
+    {
+        if (executor != null && parts < 2)
+            throw new IllegalArgumentException("a parallel update needs at least two parts");
+
+        this.executor = executor;
+        chunks = new Chunk[executor == null ? 0 : parts];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = new Chunk(i);
+    }
+
+    // lança requested partículas do tipo dado a partir de (fromX, fromY), somando
+    // uma fração de (baseVx, baseVy) às direções sorteadas; com o conjunto
+    // mais da metade cheio, a explosão encolhe até zero no limite
+    public void emit(int particleKind, double fromX, double fromY, double baseVx,
+                     double baseVy, int requested)
+    {
+        float currentScale = scale;
+        int limit = (int) (budget * currentScale);
+        int wanted = (int) Math.ceil(requested * currentScale);
+        int free = Math.max(0, limit - count);
+        int allowed = Math.min(wanted, Math.min(free, (int) (2L * wanted * free / Math.max(1, limit))));
+        dropped += requested - allowed;
+        emitted += allowed;
+
+        boolean spark = particleKind == SPARK;
+        float speed = spark ? sparkSpeed : debrisSpeed;
+        float inherit = spark ? 0.3f : 0.1f;    // fração da velocidade da bala
+
+        for (int k = 0; k < allowed; k++)
+        {
+            int i = count++;
+            int direction = nextRandom() & (DIRECTIONS - 1);
+            float magnitude = speed * (0.4f + 0.6f * nextUnit());
+
+            x[i] = (float) fromX;
+            y[i] = (float) fromY;
+            velocityX[i] = DIRECTION_X[direction] * magnitude + (float) baseVx * inherit;
+            velocityY[i] = DIRECTION_Y[direction] * magnitude + (float) baseVy * inherit;
+            gravity[i] = spark ? debrisGravity * 0.25f : debrisGravity;
+            age[i] = 0f;
+            life[i] = spark ? 0.25f + 0.2f * nextUnit() : 0.6f + 0.4f * nextUnit();
+            kind[i] = (byte) particleKind;
+        }
+    } // fim do método emit
+
+    // avança todas as partículas seconds segundos e remove as que expiraram
+    public void update(double seconds)
+    {
+        float dt = (float) seconds;
+        if (executor != null && count >= MIN_PARALLEL_PARTICLES)
+            updateParallel(dt);
+        else
+            integrate(0, count, dt);
+
+        compact();
+    }
+
+    // movimento de [from, to): sem desvios, para que o compilador vetorize o laço
+    private void integrate(int from, int to, float dt)
+    {
+        for (int i = from; i < to; i++)
+        {
+            velocityY[i] += gravity[i] * dt;
+            x[i] += velocityX[i] * dt;
+            y[i] += velocityY[i] * dt;
+            age[i] += dt;
+        }
+    }
+
+    // copia cada partícula para a próxima posição livre e só avança a posição
+    // se ela continua viva; o bit de sinal de age - life diz se está viva
+    private void compact()
+    {
+        int live = 0;
+        for (int i = 0; i < count; i++)
+        {
+            x[live] = x[i];
+            y[live] = y[i];
+            velocityX[live] = velocityX[i];
+            velocityY[live] = velocityY[i];
+            gravity[live] = gravity[i];
+            age[live] = age[i];
+            life[live] = life[i];
+            kind[live] = kind[i];
+            live += Float.floatToRawIntBits(age[i] - life[i]) >>> 31;
+        }
+        count = live;
+    } // fim do método compact
+
+    // divide integrate entre a thread atual e as partes do executor e espera todas
+    private void updateParallel(float dt)
+    {
+        chunkSeconds = dt;
+        waiter = Thread.currentThread();
+        pendingChunks.set(chunks.length - 1);
+
+        for (int i = 1; i < chunks.length; i++)
+        {
+            try
+            {
+                executor.execute(chunks[i]);
+            }
+            catch (RejectedExecutionException e)
+            {
+                chunks[i].run(); // executor encerrado: faz a parte aqui
+            }
+        }
+
+        chunks[0].integrateRange();
+
+        while (pendingChunks.get() > 0)
+            LockSupport.park(this);
+    } // fim do método updateParallel
+
+    // uma das partes da atualização paralela
+    private final class Chunk implements Runnable
+    {
+        private final int index;
+
+        Chunk(int index)
+        {
+            this.index = index;
+        }
+
+        void integrateRange()
+        {
+            int size = (count + chunks.length - 1) / chunks.length;
+            int from = Math.min(count, index * size);
+            integrate(from, Math.min(count, from + size), chunkSeconds);
+        }
+
+        @Override
+        public void run()
+        {
+            integrateRange();
+            if (pendingChunks.decrementAndGet() == 0)
+                LockSupport.unpark(waiter);
+        }
+    } // fim da classe Chunk
+
+    // remove todas as partículas
+    public void clear()
+    {
+        count = 0;
+    }
+
+    // copia as posições das partículas do tipo dado para points, como pares
+    // (x, y) para drawPoints; retorna o número de valores copiados
+    public int copyPoints(int particleKind, float[] points)
+    {
+        int values = 0;
+        for (int i = 0; i < count; i++)
+        {
+            // escreve sempre e só avança quando o tipo confere
+            points[values] = x[i];
+            points[values + 1] = y[i];
+            values += 2 & -(kind[i] == particleKind ? 1 : 0);
+        }
+        return values;
+    } // fim do método copyPoints
+
+    // número aleatório de 32 bits (xorshift)
+    private int nextRandom()
+    {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    // número aleatório em [0, 1)
+    private float nextUnit()
+    {
+        return (nextRandom() >>> 8) / (float) (1 << 24);
+    }
+
+    // acrescenta "particles 120/2048 dropped 3" a summary
+    public void appendSummary(StringBuilder summary)
+    {
+        summary.append(String.format(Locale.US, "particles %d/%d dropped %d",
+                count, (int) (budget * scale), dropped));
+    }
+
+    public int size() { return count; }
+    public int capacity() { return capacity; }
+    public int getBudget() { return budget; }
+    public float getScale() { return scale; }
+    public long getEmitted() { return emitted; }
+    public long getDropped() { return dropped; }
+    public float getX(int i) { return x[i]; }
+    public float getY(int i) { return y[i]; }
+    public float getAge(int i) { return age[i]; }
+    public int getKind(int i) { return kind[i]; }
+} // fim da classe ParticleSystem
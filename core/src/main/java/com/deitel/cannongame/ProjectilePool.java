@@ -0,0 +1,144 @@
+// ProjectilePool.java
+// Conjunto de balas de canhão guardado em arrays primitivos pré-alocados
+// (uma posição por bala em cada array), sem alocação a cada disparo
+package com.deitel.cannongame;
+
+public class ProjectilePool
+{
+    public static final int DEFAULT_CAPACITY = 512; // balas simultâneas no modo de disparo rápido
+
+    // estado de cada bala, indexado pela posição (slot) da bala
+    private final double[] x;           // centro da bala
+    private final double[] y;
+    private final double[] velocityX;   // velocidade da bala
+    private final double[] velocityY;
+    private final double[] previousX;   // centro no início do último passo, para interpolar
+    private final double[] previousY;
+    private final boolean[] alive;      // a posição está ocupada por uma bala na tela?
+
+    // posições livres, usadas como pilha para reaproveitar as balas removidas
+    private final int[] freeSlots;
+    private int freeCount;
+
+    // posições ocupadas, compactadas no início do array para percorrer só as balas vivas
+    private final int[] liveSlots;
+    private final int[] liveIndex;      // índice de cada posição em liveSlots
+    private int liveCount;
+
+    public ProjectilePool(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        x = new double[capacity];
+        y = new double[capacity];
+        velocityX = new double[capacity];
+        velocityY = new double[capacity];
+        previousX = new double[capacity];
+        previousY = new double[capacity];
+        alive = new boolean[capacity];
+        freeSlots = new int[capacity];
+        liveSlots = new int[capacity];
+        liveIndex = new int[capacity];
+        clear();
+    }
+
+    // remove todas as balas
+    public void clear()
+    {
+        int capacity = alive.length;
+
+        // empilha em ordem decrescente para que o primeiro disparo use a posição 0
+        for (int i = 0; i < capacity; i++)
+        {
+            alive[i] = false;
+            freeSlots[i] = capacity - 1 - i;
+        }
+
+        freeCount = capacity;
+        liveCount = 0;
+    }
+
+    // ocupa uma posição livre com uma nova bala; retorna -1 se o conjunto está cheio
+    public int spawn(double startX, double startY, double vx, double vy)
+    {
+        if (freeCount == 0)
+            return -1;
+
+        int slot = freeSlots[--freeCount];
+        x[slot] = previousX[slot] = startX;
+        y[slot] = previousY[slot] = startY;
+        velocityX[slot] = vx;
+        velocityY[slot] = vy;
+        alive[slot] = true;
+
+        liveIndex[slot] = liveCount;
+        liveSlots[liveCount++] = slot;
+        return slot;
+    }
+
+    // devolve a posição ao conjunto de posições livres; a última bala viva
+    // ocupa o lugar dela em liveSlots, então percorra liveSlots de trás para frente
+    // ao remover balas durante a iteração
+    public void release(int slot)
+    {
+        if (!alive[slot])
+            return;
+
+        alive[slot] = false;
+        freeSlots[freeCount++] = slot;
+
+        int index = liveIndex[slot];
+        int last = liveSlots[--liveCount];
+        liveSlots[index] = last;
+        liveIndex[last] = index;
+    }
+
+    // guarda as posições atuais como ponto de partida da interpolação
+    public void savePreviousPositions()
+    {
+        for (int i = 0; i < liveCount; i++)
+        {
+            int slot = liveSlots[i];
+            previousX[slot] = x[slot];
+            previousY[slot] = y[slot];
+        }
+    }
+
+    // move a bala dt segundos em linha reta
+    public void move(int slot, double dt)
+    {
+        x[slot] += dt * velocityX[slot];
+        y[slot] += dt * velocityY[slot];
+    }
+
+    // inverte a direção horizontal da bala
+    public void reverseX(int slot)
+    {
+        velocityX[slot] = -velocityX[slot];
+    }
+
+    public int size() { return liveCount; }
+    public int capacity() { return alive.length; }
+    public boolean isFull() { return freeCount == 0; }
+
+    // posição da i-ésima bala viva, 0 <= i < size()
+    public int liveSlot(int i) { return liveSlots[i]; }
+
+    public boolean isAlive(int slot) { return alive[slot]; }
+    public double getX(int slot) { return x[slot]; }
+    public double getY(int slot) { return y[slot]; }
+    public double getVelocityX(int slot) { return velocityX[slot]; }
+    public double getVelocityY(int slot) { return velocityY[slot]; }
+
+    // posição interpolada entre o passo anterior e o atual; alpha vai de 0 a 1
+    public double getX(int slot, double alpha)
+    {
+        return previousX[slot] + (x[slot] - previousX[slot]) * alpha;
+    }
+
+    public double getY(int slot, double alpha)
+    {
+        return previousY[slot] + (y[slot] - previousY[slot]) * alpha;
+    }
+} // fim da classe ProjectilePool
@@ -0,0 +1,46 @@
+// RenderTarget.java
+// Superfície de desenho usada por GameRenderer; no aplicativo ela repassa as
+// chamadas para um Canvas com objetos Paint já configurados para cada estilo
+package com.deitel.cannongame;
+
+public interface RenderTarget
+{
+    // estilos de desenho, um objeto Paint pré-configurado para cada um
+    int PAINT_BACKGROUND = 0;   // limpa a área de desenho
+    int PAINT_TEXT = 1;         // texto do tempo restante
+    int PAINT_CANNON = 2;       // cano e base do canhão
+    int PAINT_CANNONBALL = 3;   // bala de canhão
+    int PAINT_BLOCKER = 4;      // barreira
+    int PAINT_TARGET_EVEN = 5;  // seções pares do alvo
+    int PAINT_TARGET_ODD = 6;   // seções ímpares do alvo
+    int PAINT_OVERLAY = 7;      // texto do painel de desempenho
+    int PAINT_SPARK = 8;        // fagulhas dos rebotes (ParticleSystem.SPARK)
+    int PAINT_DEBRIS = 9;       // destroços das seções atingidas (ParticleSystem.DEBRIS)
+    int PAINT_COUNT = 10;
+
+    void drawRect(float left, float top, float right, float bottom, int paint);
+
+    void drawLine(float startX, float startY, float stopX, float stopY, int paint);
+
+    // desenha count / 4 linhas com os pontos points[offset] a
+    // points[offset + count - 1], quatro valores (x0, y0, x1, y1) por linha
+    void drawLines(float[] points, int offset, int count, int paint);
+
+    // desenha count / 2 pontos, dois valores (x, y) por ponto, como drawLines
+    void drawPoints(float[] points, int offset, int count, int paint);
+
+    void drawCircle(float centerX, float centerY, float radius, int paint);
+
+    void drawText(char[] text, int index, int count, float x, float y, int paint);
+
+    // passa a desenhar na imagem fora da tela da camada layer (números de
+    // LayerCache), criada ou reaproveitada com o tamanho dado e limpa com
+    // transparência; retorna false, sem mudar nada, se a superfície não guarda camadas
+    boolean beginLayer(int layer, int width, int height);
+
+    // volta a desenhar na tela depois de beginLayer
+    void endLayer();
+
+    // copia a imagem da camada layer para a tela, com o canto superior esquerdo em (left, top)
+    void drawLayer(int layer, float left, float top);
+} // fim da interface RenderTarget
@@ -0,0 +1,65 @@
+// ScoreIndex.java
+// Os melhores resultados do histórico, em ordem, e o total de jogos; é
+// refeito ao ler o log na inicialização e atualizado a cada jogo gravado.
+// Só a thread do ScoreLog altera o índice; qualquer thread pode lê-lo
+package com.deitel.cannongame;
+
+public class ScoreIndex
+{
+    private final ScoreRecord[] top;    // do melhor para o pior
+    private int size;
+    private long games;                 // todos os jogos, dentro ou fora de top
+    private long wins;
+
+    public ScoreIndex(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        top = new ScoreRecord[capacity];
+    }
+
+    // acrescenta um resultado; retorna a posição dele entre os melhores (1 é
+    // o melhor) ou 0 se ficou de fora
+    public synchronized int add(ScoreRecord record)
+    {
+        ++games;
+        if (record.isWon())
+            ++wins;
+
+        // a maioria dos resultados de um log grande não entra: compara com o último
+        if (size == top.length && !record.isBetterThan(top[size - 1]))
+            return 0;
+
+        int position = Math.min(size, top.length - 1);
+        while (position > 0 && record.isBetterThan(top[position - 1]))
+        {
+            top[position] = top[position - 1];
+            --position;
+        }
+
+        top[position] = record;
+        size = Math.min(size + 1, top.length);
+        return position + 1;
+    } // fim do método add
+
+    // o resultado na posição rank (1 é o melhor)
+    public synchronized ScoreRecord get(int rank)
+    {
+        if (rank < 1 || rank > size)
+            throw new IllegalArgumentException("rank " + rank + " is not in the index");
+
+        return top[rank - 1];
+    }
+
+    // o melhor resultado, ou null se nenhum jogo foi gravado
+    public synchronized ScoreRecord getBest()
+    {
+        return size == 0 ? null : top[0];
+    }
+
+    public synchronized int size() { return size; }
+    public int capacity() { return top.length; }
+    public synchronized long getGames() { return games; }
+    public synchronized long getWins() { return wins; }
+} // fim da classe ScoreIndex
@@ -0,0 +1,459 @@
+// ScoreLog.java
+// Histórico dos resultados num arquivo em que só se acrescenta: um
+// cabeçalho e registros de tamanho fixo, cada um com seu CRC. A thread da
+// simulação só coloca o resultado numa fila circular limitada, sem bloquear;
+// a thread do log lê o arquivo na inicialização para refazer o índice dos
+// melhores resultados, grava os registros em lotes e chama fsync no máximo
+// uma vez por intervalo. Um final cortado por uma queda é descartado na
+// leitura
+package com.deitel.cannongame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+public class ScoreLog implements Runnable
+{
+    // cabeçalho: int MAGIC, short VERSION, short RECORD_SIZE
+    public static final int MAGIC = 0x434E534C;     // "CNSL"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+
+    // registro: long instante em ms, double segundos, int tiros, int
+    // (etapa << 8 | vitória), int reservado e int CRC32 dos 28 bytes anteriores
+    public static final int RECORD_SIZE = 32;
+    private static final int CRC_OFFSET = 28;
+
+    public static final int DEFAULT_TOP = 10;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;            // potência de 2
+    public static final long DEFAULT_SYNC_INTERVAL_NANOS = 1000000000L; // 1 s
+
+    private static final int BATCH_RECORDS = 256;       // registros por escrita
+    private static final int READ_RECORDS = 2048;       // registros por leitura
+    private static final long IDLE_PARK_NANOS = 100000000L;
+
+    // recebe os resultados gravados, na thread do log
+    public interface Listener
+    {
+        // rank é a posição entre os melhores (1 é o melhor) ou 0 se ficou de fora
+        void onScoreRecorded(ScoreRecord record, int rank, ScoreIndex index);
+
+        // o arquivo não pôde ser lido ou gravado; os resultados continuam
+        // sendo classificados, só na memória
+        void onScoreLogError(IOException e);
+    }
+
+    private final File file;
+    private final long syncIntervalNanos;
+    private final ScoreIndex index;
+    private volatile Listener listener;
+
+    // fila: um produtor (a thread da simulação) e um consumidor (a thread do log)
+    private final long[] queuedTimes;
+    private final double[] queuedSeconds;
+    private final int[] queuedShots;
+    private final int[] queuedFlags;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // usados só pela thread do log
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_RECORDS * RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final ScoreRecord[] batch = new ScoreRecord[BATCH_RECORDS];
+    private int unsynced;               // registros gravados depois do último fsync
+    private long lastSync;
+
+    // contadores
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong queueDrops = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private volatile long loadedRecords = -1;   // -1 até o arquivo ser lido
+    private volatile long corruptRecords;
+    private volatile long truncatedBytes;
+    private volatile long loadNanos;
+
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    public ScoreLog(File file)
+    {
+        this(file, DEFAULT_TOP, DEFAULT_QUEUE_CAPACITY, DEFAULT_SYNC_INTERVAL_NANOS);
+    }
+
+    public ScoreLog(File file, int top, int queueCapacity, long syncIntervalNanos)
+    {
+        if (queueCapacity <= 0 || (queueCapacity & (queueCapacity - 1)) != 0)
+            throw new IllegalArgumentException("queueCapacity must be a power of 2");
+
+        this.file = file;
+        this.syncIntervalNanos = syncIntervalNanos;
+        index = new ScoreIndex(top);
+        queuedTimes = new long[queueCapacity];
+        queuedSeconds = new double[queueCapacity];
+        queuedShots = new int[queueCapacity];
+        queuedFlags = new int[queueCapacity];
+        mask = queueCapacity - 1;
+    }
+
+    public void setListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    // coloca um resultado na fila; chamado só pela thread produtora. Retorna
+    // false se a fila está cheia e o resultado foi descartado
+    public boolean post(long timeMillis, boolean won, int stage, int shotsFired,
+                        double elapsedSeconds)
+    {
+        posted.lazySet(posted.get() + 1);
+        long t = tail.get();
+
+        if (t - head.get() > mask)
+        {
+            queueDrops.lazySet(queueDrops.get() + 1);
+            return false;
+        }
+
+        int slot = (int) t & mask;
+        queuedTimes[slot] = timeMillis;
+        queuedSeconds[slot] = elapsedSeconds;
+        queuedShots[slot] = shotsFired;
+        queuedFlags[slot] = stage << 8 | (won ? 1 : 0);
+        tail.lazySet(t + 1);
+
+        Thread writer = thread;
+        if (writer != null)
+            LockSupport.unpark(writer);
+
+        return true;
+    } // fim do método post
+
+    // inicia a thread do log, que começa lendo o arquivo
+    public synchronized void start()
+    {
+        if (thread != null)
+            return;
+
+        running = true;
+        Thread writer = new Thread(this, "ScoreLog");
+        writer.setDaemon(true);
+        thread = writer;
+        writer.start();
+    }
+
+    // termina a thread do log e espera por ela; os resultados ainda na fila
+    // são gravados e o arquivo é sincronizado antes de fechar
+    public synchronized void stop()
+    {
+        Thread writer = thread;
+        if (writer == null)
+            return;
+
+        running = false;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+
+        while (writer.isAlive())
+        {
+            try
+            {
+                writer.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        thread = null;
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    } // fim do método stop
+
+    // loop da thread do log
+    @Override
+    public void run()
+    {
+        try
+        {
+            open();
+        }
+        catch (IOException e)
+        {
+            closeQuietly();
+            loadedRecords = 0; // o índice começa vazio
+            reportError(e);
+        }
+
+        lastSync = System.nanoTime();
+        while (true)
+        {
+            if (drain() > 0)
+                continue;
+
+            if (!running && tail.get() == head.get())
+                break;
+
+            // espera novos resultados ou o fim do intervalo do próximo fsync
+            long wait = IDLE_PARK_NANOS;
+            if (unsynced > 0)
+            {
+                wait = lastSync + syncIntervalNanos - System.nanoTime();
+                if (wait <= 0)
+                {
+                    sync();
+                    continue;
+                }
+            }
+            LockSupport.parkNanos(this, wait);
+        }
+
+        if (unsynced > 0)
+            sync();
+        closeQuietly();
+    } // fim do método run
+
+    // abre o arquivo, cria o cabeçalho se ele está vazio e lê todos os
+    // registros para refazer o índice; um final incompleto ou com CRC
+    // inválido é cortado, para que os próximos registros fiquem alinhados
+    private void open() throws IOException
+    {
+        long start = System.nanoTime();
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        long size = channel.size();
+
+        buffer.clear();
+        if (size < HEADER_SIZE)
+        {
+            buffer.putInt(MAGIC).putShort((short) VERSION).putShort((short) RECORD_SIZE).flip();
+            channel.truncate(0);
+            writeFully(0);
+            channel.force(false);
+            size = HEADER_SIZE;
+        }
+        else
+        {
+            buffer.limit(HEADER_SIZE);
+            readFully(0);
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION ||
+                    buffer.getShort() != RECORD_SIZE)
+                throw new IOException(file + " is not a score log");
+        }
+
+        long position = HEADER_SIZE;
+        long validEnd = HEADER_SIZE;    // fim do último registro válido
+        long records = 0;
+        long corrupt = 0;
+
+        while (position + RECORD_SIZE <= size)
+        {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(),
+                    (size - position) / RECORD_SIZE * RECORD_SIZE));
+            readFully(position);
+
+            for (int offset = 0; offset < buffer.limit(); offset += RECORD_SIZE)
+            {
+                ScoreRecord record = decode(buffer.array(), offset);
+                position += RECORD_SIZE;
+
+                if (record == null)
+                {
+                    ++corrupt;
+                    continue;
+                }
+
+                index.add(record);
+                ++records;
+                validEnd = position;
+            }
+        }
+
+        // registros inválidos no meio ficam no arquivo e são pulados a cada
+        // leitura; depois do último válido, são restos de uma gravação interrompida
+        if (validEnd < size)
+        {
+            truncatedBytes = size - validEnd;
+            corrupt -= (position - validEnd) / RECORD_SIZE;
+            channel.truncate(validEnd);
+        }
+
+        channel.position(validEnd);
+        corruptRecords = corrupt;
+        loadedRecords = records;
+        loadNanos = System.nanoTime() - start;
+    } // fim do método open
+
+    // grava os resultados da fila em lotes; retorna o número de resultados retirados
+    private int drain()
+    {
+        long h = head.get();
+        int count = (int) Math.min(tail.get() - h, BATCH_RECORDS);
+        if (count == 0)
+            return 0;
+
+        buffer.clear();
+        for (int i = 0; i < count; i++)
+        {
+            int slot = (int) (h + i) & mask;
+            int flags = queuedFlags[slot];
+            batch[i] = new ScoreRecord(queuedTimes[slot], (flags & 1) != 0, flags >>> 8,
+                    queuedShots[slot], queuedSeconds[slot]);
+            encode(batch[i], buffer.array(), i * RECORD_SIZE, crc);
+        }
+        head.lazySet(h + count);
+        buffer.limit(count * RECORD_SIZE);
+
+        if (channel != null)
+        {
+            try
+            {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                written.lazySet(written.get() + count);
+                unsynced += count;
+
+                if (System.nanoTime() - lastSync >= syncIntervalNanos)
+                    sync();
+            }
+            catch (IOException e)
+            {
+                closeQuietly(); // sem arquivo, os resultados só são classificados
+                reportError(e);
+            }
+        }
+
+        Listener current = listener;
+        for (int i = 0; i < count; i++)
+        {
+            int rank = index.add(batch[i]);
+            if (current != null)
+                current.onScoreRecorded(batch[i], rank, index);
+            batch[i] = null;
+        }
+
+        return count;
+    } // fim do método drain
+
+    // um fsync para todos os registros gravados desde o anterior
+    private void sync()
+    {
+        lastSync = System.nanoTime();
+        if (channel == null || unsynced == 0)
+            return;
+
+        try
+        {
+            channel.force(false);
+            syncs.lazySet(syncs.get() + 1);
+            unsynced = 0;
+        }
+        catch (IOException e)
+        {
+            closeQuietly();
+            reportError(e);
+        }
+    } // fim do método sync
+
+    private void readFully(long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new IOException(file + " shrank while being read");
+        }
+    }
+
+    private void writeFully(long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+
+    private void closeQuietly()
+    {
+        if (channel == null)
+            return;
+
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            // nada a fazer: o canal já não é usado
+        }
+        channel = null;
+        unsynced = 0;
+    }
+
+    private void reportError(IOException e)
+    {
+        Listener current = listener;
+        if (current != null)
+            current.onScoreLogError(e);
+    }
+
+    // escreve o registro de record em data a partir de offset
+    static void encode(ScoreRecord record, byte[] data, int offset, CRC32 crc)
+    {
+        ByteBuffer out = ByteBuffer.wrap(data, offset, RECORD_SIZE);
+        out.putLong(record.getTimeMillis());
+        out.putDouble(record.getElapsedSeconds());
+        out.putInt(record.getShotsFired());
+        out.putInt(record.getStage() << 8 | (record.isWon() ? 1 : 0));
+        out.putInt(0);
+
+        crc.reset();
+        crc.update(data, offset, CRC_OFFSET);
+        out.putInt((int) crc.getValue());
+    } // fim do método encode
+
+    // lê o registro em data a partir de offset; null se o CRC não confere
+    private ScoreRecord decode(byte[] data, int offset)
+    {
+        ByteBuffer in = ByteBuffer.wrap(data, offset, RECORD_SIZE);
+        crc.reset();
+        crc.update(data, offset, CRC_OFFSET);
+        if (in.getInt(offset + CRC_OFFSET) != (int) crc.getValue())
+            return null;
+
+        long timeMillis = in.getLong();
+        double elapsedSeconds = in.getDouble();
+        int shotsFired = in.getInt();
+        int flags = in.getInt();
+        return new ScoreRecord(timeMillis, (flags & 1) != 0, flags >>> 8, shotsFired,
+                elapsedSeconds);
+    } // fim do método decode
+
+    // acrescenta "scores 120 loaded in 3.2 ms, 1 written, 1 syncs" a builder
+    public void appendSummary(StringBuilder builder)
+    {
+        builder.append("scores ").append(Math.max(0, loadedRecords))
+                .append(" loaded in ").append(loadNanos / 100000 / 10.0).append(" ms, ")
+                .append(getWritten()).append(" written, ")
+                .append(getSyncs()).append(" syncs");
+    }
+
+    public ScoreIndex getIndex() { return index; }
+    public boolean isLoaded() { return loadedRecords >= 0; }
+    public long getLoadedRecords() { return loadedRecords; }
+    public long getCorruptRecords() { return corruptRecords; }
+    public long getTruncatedBytes() { return truncatedBytes; }
+    public long getLoadNanos() { return loadNanos; }
+    public long getPosted() { return posted.get(); }
+    public long getQueueDrops() { return queueDrops.get(); }
+    public long getWritten() { return written.get(); }
+    public long getSyncs() { return syncs.get(); }
+} // fim da classe ScoreLog
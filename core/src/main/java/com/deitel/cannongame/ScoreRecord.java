@@ -0,0 +1,44 @@
+// ScoreRecord.java
+// Resultado de um jogo guardado no histórico (ScoreLog): quando terminou, se
+// foi vencido, a etapa alcançada, os tiros e o tempo total
+package com.deitel.cannongame;
+
+public final class ScoreRecord
+{
+    private final long timeMillis;      // fim do jogo (System.currentTimeMillis)
+    private final boolean won;
+    private final int stage;            // última etapa jogada
+    private final int shotsFired;
+    private final double elapsedSeconds;
+
+    public ScoreRecord(long timeMillis, boolean won, int stage, int shotsFired,
+                       double elapsedSeconds)
+    {
+        this.timeMillis = timeMillis;
+        this.won = won;
+        this.stage = stage;
+        this.shotsFired = shotsFired;
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
+    // ordem do placar: vitórias antes de derrotas, depois a etapa mais
+    // adiantada, menos tiros, menos tempo e, no empate, o resultado mais antigo
+    public boolean isBetterThan(ScoreRecord other)
+    {
+        if (won != other.won)
+            return won;
+        if (stage != other.stage)
+            return stage > other.stage;
+        if (shotsFired != other.shotsFired)
+            return shotsFired < other.shotsFired;
+        if (elapsedSeconds != other.elapsedSeconds)
+            return elapsedSeconds < other.elapsedSeconds;
+        return timeMillis < other.timeMillis;
+    } // fim do método isBetterThan
+
+    public long getTimeMillis() { return timeMillis; }
+    public boolean isWon() { return won; }
+    public int getStage() { return stage; }
+    public int getShotsFired() { return shotsFired; }
+    public double getElapsedSeconds() { return elapsedSeconds; }
+} // fim da classe ScoreRecord
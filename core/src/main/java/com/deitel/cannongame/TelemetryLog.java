@@ -0,0 +1,648 @@
+// TelemetryLog.java
+// Telemetria das sessões: disparos, seções atingidas, batidas nas barreiras
+// e travadas de quadro. As threads da simulação e de desenho só colocam o
+// evento numa fila circular pré-alocada, sem locks nem alocação, e o evento
+// é descartado se a fila está cheia. A thread da telemetria junta os
+// eventos em lotes, comprime cada lote com Deflater e o grava em arquivos
+// locais de tamanho limitado; os mais antigos são apagados
+package com.deitel.cannongame;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class TelemetryLog implements Runnable
+{
+    // tipos de evento e o valor que acompanha cada um
+    public static final int SHOT = 0;           // ângulo do disparo em microrradianos
+    public static final int BLOCKER_HIT = 1;    // sem valor
+    public static final int WALL_HIT = 2;       // sem valor
+    public static final int TARGET_HIT = 3;     // seção atingida
+    public static final int FRAME_STALL = 4;    // intervalo do quadro em microssegundos
+    public static final int GAME_OVER = 5;      // 1 vitória, 0 derrota
+    public static final int EVENT_TYPES = 6;
+
+    // cabeçalho de cada arquivo: int MAGIC, short VERSION, short reservado e
+    // o instante da criação em long System.currentTimeMillis e long
+    // System.nanoTime, lidos juntos; o par converte os tempos dos eventos,
+    // que vêm de nanoTime e não têm origem fixa, para o relógio de parede
+    public static final int MAGIC = 0x434E544C;     // "CNTL"
+    public static final int VERSION = 2;    // a versão 1 não tinha o par de relógios
+    public static final int HEADER_SIZE = 24;
+
+    // cada lote: int bytes sem compressão, int bytes comprimidos, int CRC32
+    // dos bytes comprimidos e os bytes comprimidos. Sem compressão, cada
+    // evento é o tipo num byte, a diferença de tempo para o evento anterior
+    // do lote em microssegundos (o primeiro leva o nanoTime inteiro, em
+    // microssegundos) e o valor, os dois em varint zigue-zague
+    public static final int FRAME_HEADER_SIZE = 12;
+    private static final int MAX_EVENT_SIZE = 1 + 10 + 5;
+    public static final int MAX_BATCH_EVENTS = 65536;
+    private static final int MAX_RAW_LENGTH = MAX_BATCH_EVENTS * MAX_EVENT_SIZE;
+
+    public static final String FILE_PREFIX = "telemetry-";
+    public static final String FILE_SUFFIX = ".cntl";
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;         // potência de 2
+    public static final int DEFAULT_BATCH_EVENTS = 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_NANOS = 5000000000L; // 5 s
+    public static final int DEFAULT_MAX_FILE_BYTES = 256 * 1024;
+    public static final int DEFAULT_MAX_FILES = 4;
+
+    private static final long IDLE_PARK_NANOS = 100000000L;
+
+    // recebe os eventos lidos de um arquivo; timeMicros é o instante do
+    // evento em microssegundos desde 1970, como currentTimeMillis * 1000
+    public interface Visitor
+    {
+        void onEvent(int type, long timeMicros, int value);
+    }
+
+    private final File directory;
+    private final int batchEvents;
+    private final long flushIntervalNanos;
+    private final int maxFileBytes;
+    private final int maxFiles;
+
+    // fila: vários produtores (simulação e desenho) e um consumidor. O
+    // produtor reserva a posição com compareAndSet em tail e a publica
+    // gravando em sequences o número dela mais 1; o consumidor só lê
+    // posições publicadas
+    private final long[] queuedTimes;
+    private final int[] queuedTypes;
+    private final int[] queuedValues;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // usados só pela thread da telemetria
+    private final byte[] raw;                   // lote sem compressão
+    private final byte[] frame;                 // cabeçalho e lote comprimido
+    private final ByteBuffer frameHeader;
+    private final byte[] fileHeader = new byte[HEADER_SIZE];
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private int rawLength;
+    private int pendingEvents;                  // eventos no lote atual
+    private long previousMicros;
+    private long batchStart;                    // quando o lote atual começou
+    private final ArrayDeque<File> files = new ArrayDeque<>(); // do mais antigo ao atual
+    private long nextSequence;
+    private FileOutputStream out;
+    private long fileBytes;
+
+    // contadores
+    private final AtomicLong posted = new AtomicLong();
+    private final AtomicLong queueDrops = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong filesCreated = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    private volatile Thread thread;
+    private volatile boolean running;
+    private volatile boolean flushRequested;
+
+    public TelemetryLog(File directory)
+    {
+        this(directory, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_EVENTS,
+                DEFAULT_FLUSH_INTERVAL_NANOS, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    public TelemetryLog(File directory, int queueCapacity, int batchEvents,
+                        long flushIntervalNanos, int maxFileBytes, int maxFiles)
+    {
+        if (queueCapacity <= 0 || (queueCapacity & (queueCapacity - 1)) != 0)
+            throw new IllegalArgumentException("queueCapacity must be a power of 2");
+        if (batchEvents <= 0 || batchEvents > MAX_BATCH_EVENTS)
+            throw new IllegalArgumentException("batchEvents must be between 1 and " +
+                    MAX_BATCH_EVENTS);
+        if (maxFileBytes <= HEADER_SIZE || maxFiles <= 0)
+            throw new IllegalArgumentException("files must hold at least one batch");
+
+        this.directory = directory;
+        this.batchEvents = batchEvents;
+        this.flushIntervalNanos = flushIntervalNanos;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+
+        queuedTimes = new long[queueCapacity];
+        queuedTypes = new int[queueCapacity];
+        queuedValues = new int[queueCapacity];
+        sequences = new AtomicLongArray(queueCapacity);
+        mask = queueCapacity - 1;
+
+        // o lote comprimido pode ficar um pouco maior que o original
+        raw = new byte[batchEvents * MAX_EVENT_SIZE];
+        frame = new byte[FRAME_HEADER_SIZE + raw.length + raw.length / 1000 + 64];
+        frameHeader = ByteBuffer.wrap(frame, 0, FRAME_HEADER_SIZE);
+    }
+
+    // coloca um evento na fila com o instante atual
+    public boolean record(int type, int value)
+    {
+        return record(type, value, System.nanoTime());
+    }
+
+    // coloca um evento na fila; pode ser chamado por qualquer thread e não
+    // aloca nem bloqueia. Retorna false se a fila está cheia e o evento foi
+    // descartado
+    public boolean record(int type, int value, long timeNanos)
+    {
+        posted.incrementAndGet();
+        long t;
+        long queued;
+        do
+        {
+            t = tail.get();
+            queued = t - head.get();
+            if (queued > mask)
+            {
+                queueDrops.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+
+        int slot = (int) t & mask;
+        queuedTimes[slot] = timeNanos;
+        queuedTypes[slot] = type;
+        queuedValues[slot] = value;
+        sequences.lazySet(slot, t + 1); // publica a posição
+
+        // a thread da telemetria dorme entre os lotes; com a fila pela
+        // metade ela é acordada antes que os eventos comecem a ser descartados
+        if (queued == (mask + 1) / 2)
+        {
+            Thread consumer = thread;
+            if (consumer != null)
+                LockSupport.unpark(consumer);
+        }
+        return true;
+    } // fim do método record
+
+    // pede que o lote atual seja gravado já, mesmo incompleto; útil quando
+    // o aplicativo vai para o fundo e pode ser encerrado
+    public void flush()
+    {
+        flushRequested = true;
+        Thread consumer = thread;
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+    }
+
+    // inicia a thread da telemetria
+    public synchronized void start()
+    {
+        if (thread != null)
+            return;
+
+        running = true;
+        Thread consumer = new Thread(this, "TelemetryLog");
+        consumer.setDaemon(true);
+        consumer.setPriority(Thread.MIN_PRIORITY); // não disputa com o jogo
+        thread = consumer;
+        consumer.start();
+    }
+
+    // termina a thread da telemetria e espera por ela; os eventos já
+    // publicados na fila são gravados antes de fechar o arquivo
+    public synchronized void stop()
+    {
+        Thread consumer = thread;
+        if (consumer == null)
+            return;
+
+        running = false;
+        LockSupport.unpark(consumer);
+        boolean interrupted = false;
+
+        while (consumer.isAlive())
+        {
+            try
+            {
+                consumer.join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        thread = null;
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    } // fim do método stop
+
+    // loop da thread da telemetria
+    @Override
+    public void run()
+    {
+        // a numeração continua depois dos arquivos das sessões anteriores
+        files.clear();
+        for (File file : listFiles(directory))
+            files.addLast(file);
+        nextSequence = files.isEmpty() ? 0 : sequenceOf(files.peekLast()) + 1;
+
+        while (true)
+        {
+            if (drain() > 0)
+                continue;
+
+            if (flushRequested)
+            {
+                flushRequested = false;
+                writeBatch();
+            }
+
+            if (!running)
+                break;
+
+            // espera novos eventos ou o fim do intervalo do lote atual
+            long wait = IDLE_PARK_NANOS;
+            if (pendingEvents > 0)
+            {
+                wait = batchStart + flushIntervalNanos - System.nanoTime();
+                if (wait <= 0)
+                {
+                    writeBatch();
+                    continue;
+                }
+            }
+            LockSupport.parkNanos(this, Math.min(wait, IDLE_PARK_NANOS));
+        }
+
+        writeBatch();
+        closeFile();
+    } // fim do método run
+
+    // passa os eventos publicados da fila para o lote, gravando cada lote
+    // completo; retorna o número de eventos retirados
+    private int drain()
+    {
+        long h = head.get();
+        int count = 0;
+
+        while (true)
+        {
+            int slot = (int) h & mask;
+            if (sequences.get(slot) != h + 1)
+                break; // fila vazia ou posição reservada e ainda não publicada
+
+            append(queuedTypes[slot], queuedTimes[slot], queuedValues[slot]);
+            head.lazySet(++h); // libera a posição para os produtores
+            ++count;
+
+            if (pendingEvents == batchEvents)
+                writeBatch();
+        }
+
+        return count;
+    } // fim do método drain
+
+    // acrescenta um evento ao lote sem compressão
+    private void append(int type, long timeNanos, int value)
+    {
+        if (pendingEvents == 0)
+        {
+            batchStart = System.nanoTime();
+            previousMicros = 0; // o primeiro evento leva o instante inteiro
+        }
+
+        long micros = timeNanos / 1000;
+        raw[rawLength++] = (byte) type;
+        rawLength = putVarLong(raw, rawLength, zigZag(micros - previousMicros));
+        rawLength = putVarLong(raw, rawLength, zigZag(value));
+        previousMicros = micros;
+        ++pendingEvents;
+    } // fim do método append
+
+    // comprime o lote atual e o grava, trocando de arquivo quando o atual
+    // passaria do tamanho máximo; sem fsync: perder o último lote numa queda
+    // é aceitável para a telemetria
+    private void writeBatch()
+    {
+        if (pendingEvents == 0)
+            return;
+
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        int compressed = 0;
+        while (!deflater.finished())
+            compressed += deflater.deflate(frame, FRAME_HEADER_SIZE + compressed,
+                    frame.length - FRAME_HEADER_SIZE - compressed);
+
+        crc.reset();
+        crc.update(frame, FRAME_HEADER_SIZE, compressed);
+        frameHeader.clear();
+        frameHeader.putInt(rawLength).putInt(compressed).putInt((int) crc.getValue());
+        int frameLength = FRAME_HEADER_SIZE + compressed;
+
+        try
+        {
+            // um lote maior que o limite ainda vai sozinho num arquivo novo
+            if (out != null && fileBytes > HEADER_SIZE && fileBytes + frameLength > maxFileBytes)
+                closeFile();
+            if (out == null)
+                openFile();
+
+            out.write(frame, 0, frameLength);
+            fileBytes += frameLength;
+            written.addAndGet(pendingEvents);
+            batches.incrementAndGet();
+            rawBytes.addAndGet(rawLength);
+            compressedBytes.addAndGet(frameLength);
+        }
+        catch (IOException e)
+        {
+            // o lote é perdido; o próximo tenta um arquivo novo
+            writeErrors.incrementAndGet();
+            closeFile();
+        }
+
+        rawLength = 0;
+        pendingEvents = 0;
+    } // fim do método writeBatch
+
+    // cria o próximo arquivo e apaga os mais antigos além de maxFiles
+    private void openFile() throws IOException
+    {
+        while (files.size() >= maxFiles)
+            files.removeFirst().delete();
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("could not create " + directory);
+
+        File file = new File(directory, FILE_PREFIX + nextSequence++ + FILE_SUFFIX);
+        out = new FileOutputStream(file);
+        files.addLast(file);
+        filesCreated.incrementAndGet();
+
+        ByteBuffer.wrap(fileHeader).putInt(MAGIC).putShort((short) VERSION)
+                .putShort((short) 0).putLong(System.currentTimeMillis())
+                .putLong(System.nanoTime());
+        out.write(fileHeader);
+        fileBytes = HEADER_SIZE;
+    } // fim do método openFile
+
+    private void closeFile()
+    {
+        if (out == null)
+            return;
+
+        try
+        {
+            out.close();
+        }
+        catch (IOException e)
+        {
+            writeErrors.incrementAndGet();
+        }
+        out = null;
+        fileBytes = 0;
+    }
+
+    // os arquivos de telemetria em directory, do mais antigo ao mais novo
+    public static List<File> listFiles(File directory)
+    {
+        List<File> result = new ArrayList<>();
+        File[] entries = directory.listFiles();
+        if (entries == null)
+            return result;
+
+        List<Long> sequences = new ArrayList<>();
+        for (File entry : entries)
+        {
+            long sequence = sequenceOf(entry);
+            if (sequence >= 0)
+                sequences.add(sequence);
+        }
+
+        Collections.sort(sequences);
+        for (Long sequence : sequences)
+            result.add(new File(directory, FILE_PREFIX + sequence + FILE_SUFFIX));
+        return result;
+    } // fim do método listFiles
+
+    // o número no nome de um arquivo de telemetria, ou -1
+    private static long sequenceOf(File file)
+    {
+        String name = file.getName();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX))
+            return -1;
+
+        try
+        {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(),
+                    name.length() - FILE_SUFFIX.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    } // fim do método sequenceOf
+
+    // lê os eventos de um arquivo de telemetria e os passa para visitor;
+    // retorna o número de eventos. Um lote cortado no final do arquivo (o
+    // aplicativo foi encerrado durante a gravação) é ignorado; arquivos da
+    // versão 1 são recusados, pois não há como pôr os tempos deles no
+    // relógio de parede
+    public static long read(File file, Visitor visitor) throws IOException
+    {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        Inflater inflater = new Inflater();
+        long events = 0;
+
+        try
+        {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a telemetry file");
+            int version = in.readShort();
+            if (version != VERSION)
+                throw new IOException(file + " has unsupported telemetry version " + version);
+            in.readShort();
+            long startMillis = in.readLong();
+            long startNanos = in.readLong();
+
+            // os eventos do arquivo foram gravados pelo mesmo processo que o
+            // criou, com o mesmo nanoTime
+            long offsetMicros = startMillis * 1000 - startNanos / 1000;
+
+            CRC32 crc = new CRC32();
+            byte[] compressed = new byte[0];
+            byte[] data = new byte[0];
+
+            while (true)
+            {
+                int rawLength;
+                int compressedLength;
+                int checksum;
+                try
+                {
+                    rawLength = in.readInt();
+                    compressedLength = in.readInt();
+                    checksum = in.readInt();
+
+                    // tamanhos que o gravador não produz: nada de alocar
+                    // com eles
+                    if (rawLength < 0 || rawLength > MAX_RAW_LENGTH || compressedLength < 0 ||
+                            compressedLength > rawLength + rawLength / 1000 + 64)
+                        throw new IOException(file + " has a corrupt batch header");
+                    if (compressedLength > compressed.length)
+                        compressed = new byte[compressedLength];
+                    in.readFully(compressed, 0, compressedLength);
+                }
+                catch (EOFException e)
+                {
+                    break; // fim do arquivo ou lote incompleto
+                }
+
+                crc.reset();
+                crc.update(compressed, 0, compressedLength);
+                if ((int) crc.getValue() != checksum)
+                    throw new IOException(file + " has a corrupt batch");
+
+                if (rawLength > data.length)
+                    data = new byte[rawLength];
+                inflater.reset();
+                inflater.setInput(compressed, 0, compressedLength);
+                try
+                {
+                    if (inflate(inflater, data, rawLength) != rawLength)
+                        throw new IOException(file + " has a short batch");
+                }
+                catch (DataFormatException e)
+                {
+                    throw new IOException(file + " has an invalid batch", e);
+                }
+
+                events += decodeBatch(data, rawLength, offsetMicros, visitor);
+            }
+        }
+        finally
+        {
+            inflater.end();
+            in.close();
+        }
+
+        return events;
+    } // fim do método read
+
+    private static int inflate(Inflater inflater, byte[] data, int length)
+            throws DataFormatException
+    {
+        int total = 0;
+        while (total < length && !inflater.finished())
+        {
+            int count = inflater.inflate(data, total, length - total);
+            if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                break;
+            total += count;
+        }
+        return total;
+    }
+
+    // passa os eventos de um lote sem compressão para visitor, somando
+    // offsetMicros aos tempos de nanoTime
+    private static int decodeBatch(byte[] data, int length, long offsetMicros,
+                                   Visitor visitor)
+    {
+        int position = 0;
+        int events = 0;
+        long micros = offsetMicros;
+        long[] varLong = new long[1];
+
+        while (position < length)
+        {
+            int type = data[position++];
+            position = getVarLong(data, position, varLong);
+            micros += unZigZag(varLong[0]);
+            position = getVarLong(data, position, varLong);
+            visitor.onEvent(type, micros, (int) unZigZag(varLong[0]));
+            ++events;
+        }
+
+        return events;
+    } // fim do método decodeBatch
+
+    private static long zigZag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // grava value em data a partir de position, 7 bits por byte; retorna a
+    // posição seguinte
+    private static int putVarLong(byte[] data, int position, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            data[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+
+    private static int getVarLong(byte[] data, int position, long[] value)
+    {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = data[position++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        value[0] = result;
+        return position;
+    }
+
+    // acrescenta "telemetry 1200 events, 3 dropped, 19.2 KB -> 4.1 KB in
+    // 2 batches" a builder
+    public void appendSummary(StringBuilder builder)
+    {
+        builder.append("telemetry ").append(getWritten()).append(" events, ")
+                .append(getQueueDrops()).append(" dropped, ")
+                .append(getRawBytes() / 100 / 10.0).append(" KB -> ")
+                .append(getCompressedBytes() / 100 / 10.0).append(" KB in ")
+                .append(getBatches()).append(" batches");
+    }
+
+    public File getDirectory() { return directory; }
+    public long getPosted() { return posted.get(); }
+    public long getQueueDrops() { return queueDrops.get(); }
+    public long getWritten() { return written.get(); }
+    public long getBatches() { return batches.get(); }
+    public long getRawBytes() { return rawBytes.get(); }
+    public long getCompressedBytes() { return compressedBytes.get(); }
+    public long getFilesCreated() { return filesCreated.get(); }
+    public long getWriteErrors() { return writeErrors.get(); }
+} // fim da classe TelemetryLog
@@ -0,0 +1,90 @@
+// TimerText.java
+// Texto do tempo restante montado num buffer de caracteres reaproveitado; o
+// buffer só é reescrito quando o valor exibido (em décimos de segundo) muda
+package com.deitel.cannongame;
+
+public class TimerText
+{
+    private static final String VALUE_FORMAT = "%.1f"; // marcador do valor no formato
+
+    private char[] prefix = new char[0];    // texto antes do valor
+    private char[] suffix = new char[0];    // texto depois do valor
+    private char decimalSeparator = '.';
+    private char[] buffer = new char[32];
+    private int length;
+    private long shownTenths = Long.MIN_VALUE; // valor exibido, em décimos
+    private int rebuilds;                   // quantas vezes o texto foi reescrito
+
+    // usa um formato como "Time remaining: %.1f seconds" (recurso
+    // time_remaining_format); chamado fora do loop do jogo
+    public void setFormat(String format, char separator)
+    {
+        int marker = format.indexOf(VALUE_FORMAT);
+        if (marker < 0)
+            throw new IllegalArgumentException("format must contain " + VALUE_FORMAT);
+
+        prefix = format.substring(0, marker).toCharArray();
+        suffix = format.substring(marker + VALUE_FORMAT.length()).toCharArray();
+        decimalSeparator = separator;
+
+        // espaço para o maior valor possível de um long com sinal
+        int capacity = prefix.length + suffix.length + 24;
+        if (buffer.length < capacity)
+            buffer = new char[capacity];
+
+        shownTenths = Long.MIN_VALUE; // força a reescrita na próxima atualização
+    }
+
+    // atualiza o texto para seconds; retorna true se o texto mudou
+    public boolean update(double seconds)
+    {
+        long tenths = Math.round(seconds * 10); // arredonda como %.1f
+        if (tenths == shownTenths)
+            return false;
+
+        shownTenths = tenths;
+        ++rebuilds;
+
+        int position = 0;
+        System.arraycopy(prefix, 0, buffer, 0, prefix.length);
+        position += prefix.length;
+
+        long magnitude = Math.abs(tenths);
+        if (tenths < 0)
+            buffer[position++] = '-';
+
+        position = appendDigits(magnitude / 10, position);
+        buffer[position++] = decimalSeparator;
+        buffer[position++] = (char) ('0' + magnitude % 10);
+
+        System.arraycopy(suffix, 0, buffer, position, suffix.length);
+        length = position + suffix.length;
+        return true;
+    } // fim do método update
+
+    // escreve os dígitos de value a partir de position e retorna a nova posição
+    private int appendDigits(long value, int position)
+    {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+            ++digits;
+
+        for (int i = position + digits - 1; i >= position; i--)
+        {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return position + digits;
+    }
+
+    public char[] getChars() { return buffer; }
+    public int length() { return length; }
+    public int getRebuilds() { return rebuilds; }
+
+    @Override
+    public String toString()
+    {
+        return new String(buffer, 0, length);
+    }
+} // fim da classe TimerText
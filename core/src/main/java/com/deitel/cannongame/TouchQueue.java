@@ -0,0 +1,123 @@
+// TouchQueue.java
+// Fila circular pré-alocada de toques, com um produtor (a thread da
+// interface gráfica do usuário) e um consumidor (a thread da simulação);
+// nenhuma das pontas bloqueia ou aloca objetos. O consumidor esvazia a fila
+// uma vez por passo e fica só com a última mira e com o pedido de disparo
+package com.deitel.cannongame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TouchQueue
+{
+    public static final int DEFAULT_CAPACITY = 64; // potência de 2
+
+    private final float[] xs;
+    private final float[] ys;
+    private final boolean[] fires;
+    private final int mask;
+
+    // posições absolutas: head é escrita só pelo consumidor, tail só pelo
+    // produtor; lazySet publica os dados da posição antes do novo índice
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // contadores: toques recebidos, descartados com a fila cheia, retirados
+    // pelo consumidor e lotes que chegaram a alterar o jogo
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+
+    // resultado do último drain; usado só pelo consumidor
+    private float aimX;
+    private float aimY;
+    private boolean fireRequested;
+    private int batchSize;
+
+    public TouchQueue()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TouchQueue(int capacity)
+    {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0)
+            throw new IllegalArgumentException("capacity must be a power of 2");
+
+        xs = new float[capacity];
+        ys = new float[capacity];
+        fires = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    // acrescenta um toque em (x, y); fire indica que o toque pede um disparo.
+    // Chamado só pela thread da interface; retorna false se a fila está cheia
+    public boolean post(float x, float y, boolean fire)
+    {
+        received.lazySet(received.get() + 1);
+        long t = tail.get();
+
+        if (t - head.get() > mask) // a simulação está atrasada: o toque é perdido
+        {
+            dropped.lazySet(dropped.get() + 1);
+            return false;
+        }
+
+        int slot = (int) t & mask;
+        xs[slot] = x;
+        ys[slot] = y;
+        fires[slot] = fire;
+        tail.lazySet(t + 1);
+        return true;
+    } // fim do método post
+
+    // retira todos os toques pendentes, guardando a posição do último e se
+    // algum deles pediu um disparo; chamado só pela thread da simulação,
+    // uma vez por passo. Retorna false se não havia toques
+    public boolean drain()
+    {
+        long h = head.get();
+        long t = tail.get();
+        batchSize = (int) (t - h);
+        fireRequested = false;
+
+        if (batchSize == 0)
+            return false;
+
+        for (long i = h; i < t; i++)
+            fireRequested |= fires[(int) i & mask];
+
+        int last = (int) (t - 1) & mask;
+        aimX = xs[last];
+        aimY = ys[last];
+        head.lazySet(t);
+        drained.lazySet(drained.get() + batchSize);
+        return true;
+    } // fim do método drain
+
+    // registra que o último lote retirado alterou o jogo (mirou ou disparou)
+    public void markApplied()
+    {
+        applied.lazySet(applied.get() + 1);
+    }
+
+    // resultado do último drain
+    public float getAimX() { return aimX; }
+    public float getAimY() { return aimY; }
+    public boolean isFireRequested() { return fireRequested; }
+    public int getBatchSize() { return batchSize; }
+
+    public int getCapacity() { return mask + 1; }
+    public long getReceived() { return received.get(); }
+    public long getDropped() { return dropped.get(); }
+    public long getDrained() { return drained.get(); }
+    public long getApplied() { return applied.get(); }
+
+    // acrescenta uma linha como "touches received 120 applied 3 dropped 0"
+    public void appendSummary(StringBuilder builder)
+    {
+        builder.append("touches received ").append(getReceived())
+                .append(" applied ").append(getApplied())
+                .append(" dropped ").append(getDropped());
+    }
+} // fim da classe TouchQueue
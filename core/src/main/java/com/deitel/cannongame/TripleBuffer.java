@@ -0,0 +1,55 @@
+// TripleBuffer.java
+// Buffer triplo sem bloqueio entre um único produtor e um único consumidor:
+// o produtor escreve no buffer de trás, o consumidor lê o da frente, e os
+// dois trocam seus buffers com o do meio por uma única operação atômica
+package com.deitel.cannongame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TripleBuffer<T>
+{
+    private static final int INDEX_MASK = 3;   // índice do buffer do meio
+    private static final int FRESH = 4;        // o buffer do meio ainda não foi lido
+
+    private final Object[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;               // usado só pelo produtor
+    private int front = 1;              // usado só pelo consumidor
+
+    public TripleBuffer(T first, T second, T third)
+    {
+        buffers = new Object[] { first, second, third };
+    }
+
+    // buffer em que o produtor escreve o próximo estado
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer()
+    {
+        return (T) buffers[back];
+    }
+
+    // torna o buffer escrito visível ao consumidor e passa a escrever no
+    // buffer que estava no meio; uma publicação ainda não lida é substituída
+    public void publish()
+    {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    // troca o buffer da frente pelo mais recente publicado; retorna false se
+    // nada foi publicado desde a última troca
+    public boolean update()
+    {
+        if ((middle.get() & FRESH) == 0)
+            return false;
+
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    // buffer que o consumidor lê; não muda até a próxima chamada a update
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer()
+    {
+        return (T) buffers[front];
+    }
+} // fim da classe TripleBuffer
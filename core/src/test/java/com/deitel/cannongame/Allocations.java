@@ -0,0 +1,18 @@
+package com.deitel.cannongame;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Mede os bytes alocados pela thread atual, para os testes sem alocação.
+ */
+final class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {
+    }
+
+    static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
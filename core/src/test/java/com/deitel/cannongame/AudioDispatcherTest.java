@@ -0,0 +1,169 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fila de sons, limite de repetições, vozes com prioridade e a thread do
+ * despachante, com um destino de áudio falso.
+ */
+public class AudioDispatcherTest {
+    private static final long MS = 1000000L;
+
+    private static final int SHOT = 0;
+    private static final int WALL = 1;
+    private static final int TARGET = 2;
+
+    @Test
+    public void queuedSoundsPlayInOrderAndRecordLatency() {
+        RecordingSink sink = new RecordingSink();
+        AudioDispatcher audio = newDispatcher(sink, 8, 4);
+
+        assertTrue(audio.post(SHOT, 0));
+        assertTrue(audio.post(TARGET, 2 * MS));
+        assertEquals(2, audio.drain(5 * MS));
+
+        assertEquals("[play 0, play 2]", sink.calls.toString());
+        assertEquals(2, audio.getPlayed());
+        assertEquals(2, audio.getQueueLatency().getCount());
+        assertEquals(5 * MS, audio.getQueueLatency().getMax());
+        assertEquals(0, audio.drain(6 * MS));
+    }
+
+    @Test
+    public void repeatsWithinTheWindowAreDropped() {
+        RecordingSink sink = new RecordingSink();
+        AudioDispatcher audio = newDispatcher(sink, 8, 4);
+
+        audio.post(WALL, 0);
+        audio.post(WALL, 10 * MS);
+        audio.drain(0);
+        audio.drain(10 * MS);   // 10 ms depois: dentro da janela de 50 ms
+        audio.post(WALL, 60 * MS);
+        audio.drain(60 * MS);
+
+        assertEquals(2, audio.getPlayed());
+        assertEquals(1, audio.getRateLimited());
+    }
+
+    @Test
+    public void fullQueueDropsNewSounds() {
+        RecordingSink sink = new RecordingSink();
+        AudioDispatcher audio = newDispatcher(sink, 4, 4);
+
+        for (int i = 0; i < 6; i++)
+            audio.post(SHOT, i);
+
+        assertEquals(6, audio.getPosted());
+        assertEquals(2, audio.getQueueDrops());
+        assertEquals(4, audio.drain(100 * MS));
+    }
+
+    @Test
+    public void busyVoicesAreStolenFromTheLowestPriority() {
+        RecordingSink sink = new RecordingSink();
+        AudioDispatcher audio = newDispatcher(sink, 8, 2);
+
+        audio.post(SHOT, 0);
+        audio.drain(0);
+        audio.post(WALL, 0);
+        audio.drain(MS);
+        audio.post(TARGET, 0);   // as duas vozes estão ocupadas
+        audio.drain(2 * MS);
+
+        // o disparo tem a menor prioridade: sua voz é interrompida
+        assertEquals("[play 0, play 1, stop 1, play 2]", sink.calls.toString());
+        assertEquals(1, audio.getStolen());
+
+        audio.post(SHOT, 0);    // menos importante que tudo o que está tocando
+        audio.drain(100 * MS);
+        assertEquals(1, audio.getVoiceDrops());
+        assertEquals(3, audio.getPlayed());
+    }
+
+    @Test
+    public void voicesAreFreeAgainAfterTheSoundEnds() {
+        RecordingSink sink = new RecordingSink();
+        AudioDispatcher audio = newDispatcher(sink, 8, 1);
+
+        audio.post(TARGET, 0);
+        audio.drain(0);
+        audio.post(SHOT, 0);
+        audio.drain(100 * MS);  // o alvo ainda toca
+        audio.post(SHOT, 0);
+        audio.drain(600 * MS);  // o alvo terminou em 500 ms
+
+        assertEquals(1, audio.getVoiceDrops());
+        assertEquals(0, audio.getStolen());
+        assertEquals(2, audio.getPlayed());
+    }
+
+    @Test
+    public void dispatcherThreadPlaysPostedSounds() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        AudioDispatcher audio = newDispatcher(sink, 8, 4);
+        audio.start();
+
+        audio.post(SHOT);
+        audio.post(TARGET);
+        long deadline = System.nanoTime() + 5000 * MS;
+        while (audio.getPlayed() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        audio.stop();
+
+        assertEquals(2, audio.getPlayed());
+        assertEquals(2, audio.getQueueLatency().getCount());
+    }
+
+    @Test
+    public void postingAllocatesNothing() {
+        AudioDispatcher audio = newDispatcher(new RecordingSink(), 64, 4);
+        exercise(audio, 20000); // aquece o JIT
+
+        long before = Allocations.allocatedBytes();
+        exercise(audio, 100000);
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertTrue("post allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void exercise(AudioDispatcher audio, int events) {
+        for (int i = 0; i < events; i++) {
+            audio.post(i % 3, i);
+            if ((i & 31) == 0)
+                audio.drain(i);
+        }
+    }
+
+    private static AudioDispatcher newDispatcher(AudioSink sink, int queue, int voices) {
+        AudioDispatcher audio = new AudioDispatcher(sink, queue, voices,
+                AudioDispatcher.DEFAULT_REPEAT_WINDOW_NANOS);
+        audio.defineSound(SHOT, 1, 300 * MS);
+        audio.defineSound(WALL, 2, 300 * MS);
+        audio.defineSound(TARGET, 3, 500 * MS);
+        return audio;
+    }
+
+    // registra as chamadas; cada reprodução recebe um identificador novo
+    private static class RecordingSink implements AudioSink {
+        final List<String> calls = new ArrayList<>();
+        private int nextStream;
+
+        @Override
+        public int play(int sound, int priority) {
+            if (calls.size() < 100) // o teste de alocação chama muitas vezes
+                calls.add("play " + sound);
+            return ++nextStream;
+        }
+
+        @Override
+        public void stop(int streamId) {
+            if (calls.size() < 100) // o teste de alocação chama muitas vezes
+                calls.add("stop " + streamId);
+        }
+    }
+}
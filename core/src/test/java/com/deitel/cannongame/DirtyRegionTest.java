@@ -0,0 +1,231 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Região suja: redesenho completo quando pedido e redesenho parcial que
+ * cobre tudo o que mudou entre dois quadros.
+ */
+public class DirtyRegionTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 480;
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    private final GameSnapshot snapshot = new GameSnapshot();
+
+    @Test
+    public void unionGrowsToCoverEveryRectangle() {
+        DirtyRegion region = new DirtyRegion();
+        region.setScreenSize(WIDTH, HEIGHT);
+        region.beginFrame();
+        region.skipFrame();   // consome o redesenho completo inicial
+
+        region.beginFrame();
+        assertTrue(region.isEmpty());
+        region.union(10.5, 20.5, 30.2, 40.2);
+        region.union(100, 5, 110, 15);
+
+        assertEquals(10, region.getLeft());
+        assertEquals(5, region.getTop());
+        assertEquals(110, region.getRight());
+        assertEquals(41, region.getBottom());
+    }
+
+    @Test
+    public void unionIsClippedToTheScreen() {
+        DirtyRegion region = newRegionAfterFirstFrame();
+
+        region.beginFrame();
+        region.union(-50, -50, 10, 10);
+        region.union(790, 470, 900, 900);
+
+        assertTrue(region.isFullRedraw());
+    }
+
+    @Test
+    public void firstFrameResizeAndResetRedrawEverything() {
+        DirtyRegion region = new DirtyRegion();
+        region.setScreenSize(WIDTH, HEIGHT);
+
+        region.beginFrame();
+        assertTrue(region.isFullRedraw());
+        region.endFrame(0, 0, WIDTH, HEIGHT);
+
+        region.beginFrame();
+        assertTrue(region.isEmpty());
+        region.skipFrame();
+
+        region.invalidateAll();   // novo jogo
+        region.beginFrame();
+        assertTrue(region.isFullRedraw());
+        region.endFrame(0, 0, WIDTH, HEIGHT);
+
+        region.setScreenSize(WIDTH / 2, HEIGHT / 2);
+        region.beginFrame();
+        assertEquals(WIDTH / 2, region.getRight());
+        assertEquals(HEIGHT / 2, region.getBottom());
+        region.endFrame(0, 0, WIDTH / 2, HEIGHT / 2);
+
+        assertEquals(3, region.getFullRedraws());
+        assertEquals(4, region.getFrames());
+        assertEquals((long) WIDTH / 2 * HEIGHT / 2, region.getLastPixels());
+    }
+
+    @Test
+    public void resetRequestedDuringAFrameIsNotLost() {
+        DirtyRegion region = newRegionAfterFirstFrame();
+
+        region.beginFrame();
+        region.invalidateAll();   // chega depois do início do quadro
+        region.skipFrame();
+
+        region.beginFrame();
+        assertTrue(region.isFullRedraw());
+    }
+
+    @Test
+    public void steadyStateRedrawsOnlyMovingStrips() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer();
+        DirtyRegion region = newRegionAfterFirstFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);   // primeiro quadro
+
+        long pixels = 0;
+        int frames = 60;
+        for (int i = 0; i < frames; i++) {
+            simulation.step(FRAME_NANOS);
+            region.beginFrame();
+            renderer.markDirty(snapshotOf(simulation), 1.0, region);
+            assertFalse(region.isFullRedraw());
+            region.endFrame(region.getLeft(), region.getTop(), region.getRight(),
+                    region.getBottom());
+            pixels += region.getLastPixels();
+        }
+
+        // barreira e alvo ficam entre 5/8 e 7/8 da largura: com o texto
+        // redesenhado a cada décimo de segundo, menos da metade da tela por quadro
+        assertTrue("redrew " + pixels / frames + " pixels per frame",
+                pixels / frames < (long) WIDTH * HEIGHT / 2);
+    }
+
+    @Test
+    public void regionCoversPreviousAndCurrentPositions() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer();
+        DirtyRegion region = newRegionAfterFirstFrame();
+        simulation.fire(Math.PI / 2);
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+
+        for (int i = 0; i < 30; i++) {
+            double previousBallX = ballX(simulation);
+            double previousTop = simulation.getObstacles().getTop(0);
+
+            simulation.step(FRAME_NANOS);
+            region.beginFrame();
+            renderer.markDirty(snapshotOf(simulation), 1.0, region);
+
+            int blockerX = (int) simulation.getObstacles().getX(0);
+            double currentTop = simulation.getObstacles().getTop(0);
+            assertCovers(region, blockerX, (int) Math.min(previousTop, currentTop));
+            assertCovers(region, blockerX, (int) Math.max(previousTop, currentTop));
+
+            if (!Double.isNaN(previousBallX))
+                assertCovers(region, (int) previousBallX, HEIGHT / 2);
+            if (!Double.isNaN(ballX(simulation)))
+                assertCovers(region, (int) ballX(simulation), HEIGHT / 2);
+
+            region.skipFrame();
+        }
+    }
+
+    @Test
+    public void aimingDirtiesOldAndNewBarrel() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer();
+        DirtyRegion region = newRegionAfterFirstFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+
+        int oldEndX = simulation.getBarrelEndX();
+        int oldEndY = simulation.getBarrelEndY();
+        simulation.aim(400, 0);
+
+        region.beginFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+        assertCovers(region, oldEndX - 1, oldEndY);
+        assertCovers(region, simulation.getBarrelEndX(), simulation.getBarrelEndY());
+        assertCovers(region, 0, HEIGHT / 2);
+    }
+
+    @Test
+    public void markingAllocatesNothing() {
+        GameSimulation simulation = newSimulation();
+        simulation.setRapidFire(true);
+        GameRenderer renderer = newRenderer();
+        DirtyRegion region = newRegionAfterFirstFrame();
+
+        runFrames(simulation, renderer, region, 2000); // aquece o JIT
+
+        long before = Allocations.allocatedBytes();
+        runFrames(simulation, renderer, region, 5000);
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertTrue("dirty tracking allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private void runFrames(GameSimulation simulation, GameRenderer renderer,
+                                  DirtyRegion region, int frames) {
+        for (int i = 0; i < frames; i++) {
+            if (simulation.isGameOver())
+                simulation.newGame();
+            simulation.fire(0.5 + (i % 20) * 0.05);
+            simulation.step(FRAME_NANOS);
+            region.beginFrame();
+            renderer.markDirty(snapshotOf(simulation), 0.5, region);
+            region.endFrame(region.getLeft(), region.getTop(), region.getRight(),
+                    region.getBottom());
+        }
+    }
+
+    private static void assertCovers(DirtyRegion region, int x, int y) {
+        assertTrue("(" + x + ", " + y + ") outside [" + region.getLeft() + ", "
+                        + region.getTop() + ", " + region.getRight() + ", "
+                        + region.getBottom() + ")",
+                x >= region.getLeft() && x < region.getRight()
+                        && y >= region.getTop() && y < region.getBottom());
+    }
+
+    private static double ballX(GameSimulation simulation) {
+        ProjectilePool projectiles = simulation.getProjectiles();
+        return projectiles.size() == 0 ? Double.NaN : projectiles.getX(projectiles.liveSlot(0));
+    }
+
+    private static DirtyRegion newRegionAfterFirstFrame() {
+        DirtyRegion region = new DirtyRegion();
+        region.setScreenSize(WIDTH, HEIGHT);
+        region.beginFrame();
+        region.endFrame(0, 0, WIDTH, HEIGHT);
+        return region;
+    }
+
+    // estado que a thread da simulação publicaria depois do último passo
+    private GameSnapshot snapshotOf(GameSimulation simulation) {
+        snapshot.copyFrom(simulation, 1000000000L / 120, 0);
+        return snapshot;
+    }
+
+    private static GameSimulation newSimulation() {
+        GameSimulation simulation = new GameSimulation();
+        simulation.setScreenSize(WIDTH, HEIGHT);
+        simulation.newGame();
+        return simulation;
+    }
+
+    private static GameRenderer newRenderer() {
+        GameRenderer renderer = new GameRenderer();
+        renderer.setTimerFormat("Time remaining: %.1f seconds", '.');
+        renderer.setTextMetrics(-40, 10);
+        return renderer;
+    }
+}
@@ -0,0 +1,291 @@
+package com.deitel.cannongame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Física em ponto fixo: trigonometria por tabela, trajetórias comparadas com
+ * uma referência exata, regras do jogo e resultados idênticos bit a bit.
+ */
+public class FixedPointSimulationTest {
+    private static final int TICKS = FixedStepClock.DEFAULT_TICKS_PER_SECOND;
+    private static final double ANGLE_UNIT = 2 * Math.PI / FixedMath.FULL_TURN;
+
+    private FixedPointSimulation simulation;
+
+    @Before
+    public void setUp() {
+        simulation = newSimulation(new GameConfig());
+    }
+
+    @Test
+    public void tableTrigMatchesStrictMath() {
+        double lsb = 1.0 / FixedMath.ONE;
+        for (int angle = -FixedMath.FULL_TURN; angle < 2 * FixedMath.FULL_TURN; angle++) {
+            double radians = angle * ANGLE_UNIT;
+            assertEquals(StrictMath.sin(radians), FixedMath.toDouble(FixedMath.sin(angle)), lsb);
+            assertEquals(StrictMath.cos(radians), FixedMath.toDouble(FixedMath.cos(angle)), lsb);
+        }
+    }
+
+    @Test
+    public void angleOfIsTheNearestBinaryAngle() {
+        for (int y = -300; y <= 300; y += 7) {
+            for (int x = -800; x <= 800; x += 13) {
+                if (x == 0 && y == 0)
+                    continue;
+
+                // 0 aponta para cima (y positivo), um quarto de volta para a direita
+                double exact = Math.atan2(x, y);
+                if (exact < 0)
+                    exact += 2 * Math.PI;
+
+                double error = Math.abs(FixedMath.toRadians(FixedMath.angleOf(x, y)) - exact);
+                error = Math.min(error, 2 * Math.PI - error);
+                assertTrue("angle of (" + x + ", " + y + ") off by " + error,
+                        error <= 0.5 * ANGLE_UNIT + 1e-6);
+            }
+        }
+        assertEquals(FixedMath.QUARTER_TURN, FixedMath.angleOf(5, 0));
+        assertEquals(FixedMath.HALF_TURN, FixedMath.angleOf(0, -5));
+    }
+
+    @Test
+    public void freeFlightFollowsTheExactTrajectory() {
+        int angle = simulation.aim(300, 0);   // para cima, antes da barreira
+        assertTrue(simulation.fire(angle));
+
+        // referência exata: movimento retilíneo uniforme no ângulo usado
+        double speed = 800 * 1.5;
+        double vx = speed * StrictMath.sin(FixedMath.toRadians(angle));
+        double vy = -speed * StrictMath.cos(FixedMath.toRadians(angle));
+        double x0 = simulation.getCannonballRadius();
+        double y0 = 240;
+
+        int ticks = 0;
+        while (simulation.getBallCount() == 1) {
+            double t = (double) ticks / TICKS;
+            assertEquals(x0 + vx * t, FixedMath.toDouble(simulation.getBallX(0)), 0.01);
+            assertEquals(y0 + vy * t, FixedMath.toDouble(simulation.getBallY(0)), 0.01);
+            simulation.step();
+            ticks++;
+        }
+
+        // a bala sai pelo teto quando a borda alcança y = 0
+        double exitTime = (y0 - simulation.getCannonballRadius()) / -vy;
+        assertEquals(exitTime * TICKS, ticks, 1.0);
+    }
+
+    @Test
+    public void obstaclesFollowTheExactBackAndForthMotion() {
+        double height = 480;
+        double length = height * 3 / 8 - height / 8;
+        double span = height - length;
+        double speed = height * 0.5;   // desce a meia altura por segundo
+        FixedPointSimulation game = newSimulation(new GameConfig().setInitialTime(30));
+
+        for (int tick = 0; tick <= 20 * TICKS; tick++) {
+            double travelled = height / 8 + speed * tick / TICKS;
+            double phase = travelled % (2 * span);
+            double exact = phase <= span ? phase : 2 * span - phase;
+
+            assertEquals("tick " + tick, exact,
+                    FixedMath.toDouble(game.getBlockerTop()), 0.05);
+            game.step();
+        }
+    }
+
+    @Test
+    public void slowObstaclesStillMove() {
+        // 0,5 pixel por segundo: menos de um pixel por passo
+        FixedPointSimulation slow = newSimulation(
+                new GameConfig().setBlockerSpeedRatio(0.5 / 480).setInitialTime(100));
+        int start = slow.getBlockerTop();
+
+        for (int tick = 0; tick < 10 * TICKS; tick++)
+            slow.step();
+
+        assertEquals(5.0, FixedMath.toDouble(slow.getBlockerTop() - start), 0.01);
+    }
+
+    @Test
+    public void horizontalShotAtStartHitsBlocker() {
+        assertTrue(simulation.fire(FixedMath.QUARTER_TURN));
+        runFor(0.5);
+
+        assertEquals(0, simulation.getTargetPiecesHit());
+        assertEquals((GameSimulation.INITIAL_TIME - GameSimulation.MISS_PENALTY - 0.5) * TICKS,
+                simulation.getTicksLeft(), 0.0);
+    }
+
+    @Test
+    public void horizontalShotAfterBlockerPassesHitsTarget() {
+        runFor(0.5);
+        assertTrue(simulation.fire(FixedMath.QUARTER_TURN));
+        runFor(0.7);
+
+        assertEquals(1, simulation.getTargetPiecesHit());
+        assertEquals(0, simulation.getBallCount());
+        assertEquals((GameSimulation.INITIAL_TIME + GameSimulation.HIT_REWARD - 1.2) * TICKS,
+                simulation.getTicksLeft(), 0.0);
+    }
+
+    @Test
+    public void hittingEveryPieceWinsAndTimeoutLoses() {
+        FixedPointSimulation single = newSimulation(new GameConfig().setTargetPieces(1));
+        runFor(single, 0.5);
+        single.fire(FixedMath.QUARTER_TURN);
+        runFor(single, 0.7);
+        assertTrue(single.isGameOver());
+        assertEquals(1, single.getTargetPiecesHit());
+
+        runFor(simulation, GameSimulation.INITIAL_TIME);
+        assertTrue(simulation.isGameOver());
+        assertEquals(0, simulation.getTicksLeft());
+        assertFalse(simulation.fire(0));
+    }
+
+    @Test
+    public void theEarlierOfTwoBallsReachingASectionInOneStepScores() {
+        // a bala horizontal chega ao alvo no mesmo passo que a inclinada,
+        // mas antes dela; a inclinada, disparada depois, fica no fim da lista
+        FixedPointSimulation both = twoBallGame();
+        RecordingListener listener = new RecordingListener();
+        both.setListener(listener);
+        assertTrue(both.fire(FixedMath.QUARTER_TURN));
+        assertTrue(both.fire(FixedMath.QUARTER_TURN - degrees(3)));
+        int ticks = runUntilOver(both);
+
+        FixedPointSimulation alone = twoBallGame();
+        alone.fire(FixedMath.QUARTER_TURN);
+        assertEquals(ticks, runUntilOver(alone));
+
+        assertTrue(listener.won);
+        assertEquals(1, listener.targetHits);
+        assertEquals(1, both.getBallCount());
+        assertTrue(both.getBallVelocityY(0) < 0); // sobrou a bala inclinada
+    }
+
+    @Test
+    public void anEarlierPenaltyIsAppliedBeforeALaterWinInTheSameStep() {
+        FixedPointSimulation alone = twoBallGame();
+        playPenaltyScript(alone, false);
+
+        // a bala inclinada bate na barreira no passo em que a horizontal
+        // vence; a bala que sai pelo teto a põe antes da horizontal na lista
+        FixedPointSimulation both = twoBallGame();
+        RecordingListener listener = new RecordingListener();
+        both.setListener(listener);
+        playPenaltyScript(both, true);
+
+        assertTrue(listener.won);
+        assertEquals(1, listener.blockerHits);
+        assertEquals(alone.getElapsedTicks(), both.getElapsedTicks());
+        assertEquals(alone.getTicksLeft() - GameSimulation.MISS_PENALTY * TICKS,
+                both.getTicksLeft(), 0.0);
+    }
+
+    @Test
+    public void sameInputsGiveBitIdenticalStates() {
+        FixedPointSimulation game = newSimulation(new GameConfig());
+        long first = playScriptedGame(game);
+        assertEquals(first, playScriptedGame(newSimulation(new GameConfig())));
+
+        // só aritmética inteira e tabelas de StrictMath: o valor é o mesmo
+        // em qualquer JVM ou dispositivo
+        assertEquals(0x8A426399A84500A5L, first);
+
+        // e o jogo termina como na física em ponto flutuante
+        GameSimulation reference = new GameSimulation(new GameConfig(),
+                ProjectilePool.DEFAULT_CAPACITY);
+        reference.setScreenSize(800, 480);
+        reference.newGame();
+        reference.setRapidFire(true);
+        RecordingListener listener = new RecordingListener();
+        reference.setListener(listener);
+        for (int tick = 0; !reference.isGameOver(); tick++) {
+            if (tick % 20 == 0)
+                reference.fire(reference.aim(700, 60 + (tick * 37) % 360));
+            reference.step(1000000000L / TICKS);
+        }
+
+        assertEquals(listener.won, game.getTargetPiecesHit() == game.getTargetPieces());
+        assertEquals(reference.getShotsFired(), game.getShotsFired());
+        assertEquals(reference.getTargetPiecesHit(), game.getTargetPiecesHit());
+    }
+
+    private static long playScriptedGame(FixedPointSimulation game) {
+        game.setRapidFire(true);
+
+        for (int tick = 0; !game.isGameOver(); tick++) {
+            if (tick % 20 == 0)
+                game.fire(game.aim(700, 60 + (tick * 37) % 360));
+            game.step();
+        }
+
+        return game.checksum();
+    }
+
+    // uma bala sobe ao teto, a horizontal vai ao alvo e, com withBlockerShot,
+    // uma terceira bate na barreira no passo em que a horizontal chega
+    private static void playPenaltyScript(FixedPointSimulation game, boolean withBlockerShot) {
+        game.fire(0);
+        game.fire(FixedMath.QUARTER_TURN);
+        for (int tick = 0; tick < 17; tick++)
+            game.step();
+        if (withBlockerShot)
+            assertTrue(game.fire(FixedMath.QUARTER_TURN - degrees(20)));
+        runUntilOver(game);
+    }
+
+    private static int runUntilOver(FixedPointSimulation game) {
+        int ticks = 0;
+        while (!game.isGameOver()) {
+            game.step();
+            ticks++;
+        }
+        return ticks;
+    }
+
+    private static int degrees(int degrees) {
+        return FixedMath.FULL_TURN * degrees / 360;
+    }
+
+    // alvo e barreira parados, alvo de uma seção e disparo rápido
+    private static FixedPointSimulation twoBallGame() {
+        FixedPointSimulation game = newSimulation(new GameConfig().setTargetPieces(1)
+                .setBlockerSpeedRatio(0).setTargetSpeedRatio(0));
+        game.setRapidFire(true);
+        return game;
+    }
+
+    private void runFor(double seconds) {
+        runFor(simulation, seconds);
+    }
+
+    private static void runFor(FixedPointSimulation game, double seconds) {
+        for (int tick = 0; tick < Math.round(seconds * TICKS); tick++)
+            game.step();
+    }
+
+    private static class RecordingListener implements GameSimulation.Listener {
+        int blockerHits, targetHits;
+        boolean won;
+
+        @Override public void onCannonFired() { }
+        @Override public void onBlockerHit() { blockerHits++; }
+        @Override public void onWallHit() { }
+        @Override public void onTargetHit(int section) { targetHits++; }
+        @Override public void onGameOver(boolean won) { this.won = won; }
+    }
+
+    private static FixedPointSimulation newSimulation(GameConfig config) {
+        FixedPointSimulation game = new FixedPointSimulation(config, TICKS,
+                ProjectilePool.DEFAULT_CAPACITY);
+        game.setScreenSize(800, 480);
+        game.newGame();
+        return game;
+    }
+}
@@ -0,0 +1,71 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Passos fixos, limite de recuperação, interpolação e ritmo de quadros do FixedStepClock.
+ */
+public class FixedStepClockTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void accumulatesPartialStepsUntilAFullStepIsAvailable() {
+        FixedStepClock clock = new FixedStepClock(100, 60, 5); // passo de 10 ms
+        clock.reset(0);
+
+        assertEquals(0, clock.advance(4 * MS));
+        assertEquals(0.4, clock.getAlpha(), 1e-9);
+        assertEquals(1, clock.advance(13 * MS));
+        assertEquals(0.3, clock.getAlpha(), 1e-9);
+        assertEquals(2, clock.advance(33 * MS));
+        assertEquals(0.3, clock.getAlpha(), 1e-9);
+    }
+
+    @Test
+    public void capsCatchUpStepsAndDropsTheBacklog() {
+        FixedStepClock clock = new FixedStepClock(100, 60, 5);
+        clock.reset(0);
+
+        // uma pausa de 1 s (coleta de lixo, surface bloqueada) não gera 100 passos
+        assertEquals(5, clock.advance(1000 * MS));
+        assertEquals(950 * MS, clock.getDroppedNanos());
+        assertEquals(1, clock.advance(1010 * MS));
+    }
+
+    @Test
+    public void simulatedTimeIsIndependentOfFrameSlicing() {
+        FixedStepClock coarse = new FixedStepClock(120, 60, 1000);
+        FixedStepClock fine = new FixedStepClock(120, 60, 1000);
+        coarse.reset(0);
+        fine.reset(0);
+
+        int coarseSteps = coarse.advance(1000 * MS);
+        int fineSteps = 0;
+        for (long t = 7 * MS; t <= 1000 * MS; t += 7 * MS)
+            fineSteps += fine.advance(t);
+        fineSteps += fine.advance(1000 * MS);
+
+        assertEquals(coarseSteps, fineSteps);
+        assertEquals(coarse.getAlpha(), fine.getAlpha(), 1e-9);
+    }
+
+    @Test
+    public void frameWaitPacesToTheTargetRate() {
+        FixedStepClock clock = new FixedStepClock(120, 50, 5); // quadro de 20 ms
+        clock.reset(0);
+
+        assertEquals(15 * MS, clock.frameWait(5 * MS));   // quadro pronto cedo: espera
+        assertEquals(0, clock.frameWait(45 * MS));        // atrasou menos de um período
+        assertEquals(0, clock.frameWait(200 * MS));       // atrasou muito: reinicia o prazo
+        assertEquals(20 * MS, clock.frameWait(200 * MS));
+    }
+
+    @Test
+    public void zeroFrameRateNeverWaits() {
+        FixedStepClock clock = new FixedStepClock(120, 0, 5);
+        clock.reset(0);
+        assertEquals(0, clock.frameWait(1));
+    }
+}
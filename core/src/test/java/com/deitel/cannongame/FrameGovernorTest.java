@@ -0,0 +1,156 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Decisões do governador de taxa de quadros e qualidade com sequências
+ * sintéticas de tempos de quadro.
+ */
+public class FrameGovernorTest {
+    private static final long MS = 1000000L;
+    private static final int WINDOW = FrameGovernor.DEFAULT_WINDOW_FRAMES;
+
+    @Test
+    public void startsAtFullRateAndHighQuality() {
+        FrameGovernor governor = new FrameGovernor();
+
+        assertEquals(60, governor.getFrameRate());
+        assertEquals(FrameGovernor.QUALITY_HIGH, governor.getQuality());
+        assertTrue(governor.isAntiAlias());
+        assertFalse(governor.isOverlayCompact());
+        assertEquals(1.0f, governor.getParticleScale(), 0.0f);
+    }
+
+    @Test
+    public void sustainedOverloadStepsDownOneLevelPerWindow() {
+        FrameGovernor governor = new FrameGovernor();
+
+        assertEquals(1, feed(governor, 15 * MS, WINDOW));   // 90% de 16,7 ms
+        assertEquals(60, governor.getFrameRate());
+        assertEquals(FrameGovernor.QUALITY_MEDIUM, governor.getQuality());
+
+        assertEquals(1, feed(governor, 15 * MS, WINDOW));
+        assertEquals(30, governor.getFrameRate());
+
+        // a 30 fps 15 ms cabem no período: o nível se mantém
+        assertEquals(0, feed(governor, 15 * MS, 100 * WINDOW));
+        assertEquals(2, governor.getLevel());
+        assertEquals(2, governor.getDowngrades());
+        assertEquals(0, governor.getUpgrades());
+    }
+
+    @Test
+    public void heavyLoadEndsAtTheLowestLevel() {
+        FrameGovernor governor = new FrameGovernor();
+
+        feed(governor, 50 * MS, 10 * WINDOW);
+
+        assertEquals(FrameGovernor.LEVEL_COUNT - 1, governor.getLevel());
+        assertEquals(30, governor.getFrameRate());
+        assertEquals(FrameGovernor.QUALITY_LOW, governor.getQuality());
+        assertTrue(governor.isOverlayCompact());
+        assertEquals(0.25f, governor.getParticleScale(), 0.0f);
+    }
+
+    @Test
+    public void isolatedSpikesDoNotDowngrade() {
+        FrameGovernor governor = new FrameGovernor();
+
+        for (int window = 0; window < 50; window++) {
+            for (int frame = 0; frame < WINDOW; frame++) {
+                // cinco quadros lentos por janela, abaixo do limite de 10%
+                long work = frame % 12 == 0 ? 40 * MS : 4 * MS;
+                assertFalse(governor.recordFrame(work));
+            }
+        }
+
+        assertEquals(0, governor.getLevel());
+    }
+
+    @Test
+    public void recoveryNeedsSeveralCalmWindows() {
+        FrameGovernor governor = new FrameGovernor();
+        governor.setLevel(2);
+
+        assertEquals(0, feed(governor, 5 * MS, 2 * WINDOW));
+        assertEquals(2, governor.getLevel());
+
+        assertEquals(1, feed(governor, 5 * MS, WINDOW));
+        assertEquals(1, governor.getLevel());
+
+        // um quadro apertado na janela recomeça a contagem
+        feed(governor, 5 * MS, 2 * WINDOW);
+        governor.recordFrame(10 * MS);
+        feed(governor, 5 * MS, 3 * WINDOW - 1);
+        assertEquals(1, governor.getLevel());
+
+        feed(governor, 5 * MS, WINDOW);
+        assertEquals(0, governor.getLevel());
+        assertEquals(2, governor.getUpgrades());
+    }
+
+    @Test
+    public void borderlineLoadDoesNotOscillate() {
+        FrameGovernor governor = new FrameGovernor();
+
+        // 12 ms: lento demais para promover a partir do nível 1, rápido
+        // demais para rebaixar o nível 0
+        assertEquals(0, feed(governor, 12 * MS, 100 * WINDOW));
+        assertEquals(0, governor.getLevel());
+
+        governor.setLevel(1);
+        assertEquals(0, feed(governor, 12 * MS, 100 * WINDOW));
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void alternatingLoadSettlesAtTheSlowerLevel() {
+        FrameGovernor governor = new FrameGovernor();
+
+        // meio segundo pesado, meio segundo leve, repetidamente
+        int changes = 0;
+        for (int second = 0; second < 120; second++) {
+            changes += feed(governor, 16 * MS, WINDOW / 2);
+            changes += feed(governor, 3 * MS, WINDOW / 2);
+        }
+
+        assertEquals(2, governor.getLevel());
+        assertEquals(2, changes);
+    }
+
+    @Test
+    public void invalidArgumentsAreRejected() {
+        try {
+            new FrameGovernor(0);
+            fail("a window needs frames");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            new FrameGovernor().setLevel(FrameGovernor.LEVEL_COUNT);
+            fail("level out of range");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void summaryShowsTheCurrentLevel() {
+        FrameGovernor governor = new FrameGovernor();
+        feed(governor, 15 * MS, 2 * WINDOW);
+
+        StringBuilder summary = new StringBuilder();
+        governor.appendSummary(summary);
+        assertEquals("governor 30 fps quality 1 down 2 up 0", summary.toString());
+    }
+
+    // registra frames quadros com o mesmo tempo e retorna quantas mudanças houve
+    private static int feed(FrameGovernor governor, long workNanos, int frames) {
+        int changes = 0;
+        for (int i = 0; i < frames; i++)
+            if (governor.recordFrame(workNanos))
+                changes++;
+        return changes;
+    }
+}
@@ -0,0 +1,129 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Histogramas de faixas fixas, quadros perdidos e texto do painel de desempenho.
+ */
+public class FrameStatsTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void percentilesRoundUpToTheBucketLimit() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i * MS / 10);   // 0,1 ms a 10 ms
+
+        assertEquals(100, histogram.getCount());
+        // 5 ms cai na faixa [5,00 ms, 5,05 ms)
+        assertEquals(5050000L, histogram.getPercentile(50));
+        assertEquals(9550000L, histogram.getPercentile(95));
+        assertEquals(9950000L, histogram.getPercentile(99));
+        assertEquals(10 * MS, histogram.getPercentile(100));   // limitado ao máximo
+        assertEquals(10 * MS, histogram.getMax());
+    }
+
+    @Test
+    public void percentileNeverExceedsTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1234);
+
+        assertEquals(1234, histogram.getPercentile(50));
+        assertEquals(1234, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void durationsBeyondTheLastBucketAreKept() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(MS);
+        histogram.record(500 * MS);   // uma pausa longa
+
+        assertEquals(500 * MS, histogram.getPercentile(99));
+        assertEquals(500 * MS, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void longFrameIntervalsCountDroppedFrames() {
+        FrameStats stats = new FrameStats();
+        long period = 1000000000L / 60;
+
+        stats.recordFrameInterval(period, period);
+        stats.recordFrameInterval(period * 14 / 10, period);   // atraso tolerado
+        assertEquals(0, stats.getDroppedFrames());
+
+        stats.recordFrameInterval(2 * period, period);
+        stats.recordFrameInterval(4 * period + 1000, period);
+        assertEquals(4, stats.getDroppedFrames());
+
+        stats.recordFrameInterval(10 * period, 0);   // sem taxa de quadros: nada é perdido
+        assertEquals(4, stats.getDroppedFrames());
+        assertEquals(5, stats.getHistogram(FrameStats.FRAME).getCount());
+    }
+
+    @Test
+    public void formatsPercentilesInMilliseconds() {
+        FrameStats stats = new FrameStats();
+        stats.record(FrameStats.DRAW, 420000);   // faixa [0,40 ms, 0,45 ms)
+        stats.record(FrameStats.DRAW, 4853000);
+
+        char[] line = new char[FrameStats.MAX_LINE_LENGTH];
+        int length = stats.formatLine(FrameStats.DRAW, line);
+        assertEquals("draw p50 0.45 p95 4.85 p99 4.85 max 4.85 ms", new String(line, 0, length));
+
+        length = stats.formatLine(FrameStats.UPDATE, line);
+        assertEquals("update p50 0.00 p95 0.00 p99 0.00 max 0.00 ms", new String(line, 0, length));
+    }
+
+    @Test
+    public void longestLineFitsTheBuffer() {
+        FrameStats stats = new FrameStats();
+        stats.record(FrameStats.UPDATE, Long.MAX_VALUE / 2);
+
+        char[] line = new char[FrameStats.MAX_LINE_LENGTH];
+        int length = stats.formatLine(FrameStats.UPDATE, line);
+        assertTrue(length <= FrameStats.MAX_LINE_LENGTH);
+    }
+
+    @Test
+    public void summaryHasOneLinePerPhaseAndDroppedFrames() {
+        FrameStats stats = new FrameStats();
+        stats.recordFrameInterval(3 * MS * 17, 17 * MS);
+
+        StringBuilder summary = new StringBuilder();
+        stats.appendSummary(summary);
+        String[] lines = summary.toString().split("\n");
+
+        assertEquals(FrameStats.PHASE_COUNT + 1, lines.length);
+        assertTrue(lines[FrameStats.LOCK_CANVAS].startsWith("lock p50"));
+        assertEquals("dropped frames 2", lines[FrameStats.PHASE_COUNT]);
+    }
+
+    @Test
+    public void recordingAndFormattingAllocateNothing() {
+        FrameStats stats = new FrameStats();
+        char[] line = new char[FrameStats.MAX_LINE_LENGTH];
+
+        exercise(stats, line, 20000); // aquece o JIT
+
+        long before = Allocations.allocatedBytes();
+        exercise(stats, line, 100000);
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertTrue("stats allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void exercise(FrameStats stats, char[] line, int frames) {
+        for (int i = 0; i < frames; i++) {
+            stats.record(i % FrameStats.FRAME, (i * 7919L) % (20 * MS));
+            stats.recordFrameInterval(16 * MS + (i % 5) * MS, 1000000000L / 60);
+            if (i % 30 == 0)
+                stats.formatLine(i % FrameStats.PHASE_COUNT, line);
+        }
+    }
+}
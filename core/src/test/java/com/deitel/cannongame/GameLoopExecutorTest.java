@@ -0,0 +1,185 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+/**
+ * Estados do executor do loop: pausa sem girar, retomada na mesma thread,
+ * encerramento e medida do tempo de retomada.
+ */
+public class GameLoopExecutorTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Test
+    public void pausedLoopParksAndResumesOnTheSameThread() throws Exception {
+        CountingLoop loop = new CountingLoop();
+        GameLoopExecutor executor = new GameLoopExecutor("test-loop", loop);
+
+        executor.resume();
+        awaitRuns(loop, 10);
+        executor.pause();
+        int pausedAt = loop.runs.get();
+        Thread thread = executor.getThread();
+
+        Thread.sleep(50);
+        assertEquals(pausedAt, loop.runs.get());
+        assertTrue(executor.isPaused());
+        awaitThreadState(thread, Thread.State.WAITING); // estacionada, sem girar
+
+        executor.resume();
+        awaitRuns(loop, pausedAt + 10);
+        assertSame(thread, executor.getThread());
+        assertEquals(2, loop.resumes.get());
+
+        executor.shutdown();
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void pauseWaitsForTheIterationInProgress() throws Exception {
+        final AtomicBoolean inside = new AtomicBoolean();
+        final AtomicInteger runs = new AtomicInteger();
+        GameLoopExecutor executor = new GameLoopExecutor("slow-loop", new GameLoopExecutor.Loop() {
+            @Override
+            public void onResume() {
+            }
+
+            @Override
+            public void runOnce() {
+                inside.set(true);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                runs.incrementAndGet();
+                inside.set(false);
+            }
+        });
+
+        executor.resume();
+        while (runs.get() == 0)
+            Thread.sleep(1);
+
+        for (int i = 0; i < 5; i++) {
+            executor.pause();
+            assertFalse(inside.get());   // nenhuma volta em andamento
+            executor.resume();
+        }
+        executor.shutdown();
+        assertFalse(inside.get());
+    }
+
+    @Test
+    public void pauseRightAfterResumeDoesNotHang() {
+        CountingLoop loop = new CountingLoop();
+        GameLoopExecutor executor = new GameLoopExecutor("quick-loop", loop);
+
+        for (int i = 0; i < 200; i++) {
+            executor.resume();
+            executor.pause();
+        }
+
+        assertEquals(GameLoopExecutor.PAUSED, executor.getState());
+        executor.shutdown();
+        assertEquals(GameLoopExecutor.SHUT_DOWN, executor.getState());
+    }
+
+    @Test
+    public void shutdownIsFinal() throws Exception {
+        CountingLoop loop = new CountingLoop();
+        GameLoopExecutor executor = new GameLoopExecutor("final-loop", loop);
+        executor.shutdown();   // nunca iniciado
+        executor.resume();
+
+        assertEquals(GameLoopExecutor.SHUT_DOWN, executor.getState());
+        assertEquals(Thread.State.NEW, executor.getThread().getState());
+        assertEquals(0, loop.runs.get());
+    }
+
+    @Test
+    public void loopCanPauseItself() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final GameLoopExecutor[] executor = new GameLoopExecutor[1];
+        executor[0] = new GameLoopExecutor("self-pausing", new GameLoopExecutor.Loop() {
+            @Override
+            public void onResume() {
+            }
+
+            @Override
+            public void runOnce() {
+                if (runs.incrementAndGet() == 3)
+                    executor[0].pause(); // não espera por si mesma
+            }
+        });
+
+        executor[0].resume();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!executor[0].isPaused() && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        Thread.sleep(20);
+
+        assertEquals(3, runs.get());
+        executor[0].shutdown();
+    }
+
+    @Test
+    public void resumeLatencyCoversTheFirstIteration() throws Exception {
+        CountingLoop loop = new CountingLoop();
+        GameLoopExecutor executor = new GameLoopExecutor("timed-loop", loop);
+
+        executor.resume();
+        awaitRuns(loop, 5);
+        executor.pause();
+        executor.resume();
+        awaitRuns(loop, loop.runs.get() + 5);
+        executor.shutdown();
+
+        assertEquals(2, executor.getResumeLatency().getCount());
+        assertTrue(executor.getLastResumeLatency() > 0);
+        assertTrue(executor.getLastResumeLatency() < TIMEOUT_MILLIS * 1000000L);
+
+        StringBuilder summary = new StringBuilder();
+        executor.appendSummary(summary);
+        assertTrue(summary.toString(), summary.toString().startsWith("timed-loop resume p50 "));
+    }
+
+    private static void awaitRuns(CountingLoop loop, int runs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (loop.runs.get() < runs) {
+            assertTrue("loop stalled at " + loop.runs.get(), System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitThreadState(Thread thread, Thread.State state)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (thread.getState() != state) {
+            assertTrue("thread is " + thread.getState(), System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    // conta as voltas e as retomadas; cada volta espera um pouco, como um quadro
+    private static class CountingLoop implements GameLoopExecutor.Loop {
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicInteger resumes = new AtomicInteger();
+
+        @Override
+        public void onResume() {
+            resumes.incrementAndGet();
+        }
+
+        @Override
+        public void runOnce() {
+            runs.incrementAndGet();
+            LockSupport.parkNanos(100000);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Texto do cronômetro, quadro sem alocação e desenho em lote dos alvos e das
+ * partículas do GameRenderer.
+ */
+public class GameRendererTest {
+    private static final String FORMAT = "Time remaining: %.1f seconds";
+
+    private final GameSnapshot snapshot = new GameSnapshot();
+
+    @Test
+    public void timerTextMatchesStringFormat() {
+        TimerText text = new TimerText();
+        text.setFormat(FORMAT, '.');
+
+        double[] values = { 0.0, 0.04, 0.05, 1.25, 9.96, 10.0, 12.34, 123.45 };
+        for (double value : values) {
+            text.update(value);
+            assertEquals(String.format(Locale.US, FORMAT, value), text.toString());
+        }
+    }
+
+    @Test
+    public void timerTextUsesLocaleDecimalSeparator() {
+        TimerText text = new TimerText();
+        text.setFormat(FORMAT, ',');
+        text.update(7.5);
+        assertEquals("Time remaining: 7,5 seconds", text.toString());
+    }
+
+    @Test
+    public void timerTextIsRebuiltOnlyWhenDisplayedValueChanges() {
+        TimerText text = new TimerText();
+        text.setFormat(FORMAT, '.');
+
+        assertTrue(text.update(9.99));
+        assertFalse(text.update(9.97));   // continua exibindo 10.0
+        assertTrue(text.update(9.94));
+        assertEquals(2, text.getRebuilds());
+    }
+
+    @Test
+    public void rendersDefaultLevel() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer();
+        CountingTarget target = new CountingTarget();
+
+        simulation.fire(Math.PI / 2);
+        simulation.step(1000000000L / 60);
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        assertEquals(1, target.rects);
+        assertEquals(1, target.texts);
+        assertEquals(2, target.circles);              // bala e base do canhão
+        assertEquals(1 + 1 + GameSimulation.TARGET_PIECES, target.lines); // cano, barreira, alvo
+        assertEquals(GameSimulation.TARGET_PIECES / 2, target.oddPieces);
+        assertEquals(2, target.batches);              // uma chamada por cor do alvo
+    }
+
+    @Test
+    public void targetSectionsAreDrawnInTwoBatchesWhateverTheirNumber() {
+        GameSimulation simulation = newSimulation(100); // seções de 3,6 pixels
+        ObstacleField obstacles = simulation.getObstacles();
+        int first = obstacles.getFirstPiece(1);
+        obstacles.hitPiece(first + 1);
+        obstacles.hitPiece(first + 64);
+        obstacles.hitPiece(first + 99);
+
+        CountingTarget target = new CountingTarget();
+        newRenderer().render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        assertEquals(1 + 1 + 97, target.lines);      // cano, barreira e seções intactas
+        assertEquals(50 - 2, target.oddPieces);      // 1 e 99 são ímpares
+        assertEquals(2, target.batches);
+    }
+
+    @Test
+    public void shatterTargetMergesRunsOfIntactSections() {
+        GameSimulation simulation = newSimulation(5000); // seções menores que um pixel
+        ObstacleField obstacles = simulation.getObstacles();
+        int first = obstacles.getFirstPiece(1);
+        for (int piece = 100; piece < 5000; piece += 500)
+            obstacles.hitPiece(first + piece);
+
+        CountingTarget target = new CountingTarget();
+        GameRenderer renderer = newRenderer();
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        assertEquals(1 + 1 + 11, target.lines);      // dez acertos separam onze sequências
+        assertEquals(1, target.batches);
+
+        // com os arrays já dimensionados, o quadro não aloca
+        long before = Allocations.allocatedBytes();
+        for (int frame = 0; frame < 100; frame++)
+            renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+        long allocated = Allocations.allocatedBytes() - before;
+        assertTrue("rendering allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void particlesAreDrawnWithOneBatchPerKind() {
+        GameSimulation simulation = newSimulation();
+        ParticleSystem particles = new ParticleSystem();
+        simulation.setParticles(particles);
+        particles.emit(ParticleSystem.SPARK, 100, 100, 0, 0, 30);
+        particles.emit(ParticleSystem.DEBRIS, 300, 200, 0, 0, 20);
+
+        CountingTarget target = new CountingTarget();
+        newRenderer().render(snapshotOf(simulation), 0.5, target, 800, 480);
+        assertEquals(50, target.points);
+        assertEquals(2 + 2, target.batches);    // as duas cores do alvo e um lote por tipo
+
+        // a região suja cobre as partículas
+        DirtyRegion region = new DirtyRegion();
+        region.setScreenSize(800, 480);
+        region.beginFrame();
+        region.skipFrame();
+        GameRenderer renderer = newRenderer();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+        region.beginFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+        assertTrue(region.getLeft() < 100);
+        assertTrue(region.getTop() < 100);
+    }
+
+    @Test
+    public void overlayDrawsOneLinePerPhaseAndIsErasedWhenHidden() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer();
+        FrameStats stats = new FrameStats();
+        stats.record(FrameStats.DRAW, 2000000);
+        DirtyRegion region = new DirtyRegion();
+        region.setScreenSize(800, 480);
+        region.beginFrame();
+        region.skipFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+
+        renderer.setOverlay(stats);
+        region.beginFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+        assertEquals(0, region.getLeft());
+        assertEquals(800, region.getRight());   // o painel é refeito
+
+        CountingTarget target = new CountingTarget();
+        renderer.render(snapshotOf(simulation), 1.0, target, 800, 480);
+        assertEquals(1 + FrameStats.PHASE_COUNT + 1, target.texts);
+        assertEquals(FrameStats.PHASE_COUNT + 1, target.overlayTexts);
+
+        renderer.setOverlay(null);
+        region.skipFrame();
+        region.beginFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+        assertEquals(0, region.getLeft());      // apaga o painel
+
+        target = new CountingTarget();
+        renderer.render(snapshotOf(simulation), 1.0, target, 800, 480);
+        assertEquals(1, target.texts);
+    }
+
+    @Test
+    public void compactOverlayShowsOnlyFrameIntervalAndDroppedFrames() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer();
+        DirtyRegion region = new DirtyRegion();
+        region.setScreenSize(800, 480);
+        renderer.setOverlay(new FrameStats());
+        region.beginFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+        region.skipFrame();
+
+        renderer.setOverlayCompact(true);
+        region.beginFrame();
+        renderer.markDirty(snapshotOf(simulation), 1.0, region);
+        assertEquals(800, region.getRight());   // o painel é refeito na hora
+
+        CountingTarget target = new CountingTarget();
+        renderer.render(snapshotOf(simulation), 1.0, target, 800, 480);
+        assertEquals(2, target.overlayTexts);
+    }
+
+    @Test
+    public void steadyStateFrameAllocatesNothing() {
+        GameSimulation simulation = newSimulation();
+        simulation.setRapidFire(true);
+        GameRenderer renderer = newRenderer();
+        CountingTarget target = new CountingTarget();
+
+        runFrames(simulation, renderer, target, 2000); // aquece o JIT
+
+        long before = Allocations.allocatedBytes();
+        runFrames(simulation, renderer, target, 5000);
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertTrue("frame loop allocated " + allocated + " bytes", allocated < 1024);
+        assertTrue(target.texts > 0);
+    }
+
+    // um quadro completo: entrada, passo de simulação e desenho
+    private void runFrames(GameSimulation simulation, GameRenderer renderer,
+                                  RenderTarget target, int frames) {
+        for (int i = 0; i < frames; i++) {
+            if (simulation.isGameOver())
+                simulation.newGame();
+            simulation.aim(400, 100 + i % 300);
+            simulation.fire(0.5 + (i % 20) * 0.05);
+            simulation.step(1000000000L / 60);
+            renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+        }
+    }
+
+    // estado que a thread da simulação publicaria depois do último passo
+    private GameSnapshot snapshotOf(GameSimulation simulation) {
+        snapshot.copyFrom(simulation, 1000000000L / 120, 0);
+        return snapshot;
+    }
+
+    private static GameSimulation newSimulation() {
+        return newSimulation(GameSimulation.TARGET_PIECES);
+    }
+
+    private static GameSimulation newSimulation(int pieces) {
+        GameSimulation simulation = new GameSimulation(new GameConfig().setTargetPieces(pieces),
+                ProjectilePool.DEFAULT_CAPACITY);
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+        return simulation;
+    }
+
+    private static GameRenderer newRenderer() {
+        GameRenderer renderer = new GameRenderer();
+        renderer.setTimerFormat(FORMAT, '.');
+        return renderer;
+    }
+
+    private static class CountingTarget implements RenderTarget {
+        int rects, lines, batches, circles, texts, overlayTexts, oddPieces, points;
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, int paint) {
+            rects++;
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, int paint) {
+            lines++;
+            if (paint == PAINT_TARGET_ODD)
+                oddPieces++;
+        }
+
+        @Override
+        public void drawLines(float[] points, int offset, int count, int paint) {
+            batches++;
+            lines += count / 4;
+            if (paint == PAINT_TARGET_ODD)
+                oddPieces += count / 4;
+        }
+
+        @Override
+        public void drawPoints(float[] points, int offset, int count, int paint) {
+            batches++;
+            this.points += count / 2;
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int paint) {
+            circles++;
+        }
+
+        @Override
+        public void drawText(char[] text, int index, int count, float x, float y, int paint) {
+            texts++;
+            if (paint == PAINT_OVERLAY)
+                overlayTexts++;
+        }
+
+        @Override
+        public boolean beginLayer(int layer, int width, int height) {
+            return false;   // sem camadas: tudo é desenhado na tela
+        }
+
+        @Override
+        public void endLayer() {
+        }
+
+        @Override
+        public void drawLayer(int layer, float left, float top) {
+        }
+    }
+}
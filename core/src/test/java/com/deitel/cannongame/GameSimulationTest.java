@@ -0,0 +1,369 @@
+package com.deitel.cannongame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Regras de acerto, erro e tempo esgotado do GameSimulation, executadas na JVM.
+ */
+public class GameSimulationTest {
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    // obstáculos da fase padrão
+    private static final int BLOCKER = 0;
+    private static final int TARGET = 1;
+
+    private GameSimulation simulation;
+    private RecordingListener events;
+
+    @Before
+    public void setUp() {
+        simulation = new GameSimulation();
+        events = new RecordingListener();
+        simulation.setListener(events);
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+    }
+
+    @Test
+    public void horizontalShotAtStartHitsBlocker() {
+        assertTrue(simulation.fire(Math.PI / 2));
+        runFor(0.5);
+
+        assertEquals(1, events.blockerHits);
+        assertEquals(1, events.shots);
+        assertEquals(0, simulation.getTargetPiecesHit());
+        // o tempo restante perde a penalidade além do tempo decorrido
+        assertEquals(GameSimulation.INITIAL_TIME - GameSimulation.MISS_PENALTY - 0.5,
+                simulation.getTimeLeft(), 0.05);
+    }
+
+    @Test
+    public void horizontalShotAfterBlockerPassesHitsTarget() {
+        runFor(0.5);
+        assertTrue(simulation.fire(Math.PI / 2));
+        runFor(0.7);
+
+        assertEquals(0, events.blockerHits);
+        assertEquals(1, events.targetHits);
+        assertEquals(1, simulation.getTargetPiecesHit());
+        assertTrue(simulation.getObstacles().isPieceHit(events.lastSection));
+        assertFalse(simulation.isCannonballOnScreen());
+        assertEquals(GameSimulation.INITIAL_TIME + GameSimulation.HIT_REWARD - 1.2,
+                simulation.getTimeLeft(), 0.05);
+    }
+
+    @Test
+    public void shotIntoCeilingLeavesScreenWithoutScoring() {
+        assertTrue(simulation.fire(0)); // direto para cima
+        runFor(0.5);
+
+        assertFalse(simulation.isCannonballOnScreen());
+        assertEquals(0, events.blockerHits);
+        assertEquals(0, events.targetHits);
+    }
+
+    @Test
+    public void cannotFireWhileCannonballInFlight() {
+        assertTrue(simulation.fire(Math.PI / 2));
+        assertFalse(simulation.fire(Math.PI / 2));
+        assertEquals(1, simulation.getShotsFired());
+    }
+
+    @Test
+    public void timeoutEndsGameAsLoss() {
+        runFor(GameSimulation.INITIAL_TIME + 0.1);
+
+        assertTrue(simulation.isGameOver());
+        assertEquals(1, events.gameOvers);
+        assertFalse(events.won);
+        assertEquals(0.0, simulation.getTimeLeft(), 0.0);
+
+        // passos depois do fim do jogo não mudam nada
+        runFor(1.0);
+        assertEquals(1, events.gameOvers);
+        assertFalse(simulation.fire(Math.PI / 2));
+    }
+
+    @Test
+    public void newGameRestoresInitialState() {
+        runFor(0.5);
+        simulation.fire(Math.PI / 2);
+        runFor(0.7);
+        simulation.newGame();
+
+        assertEquals(0, simulation.getTargetPiecesHit());
+        assertEquals(0, simulation.getShotsFired());
+        assertEquals(GameSimulation.INITIAL_TIME, simulation.getTimeLeft(), 0.0);
+        assertEquals(480 / 8, simulation.getObstacles().getTop(BLOCKER), 0.0);
+        assertFalse(simulation.isGameOver());
+    }
+
+    @Test
+    public void aimPointsBarrelTowardsTouch() {
+        double angle = simulation.aim(400, 240); // toque na altura do canhão
+        assertEquals(0.0, angle, 1e-9);
+
+        angle = simulation.aim(400, 100); // acima do centro
+        assertEquals(Math.atan(400.0 / 140.0), angle, 1e-9);
+        assertTrue(simulation.getBarrelEndY() < 240);
+
+        angle = simulation.aim(400, 400); // abaixo do centro
+        assertEquals(Math.atan(400.0 / -160.0) + Math.PI, angle, 1e-9);
+        assertTrue(simulation.getBarrelEndY() > 240);
+    }
+
+    @Test
+    public void interpolatesBetweenPreviousAndCurrentStep() {
+        simulation.step(FRAME_NANOS);
+        double previous = simulation.getObstacles().getTop(BLOCKER);
+        simulation.step(FRAME_NANOS);
+        double current = simulation.getObstacles().getTop(BLOCKER);
+
+        assertEquals(current, simulation.getObstacles().getTop(BLOCKER, 1.0), 1e-9);
+        assertEquals((previous + current) / 2, simulation.getObstacles().getTop(BLOCKER, 0.5), 1e-9);
+
+        // o tiro novo não é interpolado a partir da posição da bala anterior
+        simulation.fire(Math.PI / 2);
+        ProjectilePool balls = simulation.getProjectiles();
+        int slot = balls.liveSlot(0);
+        assertEquals(balls.getX(slot), balls.getX(slot, 0.5), 0.0);
+    }
+
+    @Test
+    public void longFrameDoesNotTunnelThroughBlocker() {
+        assertTrue(simulation.fire(Math.PI / 2));
+        // um único passo de 0,45 s levaria a bala de x=22 a x=562, além da barreira em x=500
+        simulation.step(450000000L);
+
+        assertEquals(1, events.blockerHits);
+        assertTrue(ballX(simulation) < simulation.getObstacles().getX(BLOCKER));
+    }
+
+    @Test
+    public void longFrameDoesNotTunnelThroughTarget() {
+        runFor(0.5);
+        assertTrue(simulation.fire(Math.PI / 2));
+        simulation.step(700000000L);
+
+        assertEquals(1, events.targetHits);
+        assertEquals(1, simulation.getTargetPiecesHit());
+    }
+
+    @Test
+    public void targetSectionIsTakenAtImpactPoint() {
+        runFor(0.5);
+        assertTrue(simulation.fire(Math.PI / 2));
+        simulation.step(700000000L);
+
+        // refaz o cálculo a partir da posição do alvo no instante do impacto
+        GameSimulation reference = new GameSimulation();
+        reference.setScreenSize(800, 480);
+        reference.newGame();
+        runFor(reference, 0.5);
+        reference.fire(Math.PI / 2);
+        double impactTime =
+                (simulation.getObstacles().getX(TARGET) - 2 * simulation.getCannonballRadius())
+                / (1200.0 * Math.sin(Math.PI / 2));
+        reference.step((long) (impactTime * 1e9));
+        ObstacleField lines = reference.getObstacles();
+        int expected = (int) ((240 - lines.getTop(TARGET)) / lines.getPieceLength(TARGET));
+
+        assertEquals(expected, events.lastSection);
+    }
+
+    @Test
+    public void resultsDoNotDependOnFrameSlicing() {
+        GameSimulation coarse = new GameSimulation();
+        coarse.setScreenSize(800, 480);
+        coarse.newGame();
+        GameSimulation fine = new GameSimulation();
+        fine.setScreenSize(800, 480);
+        fine.newGame();
+
+        double[] angles = { Math.PI / 2, 1.2, 1.9, 1.4, 1.6 };
+        for (double angle : angles) {
+            coarse.fire(angle);
+            fine.fire(angle);
+            for (int i = 0; i < 40; i++)
+                coarse.step(25000000L);       // 40 quadros de 25 ms
+            for (int i = 0; i < 1000; i++)
+                fine.step(1000000L);          // 1000 quadros de 1 ms
+        }
+
+        assertEquals(coarse.getTargetPiecesHit(), fine.getTargetPiecesHit());
+        for (int i = 0; i < GameSimulation.TARGET_PIECES; i++)
+            assertEquals(coarse.getObstacles().isPieceHit(i), fine.getObstacles().isPieceHit(i));
+        assertEquals(coarse.getTimeLeft(), fine.getTimeLeft(), 1e-6);
+        assertEquals(coarse.getObstacles().getTop(BLOCKER), fine.getObstacles().getTop(BLOCKER), 1e-6);
+        assertEquals(coarse.getObstacles().getTop(TARGET), fine.getObstacles().getTop(TARGET), 1e-6);
+        assertEquals(coarse.isCannonballOnScreen(), fine.isCannonballOnScreen());
+        assertEquals(coarse.getShotsFired(), fine.getShotsFired());
+    }
+
+    @Test
+    public void linesBounceBetweenTopAndBottomOfScreen() {
+        for (int i = 0; i < 600; i++) {
+            simulation.step(FRAME_NANOS);
+            assertTrue(simulation.getObstacles().getTop(BLOCKER) >= 0);
+            assertTrue(simulation.getObstacles().getBottom(BLOCKER) <= 480);
+            assertTrue(simulation.getObstacles().getTop(TARGET) >= 0);
+            assertTrue(simulation.getObstacles().getBottom(TARGET) <= 480);
+        }
+    }
+
+    @Test
+    public void winRequiresEveryPieceOfEveryTarget() {
+        ObstacleField field = simulation.getObstacles();
+        field.clear();
+        field.addTarget(300, 200, 80, 0, 1); // dois alvos parados de uma seção
+        field.addTarget(600, 200, 80, 0, 1);
+        simulation.newGame();
+
+        simulation.fire(Math.PI / 2);
+        runFor(0.5);
+        assertEquals(1, events.targetHits);
+        assertEquals(0, events.gameOvers);
+
+        simulation.fire(Math.PI / 2); // a primeira seção já caiu; a bala passa e acerta o segundo alvo
+        runFor(0.5);
+        assertEquals(2, events.targetHits);
+        assertEquals(1, events.lastSection);
+        assertTrue(events.won);
+    }
+
+    @Test
+    public void manyBlockersAreAllSolid() {
+        ObstacleField field = simulation.getObstacles();
+        field.clear();
+        for (int i = 0; i < 200; i++) // uma parede de barreiras paradas
+            field.addBlocker(400 + (i % 20) * 10, (i / 20) * 48, 48, 0);
+        field.addTarget(780, 100, 200, 0, 4);
+        simulation.newGame();
+
+        for (int shot = 0; shot < 5; shot++) {
+            simulation.fire(0.9 + shot * 0.3);
+            runFor(1.0);
+            if (simulation.isGameOver())
+                break;
+        }
+
+        assertEquals(0, events.targetHits);
+        assertTrue(events.blockerHits > 0);
+    }
+
+    @Test
+    public void theEarlierOfTwoBallsReachingASectionInOneStepScores() {
+        // a bala da frente chega 1/60 s antes da outra, dentro do mesmo passo
+        GameSimulation alone = twoBallLevel();
+        alone.fire(Math.PI / 2);
+        alone.step(FRAME_NANOS);
+        alone.step(1000000000L);
+
+        GameSimulation both = twoBallLevel();
+        RecordingListener listener = new RecordingListener();
+        both.setListener(listener);
+        both.fire(Math.PI / 2);
+        both.step(FRAME_NANOS);
+        both.fire(Math.PI / 2);
+        both.step(1000000000L);
+
+        assertTrue(listener.won);
+        assertEquals(1, listener.targetHits);
+        assertTrue(alone.isGameOver());
+        assertEquals(alone.getTotalElapsedTime(), both.getTotalElapsedTime(), 1e-9);
+    }
+
+    @Test
+    public void anEarlierPenaltyIsAppliedBeforeALaterWinInTheSameStep() {
+        GameSimulation alone = twoBallLevel();
+        alone.getObstacles().addBlocker(300, 0, 200, 0);
+        alone.newGame();
+        alone.fire(Math.PI / 2);
+        alone.step(1000000000L);
+
+        // a bala inclinada bate na barreira antes de a outra acertar o alvo
+        GameSimulation both = twoBallLevel();
+        both.getObstacles().addBlocker(300, 0, 200, 0);
+        both.newGame();
+        RecordingListener listener = new RecordingListener();
+        both.setListener(listener);
+        both.fire(both.aim(300, 100));
+        both.fire(Math.PI / 2);
+        both.step(1000000000L);
+
+        assertTrue(listener.won);
+        assertEquals(1, listener.blockerHits);
+        assertEquals(alone.getTotalElapsedTime(), both.getTotalElapsedTime(), 1e-9);
+        assertEquals(alone.getTimeLeft() - GameSimulation.MISS_PENALTY, both.getTimeLeft(), 1e-9);
+    }
+
+    @Test
+    public void configChangesRulesAndSpeeds() {
+        GameConfig config = new GameConfig()
+                .setInitialTime(20)
+                .setMissPenalty(5)
+                .setTargetPieces(3)
+                .setBlockerSpeedRatio(0)
+                .setCannonballSpeedRatio(3);
+        GameSimulation custom = new GameSimulation(config, 1);
+        custom.setScreenSize(800, 480);
+        custom.newGame();
+
+        assertEquals(2400, custom.getCannonballSpeed());
+        assertEquals(0, custom.getObstacles().getSpeed(BLOCKER), 0.0);
+        assertEquals(120, custom.getObstacles().getSpeed(TARGET), 0.0);
+        assertEquals(3, custom.getObstacles().getTotalPieces());
+
+        custom.fire(custom.aim(500, 120)); // no meio da barreira parada
+        runFor(custom, 0.5);
+        assertEquals(20 - 5 - 0.5, custom.getTimeLeft(), 0.05);
+    }
+
+    @Test
+    public void defaultConfigKeepsOriginalSpeeds() {
+        assertEquals(800 * 3 / 2, simulation.getCannonballSpeed());
+        assertEquals(480 / 2, simulation.getObstacles().getSpeed(BLOCKER), 0.0);
+        assertEquals(480 / 4, simulation.getObstacles().getSpeed(TARGET), 0.0);
+    }
+
+    // um alvo parado de uma seção, da altura da tela, e disparo rápido
+    private static GameSimulation twoBallLevel() {
+        GameSimulation simulation = new GameSimulation();
+        simulation.setScreenSize(800, 480);
+        simulation.setRapidFire(true);
+        ObstacleField field = simulation.getObstacles();
+        field.clear();
+        field.addTarget(600, 0, 480, 0, 1);
+        simulation.newGame();
+        return simulation;
+    }
+
+    private static double ballX(GameSimulation simulation) {
+        ProjectilePool balls = simulation.getProjectiles();
+        return balls.getX(balls.liveSlot(0));
+    }
+
+    private void runFor(double seconds) {
+        runFor(simulation, seconds);
+    }
+
+    private static void runFor(GameSimulation simulation, double seconds) {
+        long frames = Math.round(seconds * 60);
+        for (long i = 0; i < frames; i++)
+            simulation.step(FRAME_NANOS);
+    }
+
+    private static class RecordingListener implements GameSimulation.Listener {
+        int shots, blockerHits, wallHits, targetHits, gameOvers, lastSection = -1;
+        boolean won;
+
+        @Override public void onCannonFired() { shots++; }
+        @Override public void onBlockerHit() { blockerHits++; }
+        @Override public void onWallHit() { wallHits++; }
+        @Override public void onTargetHit(int section) { targetHits++; lastSection = section; }
+        @Override public void onGameOver(boolean won) { gameOvers++; this.won = won; }
+    }
+}
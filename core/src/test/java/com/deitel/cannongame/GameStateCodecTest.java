@@ -0,0 +1,247 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Gravação binária do estado do jogo: ida e volta, compatibilidade com a
+ * versão 1, telas de outro tamanho, etapas de fases lidas de arquivo,
+ * gravações inválidas e custo da restauração.
+ */
+public class GameStateCodecTest {
+    private static final long STEP = 1000000000L / 120;
+
+    // versão 1: tela 800x480, um tiro mirado em (400, 100), 30 passos e as
+    // seções 2 e 5 atingidas; não altere, as gravações antigas devem continuar legíveis
+    private static final String VERSION_1 =
+            "434e475300010000002500000320000001e000402380000055e644000000013fcfffffea86711d" +
+            "0000005e000000ce0000002900000002405dfffff5ef04f94076800000000000406a3ffffd7bc1" +
+            "3e405e00000000000000000007240000002400000001407312851a16c6b040619ca2d42341b240" +
+            "91b28525f7281fc078c6ba685a04f7";
+
+    // fim da seção do jogo na versão 1: cabeçalho, tamanho e campos
+    private static final int GAME_END_V1 = 6 + 4 + 37;
+
+    @Test
+    public void roundTripContinuesTheSameGame() throws IOException {
+        GameSimulation original = newSimulation(800, 480);
+        original.setRapidFire(true);
+        for (int i = 0; i < 90; i++) {
+            if (i % 9 == 0)
+                original.fire(original.aim(700, 60 + i * 4));
+            original.step(STEP);
+        }
+        original.getObstacles().hitPiece(3);
+
+        GameStateCodec codec = new GameStateCodec();
+        int size = codec.write(original);
+        assertTrue(original.getProjectiles().size() > 1);
+        assertEquals(136 + 32 * (original.getProjectiles().size() - 1), size);
+
+        GameSimulation restored = newSimulation(800, 480);
+        restored.setRapidFire(true);
+        codec.restore(restored);
+
+        assertEquals(original.getTimeLeft(), restored.getTimeLeft(), 0.0);
+        assertEquals(original.getShotsFired(), restored.getShotsFired());
+        assertEquals(original.getTotalElapsedTime(), restored.getTotalElapsedTime(), 0.0);
+        assertEquals(original.getBarrelEndX(), restored.getBarrelEndX());
+        assertEquals(original.getBarrelEndY(), restored.getBarrelEndY());
+        assertEquals(original.getTargetPiecesHit(), restored.getTargetPiecesHit());
+
+        // as duas simulações seguem idênticas
+        for (int i = 0; i < 600; i++) {
+            original.step(STEP);
+            restored.step(STEP);
+        }
+        assertArrayEquals(encode(original), encode(restored));
+    }
+
+    @Test
+    public void version1SnapshotStillRestores() throws IOException {
+        GameSimulation simulation = newSimulation(800, 480);
+        byte[] data = fromHex(VERSION_1);
+        new GameStateCodec().restore(data, data.length, simulation);
+
+        assertEquals(9.750000010000015, simulation.getTimeLeft(), 0.0);
+        assertEquals(1, simulation.getShotsFired());
+        assertEquals(0.24999998999999998, simulation.getTotalElapsedTime(), 0.0);
+        assertEquals(94, simulation.getBarrelEndX());
+        assertEquals(206, simulation.getBarrelEndY());
+        assertFalse(simulation.isGameOver());
+
+        ObstacleField obstacles = simulation.getObstacles();
+        assertEquals(119.99999759999982, obstacles.getTop(0), 1e-9);
+        assertEquals(30.0000012000001, obstacles.getTop(1), 1e-9);
+        assertEquals(2, obstacles.getPiecesHit());
+        assertTrue(obstacles.isPieceHit(2));
+        assertTrue(obstacles.isPieceHit(5));
+
+        ProjectilePool projectiles = simulation.getProjectiles();
+        assertEquals(1, projectiles.size());
+        int slot = projectiles.liveSlot(0);
+        assertEquals(305.1574955835049, projectiles.getX(slot), 0.0);
+        assertEquals(140.89487654577312, projectiles.getY(slot), 0.0);
+        assertEquals(1132.630027639221, projectiles.getVelocityX(slot), 0.0);
+        assertEquals(-396.4205096737273, projectiles.getVelocityY(slot), 0.0);
+
+        // gravar de novo produz os mesmos campos, na versão atual
+        assertArrayEquals(toVersion2(data), encode(simulation));
+    }
+
+    @Test
+    public void fieldsAddedByLaterWritersAreSkipped() throws IOException {
+        byte[] data = toVersion2(fromHex(VERSION_1));
+        int gameEnd = GAME_END_V1 + 4;
+
+        // um escritor futuro acrescenta três bytes no fim da seção do jogo
+        byte[] extended = new byte[data.length + 3];
+        System.arraycopy(data, 0, extended, 0, gameEnd);
+        System.arraycopy(data, gameEnd, extended, gameEnd + 3, data.length - gameEnd);
+        extended[9] = 41 + 3;
+
+        GameSimulation simulation = newSimulation(800, 480);
+        new GameStateCodec().restore(extended, extended.length, simulation);
+
+        assertArrayEquals(data, encode(simulation));
+    }
+
+    @Test
+    public void restoringOnAnotherScreenSizeKeepsProportions() throws IOException {
+        byte[] data = fromHex(VERSION_1);
+        GameSimulation saved = newSimulation(800, 480);
+        new GameStateCodec().restore(data, data.length, saved);
+
+        GameSimulation rotated = newSimulation(480, 800);
+        new GameStateCodec().restore(data, data.length, rotated);
+
+        ObstacleField before = saved.getObstacles();
+        ObstacleField after = rotated.getObstacles();
+        for (int i = 0; i < before.size(); i++)
+            assertEquals(before.getTop(i) / before.getSpan(i), after.getTop(i) / after.getSpan(i),
+                    1e-9);
+
+        int slot = rotated.getProjectiles().liveSlot(0);
+        assertEquals(305.1574955835049 * 480 / 800, rotated.getProjectiles().getX(slot), 1e-9);
+        assertEquals(140.89487654577312 * 800 / 480, rotated.getProjectiles().getY(slot), 1e-9);
+        assertEquals(saved.getTimeLeft(), rotated.getTimeLeft(), 0.0);
+        assertEquals(2, after.getPiecesHit());
+    }
+
+    @Test
+    public void invalidSnapshotsLeaveTheGameUntouched() {
+        byte[] data = fromHex(VERSION_1);
+
+        byte[] badMagic = data.clone();
+        badMagic[0] = 0;
+        assertRejected(badMagic, badMagic.length, newSimulation(800, 480));
+
+        byte[] newer = data.clone();
+        newer[5] = (byte) (GameStateCodec.VERSION + 1);
+        assertRejected(newer, newer.length, newSimulation(800, 480));
+
+        assertRejected(data, data.length - 1, newSimulation(800, 480));
+        assertRejected(data, 20, newSimulation(800, 480));
+
+        // a fase tem outro número de seções
+        GameSimulation otherLevel = new GameSimulation(new GameConfig().setTargetPieces(9),
+                ProjectilePool.DEFAULT_CAPACITY);
+        otherLevel.setScreenSize(800, 480);
+        otherLevel.newGame();
+        assertRejected(data, data.length, otherLevel);
+    }
+
+    @Test
+    public void streamsCarryTheSnapshot() throws IOException {
+        GameSimulation simulation = newSimulation(800, 480);
+        byte[] data = fromHex(VERSION_1);
+        GameStateCodec codec = new GameStateCodec();
+
+        assertEquals(data.length, codec.readFrom(new ByteArrayInputStream(data)));
+        codec.restore(simulation);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.write(simulation);
+        codec.writeTo(out);
+        assertArrayEquals(toVersion2(data), out.toByteArray());
+    }
+
+    @Test
+    public void writeAndRestoreAllocateNothingAndFitInAFrame() throws IOException {
+        GameSimulation simulation = newSimulation(800, 480);
+        simulation.setRapidFire(true);
+        for (int i = 0; i < 200; i++) {
+            simulation.fire(simulation.aim(700, 100 + i));
+            simulation.step(STEP / 10);
+        }
+        GameSimulation restored = newSimulation(800, 480);
+        GameStateCodec codec = new GameStateCodec();
+
+        for (int i = 0; i < 2000; i++) { // aquece o JIT
+            codec.write(simulation);
+            codec.restore(restored);
+        }
+
+        long before = Allocations.allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < 2000; i++) {
+            codec.write(simulation);
+            codec.restore(restored);
+        }
+        long average = (System.nanoTime() - start) / 2000;
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertTrue(restored.getProjectiles().size() > 100);
+        assertTrue("write and restore allocated " + allocated + " bytes", allocated < 1024);
+        assertTrue("write and restore took " + average + " ns", average < 2000000L);
+    }
+
+    private static void assertRejected(byte[] data, int length, GameSimulation simulation) {
+        int games = simulation.getGamesStarted();
+        double timeLeft = simulation.getTimeLeft();
+        try {
+            new GameStateCodec().restore(data, length, simulation);
+            fail("snapshot should have been rejected");
+        } catch (IOException expected) {
+        }
+        assertEquals(games, simulation.getGamesStarted());
+        assertEquals(timeLeft, simulation.getTimeLeft(), 0.0);
+    }
+
+    private static byte[] encode(GameSimulation simulation) {
+        GameStateCodec codec = new GameStateCodec();
+        int size = codec.write(simulation);
+        return Arrays.copyOf(codec.getBuffer(), size);
+    }
+
+    // a gravação da versão 1 como a versão 2 a escreve: etapa 0 no fim da seção do jogo
+    private static byte[] toVersion2(byte[] version1) {
+        byte[] data = new byte[version1.length + 4];
+        System.arraycopy(version1, 0, data, 0, GAME_END_V1);
+        System.arraycopy(version1, GAME_END_V1, data, GAME_END_V1 + 4,
+                version1.length - GAME_END_V1);
+        data[5] = 2;
+        data[9] = 37 + 4;
+        return data;
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        return data;
+    }
+
+    private static GameSimulation newSimulation(int width, int height) {
+        GameSimulation simulation = new GameSimulation();
+        simulation.setScreenSize(width, height);
+        simulation.newGame();
+        return simulation;
+    }
+}
@@ -0,0 +1,226 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Gravação das entradas de um jogo e reprodução sem interface até o mesmo
+ * estado, na fase padrão ou na fase de um arquivo.
+ */
+public class InputReplayTest {
+    private static final long STEP_NANOS = 1000000000L / FixedStepClock.DEFAULT_TICKS_PER_SECOND;
+
+    @Test
+    public void replayReachesTheRecordedState() throws IOException {
+        GameSimulation simulation = newSimulation(new GameConfig());
+        InputRecorder recorder = new InputRecorder();
+        recorder.begin(simulation, STEP_NANOS, 1234L);
+
+        // mira no meio do alvo a cada 0,3 s até o jogo acabar
+        while (!simulation.isGameOver()) {
+            if (recorder.getTick() % 36 == 0 && simulation.canFire())
+                aimAndFire(simulation, recorder, 700, targetMiddle(simulation));
+            step(simulation, recorder);
+        }
+        recorder.finish();
+
+        InputReplay replay = InputReplay.read(recorder.toByteArray());
+        assertTrue(replay.isComplete());
+        assertEquals(1234L, replay.getSeed());
+        assertEquals(recorder.getTick(), replay.getEndTick());
+
+        GameSimulation replayed = replay.play();
+        assertTrue(simulation.getTargetPiecesHit() > 0);
+        assertSameState(simulation, replayed);
+    }
+
+    @Test
+    public void rulesRapidFireAndLongPausesAreReplayed() throws IOException {
+        GameConfig config = new GameConfig().setTargetPieces(3).setHitReward(1).setInitialTime(20);
+        GameSimulation simulation = newSimulation(config);
+        InputRecorder recorder = new InputRecorder();
+        recorder.begin(simulation, STEP_NANOS, 0L);
+
+        for (int tick = 0; tick < 2000 && !simulation.isGameOver(); tick++) {
+            if (tick == 500) { // o primeiro disparo vem depois de uma pausa longa
+                simulation.setRapidFire(true);
+                recorder.recordRapidFire(true);
+            }
+            if (tick >= 500 && tick % 7 == 0 && simulation.canFire())
+                aimAndFire(simulation, recorder, 700, 100 + tick % 280);
+            step(simulation, recorder);
+        }
+        recorder.finish();
+
+        GameSimulation replayed = InputReplay.read(recorder.toByteArray()).play();
+        assertTrue(replayed.isRapidFire());
+        assertEquals(3, replayed.getConfig().getTargetPieces());
+        assertSameState(simulation, replayed);
+    }
+
+    @Test
+    public void interruptedRecordingReplaysUpToTheLastEvent() throws IOException {
+        GameSimulation simulation = newSimulation(new GameConfig());
+        InputRecorder recorder = new InputRecorder();
+        recorder.begin(simulation, STEP_NANOS, 0L);
+
+        for (int tick = 0; tick < 100; tick++)
+            step(simulation, recorder);
+        aimAndFire(simulation, recorder, 700, 240);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.writeTo(out); // salva sem finish, como num travamento
+
+        InputReplay replay = InputReplay.read(out.toByteArray());
+        assertFalse(replay.isComplete());
+        assertEquals(100, replay.getEndTick());
+
+        GameSimulation replayed = replay.play();
+        assertEquals(1, replayed.getShotsFired());
+        assertEquals(simulation.getTimeLeft(), replayed.getTimeLeft(), 0.0);
+    }
+
+    @Test
+    public void levelGamesReplayOnlyOnTheRecordedLevel() throws IOException {
+        LevelWriter writer = new LevelWriter();
+        writer.beginSection().addTarget(0.5, 0.25, 0.5, 0.0, 1);
+        writer.beginSection().addBlocker(0.3, 0.1, 0.2, 0.3)
+                .addTarget(0.8, 0.1, 0.3, 0.2, 3, 0.1, 0.6);
+        byte[] data = writer.toByteArray();
+
+        GameSimulation simulation = new GameSimulation();
+        simulation.setLevel(LevelFile.wrap(ByteBuffer.wrap(data)));
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+        InputRecorder recorder = new InputRecorder();
+        recorder.begin(simulation, STEP_NANOS, 0L);
+
+        // passa da primeira etapa e atira no alvo móvel da segunda; um pixel
+        // acima do centro da tela o disparo sai quase na horizontal
+        while (!simulation.isGameOver()) {
+            if (recorder.getTick() % 30 == 0 && simulation.canFire())
+                aimAndFire(simulation, recorder, 700, targetMiddle(simulation) - 1);
+            step(simulation, recorder);
+        }
+        recorder.finish();
+        assertEquals(1, simulation.getStage());
+
+        InputReplay replay = InputReplay.read(recorder.toByteArray());
+        assertTrue(replay.hasLevel());
+        GameSimulation replayed = replay.play(LevelFile.wrap(ByteBuffer.wrap(data)));
+        assertEquals(1, replayed.getStage());
+        assertSameState(simulation, replayed);
+
+        // na fase padrão ou numa fase diferente a reprodução divergiria
+        try {
+            replay.play();
+            fail("the recording needs its level");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        byte[] other = data.clone();
+        other[other.length - 1] ^= 1;
+        try {
+            replay.play(LevelFile.wrap(ByteBuffer.wrap(other)));
+            fail("the level differs from the recorded one");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // e uma gravação na fase padrão não aceita um arquivo de fase
+        GameSimulation standard = newSimulation(new GameConfig());
+        InputRecorder standardRecorder = new InputRecorder();
+        standardRecorder.begin(standard, STEP_NANOS, 0L);
+        InputReplay standardReplay = InputReplay.read(standardRecorder.toByteArray());
+        assertFalse(standardReplay.hasLevel());
+        try {
+            standardReplay.createSimulation(LevelFile.wrap(ByteBuffer.wrap(data)));
+            fail("the recording was made on the default level");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void nothingIsRecordedAfterFinish() {
+        GameSimulation simulation = newSimulation(new GameConfig());
+        InputRecorder recorder = new InputRecorder();
+        recorder.begin(simulation, STEP_NANOS, 0L);
+        recorder.finish();
+        int size = recorder.size();
+
+        recorder.recordAim(1, 2);
+        recorder.recordFire();
+        recorder.step();
+
+        assertTrue(recorder.isFinished());
+        assertEquals(size, recorder.size());
+        assertEquals(0, recorder.getTick());
+    }
+
+    @Test
+    public void corruptRecordingsAreRejected() {
+        GameSimulation simulation = newSimulation(new GameConfig());
+        InputRecorder recorder = new InputRecorder();
+        recorder.begin(simulation, STEP_NANOS, 0L);
+        aimAndFire(simulation, recorder, 700, 240);
+        byte[] data = recorder.toByteArray();
+
+        byte[] badMagic = data.clone();
+        badMagic[0] = 'X';
+        assertUnreadable(badMagic);
+
+        // cortada no meio da mira
+        assertUnreadable(Arrays.copyOf(data, data.length - 3));
+    }
+
+    private static void assertUnreadable(byte[] data) {
+        try {
+            InputReplay.read(data);
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void assertSameState(GameSimulation expected, GameSimulation actual) {
+        assertEquals(expected.isGameOver(), actual.isGameOver());
+        assertEquals(expected.getShotsFired(), actual.getShotsFired());
+        assertEquals(expected.getTimeLeft(), actual.getTimeLeft(), 0.0);
+        assertEquals(expected.getTotalElapsedTime(), actual.getTotalElapsedTime(), 0.0);
+
+        ObstacleField obstacles = expected.getObstacles();
+        for (int piece = 0; piece < obstacles.getTotalPieces(); piece++)
+            assertEquals("piece " + piece, obstacles.isPieceHit(piece),
+                    actual.getObstacles().isPieceHit(piece));
+    }
+
+    private static GameSimulation newSimulation(GameConfig config) {
+        GameSimulation simulation = new GameSimulation(config, ProjectilePool.DEFAULT_CAPACITY);
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+        return simulation;
+    }
+
+    private static void aimAndFire(GameSimulation simulation, InputRecorder recorder,
+                                   float x, float y) {
+        double angle = simulation.aim(x, y);
+        recorder.recordAim(x, y);
+        if (simulation.fire(angle))
+            recorder.recordFire();
+    }
+
+    private static void step(GameSimulation simulation, InputRecorder recorder) {
+        simulation.step(STEP_NANOS);
+        recorder.step();
+    }
+
+    private static float targetMiddle(GameSimulation simulation) {
+        ObstacleField obstacles = simulation.getObstacles();
+        int target = obstacles.size() - 1;
+        return (float) (obstacles.getTop(target) + obstacles.getLength(target) / 2);
+    }
+}
@@ -0,0 +1,227 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Camadas pré-desenhadas do fundo e dos alvos: reaproveitamento, redesenho
+ * quando uma seção é atingida, invalidação e memória ocupada.
+ */
+public class LayerCacheTest {
+    private final GameSnapshot snapshot = new GameSnapshot();
+
+    @Test
+    public void staticLayersAreDrawnOnceAndReused() {
+        GameSimulation simulation = newSimulation();
+        LayerCache cache = new LayerCache();
+        GameRenderer renderer = newRenderer(cache);
+        LayerTarget target = new LayerTarget();
+
+        for (int frame = 0; frame < 10; frame++)
+            renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        assertEquals(2, cache.getRebuilds());       // fundo e alvo
+        assertEquals(18, cache.getHits());
+        assertEquals(20, target.layerDraws);
+        assertEquals(1, target.layerRects);         // só ao montar o fundo
+        assertEquals(1, target.layerCircles);       // a base do canhão fica no fundo
+        assertEquals(GameSimulation.TARGET_PIECES, target.layerLines);
+        assertEquals(0, target.screenRects);
+        assertEquals(10 * 2, target.screenLines);   // cano e barreira
+    }
+
+    @Test
+    public void targetLayerIsRebuiltOnlyWhenASectionIsHit() {
+        GameSimulation simulation = newSimulation();
+        LayerCache cache = new LayerCache();
+        GameRenderer renderer = newRenderer(cache);
+        LayerTarget target = new LayerTarget();
+
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+        int targetIndex = targetIndex(simulation);
+        ObstacleField obstacles = simulation.getObstacles();
+        obstacles.hitPiece(obstacles.getFirstPiece(targetIndex) + 1);
+
+        target.layerLines = target.layerOddPieces = 0;
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        assertEquals(3, cache.getRebuilds());
+        assertEquals(GameSimulation.TARGET_PIECES - 1, target.layerLines);
+        assertEquals(GameSimulation.TARGET_PIECES / 2 - 1, target.layerOddPieces);
+    }
+
+    @Test
+    public void targetLayerIsCopiedAtTheCurrentOffset() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer(new LayerCache());
+        LayerTarget target = new LayerTarget();
+
+        simulation.step(1000000000L / 60);
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        int i = targetIndex(simulation);
+        int halfWidth = snapshot.getLineWidth() / 2 + 1;
+        assertEquals((int) snapshot.getX(i) - halfWidth, target.lastLayerLeft, 0.0);
+        assertEquals((int) snapshot.getTop(i, 0.5), target.lastLayerTop, 0.0);
+    }
+
+    @Test
+    public void invalidationRebuildsEveryLayerAndFootprintMatchesTheImages() {
+        GameSimulation simulation = newSimulation();
+        LayerCache cache = new LayerCache();
+        GameRenderer renderer = newRenderer(cache);
+        LayerTarget target = new LayerTarget();
+
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+        assertEquals(target.layerPixels * 4, cache.getFootprintBytes());
+
+        cache.invalidate();
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+        assertEquals(4, cache.getRebuilds());
+        assertEquals(0, cache.getHits());
+
+        StringBuilder summary = new StringBuilder();
+        cache.appendSummary(summary);
+        assertTrue(summary.toString(), summary.toString().endsWith("hits 0 rebuilds 4"));
+    }
+
+    @Test
+    public void targetWithoutLayersDrawsEverythingOnTheScreen() {
+        GameSimulation simulation = newSimulation();
+        LayerCache cache = new LayerCache();
+        GameRenderer renderer = newRenderer(cache);
+        LayerTarget target = new LayerTarget();
+        target.supportsLayers = false;
+
+        renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        assertEquals(0, cache.getRebuilds());
+        assertEquals(1, target.screenRects);
+        assertEquals(1, target.screenCircles);
+        assertEquals(2 + GameSimulation.TARGET_PIECES, target.screenLines);
+    }
+
+    @Test
+    public void cachedFrameAllocatesNothing() {
+        GameSimulation simulation = newSimulation();
+        GameRenderer renderer = newRenderer(new LayerCache());
+        LayerTarget target = new LayerTarget();
+
+        for (int frame = 0; frame < 2000; frame++) // aquece o JIT
+            renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+
+        long before = Allocations.allocatedBytes();
+        for (int frame = 0; frame < 5000; frame++)
+            renderer.render(snapshotOf(simulation), 0.5, target, 800, 480);
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertTrue("frame loop allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private GameSnapshot snapshotOf(GameSimulation simulation) {
+        snapshot.copyFrom(simulation, 1000000000L / 120, 0);
+        return snapshot;
+    }
+
+    private static int targetIndex(GameSimulation simulation) {
+        ObstacleField obstacles = simulation.getObstacles();
+        for (int i = 0; i < obstacles.size(); i++)
+            if (obstacles.getKind(i) == ObstacleField.TARGET)
+                return i;
+        throw new AssertionError("no target in the level");
+    }
+
+    private static GameSimulation newSimulation() {
+        GameSimulation simulation = new GameSimulation();
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+        return simulation;
+    }
+
+    private static GameRenderer newRenderer(LayerCache cache) {
+        GameRenderer renderer = new GameRenderer();
+        renderer.setTimerFormat("Time remaining: %.1f seconds", '.');
+        renderer.setLayerCache(cache);
+        return renderer;
+    }
+
+    // conta separadamente o que vai para a tela e o que vai para as camadas
+    private static class LayerTarget implements RenderTarget {
+        boolean supportsLayers = true;
+        boolean inLayer;
+        int screenRects, screenLines, screenCircles;
+        int layerRects, layerLines, layerCircles, layerOddPieces, layerDraws;
+        long layerPixels;
+        float lastLayerLeft, lastLayerTop;
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, int paint) {
+            if (inLayer)
+                layerRects++;
+            else
+                screenRects++;
+        }
+
+        @Override
+        public void drawLine(float startX, float startY, float stopX, float stopY, int paint) {
+            if (!inLayer) {
+                screenLines++;
+                return;
+            }
+            layerLines++;
+            if (paint == PAINT_TARGET_ODD)
+                layerOddPieces++;
+        }
+
+        @Override
+        public void drawLines(float[] points, int offset, int count, int paint) {
+            for (int line = 0; line < count / 4; line++)
+                drawLine(points[offset + 4 * line], points[offset + 4 * line + 1],
+                        points[offset + 4 * line + 2], points[offset + 4 * line + 3], paint);
+        }
+
+        @Override
+        public void drawPoints(float[] points, int offset, int count, int paint) {
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius, int paint) {
+            if (inLayer)
+                layerCircles++;
+            else
+                screenCircles++;
+        }
+
+        @Override
+        public void drawText(char[] text, int index, int count, float x, float y, int paint) {
+        }
+
+        @Override
+        public boolean beginLayer(int layer, int width, int height) {
+            if (!supportsLayers)
+                return false;
+            assertFalse(inLayer);
+            inLayer = true;
+            layerPixels += (long) width * height;
+            return true;
+        }
+
+        @Override
+        public void endLayer() {
+            assertTrue(inLayer);
+            inLayer = false;
+        }
+
+        @Override
+        public void drawLayer(int layer, float left, float top) {
+            assertFalse(inLayer);
+            layerDraws++;
+            if (layer != LayerCache.BACKGROUND_LAYER) {
+                lastLayerLeft = left;
+                lastLayerTop = top;
+            }
+        }
+    }
+}
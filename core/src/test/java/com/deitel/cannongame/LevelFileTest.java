@@ -0,0 +1,346 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Formato binário de fases: ida e volta pelo LevelWriter, decodificação sob
+ * demanda e descarte de seções, caminhos dos obstáculos, arquivos
+ * inválidos e etapas jogadas pelo GameSimulation.
+ */
+public class LevelFileTest {
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    @Test
+    public void sectionsRoundTripAsScreenFractions() throws IOException {
+        LevelWriter writer = new LevelWriter();
+        writer.beginSection()
+                .addBlocker(0.625, 0.125, 0.25, 0.5)
+                .addTarget(0.875, 0.125, 0.75, -0.75, 7);
+        writer.beginSection()
+                .addTarget(0.5, 0.1, 0.2, 0.4, 3, 0.1, 0.7, 0.3);
+        LevelFile level = LevelFile.wrap(ByteBuffer.wrap(writer.toByteArray()));
+
+        assertEquals(2, level.getSectionCount());
+        assertEquals(2, level.getObstacleCount(0));
+        assertEquals(7, level.getPieceCount(0));
+        assertEquals(3, level.getPieceCount(1));
+
+        LevelSection first = level.section(0);
+        assertEquals(ObstacleField.BLOCKER, first.getKind(0));
+        assertEquals(0.625, first.getX(0), 1e-4);
+        assertEquals(0.25, first.getLength(0), 1e-4);
+        assertEquals(-0.75, first.getSpeed(1), 1e-3);
+        assertEquals(7, first.getPieces(1));
+
+        // a seção do arquivo monta os mesmos obstáculos que a fase padrão
+        ObstacleField field = new ObstacleField();
+        field.setScreenHeight(480);
+        first.addTo(field, 800, 480);
+        assertEquals(500, field.getX(0), 0.1);
+        assertEquals(60, field.getTop(0), 0.1);
+        assertEquals(360, field.getLength(1), 0.1);
+        assertEquals(360, field.getSpeed(1), 0.5);
+
+        LevelSection second = level.section(1);
+        assertEquals(3, second.getPathCount(0));
+        assertEquals(0.7, second.getWaypoint(0, 1), 1e-4);
+    }
+
+    @Test
+    public void onlyRequestedSectionsAreDecodedAndOldOnesAreEvicted() throws IOException {
+        LevelWriter writer = new LevelWriter();
+        for (int section = 0; section < 2000; section++) {
+            writer.beginSection();
+            for (int i = 0; i < 20; i++)
+                writer.addTarget(0.3 + i * 0.03, 0.1, 0.3, 0.2, 4, 0.1, 0.6, 0.2, 0.5);
+        }
+        LevelFile level = LevelFile.wrap(ByteBuffer.wrap(writer.toByteArray()));
+
+        // abrir não decodifica nada
+        assertEquals(0, level.getDecodes());
+        assertEquals(0, level.getResidentSections());
+
+        level.section(0);
+        level.section(1);
+        level.section(0); // já residente
+        assertEquals(2, level.getDecodes());
+        long footprint = level.getResidentBytes();
+
+        // percorrer a fase inteira mantém só DEFAULT_RESIDENT_SECTIONS seções
+        for (int section = 0; section < level.getSectionCount(); section++)
+            level.section(section);
+        assertEquals(LevelFile.DEFAULT_RESIDENT_SECTIONS, level.getResidentSections());
+        assertEquals(2000, level.getDecodes());
+        assertEquals(2000 - LevelFile.DEFAULT_RESIDENT_SECTIONS, level.getEvictions());
+        assertTrue(level.isResident(1999));
+        assertFalse(level.isResident(0));
+        assertTrue(level.getResidentBytes() <= footprint * 3 / 2);
+
+        // retain descarta as seções fora da faixa
+        level.retain(1999, 2000);
+        assertEquals(1, level.getResidentSections());
+    }
+
+    @Test
+    public void obstaclesFollowTheirPathBackAndForth() {
+        ObstacleField field = new ObstacleField();
+        field.setScreenHeight(480);
+        int i = field.addBlocker(100, 0, 40, 100);
+        field.setPath(i, new double[] {100, 50, 200}, 0, 3);
+
+        assertEquals(100, field.getTop(i), 1e-9);
+        assertEquals(200, field.getSpan(i), 1e-9);
+
+        field.advance(0.25);
+        assertEquals(75, field.getTop(i), 1e-9);
+        field.advance(0.75);        // passou pelo ponto 50 e desce
+        assertEquals(100, field.getTop(i), 1e-9);
+        field.advance(1.5);         // voltou do ponto 200
+        assertEquals(150, field.getTop(i), 1e-9);
+        assertEquals(125, field.topAt(i, 0.25), 1e-9);
+
+        // os pontos são limitados à faixa em que a linha cabe na tela
+        int j = field.addBlocker(200, 0, 40, 100);
+        field.setPath(j, new double[] {-20, 900}, 0, 2);
+        field.advance(4.4);         // de 0 até 480 - 40
+        assertEquals(440, field.getTop(j), 1e-9);
+
+        field.reset();
+        assertEquals(100, field.getTop(i), 1e-9);
+        assertEquals(0, field.getTop(j), 1e-9);
+    }
+
+    @Test
+    public void version1FilesWithOneBytePieceCountsStillRead() throws IOException {
+        byte[] data = fromHex("434e4c5600010001" +
+                "000000180000000b0001000200000000" +           // índice
+                "010280003333" + "4ccc006600");               // alvo de 2 seções
+        LevelSection section = LevelFile.wrap(ByteBuffer.wrap(data)).section(0);
+
+        assertEquals(ObstacleField.TARGET, section.getKind(0));
+        assertEquals(2, section.getPieces(0));
+        assertEquals(0.5, section.getX(0), 1e-4);
+        assertEquals(0.2, section.getTop(0), 1e-4);
+        assertEquals(0.3, section.getLength(0), 1e-4);
+        assertEquals(0.1, section.getSpeed(0), 1e-3);
+    }
+
+    @Test
+    public void targetsMayHaveThousandsOfPieces() throws IOException {
+        byte[] data = new LevelWriter().beginSection().addTarget(0.8, 0.1, 0.8, 0.2, 4096)
+                .toByteArray();
+        LevelFile level = LevelFile.wrap(ByteBuffer.wrap(data));
+
+        assertEquals(4096, level.getPieceCount(0));
+        assertEquals(4096, level.section(0).getPieces(0));
+    }
+
+    @Test
+    public void mappedFileIsReadLikeTheBuffer() throws IOException {
+        byte[] data = new LevelWriter().beginSection().addTarget(0.5, 0.2, 0.3, 0.1, 2)
+                .toByteArray();
+        File file = File.createTempFile("level", ".cnlv");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+
+            LevelFile level = LevelFile.open(file);
+            assertEquals(1, level.getSectionCount());
+            assertEquals(2, level.section(0).getPieces(0));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void corruptFilesAreRejected() throws IOException {
+        byte[] data = new LevelWriter().beginSection()
+                .addTarget(0.5, 0.2, 0.3, 0.1, 2, 0.2, 0.6)
+                .toByteArray();
+
+        byte[] badMagic = data.clone();
+        badMagic[0] = 0;
+        assertRejected(badMagic);
+
+        byte[] newer = data.clone();
+        newer[5] = (byte) (LevelFile.VERSION + 1);
+        assertRejected(newer);
+
+        byte[] truncatedIndex = new byte[LevelFile.HEADER_SIZE + 4];
+        System.arraycopy(data, 0, truncatedIndex, 0, truncatedIndex.length);
+        assertRejected(truncatedIndex);
+
+        // os erros nas seções só aparecem quando a seção é lida
+        int section = LevelFile.HEADER_SIZE + LevelFile.INDEX_ENTRY_SIZE;
+        byte[] badKind = data.clone();
+        badKind[section] = 9;
+        assertSectionRejected(badKind);
+
+        byte[] badPieces = data.clone();
+        badPieces[section + 2] = 3; // o índice diz 2
+        assertSectionRejected(badPieces);
+
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertSectionRejected(truncated);
+    }
+
+    @Test
+    public void writerRejectsValuesOutsideTheFormat() throws IOException {
+        LevelWriter writer = new LevelWriter();
+        try {
+            writer.addBlocker(0.5, 0.1, 0.2, 0.1);
+            fail("obstacles need a section");
+        } catch (IllegalStateException expected) {
+        }
+
+        writer.beginSection();
+        try {
+            writer.addBlocker(1.5, 0.1, 0.2, 0.1);
+            fail("x is a screen fraction");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            writer.addTarget(0.5, 0.1, 0.2, 0.1, 0);
+            fail("a target needs pieces");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            writer.addBlocker(0.5, 0.1, 0.2, 0.1, 0.5);
+            fail("a path needs two points");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        // os obstáculos recusados não deixam restos na seção
+        writer.addBlocker(0.5, 0.1, 0.2, 0.1).addTarget(0.7, 0.1, 0.2, 0.1, 2);
+        LevelSection section = LevelFile.wrap(ByteBuffer.wrap(writer.toByteArray())).section(0);
+        assertEquals(2, section.size());
+
+        try {
+            new LevelWriter().beginSection().addBlocker(0.5, 0.1, 0.2, 0.1).toByteArray();
+            fail("a section without targets can never be cleared");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void clearingAStageLoadsTheNextOneAndOnlyTheLastEndsTheGame() throws IOException {
+        LevelWriter writer = new LevelWriter();
+        for (int stage = 0; stage < 4; stage++)
+            writer.beginSection().addTarget(0.5, 0.25, 0.5, 0.0, 1);
+        LevelFile level = LevelFile.wrap(ByteBuffer.wrap(writer.toByteArray()));
+
+        GameSimulation simulation = new GameSimulation();
+        simulation.setLevel(level);
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+        assertEquals(1, simulation.getObstacles().size());
+
+        for (int stage = 0; stage < 3; stage++) {
+            assertTrue(simulation.fire(Math.PI / 2));
+            runUntil(simulation, stage + 1);
+            assertFalse(simulation.isGameOver());
+            assertEquals(0, simulation.getTargetPiecesHit());
+            assertFalse(simulation.isCannonballOnScreen());
+
+            // só a etapa atual e a seguinte ficam residentes
+            assertTrue(level.isResident(stage + 1));
+            assertFalse(level.isResident(stage));
+        }
+
+        assertTrue(simulation.fire(Math.PI / 2));
+        for (int i = 0; i < 120 && !simulation.isGameOver(); i++)
+            simulation.step(FRAME_NANOS);
+        assertTrue(simulation.isGameOver());
+        assertEquals(3, simulation.getStage());
+
+        // um novo jogo recomeça da primeira etapa
+        simulation.newGame();
+        assertEquals(0, simulation.getStage());
+    }
+
+    @Test
+    public void snapshotsResumeTheSavedStage() throws IOException {
+        LevelWriter writer = new LevelWriter();
+        writer.beginSection().addTarget(0.5, 0.25, 0.5, 0.0, 1);
+        writer.beginSection().addBlocker(0.3, 0.1, 0.2, 0.3)
+                .addTarget(0.8, 0.1, 0.3, 0.2, 3, 0.1, 0.6);
+        byte[] data = writer.toByteArray();
+
+        GameSimulation playing = new GameSimulation();
+        playing.setLevel(LevelFile.wrap(ByteBuffer.wrap(data)));
+        playing.setScreenSize(800, 480);
+        playing.newGame();
+        playing.fire(Math.PI / 2);
+        runUntil(playing, 1);
+        for (int i = 0; i < 30; i++)
+            playing.step(FRAME_NANOS);
+
+        GameStateCodec codec = new GameStateCodec();
+        codec.write(playing);
+
+        GameSimulation resumed = new GameSimulation();
+        resumed.setLevel(LevelFile.wrap(ByteBuffer.wrap(data)));
+        resumed.setScreenSize(800, 480);
+        resumed.newGame();
+        codec.restore(resumed);
+
+        assertEquals(1, resumed.getStage());
+        assertEquals(2, resumed.getObstacles().size());
+        assertEquals(playing.getObstacles().getTop(1), resumed.getObstacles().getTop(1), 1e-9);
+        assertEquals(playing.getTimeLeft(), resumed.getTimeLeft(), 0.0);
+
+        // a fase padrão não tem a etapa 1
+        GameSimulation standard = new GameSimulation();
+        standard.setScreenSize(800, 480);
+        standard.newGame();
+        try {
+            codec.restore(standard);
+            fail("the default level has a single stage");
+        } catch (IOException expected) {
+        }
+        assertEquals(1, standard.getGamesStarted());
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        return data;
+    }
+
+    private static void runUntil(GameSimulation simulation, int stage) {
+        for (int i = 0; i < 120 && simulation.getStage() != stage; i++)
+            simulation.step(FRAME_NANOS);
+        assertEquals(stage, simulation.getStage());
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            LevelFile.wrap(ByteBuffer.wrap(data));
+            fail("level should have been rejected");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void assertSectionRejected(byte[] data) throws IOException {
+        LevelFile level = LevelFile.wrap(ByteBuffer.wrap(data));
+        try {
+            level.section(0);
+            fail("section should have been rejected");
+        } catch (IOException expected) {
+        }
+        assertEquals(0, level.getResidentSections());
+    }
+}
@@ -0,0 +1,180 @@
+package com.deitel.cannongame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * Dois jogadores em passo travado pela interface de loopback: mesmo estado
+ * que uma execução local com as mesmas entradas, volta ao estado confirmado
+ * quando a previsão erra, detecção de dessincronização e banda e latência
+ * medidas.
+ */
+public class LockstepSessionTest {
+    private static final int TICKS = FixedStepClock.DEFAULT_TICKS_PER_SECOND;
+    private static final long TICK_NANOS = 1000000000L / TICKS;
+
+    // disparos de cada jogador: passo em que o jogador toca e ângulo
+    private static final int[][] FIRES = {
+            { 10, 1000, 200, 1100, 400, 900 },
+            { 50, 1024, 250, 950, 251, 1000, 420, 1050 },
+    };
+
+    private DatagramChannel first;
+    private DatagramChannel second;
+
+    @Before
+    public void setUp() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        first = DatagramChannel.open().bind(new InetSocketAddress(loopback, 0));
+        second = DatagramChannel.open().bind(new InetSocketAddress(loopback, 0));
+        first.connect(second.getLocalAddress());
+        second.connect(first.getLocalAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void inputDelayKeepsBothPeersInSyncWithoutRollback() throws IOException {
+        int delay = LockstepSession.DEFAULT_INPUT_DELAY;
+        LockstepSession[] peers = newPeers(new GameConfig(), delay);
+        play(peers, 600);
+
+        for (LockstepSession peer : peers) {
+            assertEquals(600, peer.getCurrentTick());
+            assertEquals(600, peer.getConfirmedTick());
+            assertEquals(0, peer.getRollbacks());
+            assertFalse(peer.isDesynced());
+            assertEquals(600 / LockstepSession.CHECKSUM_INTERVAL - 1, peer.getChecksumsCompared(), 1);
+            assertSameBoards(reference(600, delay), peer);
+
+            // o disparo aparece inputDelay passos depois do toque
+            assertEquals(delay * TICK_NANOS, peer.getEffectLatency().getPercentile(50),
+                    LatencyHistogram.BUCKET_NANOS);
+
+            // entradas vazias custam um byte por passo ainda não confirmado
+            assertTrue(peer.getBytesPerSecond() + " B/s", peer.getBytesPerSecond() < 1500);
+            assertEquals(0, peer.getBadPackets());
+        }
+    }
+
+    @Test
+    public void latePredictionsRollBackToTheConfirmedState() throws IOException {
+        // sem atraso de entrada, o primeiro jogador só recebe cada disparo do
+        // segundo depois de ter previsto o passo sem ele
+        LockstepSession[] peers = newPeers(new GameConfig(), 0);
+        play(peers, 600);
+
+        assertTrue(peers[0].getRollbacks() > 0);
+        assertTrue(peers[0].getResimulatedTicks() > 0);
+
+        for (LockstepSession peer : peers) {
+            assertFalse(peer.isDesynced());
+            int confirmedTick = peer.getConfirmedTick();
+            assertTrue(confirmedTick >= 599);
+            FixedPointSimulation[] expected = reference(confirmedTick, 0);
+            for (int player = 0; player < LockstepSession.PLAYERS; player++)
+                assertEquals(expected[player].checksum(),
+                        peer.getConfirmedBoard(player).checksum());
+        }
+
+        // a previsão corrigida alcança o estado confirmado
+        assertSameBoards(reference(600, 0), peers[1]);
+    }
+
+    @Test
+    public void differentRulesAreReportedAsDesync() throws IOException {
+        LockstepSession local = new LockstepSession(first, 0, new GameConfig(), TICKS, 800, 480,
+                LockstepSession.DEFAULT_INPUT_DELAY, LockstepSession.DEFAULT_MAX_ROLLBACK);
+        LockstepSession remote = new LockstepSession(second, 1,
+                new GameConfig().setInitialTime(12), TICKS, 800, 480,
+                LockstepSession.DEFAULT_INPUT_DELAY, LockstepSession.DEFAULT_MAX_ROLLBACK);
+        play(new LockstepSession[] { local, remote }, 100);
+
+        assertTrue(local.isDesynced());
+        assertTrue(remote.isDesynced());
+        assertEquals(LockstepSession.CHECKSUM_INTERVAL, local.getDesyncTick());
+    }
+
+    @Test
+    public void garbageIsCountedAndIgnored() throws IOException {
+        LockstepSession[] peers = newPeers(new GameConfig(), LockstepSession.DEFAULT_INPUT_DELAY);
+        second.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        second.write(ByteBuffer.wrap(new byte[] { (byte) LockstepSession.PACKET_MAGIC, 0, 0, 5, 9 }));
+        play(peers, 60);
+
+        assertEquals(2, peers[0].getBadPackets());
+        assertFalse(peers[0].isDesynced());
+        assertSameBoards(reference(60, LockstepSession.DEFAULT_INPUT_DELAY), peers[0]);
+    }
+
+    private LockstepSession[] newPeers(GameConfig config, int delay) throws IOException {
+        return new LockstepSession[] {
+                new LockstepSession(first, 0, config, TICKS, 800, 480, delay,
+                        LockstepSession.DEFAULT_MAX_ROLLBACK),
+                new LockstepSession(second, 1, config, TICKS, 800, 480, delay,
+                        LockstepSession.DEFAULT_MAX_ROLLBACK),
+        };
+    }
+
+    // avança os dois aparelhos ticks passos, um depois do outro, com os disparos de FIRES
+    private static void play(LockstepSession[] peers, int ticks) throws IOException {
+        for (int tick = 0; tick < ticks; tick++) {
+            long now = tick * TICK_NANOS;
+            for (int player = 0; player < LockstepSession.PLAYERS; player++) {
+                int angle = fireAt(player, tick);
+                if (angle >= 0)
+                    peers[player].submitFire(angle, now);
+                peers[player].advance(now);
+            }
+        }
+    }
+
+    private static int fireAt(int player, int tick) {
+        for (int i = 0; i < FIRES[player].length; i += 2) {
+            if (FIRES[player][i] == tick)
+                return FIRES[player][i + 1];
+        }
+        return -1;
+    }
+
+    // os dois tabuleiros simulados num só aparelho, com cada disparo delay passos depois do toque
+    private static FixedPointSimulation[] reference(int ticks, int delay) {
+        FixedPointSimulation[] boards = new FixedPointSimulation[LockstepSession.PLAYERS];
+        for (int player = 0; player < boards.length; player++) {
+            boards[player] = new FixedPointSimulation(new GameConfig(), TICKS,
+                    ProjectilePool.DEFAULT_CAPACITY);
+            boards[player].setScreenSize(800, 480);
+            boards[player].newGame();
+        }
+
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int player = 0; player < boards.length; player++) {
+                int angle = fireAt(player, tick - delay);
+                if (angle >= 0)
+                    boards[player].fire(angle);
+                boards[player].step();
+            }
+        }
+        return boards;
+    }
+
+    private static void assertSameBoards(FixedPointSimulation[] expected, LockstepSession peer) {
+        for (int player = 0; player < LockstepSession.PLAYERS; player++) {
+            assertEquals(expected[player].checksum(), peer.getBoard(player).checksum());
+            assertEquals(expected[player].getShotsFired(), peer.getBoard(player).getShotsFired());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Conjunto de bits das seções dos alvos: contagem por alvo, busca de
+ * sequências e alvos com milhares de seções.
+ */
+public class ObstacleFieldTest {
+    @Test
+    public void hitsAreCountedPerTargetAcrossWordBoundaries() {
+        ObstacleField field = new ObstacleField();
+        field.setScreenHeight(480);
+        int first = field.addTarget(600, 0, 400, 100, 70);
+        int second = field.addTarget(700, 0, 400, 100, 100); // seções 70 a 169
+
+        assertTrue(field.hitPiece(63));
+        assertTrue(field.hitPiece(64));
+        assertFalse(field.hitPiece(64));    // já atingida
+        assertTrue(field.hitPiece(70));
+        assertTrue(field.hitPiece(169));
+
+        assertEquals(2, field.getPiecesHit(first));
+        assertEquals(2, field.getPiecesHit(second));
+        assertEquals(4, field.getPiecesHit());
+        assertTrue(field.isPieceHit(169));
+        assertFalse(field.isPieceHit(128));
+
+        field.reset();
+        assertEquals(0, field.getPiecesHit());
+    }
+
+    @Test
+    public void completionIsDetectedWithThousandsOfPieces() {
+        ObstacleField field = new ObstacleField();
+        field.setScreenHeight(480);
+        field.addTarget(700, 0, 400, 100, 5000);
+
+        for (int piece = 4999; piece > 0; piece--)
+            field.hitPiece(piece);
+        assertFalse(field.allPiecesHit());
+        assertEquals(4999, field.getPiecesHit());
+
+        field.hitPiece(0);
+        assertTrue(field.allPiecesHit());
+
+        // uma fase nova com menos seções não herda os bits
+        field.clear();
+        field.addTarget(700, 0, 400, 100, 3);
+        assertEquals(0, field.getPiecesHit());
+    }
+
+    @Test
+    public void runsAreFoundWordByWord() {
+        long[] bits = new long[3];
+        for (int bit = 60; bit < 130; bit++)
+            bits[bit >>> 6] |= 1L << bit;
+
+        assertEquals(60, ObstacleField.nextSet(bits, 0, 192));
+        assertEquals(130, ObstacleField.nextClear(bits, 60, 192));
+        assertEquals(100, ObstacleField.nextSet(bits, 100, 192));
+        assertEquals(192, ObstacleField.nextSet(bits, 130, 192));
+        assertEquals(120, ObstacleField.nextClear(bits, 60, 120)); // limitado ao fim
+        assertEquals(70, ObstacleField.countHits(bits, 0, 192));
+        assertEquals(4, ObstacleField.countHits(bits, 0, 64));
+        assertEquals(1, ObstacleField.countHits(bits, 129, 192));
+        assertEquals(0, ObstacleField.countHits(bits, 5, 5));
+    }
+}
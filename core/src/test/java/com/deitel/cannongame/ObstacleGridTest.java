@@ -0,0 +1,92 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Consultas e atualização incremental do ObstacleGrid, e os candidatos por
+ * consulta com 10, 1.000 e 10.000 obstáculos; os tempos ficam em
+ * ObstacleGridQueryBenchmark e SimulationStepBenchmark.
+ */
+public class ObstacleGridTest {
+    @Test
+    public void queryReturnsEachOverlappingObstacleOnce() {
+        ObstacleGrid grid = new ObstacleGrid();
+        grid.configure(400, 400, 50, 3);
+        grid.update(0, 100, 0, 100, 300);   // linha longa, várias células
+        grid.update(1, 300, 300, 300, 350);
+        grid.update(2, 120, 260, 120, 280);
+
+        int[] out = new int[3];
+        int found = grid.query(90, 250, 130, 290, out);
+
+        assertEquals(2, found);
+        assertTrue((out[0] == 0 && out[1] == 2) || (out[0] == 2 && out[1] == 0));
+        assertEquals(0, grid.query(200, 0, 240, 40, out));
+    }
+
+    @Test
+    public void updateOnlyRelinksObstaclesThatChangeCells() {
+        ObstacleGrid grid = new ObstacleGrid();
+        grid.configure(400, 400, 50, 2);
+        grid.update(0, 100, 10, 100, 40);
+        grid.update(1, 200, 10, 200, 40);
+        assertEquals(2, grid.getRelinks());
+
+        grid.update(0, 100, 12, 100, 42);   // continua nas mesmas células
+        assertEquals(2, grid.getRelinks());
+
+        grid.update(1, 200, 60, 200, 90);   // mudou de linha da grade
+        assertEquals(3, grid.getRelinks());
+
+        int[] out = new int[2];
+        assertEquals(0, grid.query(190, 0, 210, 45, out));
+        assertEquals(1, grid.query(190, 55, 210, 95, out));
+        assertEquals(1, out[0]);
+    }
+
+    @Test
+    public void candidatesPerQueryStayFlatAsObstacleCountGrows() {
+        int[] counts = { 10, 1000, 10000 };
+        double[] candidatesPerQuery = new double[counts.length];
+
+        for (int n = 0; n < counts.length; n++) {
+            int count = counts[n];
+            // densidade constante: a área cresce com o número de obstáculos
+            double side = Math.sqrt(count) * 200;
+            double[] x = new double[count];
+            double[] y = new double[count];
+            Random random = new Random(42);
+            for (int i = 0; i < count; i++) {
+                x[i] = random.nextDouble() * side;
+                y[i] = random.nextDouble() * side;
+            }
+
+            ObstacleGrid grid = new ObstacleGrid();
+            grid.configure(side, side, 200, count);
+            for (int i = 0; i < count; i++)
+                grid.update(i, x[i], y[i], x[i], y[i] + 60);
+
+            int queries = 20000;
+            double[] qx = new double[queries];
+            double[] qy = new double[queries];
+            for (int q = 0; q < queries; q++) {
+                qx[q] = random.nextDouble() * side;
+                qy[q] = random.nextDouble() * side;
+            }
+
+            int[] out = new int[count];
+            long totalCandidates = 0;
+            for (int q = 0; q < queries; q++)
+                totalCandidates += grid.query(qx[q], qy[q], qx[q] + 40, qy[q] + 40, out);
+            candidatesPerQuery[n] = (double) totalCandidates / queries;
+        }
+
+        // com densidade constante, os candidatos por consulta não crescem com N
+        assertTrue(candidatesPerQuery[2] < 3 * candidatesPerQuery[0] + 1);
+        assertTrue(candidatesPerQuery[2] < 10);
+    }
+}
@@ -0,0 +1,137 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Limite de partículas, expiração com compactação, divisão da atualização
+ * entre threads e emissão a partir das colisões da simulação.
+ */
+public class ParticleSystemTest {
+    @Test
+    public void burstsShrinkAsThePoolFillsAndNeverPassTheBudget() {
+        ParticleSystem particles = new ParticleSystem(1000);
+        particles.setBudget(100);
+
+        particles.emit(ParticleSystem.SPARK, 10, 10, 0, 0, 60);
+        assertEquals(60, particles.size());     // conjunto vazio: explosão inteira
+
+        particles.emit(ParticleSystem.SPARK, 10, 10, 0, 0, 40);
+        assertEquals(92, particles.size());     // acima da metade: 40 * 2 * 40 / 100
+
+        for (int burst = 0; burst < 100; burst++)
+            particles.emit(ParticleSystem.DEBRIS, 10, 10, 0, 0, 40);
+        assertTrue(particles.size() <= 100);
+        assertEquals(60 + 101 * 40, particles.getEmitted() + particles.getDropped());
+        assertEquals(particles.size(), particles.getEmitted());
+
+        particles.setScale(0.25f);
+        particles.clear();
+        particles.emit(ParticleSystem.SPARK, 10, 10, 0, 0, 40);
+        assertEquals(10, particles.size());     // qualidade baixa: um quarto
+    }
+
+    @Test
+    public void expiredParticlesAreRemovedAndSurvivorsKeepTheirState() {
+        ParticleSystem particles = new ParticleSystem(256);
+        particles.configure(800, 480);
+        particles.emit(ParticleSystem.SPARK, 100, 100, 0, 0, 20);  // vivem até 0,45 s
+        particles.emit(ParticleSystem.DEBRIS, 200, 50, 0, 0, 20);  // vivem ao menos 0,6 s
+
+        particles.update(0.25);
+        assertEquals(40, particles.size());
+
+        particles.update(0.25);
+        assertEquals(20, particles.size());
+        for (int i = 0; i < particles.size(); i++) {
+            assertEquals(ParticleSystem.DEBRIS, particles.getKind(i));
+            assertEquals(0.5f, particles.getAge(i), 1e-6f);
+        }
+
+        // a gravidade puxa os destroços para baixo, em média
+        float meanY = 0;
+        for (int i = 0; i < particles.size(); i++)
+            meanY += particles.getY(i) / particles.size();
+        assertTrue("mean y " + meanY, meanY > 50);
+
+        float[] points = new float[2 * particles.capacity()];
+        assertEquals(40, particles.copyPoints(ParticleSystem.DEBRIS, points));
+        assertEquals(0, particles.copyPoints(ParticleSystem.SPARK, points));
+        assertEquals(particles.getX(19), points[38], 0f);
+
+        particles.update(1.0);
+        assertEquals(0, particles.size());
+    }
+
+    @Test
+    public void parallelUpdateMatchesTheSerialOne() throws InterruptedException {
+        int count = 2 * ParticleSystem.MIN_PARALLEL_PARTICLES;
+        ParticleSystem serial = burst(count);
+        ParticleSystem parallel = burst(count);
+
+        ExecutorService workers = Executors.newFixedThreadPool(3);
+        try {
+            parallel.setExecutor(workers, 4);
+            for (int step = 0; step < 20; step++) {
+                serial.update(1 / 60.0);
+                parallel.update(1 / 60.0);
+            }
+        } finally {
+            workers.shutdown();
+        }
+
+        assertEquals(serial.size(), parallel.size());
+        assertTrue(serial.size() > 0);
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.getX(i), parallel.getX(i), 0f);
+            assertEquals(serial.getY(i), parallel.getY(i), 0f);
+        }
+    }
+
+    @Test
+    public void steadyUpdatesDoNotAllocate() {
+        ParticleSystem particles = burst(1000);
+        float[] points = new float[2 * particles.capacity()];
+
+        long before = Allocations.allocatedBytes();
+        for (int step = 0; step < 1000; step++) {
+            particles.emit(ParticleSystem.SPARK, 400, 240, 100, 0, 12);
+            particles.update(1 / 60.0);
+            particles.copyPoints(ParticleSystem.SPARK, points);
+        }
+        long allocated = Allocations.allocatedBytes() - before;
+        assertTrue("particles allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void collisionsEmitParticles() {
+        GameSimulation simulation = new GameSimulation();
+        ParticleSystem particles = new ParticleSystem();
+        simulation.setParticles(particles);
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+
+        // tiro reto para a direita: a bala acerta a barreira ou o alvo
+        assertTrue(simulation.fire(Math.PI / 2));
+        for (int step = 0; step < 120 && particles.getEmitted() == 0; step++)
+            simulation.step(16_666_667L);
+        assertTrue(particles.getEmitted() > 0);
+
+        simulation.newGame();
+        assertEquals(0, particles.size());
+    }
+
+    // sistema com count partículas, com capacidade para que nenhuma seja descartada
+    private static ParticleSystem burst(int count) {
+        ParticleSystem particles = new ParticleSystem(4 * count);
+        particles.configure(800, 480);
+        for (int emitted = 0; emitted < count; emitted += 50)
+            particles.emit(emitted % 100 == 0 ? ParticleSystem.SPARK : ParticleSystem.DEBRIS,
+                    400, 240, 200, -50, 50);
+        return particles;
+    }
+}
@@ -0,0 +1,125 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reaproveitamento de posições e carga máxima do ProjectilePool e do disparo rápido.
+ */
+public class ProjectilePoolTest {
+    @Test
+    public void spawnFillsPoolAndRejectsWhenFull() {
+        ProjectilePool pool = new ProjectilePool(4);
+        for (int i = 0; i < 4; i++)
+            assertEquals(i, pool.spawn(i, i, 1, 1));
+
+        assertTrue(pool.isFull());
+        assertEquals(-1, pool.spawn(0, 0, 0, 0));
+        assertEquals(4, pool.size());
+    }
+
+    @Test
+    public void releasedSlotsAreRecycled() {
+        ProjectilePool pool = new ProjectilePool(4);
+        for (int i = 0; i < 4; i++)
+            pool.spawn(i, 0, 0, 0);
+
+        pool.release(1);
+        pool.release(1); // liberar duas vezes não corrompe a pilha de posições livres
+        assertEquals(3, pool.size());
+        assertFalse(pool.isAlive(1));
+
+        assertEquals(1, pool.spawn(10, 20, 0, 0));
+        assertEquals(10, pool.getX(1), 0.0);
+        assertEquals(20, pool.getY(1), 0.0);
+        assertTrue(pool.isFull());
+    }
+
+    @Test
+    public void liveSlotsStayDenseAfterRelease() {
+        ProjectilePool pool = new ProjectilePool(8);
+        for (int i = 0; i < 8; i++)
+            pool.spawn(i, 0, 0, 0);
+
+        // remove as posições pares durante a iteração de trás para frente
+        for (int i = pool.size() - 1; i >= 0; i--) {
+            int slot = pool.liveSlot(i);
+            if (slot % 2 == 0)
+                pool.release(slot);
+        }
+
+        assertEquals(4, pool.size());
+        for (int i = 0; i < pool.size(); i++)
+            assertEquals(1, pool.liveSlot(i) % 2);
+    }
+
+    @Test
+    public void normalModeAllowsOneCannonball() {
+        GameSimulation simulation = newSimulation(ProjectilePool.DEFAULT_CAPACITY);
+        assertTrue(simulation.fire(Math.PI / 2));
+        assertFalse(simulation.fire(Math.PI / 2));
+    }
+
+    @Test
+    public void rapidFireKeepsEveryProjectileColliding() {
+        GameSimulation simulation = newSimulation(16);
+        simulation.setRapidFire(true);
+
+        // dois tiros horizontais: ambos batem na barreira
+        assertTrue(simulation.fire(Math.PI / 2));
+        simulation.step(50000000L);
+        assertTrue(simulation.fire(Math.PI / 2));
+        simulation.step(400000000L);
+
+        assertEquals(GameSimulation.INITIAL_TIME - 2 * GameSimulation.MISS_PENALTY - 0.45,
+                simulation.getTimeLeft(), 1e-6);
+    }
+
+    @Test
+    public void stressAtMaximumPoolSizeAllocatesNothing() {
+        int capacity = ProjectilePool.DEFAULT_CAPACITY;
+        GameSimulation simulation = newSimulation(capacity);
+        simulation.setRapidFire(true);
+        ProjectilePool pool = simulation.getProjectiles();
+
+        // enche o conjunto com tiros em leque que quase nunca acertam o alvo
+        for (int i = 0; pool.size() < capacity; i++)
+            assertTrue(simulation.fire(0.2 + (i % 40) * 0.01));
+        assertFalse(simulation.fire(1.0));
+
+        // aquece o JIT antes de medir
+        runSaturated(simulation, 200);
+
+        long before = Allocations.allocatedBytes();
+        int steps = runSaturated(simulation, 2000);
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertEquals(2000, steps);
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+        for (int i = 0; i < pool.size(); i++)
+            assertTrue(pool.isAlive(pool.liveSlot(i)));
+    }
+
+    // mantém o conjunto cheio: a cada passo recarrega as balas que saíram da tela
+    private static int runSaturated(GameSimulation simulation, int steps) {
+        ProjectilePool pool = simulation.getProjectiles();
+        int done = 0;
+        for (int i = 0; i < steps; i++) {
+            if (simulation.isGameOver())
+                simulation.newGame();
+            simulation.step(1000000000L / 120);
+            while (!pool.isFull())
+                simulation.fire(0.2 + (i % 40) * 0.01);
+            done++;
+        }
+        return done;
+    }
+
+    private static GameSimulation newSimulation(int capacity) {
+        GameSimulation simulation = new GameSimulation(capacity);
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+        return simulation;
+    }
+}
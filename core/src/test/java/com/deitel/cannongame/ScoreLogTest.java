@@ -0,0 +1,212 @@
+package com.deitel.cannongame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * Histórico de resultados: classificação, releitura do arquivo, final cortado
+ * por uma queda, fsync em lotes e um log com um milhão de registros.
+ */
+public class ScoreLogTest {
+    private File file;
+    private final List<Integer> ranks = new ArrayList<>();
+    private final List<IOException> errors = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("scores", ".cnsl");
+        assertTrue(file.delete()); // o log cria o arquivo
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void resultsAreRankedAndSurviveAReopen() {
+        ScoreLog log = newLog();
+        log.start();
+        assertTrue(log.post(1000, false, 0, 9, 10.0));
+        assertTrue(log.post(2000, true, 0, 12, 8.5));
+        assertTrue(log.post(3000, true, 0, 7, 9.0));   // menos tiros: o melhor
+        assertTrue(log.post(4000, true, 0, 7, 9.5));
+        log.stop();
+
+        assertEquals(listOf(1, 1, 1, 2), ranks);
+        assertEquals(4, log.getWritten());
+        assertTrue(log.getSyncs() >= 1);
+        assertEquals(ScoreLog.HEADER_SIZE + 4 * ScoreLog.RECORD_SIZE, file.length());
+
+        ScoreLog reopened = newLog();
+        reopened.start();
+        reopened.stop();
+        ScoreIndex index = reopened.getIndex();
+        assertEquals(4, reopened.getLoadedRecords());
+        assertEquals(4, index.getGames());
+        assertEquals(3, index.getWins());
+        assertEquals(3000, index.getBest().getTimeMillis());
+        assertEquals(4000, index.get(2).getTimeMillis());
+        assertEquals(1000, index.get(4).getTimeMillis());
+        assertEquals(9.5, index.get(2).getElapsedSeconds(), 0.0);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void crashTruncatedTailIsDroppedAndAppendsStayAligned() throws IOException {
+        ScoreLog log = newLog();
+        log.start();
+        for (int game = 0; game < 10; game++)
+            log.post(game, game % 2 == 0, 0, 5 + game, 10.0);
+        log.stop();
+
+        // a queda cortou o último registro pela metade e deixou o anterior em zeros
+        long intact = ScoreLog.HEADER_SIZE + 8 * ScoreLog.RECORD_SIZE;
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.setLength(ScoreLog.HEADER_SIZE + 9 * ScoreLog.RECORD_SIZE + 13);
+            raw.seek(intact);
+            raw.write(new byte[ScoreLog.RECORD_SIZE]);
+        } finally {
+            raw.close();
+        }
+
+        ScoreLog reopened = newLog();
+        reopened.start();
+        reopened.post(100, true, 0, 1, 1.0);
+        reopened.stop();
+
+        assertEquals(8, reopened.getLoadedRecords());
+        assertEquals(0, reopened.getCorruptRecords());
+        assertEquals(ScoreLog.RECORD_SIZE + 13, reopened.getTruncatedBytes());
+        assertEquals(intact + ScoreLog.RECORD_SIZE, file.length());
+
+        ScoreLog third = newLog();
+        third.start();
+        third.stop();
+        assertEquals(9, third.getLoadedRecords());
+        assertEquals(100, third.getIndex().getBest().getTimeMillis());
+    }
+
+    @Test
+    public void corruptRecordInTheMiddleIsSkipped() throws IOException {
+        ScoreLog log = newLog();
+        log.start();
+        for (int game = 0; game < 5; game++)
+            log.post(game, true, 0, 5 + game, 10.0);
+        log.stop();
+
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(ScoreLog.HEADER_SIZE + ScoreLog.RECORD_SIZE + 17); // tiros do segundo
+            raw.write(0x55);
+        } finally {
+            raw.close();
+        }
+
+        ScoreLog reopened = newLog();
+        reopened.start();
+        reopened.stop();
+        assertEquals(4, reopened.getLoadedRecords());
+        assertEquals(1, reopened.getCorruptRecords());
+        assertEquals(0, reopened.getTruncatedBytes());
+    }
+
+    @Test
+    public void fsyncIsBatchedAndAFullQueueDropsInsteadOfBlocking() {
+        ScoreLog log = new ScoreLog(file, ScoreLog.DEFAULT_TOP, 1024, 60000000000L);
+        log.start();
+        int posted = 0;
+        for (int game = 0; game < 100000; game++) {
+            if (log.post(game, false, 0, game % 50, 10.0))
+                posted++;
+        }
+        log.stop();
+
+        assertEquals(posted, log.getWritten());
+        assertEquals(100000 - posted, log.getQueueDrops());
+        assertEquals(1, log.getSyncs());       // intervalo longo: só o fsync final
+        assertEquals(ScoreLog.HEADER_SIZE + (long) posted * ScoreLog.RECORD_SIZE, file.length());
+    }
+
+    @Test
+    public void aMillionRecordLogIsStreamedAtStartup() throws IOException {
+        int records = 1000000;
+        int best = 654321;
+        writeLog(records, best);
+
+        ScoreLog log = newLog();
+        log.start();
+        log.post(records, true, 0, 3, 5.0);    // entra logo depois do melhor
+        log.stop();
+
+        assertEquals(records, log.getLoadedRecords());
+        assertEquals(records + 1, log.getIndex().getGames());
+        assertEquals(best, log.getIndex().getBest().getTimeMillis());
+        assertEquals(listOf(2), ranks);
+        assertTrue("loading took " + log.getLoadNanos() / 1000000 + " ms",
+                log.getLoadNanos() < 5000000000L);
+    }
+
+    private ScoreLog newLog() {
+        ScoreLog log = new ScoreLog(file);
+        log.setListener(new ScoreLog.Listener() {
+            @Override
+            public void onScoreRecorded(ScoreRecord record, int rank, ScoreIndex index) {
+                ranks.add(rank);
+            }
+
+            @Override
+            public void onScoreLogError(IOException e) {
+                errors.add(e);
+            }
+        });
+        return log;
+    }
+
+    // log com records derrotas e, no registro best, a única vitória com dois tiros
+    private void writeLog(int records, int best) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ScoreLog.HEADER_SIZE);
+        header.putInt(ScoreLog.MAGIC).putShort((short) ScoreLog.VERSION)
+                .putShort((short) ScoreLog.RECORD_SIZE);
+
+        Random random = new Random(7);
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[ScoreLog.RECORD_SIZE];
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        try {
+            out.write(header.array());
+            for (int i = 0; i < records; i++) {
+                ScoreRecord score = i == best ? new ScoreRecord(i, true, 0, 2, 4.0)
+                        : new ScoreRecord(i, false, random.nextInt(3), 1 + random.nextInt(40),
+                        random.nextDouble() * 10);
+                ScoreLog.encode(score, record, 0, crc);
+                out.write(record);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static List<Integer> listOf(int... values) {
+        List<Integer> list = new ArrayList<>();
+        for (int value : values)
+            list.add(value);
+        return list;
+    }
+}
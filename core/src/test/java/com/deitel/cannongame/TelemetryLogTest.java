@@ -0,0 +1,283 @@
+package com.deitel.cannongame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Telemetria: eventos de duas threads lidos de volta dos lotes comprimidos,
+ * troca de arquivos no limite de tamanho, descarte com a fila cheia,
+ * cabeçalhos corrompidos, tempos no relógio de parede e o custo por evento
+ * na thread do jogo.
+ */
+public class TelemetryLogTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("telemetry", "");
+        assertTrue(directory.delete()); // o log cria o diretório
+    }
+
+    @After
+    public void tearDown() {
+        File[] entries = directory.listFiles();
+        if (entries != null) {
+            for (File entry : entries)
+                entry.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void eventsFromTwoThreadsAreReadBackFromCompressedBatches() throws Exception {
+        final TelemetryLog log = new TelemetryLog(directory, 1024, 256,
+                TelemetryLog.DEFAULT_FLUSH_INTERVAL_NANOS, 1 << 20, 4);
+        log.start();
+
+        // a thread de desenho grava travadas enquanto a simulação grava disparos
+        Thread render = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20000; i++)
+                    while (!log.record(TelemetryLog.FRAME_STALL, i))
+                        Thread.yield();
+            }
+        });
+        render.start();
+        for (int i = 0; i < 20000; i++)
+            while (!log.record(TelemetryLog.SHOT, -i))
+                Thread.yield();
+        render.join();
+        log.stop();
+
+        final int[] next = new int[TelemetryLog.EVENT_TYPES];
+        long events = 0;
+        for (File file : TelemetryLog.listFiles(directory)) {
+            events += TelemetryLog.read(file, new TelemetryLog.Visitor() {
+                @Override
+                public void onEvent(int type, long timeMicros, int value) {
+                    // cada thread aparece na ordem em que gravou
+                    int expected = type == TelemetryLog.SHOT ? -next[type] : next[type];
+                    assertEquals(expected, value);
+                    next[type]++;
+                }
+            });
+        }
+
+        assertEquals(40000, events);
+        assertEquals(20000, next[TelemetryLog.SHOT]);
+        assertEquals(20000, next[TelemetryLog.FRAME_STALL]);
+        assertEquals(40000, log.getWritten());
+        assertTrue(log.getCompressedBytes() < log.getRawBytes());
+        assertEquals(0, log.getWriteErrors());
+    }
+
+    @Test
+    public void filesRollAtTheSizeCapAndTheOldestAreDeleted() throws IOException {
+        TelemetryLog log = new TelemetryLog(directory, 1 << 16, 64,
+                TelemetryLog.DEFAULT_FLUSH_INTERVAL_NANOS, 4096, 3);
+        Random random = new Random(3);
+        int lastValue = 0;
+        for (int i = 0; i < 20000; i++) {
+            lastValue = random.nextInt();
+            assertTrue(log.record(TelemetryLog.TARGET_HIT, lastValue, i * 1000L));
+        }
+        log.start();
+        log.stop();
+
+        List<File> files = TelemetryLog.listFiles(directory);
+        assertEquals(3, files.size());
+        assertTrue(log.getFilesCreated() > 3);
+        for (File file : files)
+            assertTrue(file + " has " + file.length() + " bytes", file.length() <= 4096);
+
+        // o último evento está no arquivo mais novo
+        final int[] last = new int[1];
+        TelemetryLog.read(files.get(2), new TelemetryLog.Visitor() {
+            @Override
+            public void onEvent(int type, long timeMicros, int value) {
+                last[0] = value;
+            }
+        });
+        assertEquals(lastValue, last[0]);
+
+        // a sessão seguinte continua a numeração e apaga o mais antigo
+        TelemetryLog next = new TelemetryLog(directory, 64, 64,
+                TelemetryLog.DEFAULT_FLUSH_INTERVAL_NANOS, 4096, 3);
+        next.record(TelemetryLog.GAME_OVER, 1);
+        next.start();
+        next.stop();
+        List<File> rolled = TelemetryLog.listFiles(directory);
+        assertEquals(files.subList(1, 3), rolled.subList(0, 2));
+        assertFalse(files.contains(rolled.get(2)));
+    }
+
+    @Test
+    public void aFullQueueDropsInsteadOfBlockingAndATornBatchIsIgnored() throws IOException {
+        TelemetryLog log = new TelemetryLog(directory, 8, 4,
+                TelemetryLog.DEFAULT_FLUSH_INTERVAL_NANOS, 1 << 20, 4);
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (log.record(TelemetryLog.BLOCKER_HIT, 0, i * 1000L))
+                accepted++;
+        }
+
+        assertEquals(8, accepted);
+        assertEquals(20, log.getPosted());
+        assertEquals(12, log.getQueueDrops());
+
+        log.start();
+        log.stop();
+        assertEquals(8, log.getWritten());
+        assertEquals(2, log.getBatches());
+
+        // o aplicativo foi encerrado no meio do segundo lote
+        File file = TelemetryLog.listFiles(directory).get(0);
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.setLength(raw.length() - 3);
+        } finally {
+            raw.close();
+        }
+        assertEquals(4, TelemetryLog.read(file, new TelemetryLog.Visitor() {
+            @Override
+            public void onEvent(int type, long timeMicros, int value) {
+                assertEquals(TelemetryLog.BLOCKER_HIT, type);
+            }
+        }));
+    }
+
+    @Test
+    public void corruptBatchHeadersAndOldVersionsAreRejected() throws IOException {
+        TelemetryLog log = new TelemetryLog(directory);
+        log.record(TelemetryLog.SHOT, 1);
+        log.start();
+        log.stop();
+        File file = TelemetryLog.listFiles(directory).get(0);
+
+        // tamanho comprimido negativo e tamanho sem compressão enorme
+        assertUnreadable(file, TelemetryLog.HEADER_SIZE + 4, -1);
+        assertUnreadable(file, TelemetryLog.HEADER_SIZE, Integer.MAX_VALUE);
+
+        // um arquivo da versão 1, sem o par de relógios no cabeçalho
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(4);
+            raw.writeShort(1);
+        } finally {
+            raw.close();
+        }
+        assertUnreadable(file);
+    }
+
+    private static void assertUnreadable(File file, int offset, int value) throws IOException {
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        int original;
+        try {
+            raw.seek(offset);
+            original = raw.readInt();
+            raw.seek(offset);
+            raw.writeInt(value);
+        } finally {
+            raw.close();
+        }
+        assertUnreadable(file);
+
+        raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(offset);
+            raw.writeInt(original);
+        } finally {
+            raw.close();
+        }
+    }
+
+    private static void assertUnreadable(File file) {
+        try {
+            TelemetryLog.read(file, new TelemetryLog.Visitor() {
+                @Override
+                public void onEvent(int type, long timeMicros, int value) {
+                }
+            });
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void eventTimesAreReadBackOnTheWallClock() throws IOException {
+        long before = System.currentTimeMillis();
+        long base = System.nanoTime();
+        TelemetryLog log = new TelemetryLog(directory);
+        log.record(TelemetryLog.SHOT, 0, base);
+        log.record(TelemetryLog.FRAME_STALL, 1, base + 1500000000L); // 1,5 s depois
+        log.start();
+        log.stop();
+        long after = System.currentTimeMillis();
+
+        final long[] times = new long[2];
+        TelemetryLog.read(TelemetryLog.listFiles(directory).get(0), new TelemetryLog.Visitor() {
+            @Override
+            public void onEvent(int type, long timeMicros, int value) {
+                times[value] = timeMicros;
+            }
+        });
+
+        // o par do cabeçalho leva o nanoTime do processo para o relógio de parede
+        long slackMicros = 5000;
+        assertTrue(times[0] + " before " + before, times[0] >= before * 1000 - slackMicros);
+        assertTrue(times[0] + " after " + after, times[0] <= after * 1000 + slackMicros);
+        assertEquals(1500000, times[1] - times[0]);
+    }
+
+    @Test
+    public void flushWritesAPartialBatchWithoutStopping() throws InterruptedException {
+        TelemetryLog log = new TelemetryLog(directory);
+        log.start();
+        log.record(TelemetryLog.SHOT, 785398);
+        log.record(TelemetryLog.TARGET_HIT, 2);
+        log.flush();
+
+        long deadline = System.nanoTime() + 5000000000L;
+        while (log.getBatches() == 0 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(1, log.getBatches());
+        assertEquals(2, log.getWritten());
+        log.stop();
+        assertEquals(1, log.getBatches());
+    }
+
+    @Test
+    public void recordingStaysUnderAMicrosecondPerEventWithoutAllocating() {
+        TelemetryLog log = new TelemetryLog(directory, 1 << 16, TelemetryLog.DEFAULT_BATCH_EVENTS,
+                TelemetryLog.DEFAULT_FLUSH_INTERVAL_NANOS, 1 << 20, 2);
+        log.start();
+        exercise(log, 200000); // aquece o JIT
+
+        int events = 2000000;
+        long before = Allocations.allocatedBytes();
+        long start = System.nanoTime();
+        exercise(log, events);
+        long nanosPerEvent = (System.nanoTime() - start) / events;
+        long allocated = Allocations.allocatedBytes() - before;
+        log.stop();
+
+        assertTrue("record took " + nanosPerEvent + " ns per event", nanosPerEvent < 1000);
+        assertTrue("record allocated " + allocated + " bytes", allocated < 1024);
+        assertEquals(log.getPosted(), log.getWritten() + log.getQueueDrops());
+    }
+
+    private static void exercise(TelemetryLog log, int events) {
+        for (int i = 0; i < events; i++)
+            log.record(i % TelemetryLog.EVENT_TYPES, i);
+    }
+}
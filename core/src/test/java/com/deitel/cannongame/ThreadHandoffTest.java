@@ -0,0 +1,228 @@
+package com.deitel.cannongame;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Passagem de estado entre as threads da interface, da simulação e do desenho:
+ * buffer triplo, cópia do estado e fila de toques.
+ */
+public class ThreadHandoffTest {
+    private static final long STEP_NANOS = 1000000000L / 120;
+
+    @Test
+    public void readerSeesOnlyTheLatestPublication() {
+        TripleBuffer<int[]> buffer = new TripleBuffer<>(new int[1], new int[1], new int[1]);
+        assertFalse(buffer.update());
+
+        buffer.getWriteBuffer()[0] = 1;
+        buffer.publish();
+        buffer.getWriteBuffer()[0] = 2;
+        buffer.publish();   // substitui a publicação ainda não lida
+
+        assertTrue(buffer.update());
+        assertEquals(2, buffer.getReadBuffer()[0]);
+        assertFalse(buffer.update());
+        assertEquals(2, buffer.getReadBuffer()[0]);
+    }
+
+    @Test
+    public void writerNeverWritesIntoTheReadBuffer() {
+        TripleBuffer<int[]> buffer = new TripleBuffer<>(new int[1], new int[1], new int[1]);
+
+        for (int i = 1; i <= 10; i++) {
+            buffer.getWriteBuffer()[0] = i;
+            buffer.publish();
+            if (i % 3 == 0)
+                assertTrue(buffer.update());
+
+            assertNotSame(buffer.getReadBuffer(), buffer.getWriteBuffer());
+        }
+    }
+
+    @Test
+    public void concurrentReaderNeverSeesTornOrStaleState() throws Exception {
+        final TripleBuffer<long[]> buffer =
+                new TripleBuffer<>(new long[64], new long[64], new long[64]);
+        final int publications = 200000;
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (long value = 1; value <= publications; value++) {
+                    long[] state = buffer.getWriteBuffer();
+                    for (int i = 0; i < state.length; i++)
+                        state[i] = value;   // um leitor no mesmo buffer veria valores misturados
+                    buffer.publish();
+                }
+            }
+        };
+        writer.start();
+
+        long lastSeen = 0;
+        while (lastSeen < publications) {
+            if (!buffer.update())
+                continue;
+
+            long[] state = buffer.getReadBuffer();
+            long value = state[0];
+            for (long element : state)
+                assertEquals(value, element);
+            assertTrue(value > lastSeen);
+            lastSeen = value;
+        }
+
+        writer.join();
+    }
+
+    @Test
+    public void snapshotCopiesDrawableState() {
+        GameSimulation simulation = new GameSimulation();
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+        simulation.fire(Math.PI / 2);
+        simulation.step(STEP_NANOS);
+
+        ProjectilePool projectiles = simulation.getProjectiles();
+        int slot = projectiles.liveSlot(0);
+        ObstacleField obstacles = simulation.getObstacles();
+
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.copyFrom(simulation, STEP_NANOS, 1000);
+
+        assertEquals(1, snapshot.getProjectileCount());
+        assertEquals(projectiles.getX(slot, 0.25), snapshot.getProjectileX(0, 0.25), 1e-9);
+        assertEquals(projectiles.getY(slot, 0.75), snapshot.getProjectileY(0, 0.75), 1e-9);
+        assertEquals(obstacles.size(), snapshot.getObstacleCount());
+        assertEquals(obstacles.getTop(1, 0.5), snapshot.getTop(1, 0.5), 1e-9);
+        assertEquals(obstacles.getTotalPieces(),
+                snapshot.getPieceCount(1) + snapshot.getFirstPiece(1));
+        assertEquals(simulation.getTimeLeft(), snapshot.getTimeLeft(), 0.0);
+        assertEquals(simulation.getGamesStarted(), snapshot.getGamesStarted());
+
+        // a simulação continua sem alterar a cópia
+        simulation.step(STEP_NANOS);
+        assertNotEquals(simulation.getTimeLeft(), snapshot.getTimeLeft(), 0.0);
+    }
+
+    @Test
+    public void snapshotAlphaFollowsTimeSincePublication() {
+        GameSimulation simulation = new GameSimulation();
+        simulation.setScreenSize(800, 480);
+        simulation.newGame();
+
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.copyFrom(simulation, STEP_NANOS, 1000);
+
+        assertEquals(0.0, snapshot.getAlpha(500), 0.0);
+        assertEquals(0.5, snapshot.getAlpha(1000 + STEP_NANOS / 2), 1e-6);
+        assertEquals(1.0, snapshot.getAlpha(1000 + 3 * STEP_NANOS), 0.0);
+    }
+
+    @Test
+    public void touchesAreCoalescedIntoOneBatchPerDrain() {
+        TouchQueue queue = new TouchQueue(8);
+        assertFalse(queue.drain());
+
+        queue.post(10.5f, 20.25f, true);
+        queue.post(11f, 21f, false);
+        queue.post(-0.0f, 300f, false);   // a última mira vale
+
+        assertTrue(queue.drain());
+        assertEquals(3, queue.getBatchSize());
+        assertEquals(-0.0f, queue.getAimX(), 0.0f);
+        assertEquals(300f, queue.getAimY(), 0.0f);
+        assertTrue(queue.isFireRequested());   // o primeiro toque pediu disparo
+
+        queue.post(1f, 2f, false);
+        assertTrue(queue.drain());
+        assertFalse(queue.isFireRequested());
+        queue.markApplied();
+
+        assertFalse(queue.drain());
+        assertEquals(4, queue.getReceived());
+        assertEquals(4, queue.getDrained());
+        assertEquals(1, queue.getApplied());
+    }
+
+    @Test
+    public void fullQueueDropsNewTouches() {
+        TouchQueue queue = new TouchQueue(4);
+        for (int i = 0; i < 6; i++)
+            queue.post(i, i, true);
+
+        assertEquals(6, queue.getReceived());
+        assertEquals(2, queue.getDropped());
+        assertTrue(queue.drain());
+        assertEquals(4, queue.getBatchSize());
+        assertEquals(3f, queue.getAimX(), 0.0f);
+
+        assertTrue(queue.post(9, 9, true));   // há espaço de novo
+    }
+
+    @Test
+    public void capacityMustBeAPowerOfTwo() {
+        try {
+            new TouchQueue(48);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void concurrentDrainSeesEveryTouchInOrder() throws Exception {
+        final int touches = 50000;
+        final TouchQueue queue = new TouchQueue(16);
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= touches; i++)
+                    while (!queue.post(i, -i, i % 100 == 0))
+                        Thread.yield(); // fila cheia: tenta de novo
+            }
+        });
+        producer.start();
+
+        long seen = 0;
+        float lastX = 0;
+        while (seen < touches) {
+            if (!queue.drain()) {
+                Thread.yield(); // fila vazia: deixa o produtor avançar
+                continue;
+            }
+
+            seen += queue.getBatchSize();
+            // a posição é a do último toque do lote e nunca volta atrás
+            assertEquals((float) seen, queue.getAimX(), 0.0f);
+            assertEquals(-queue.getAimX(), queue.getAimY(), 0.0f);
+            assertTrue(queue.getAimX() > lastX);
+            lastX = queue.getAimX();
+        }
+        producer.join();
+
+        assertEquals(touches, queue.getDrained());
+        assertEquals(touches, queue.getReceived() - queue.getDropped());
+    }
+
+    @Test
+    public void postingAndDrainingAllocateNothing() {
+        TouchQueue queue = new TouchQueue();
+        exercise(queue, 20000); // aquece o JIT
+
+        long before = Allocations.allocatedBytes();
+        exercise(queue, 100000);
+        long allocated = Allocations.allocatedBytes() - before;
+
+        assertTrue("queue allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void exercise(TouchQueue queue, int touches) {
+        for (int i = 0; i < touches; i++) {
+            queue.post(i, i, (i & 7) == 0);
+            if ((i & 3) == 0)
+                queue.drain();
+        }
+    }
+}
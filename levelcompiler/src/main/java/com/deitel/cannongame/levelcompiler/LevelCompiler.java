@@ -0,0 +1,123 @@
+// LevelCompiler.java
+// Converte a descrição em texto de uma fase no formato binário de LevelFile.
+// Uma linha por comando; # começa um comentário:
+//
+//   section
+//   blocker X TOPO COMPRIMENTO VELOCIDADE [path Y1 Y2 ...]
+//   target  X TOPO COMPRIMENTO VELOCIDADE SEÇÕES [path Y1 Y2 ...]
+//
+// x é fração da largura, topo, comprimento e os pontos do caminho são
+// frações da altura e a velocidade é em alturas por segundo (negativa começa
+// subindo); os números aceitam a forma a/b, como 5/8
+package com.deitel.cannongame.levelcompiler;
+
+import com.deitel.cannongame.LevelWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+public final class LevelCompiler
+{
+    private int sections;
+    private int obstacles;
+
+    // lê a fase de in e retorna os bytes do formato binário; name identifica
+    // a entrada nas mensagens de erro, que trazem o número da linha
+    public byte[] compile(Reader in, String name) throws IOException
+    {
+        LevelWriter writer = new LevelWriter();
+        BufferedReader lines = new BufferedReader(in);
+        sections = obstacles = 0;
+
+        String line;
+        int number = 0;
+        while ((line = lines.readLine()) != null)
+        {
+            ++number;
+            int comment = line.indexOf('#');
+            if (comment >= 0)
+                line = line.substring(0, comment);
+
+            String[] words = line.trim().split("\\s+");
+            if (words[0].isEmpty())
+                continue;
+
+            try
+            {
+                compileLine(writer, words);
+            }
+            catch (IllegalArgumentException | IllegalStateException e) // inclui NumberFormatException
+            {
+                throw new IOException(name + ":" + number + ": " + e.getMessage(), e);
+            }
+        }
+
+        try
+        {
+            return writer.toByteArray();
+        }
+        catch (IllegalStateException e)
+        {
+            throw new IOException(name + ": " + e.getMessage(), e);
+        }
+    } // fim do método compile
+
+    private void compileLine(LevelWriter writer, String[] words)
+    {
+        switch (words[0])
+        {
+            case "section":
+                if (words.length != 1)
+                    throw new IllegalArgumentException("section takes no values");
+                writer.beginSection();
+                ++sections;
+                return;
+
+            case "blocker":
+            case "target":
+                break;
+
+            default:
+                throw new IllegalArgumentException("unknown command " + words[0]);
+        }
+
+        boolean target = words[0].equals("target");
+        int values = target ? 5 : 4;
+        int pathAt = Arrays.asList(words).indexOf("path");
+        int end = pathAt < 0 ? words.length : pathAt;
+        if (end - 1 != values)
+            throw new IllegalArgumentException(words[0] + " takes " + values + " values");
+
+        double[] path = new double[pathAt < 0 ? 0 : words.length - pathAt - 1];
+        for (int k = 0; k < path.length; k++)
+            path[k] = number(words[pathAt + 1 + k]);
+
+        double x = number(words[1]);
+        double top = number(words[2]);
+        double length = number(words[3]);
+        double speed = number(words[4]);
+
+        if (target)
+            writer.addTarget(x, top, length, speed, Integer.parseInt(words[5]), path);
+        else
+            writer.addBlocker(x, top, length, speed, path);
+        ++obstacles;
+    } // fim do método compileLine
+
+    // um número decimal ou uma fração a/b
+    private static double number(String word)
+    {
+        int slash = word.indexOf('/');
+        if (slash < 0)
+            return Double.parseDouble(word);
+
+        return Double.parseDouble(word.substring(0, slash)) /
+                Double.parseDouble(word.substring(slash + 1));
+    }
+
+    // totais da última fase compilada
+    public int getSections() { return sections; }
+    public int getObstacles() { return obstacles; }
+} // fim da classe LevelCompiler
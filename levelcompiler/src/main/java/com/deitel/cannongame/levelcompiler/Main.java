@@ -0,0 +1,73 @@
+// Main.java
+// Linha de comando do compilador de fases: lê a descrição em texto e grava
+// o arquivo binário que o jogo abre com LevelFile
+package com.deitel.cannongame.levelcompiler;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+public final class Main
+{
+    private static final String USAGE =
+            "usage: levelcompiler INPUT.txt OUTPUT.cnlv\n" +
+            "  INPUT.txt    level description (section, blocker and target lines)\n" +
+            "  OUTPUT.cnlv  binary level read by the game";
+
+    private Main()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length == 1 && args[0].equals("--help"))
+        {
+            System.out.println(USAGE);
+            return;
+        }
+
+        if (args.length != 2)
+        {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try
+        {
+            LevelCompiler compiler = new LevelCompiler();
+            byte[] level;
+            Reader in = new InputStreamReader(new FileInputStream(args[0]),
+                    StandardCharsets.UTF_8);
+            try
+            {
+                level = compiler.compile(in, args[0]);
+            }
+            finally
+            {
+                in.close();
+            }
+
+            OutputStream out = new FileOutputStream(args[1]);
+            try
+            {
+                out.write(level);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            System.out.println(args[1] + ": " + compiler.getSections() + " sections, " +
+                    compiler.getObstacles() + " obstacles, " + level.length + " bytes");
+        }
+        catch (IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    } // fim do método main
+} // fim da classe Main
@@ -0,0 +1,72 @@
+package com.deitel.cannongame.levelcompiler;
+
+import com.deitel.cannongame.LevelFile;
+import com.deitel.cannongame.LevelSection;
+import com.deitel.cannongame.ObstacleField;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tradução da descrição em texto para o formato binário e mensagens de erro
+ * com o número da linha.
+ */
+public class LevelCompilerTest {
+    @Test
+    public void textBecomesTheSameLevelInBinary() throws IOException {
+        String text =
+                "# fase clássica\n" +
+                "section\n" +
+                "blocker 5/8 1/8 2/8 0.5\n" +
+                "target  7/8 1/8 6/8 -0.25 7   # começa subindo\n" +
+                "\n" +
+                "section\n" +
+                "target 0.75 0 0.2 0.3 2 path 0.1 0.7 0.4\n";
+
+        LevelCompiler compiler = new LevelCompiler();
+        LevelFile level = LevelFile.wrap(ByteBuffer.wrap(
+                compiler.compile(new StringReader(text), "classic.txt")));
+
+        assertEquals(2, compiler.getSections());
+        assertEquals(3, compiler.getObstacles());
+        assertEquals(2, level.getSectionCount());
+
+        LevelSection first = level.section(0);
+        assertEquals(ObstacleField.BLOCKER, first.getKind(0));
+        assertEquals(0.625, first.getX(0), 1e-4);
+        assertEquals(0.25, first.getLength(0), 1e-4);
+        assertEquals(ObstacleField.TARGET, first.getKind(1));
+        assertEquals(-0.25, first.getSpeed(1), 1e-3);
+        assertEquals(7, first.getPieces(1));
+
+        LevelSection second = level.section(1);
+        assertEquals(3, second.getPathCount(0));
+        assertEquals(0.4, second.getWaypoint(0, 2), 1e-4);
+    }
+
+    @Test
+    public void errorsNameTheLine() {
+        assertError("section\nblocker 0.5 0.1 0.2\n", "bad.txt:2:");
+        assertError("section\ntarget 0.5 0.1 0.2 0.1 3\nwall 1\n", "bad.txt:3: unknown command wall");
+        assertError("blocker 0.5 0.1 0.2 0.1\n", "bad.txt:1:");
+        assertError("section\ntarget 0.5 0.1 0.2 x 3\n", "bad.txt:2:");
+        assertError("section\ntarget 1.5 0.1 0.2 0.1 3\n", "bad.txt:2:");
+        assertError("section\ntarget 0.5 0.1 0.2 0.1 3 path 0.4\n", "bad.txt:2:");
+        assertError("# vazia\n", "bad.txt:");
+        assertError("section\nblocker 0.5 0.1 0.2 0.1\n", "bad.txt: section 0 has no target");
+    }
+
+    private static void assertError(String text, String prefix) {
+        try {
+            new LevelCompiler().compile(new StringReader(text), "bad.txt");
+            fail("level should have been rejected: " + text);
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith(prefix));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+// GameStats.java
+// Resultados acumulados de muitos jogos: taxa de vitória e distribuições de
+// tiros disparados e de tempo até a vitória; resultados parciais de várias
+// threads são combinados com merge
+package com.deitel.cannongame.montecarlo;
+
+public class GameStats
+{
+    public static final int MAX_SHOTS = 256;            // tiros acima disso caem na última faixa
+    public static final double TIME_BUCKET = 0.1;       // largura das faixas de tempo, em segundos
+    public static final int TIME_BUCKETS = 1200;        // faixas de tempo até 120 segundos
+
+    private long games;
+    private long wins;
+    private long totalShots;
+    private double totalWinTime;
+    private final long[] shots = new long[MAX_SHOTS + 1];         // jogos por tiros disparados
+    private final long[] winTimes = new long[TIME_BUCKETS + 1];   // vitórias por faixa de tempo
+
+    // registra o resultado de um jogo
+    public void record(boolean won, int shotsFired, double elapsedTime)
+    {
+        ++games;
+        totalShots += shotsFired;
+        ++shots[Math.min(shotsFired, MAX_SHOTS)];
+
+        if (won)
+        {
+            ++wins;
+            totalWinTime += elapsedTime;
+            ++winTimes[Math.min((int) (elapsedTime / TIME_BUCKET), TIME_BUCKETS)];
+        }
+    }
+
+    // acrescenta os resultados de other a estes
+    public void merge(GameStats other)
+    {
+        games += other.games;
+        wins += other.wins;
+        totalShots += other.totalShots;
+        totalWinTime += other.totalWinTime;
+
+        for (int i = 0; i < shots.length; i++)
+            shots[i] += other.shots[i];
+        for (int i = 0; i < winTimes.length; i++)
+            winTimes[i] += other.winTimes[i];
+    }
+
+    public long getGames() { return games; }
+    public long getWins() { return wins; }
+
+    public double getWinRate()
+    {
+        return games == 0 ? 0.0 : (double) wins / games;
+    }
+
+    public double getMeanShots()
+    {
+        return games == 0 ? 0.0 : (double) totalShots / games;
+    }
+
+    public double getMeanWinTime()
+    {
+        return wins == 0 ? 0.0 : totalWinTime / wins;
+    }
+
+    // número de tiros em que a fração percentile (0 a 100) dos jogos terminou
+    public int getShotsPercentile(double percentile)
+    {
+        return percentileIndex(shots, games, percentile);
+    }
+
+    // tempo até a vitória abaixo do qual está a fração percentile das vitórias,
+    // arredondado para o fim da faixa
+    public double getWinTimePercentile(double percentile)
+    {
+        if (wins == 0)
+            return 0.0;
+
+        return (percentileIndex(winTimes, wins, percentile) + 1) * TIME_BUCKET;
+    }
+
+    private static int percentileIndex(long[] histogram, long total, double percentile)
+    {
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+
+        for (int i = 0; i < histogram.length; i++)
+        {
+            seen += histogram[i];
+            if (seen >= rank)
+                return i;
+        }
+
+        return histogram.length - 1;
+    }
+
+    // histogramas para comparar resultados (os testes de determinismo usam)
+    long[] getShotsHistogram() { return shots.clone(); }
+    long[] getWinTimeHistogram() { return winTimes.clone(); }
+} // fim da classe GameStats
@@ -0,0 +1,101 @@
+// LeadingShooter.java
+// Mira numa seção ainda inteira do alvo, no ponto em que ela estará quando a
+// bala chegar, com um tempo de reação e um erro de mira aleatórios, como um
+// jogador humano razoável
+package com.deitel.cannongame.montecarlo;
+
+import com.deitel.cannongame.GameSimulation;
+import com.deitel.cannongame.ObstacleField;
+
+import java.util.SplittableRandom;
+
+public class LeadingShooter implements Shooter
+{
+    private final int maxReactionTicks;    // passos máximos de espera entre disparos
+    private final double aimErrorRatio;    // desvio padrão da mira, em frações da altura
+
+    private SplittableRandom random;
+    private int waitTicks;                 // passos até o próximo disparo
+
+    public LeadingShooter(int maxReactionTicks, double aimErrorRatio)
+    {
+        this.maxReactionTicks = maxReactionTicks;
+        this.aimErrorRatio = aimErrorRatio;
+    }
+
+    @Override
+    public void newGame(SplittableRandom random)
+    {
+        this.random = random;
+        waitTicks = nextReaction();
+    }
+
+    @Override
+    public void onTick(GameSimulation simulation)
+    {
+        if (!simulation.canFire() || --waitTicks > 0)
+            return;
+
+        ObstacleField obstacles = simulation.getObstacles();
+        int target = -1;
+        int piece = -1;
+
+        // a primeira seção inteira do primeiro alvo que ainda tem seções inteiras
+        for (int i = 0; i < obstacles.size() && target < 0; i++)
+        {
+            if (obstacles.getKind(i) != ObstacleField.TARGET)
+                continue;
+
+            int first = obstacles.getFirstPiece(i);
+            int count = obstacles.getPieceCount(i);
+            int start = random.nextInt(count); // começa por uma seção aleatória
+
+            for (int k = 0; k < count; k++)
+            {
+                int section = (start + k) % count;
+                if (!obstacles.isPieceHit(first + section))
+                {
+                    target = i;
+                    piece = section;
+                    break;
+                }
+            }
+        }
+
+        if (target < 0)
+            return;
+
+        // estima o tempo de voo pela distância horizontal; duas iterações
+        // bastam para o ângulo convergir
+        double cannonY = simulation.getScreenHeight() / 2.0;
+        double targetX = obstacles.getX(target) - simulation.getCannonballRadius();
+        double speed = simulation.getCannonballSpeed();
+        double flightTime = targetX / speed;
+        double aimY = cannonY;
+
+        for (int iteration = 0; iteration < 2; iteration++)
+        {
+            aimY = obstacles.topAt(target, flightTime) +
+                    (piece + 0.5) * obstacles.getPieceLength(target);
+            double dx = targetX;
+            double dy = aimY - cannonY;
+            flightTime = Math.sqrt(dx * dx + dy * dy) / speed;
+        }
+
+        aimY += gaussian() * aimErrorRatio * simulation.getScreenHeight();
+        simulation.fire(simulation.aim((float) targetX, (float) aimY));
+        waitTicks = nextReaction();
+    } // fim do método onTick
+
+    private int nextReaction()
+    {
+        return 1 + random.nextInt(Math.max(1, maxReactionTicks));
+    }
+
+    // valor com distribuição normal padrão (transformação de Box-Muller)
+    private double gaussian()
+    {
+        double u = 1.0 - random.nextDouble(); // em (0, 1], evita log(0)
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * random.nextDouble());
+    }
+} // fim da classe LeadingShooter
@@ -0,0 +1,160 @@
+// Main.java
+// Linha de comando do simulador: joga muitos jogos com um jogador automático
+// e uma configuração de regras e imprime a taxa de vitória e as distribuições
+// de tiros e de tempo até a vitória
+package com.deitel.cannongame.montecarlo;
+
+import com.deitel.cannongame.GameConfig;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+public final class Main
+{
+    private static final String USAGE =
+            "usage: montecarlo [options]\n" +
+            "  --games N            games to play (default 100000)\n" +
+            "  --shooter NAME       " + Shooters.NAMES + " (default leading)\n" +
+            "  --seed N             base seed (default 1)\n" +
+            "  --threads N          worker threads (default: all cores)\n" +
+            "  --step-hz N          simulation steps per second (default 120)\n" +
+            "  --scaling            repeat the run with 1, 2, 4... threads and print the speedup\n" +
+            "  --pieces N           target pieces\n" +
+            "  --miss-penalty S     seconds lost on a miss\n" +
+            "  --hit-reward S       seconds gained on a hit\n" +
+            "  --initial-time S     seconds at the start of a game\n" +
+            "  --blocker-speed R    blocker speed in screen heights per second\n" +
+            "  --target-speed R     target speed in screen heights per second\n" +
+            "  --ball-speed R       cannonball speed in screen widths per second";
+
+    private Main()
+    {
+    }
+
+    public static void main(String[] args)
+    {
+        long games = 100000;
+        String shooterName = "leading";
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ticksPerSecond = MonteCarloRunner.DEFAULT_TICKS_PER_SECOND;
+        boolean scaling = false;
+        GameConfig config = new GameConfig();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                String option = args[i];
+
+                if (option.equals("--help"))
+                {
+                    System.out.println(USAGE);
+                    return;
+                }
+                else if (option.equals("--scaling"))
+                {
+                    scaling = true;
+                    continue;
+                }
+
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException("missing value for " + option);
+                String value = args[++i];
+
+                switch (option)
+                {
+                    case "--games": games = Long.parseLong(value); break;
+                    case "--shooter": shooterName = value; break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--step-hz": ticksPerSecond = Integer.parseInt(value); break;
+                    case "--pieces": config.setTargetPieces(Integer.parseInt(value)); break;
+                    case "--miss-penalty": config.setMissPenalty(Double.parseDouble(value)); break;
+                    case "--hit-reward": config.setHitReward(Double.parseDouble(value)); break;
+                    case "--initial-time": config.setInitialTime(Double.parseDouble(value)); break;
+                    case "--blocker-speed": config.setBlockerSpeedRatio(Double.parseDouble(value)); break;
+                    case "--target-speed": config.setTargetSpeedRatio(Double.parseDouble(value)); break;
+                    case "--ball-speed": config.setCannonballSpeedRatio(Double.parseDouble(value)); break;
+                    default: throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+
+            if (games <= 0 || threads <= 0)
+                throw new IllegalArgumentException("--games and --threads must be positive");
+
+            Supplier<Shooter> shooters = Shooters.byName(shooterName, ticksPerSecond);
+            MonteCarloRunner runner = new MonteCarloRunner(config, shooters, ticksPerSecond);
+
+            System.out.println("shooter " + shooterName + ", " + games + " games, seed " +
+                    seed + ", " + ticksPerSecond + " steps/s");
+            System.out.println(config);
+
+            if (scaling)
+                printScaling(runner, games, seed, threads);
+            else
+                printResults(runner, games, seed, threads);
+        }
+        catch (IllegalArgumentException e) // inclui NumberFormatException
+        {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    } // fim do método main
+
+    private static void printResults(MonteCarloRunner runner, long games, long seed, int threads)
+    {
+        long start = System.nanoTime();
+        GameStats stats = run(runner, games, seed, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("win rate       %.4f (%d of %d)%n",
+                stats.getWinRate(), stats.getWins(), stats.getGames());
+        System.out.printf("shots fired    mean %.2f  p50 %d  p90 %d  p99 %d%n",
+                stats.getMeanShots(), stats.getShotsPercentile(50),
+                stats.getShotsPercentile(90), stats.getShotsPercentile(99));
+        System.out.printf("time to win    mean %.2f s  p50 %.1f s  p90 %.1f s  p99 %.1f s%n",
+                stats.getMeanWinTime(), stats.getWinTimePercentile(50),
+                stats.getWinTimePercentile(90), stats.getWinTimePercentile(99));
+        System.out.printf("throughput     %.0f games/s on %d threads (%.2f s)%n",
+                games / seconds, threads, seconds);
+    }
+
+    // mede a vazão com 1, 2, 4... threads até maxThreads; os resultados são
+    // idênticos em todas as rodadas, só o tempo muda
+    private static void printScaling(MonteCarloRunner runner, long games, long seed, int maxThreads)
+    {
+        run(runner, Math.min(games, 10000), seed, maxThreads); // aquece o JIT
+        double baseline = 0;
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads))
+        {
+            long start = System.nanoTime();
+            run(runner, games, seed, threads);
+            double rate = games / ((System.nanoTime() - start) / 1e9);
+
+            if (threads == 1)
+                baseline = rate;
+
+            System.out.printf("%3d threads  %10.0f games/s  speedup %.2f%n",
+                    threads, rate, rate / baseline);
+
+            if (threads == maxThreads)
+                break;
+        }
+    }
+
+    private static GameStats run(MonteCarloRunner runner, long games, long seed, int threads)
+    {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            return runner.run(games, seed, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+} // fim da classe Main
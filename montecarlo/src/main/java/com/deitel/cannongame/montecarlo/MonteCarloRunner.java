@@ -0,0 +1,125 @@
+// MonteCarloRunner.java
+// Joga muitos jogos sem interface, na velocidade máxima, dividindo-os entre
+// os núcleos com fork-join; cada jogo usa uma semente derivada da semente
+// base e do número do jogo, então o resultado não depende de quantas
+// threads foram usadas nem de como os jogos foram divididos
+package com.deitel.cannongame.montecarlo;
+
+import com.deitel.cannongame.GameConfig;
+import com.deitel.cannongame.GameSimulation;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+public class MonteCarloRunner
+{
+    public static final int DEFAULT_SCREEN_WIDTH = 800;
+    public static final int DEFAULT_SCREEN_HEIGHT = 480;
+    public static final int DEFAULT_TICKS_PER_SECOND = 120;
+
+    // jogos em cada tarefa que não é mais dividida; grande o bastante para
+    // que a divisão custe pouco, pequeno o bastante para equilibrar os núcleos
+    private static final int GAMES_PER_TASK = 512;
+
+    // limite de segurança da duração de um jogo, em segundos
+    private static final int MAX_GAME_SECONDS = 600;
+
+    private final GameConfig config;
+    private final Supplier<Shooter> shooters;
+    private final int ticksPerSecond;
+    private final long stepNanos;
+    private int screenWidth = DEFAULT_SCREEN_WIDTH;
+    private int screenHeight = DEFAULT_SCREEN_HEIGHT;
+
+    public MonteCarloRunner(GameConfig config, Supplier<Shooter> shooters, int ticksPerSecond)
+    {
+        if (ticksPerSecond <= 0)
+            throw new IllegalArgumentException("ticksPerSecond must be positive");
+
+        this.config = config;
+        this.shooters = shooters;
+        this.ticksPerSecond = ticksPerSecond;
+        stepNanos = 1000000000L / ticksPerSecond;
+    }
+
+    public void setScreenSize(int width, int height)
+    {
+        screenWidth = width;
+        screenHeight = height;
+    }
+
+    // joga games jogos em pool e retorna os resultados combinados
+    public GameStats run(long games, long seed, ForkJoinPool pool)
+    {
+        return pool.invoke(new Batch(0, games, seed));
+    }
+
+    // joga os jogos [from, to) nesta thread
+    GameStats play(long from, long to, long seed)
+    {
+        GameSimulation simulation = new GameSimulation(config, 1);
+        simulation.setScreenSize(screenWidth, screenHeight);
+        Shooter shooter = shooters.get();
+        GameStats stats = new GameStats();
+        int maxSteps = MAX_GAME_SECONDS * ticksPerSecond;
+
+        for (long game = from; game < to; game++)
+        {
+            simulation.newGame();
+            shooter.newGame(new SplittableRandom(gameSeed(seed, game)));
+
+            for (int step = 0; step < maxSteps && !simulation.isGameOver(); step++)
+            {
+                shooter.onTick(simulation);
+                simulation.step(stepNanos);
+            }
+
+            stats.record(simulation.getObstacles().allPiecesHit(),
+                    simulation.getShotsFired(), simulation.getTotalElapsedTime());
+        }
+
+        return stats;
+    } // fim do método play
+
+    // mistura a semente base com o número do jogo (finalizador do SplitMix64)
+    static long gameSeed(long seed, long game)
+    {
+        long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // divide o intervalo de jogos ao meio até GAMES_PER_TASK jogos por tarefa
+    private class Batch extends RecursiveTask<GameStats>
+    {
+        private static final long serialVersionUID = 1L; // as tarefas não são serializadas
+
+        private final long from;
+        private final long to;
+        private final long seed;
+
+        Batch(long from, long to, long seed)
+        {
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        @Override
+        protected GameStats compute()
+        {
+            if (to - from <= GAMES_PER_TASK)
+                return play(from, to, seed);
+
+            long middle = (from + to) >>> 1;
+            Batch left = new Batch(from, middle, seed);
+            left.fork();
+            GameStats stats = new Batch(middle, to, seed).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    } // fim da classe Batch
+} // fim da classe MonteCarloRunner
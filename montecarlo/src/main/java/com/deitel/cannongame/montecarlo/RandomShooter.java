@@ -0,0 +1,36 @@
+// RandomShooter.java
+// Atira em pontos aleatórios da metade direita da tela, em média shotsPerSecond
+// vezes por segundo, sempre que um disparo é aceito
+package com.deitel.cannongame.montecarlo;
+
+import com.deitel.cannongame.GameSimulation;
+
+import java.util.SplittableRandom;
+
+public class RandomShooter implements Shooter
+{
+    private final double shotProbability;  // chance de atirar em cada passo
+    private SplittableRandom random;
+
+    public RandomShooter(double shotsPerSecond, double ticksPerSecond)
+    {
+        shotProbability = Math.min(1.0, shotsPerSecond / ticksPerSecond);
+    }
+
+    @Override
+    public void newGame(SplittableRandom random)
+    {
+        this.random = random;
+    }
+
+    @Override
+    public void onTick(GameSimulation simulation)
+    {
+        if (!simulation.canFire() || random.nextDouble() >= shotProbability)
+            return;
+
+        float x = (float) (simulation.getScreenWidth() * (0.5 + 0.5 * random.nextDouble()));
+        float y = (float) (simulation.getScreenHeight() * random.nextDouble());
+        simulation.fire(simulation.aim(x, y));
+    }
+} // fim da classe RandomShooter
@@ -0,0 +1,16 @@
+// Shooter.java
+// Jogador automático: decide, a cada passo da simulação, se e para onde atirar
+package com.deitel.cannongame.montecarlo;
+
+import com.deitel.cannongame.GameSimulation;
+
+import java.util.SplittableRandom;
+
+public interface Shooter
+{
+    // prepara um novo jogo; random é a fonte de números aleatórios do jogo
+    void newGame(SplittableRandom random);
+
+    // chamado antes de cada passo; atira com simulation.aim e simulation.fire
+    void onTick(GameSimulation simulation);
+} // fim da interface Shooter
@@ -0,0 +1,33 @@
+// Shooters.java
+// Jogadores automáticos disponíveis na linha de comando, por nome
+package com.deitel.cannongame.montecarlo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+public final class Shooters
+{
+    public static final List<String> NAMES = Arrays.asList("random", "leading", "sharp");
+
+    private Shooters()
+    {
+    }
+
+    // cria uma fábrica de jogadores com o nome dado; cada thread usa o seu
+    public static Supplier<Shooter> byName(String name, final double ticksPerSecond)
+    {
+        switch (name)
+        {
+            case "random": // atira sem mirar, duas vezes por segundo
+                return () -> new RandomShooter(2.0, ticksPerSecond);
+            case "leading": // mira com reação de até meio segundo e erro de 5% da altura
+                return () -> new LeadingShooter((int) (ticksPerSecond / 2), 0.05);
+            case "sharp": // mira com reação rápida e erro pequeno
+                return () -> new LeadingShooter((int) (ticksPerSecond / 10), 0.01);
+            default:
+                throw new IllegalArgumentException("unknown shooter " + name +
+                        "; expected one of " + NAMES);
+        }
+    }
+} // fim da classe Shooters
@@ -0,0 +1,88 @@
+package com.deitel.cannongame.montecarlo;
+
+import com.deitel.cannongame.GameConfig;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Resultados reproduzíveis com qualquer número de threads e coerência das
+ * estatísticas com os jogadores e as regras.
+ */
+public class MonteCarloRunnerTest {
+    private static final int GAMES = 2000;
+
+    @Test
+    public void sameSeedGivesSameResultsOnAnyNumberOfThreads() {
+        MonteCarloRunner runner = runner(new GameConfig(), "leading");
+
+        GameStats single = run(runner, GAMES, 42, 1);
+        GameStats parallel = run(runner, GAMES, 42, 4);
+
+        assertEquals(single.getGames(), parallel.getGames());
+        assertEquals(single.getWins(), parallel.getWins());
+        assertArrayEquals(single.getShotsHistogram(), parallel.getShotsHistogram());
+        assertArrayEquals(single.getWinTimeHistogram(), parallel.getWinTimeHistogram());
+
+        GameStats otherSeed = run(runner, GAMES, 43, 4);
+        assertFalse(Arrays.equals(single.getShotsHistogram(), otherSeed.getShotsHistogram()));
+    }
+
+    @Test
+    public void aimingShooterWinsMoreThanRandomShooter() {
+        GameStats random = run(runner(new GameConfig(), "random"), GAMES, 7, 4);
+        GameStats leading = run(runner(new GameConfig(), "leading"), GAMES, 7, 4);
+
+        assertEquals(GAMES, random.getGames());
+        assertTrue("leading " + leading.getWinRate() + " random " + random.getWinRate(),
+                leading.getWinRate() > random.getWinRate());
+        assertTrue(leading.getWins() > 0);
+    }
+
+    @Test
+    public void harsherRulesLowerTheWinRate() {
+        GameStats normal = run(runner(new GameConfig(), "leading"), GAMES, 9, 4);
+        GameConfig harsh = new GameConfig().setHitReward(0).setMissPenalty(5).setInitialTime(5);
+        GameStats harder = run(runner(harsh, "leading"), GAMES, 9, 4);
+
+        assertTrue(harder.getWinRate() < normal.getWinRate());
+    }
+
+    @Test
+    public void mergeAddsGamesAndDistributions() {
+        GameStats a = new GameStats();
+        a.record(true, 7, 3.05);
+        a.record(false, 12, 10.0);
+        GameStats b = new GameStats();
+        b.record(true, 9, 5.0);
+
+        a.merge(b);
+
+        assertEquals(3, a.getGames());
+        assertEquals(2, a.getWins());
+        assertEquals(28.0 / 3, a.getMeanShots(), 1e-9);
+        assertEquals(4.025, a.getMeanWinTime(), 1e-9);
+        assertEquals(9, a.getShotsPercentile(50));
+        assertEquals(12, a.getShotsPercentile(100));
+        assertEquals(3.1, a.getWinTimePercentile(50), 1e-9);   // faixa [3,0 s, 3,1 s)
+        assertEquals(5.1, a.getWinTimePercentile(100), 1e-9);
+    }
+
+    private static MonteCarloRunner runner(GameConfig config, String shooter) {
+        int ticks = MonteCarloRunner.DEFAULT_TICKS_PER_SECOND;
+        return new MonteCarloRunner(config, Shooters.byName(shooter, ticks), ticks);
+    }
+
+    private static GameStats run(MonteCarloRunner runner, long games, long seed, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return runner.run(games, seed, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}